@@ -1,6 +1,7 @@
 package backend;
 
 import github.TurboIssueEvent;
+import org.apache.commons.lang3.StringUtils;
 import org.eclipse.egit.github.core.Comment;
 
 import util.Utility;
@@ -12,6 +13,10 @@ import java.util.List;
 
 public final class IssueMetadata {
 
+    // Rough sizes in bytes of an event, and of a comment without its text, for estimating memory use
+    private static final long EVENT_SIZE = 200;
+    private static final long COMMENT_SIZE = 300;
+
     private final List<TurboIssueEvent> events;
     private final List<Comment> comments;
 
@@ -82,6 +87,20 @@ public final class IssueMetadata {
         return new IssueMetadata(newEvents, comments, isLatest, eventsETag, commentsETag, nonSelfUpdatedAt, user);
     }
 
+    /**
+     * Reconciles a newly-updated metadata instance against the existing metadata of the issue.
+     * Comments are kept like events if their ETag has not changed; comments without an ETag
+     * are always replaced.
+     */
+    public IssueMetadata reconcile(LocalDateTime nonSelfUpdatedAt, IssueMetadata existing) {
+        IssueMetadata result = reconcile(nonSelfUpdatedAt, existing.events, existing.eventsETag);
+        if (commentsETag.isEmpty() || !commentsETag.equals(existing.commentsETag)) {
+            return result;
+        }
+        return new IssueMetadata(result.events, existing.comments, isLatest, eventsETag, commentsETag,
+            nonSelfUpdatedAt, user);
+    }
+
     /**
      * Intermediate metadata constructor (no user provided, empty computed properties)
      */
@@ -171,6 +190,18 @@ public final class IssueMetadata {
         return String.format("%d events, %d comments", events.size(), comments.size());
     }
 
+    /**
+     * Returns a rough estimate of the memory taken by the events and comments, in bytes.
+     */
+    public long estimateSize() {
+        long size = events.size() * EVENT_SIZE;
+        for (Comment comment : comments) {
+            size += COMMENT_SIZE + 2L * (StringUtils.length(comment.getBody())
+                + StringUtils.length(comment.getBodyHtml()) + StringUtils.length(comment.getBodyText()));
+        }
+        return size;
+    }
+
     public List<TurboIssueEvent> getEvents() {
         return new ArrayList<>(events);
     }
@@ -2,6 +2,7 @@ package backend;
 
 import backend.control.RepoOpControl;
 import backend.resource.Model;
+import backend.resource.ModelChanges;
 import backend.resource.MultiModel;
 import backend.resource.TurboIssue;
 import filter.expression.FilterExpression;
@@ -25,6 +26,9 @@ import util.events.testevents.ClearLogicModelEventHandler;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import static util.Futures.withResult;
@@ -33,11 +37,14 @@ public class Logic {
 
     private static final Logger logger = HTLog.get(Logic.class);
 
+    private static final int QUIT_FLUSH_TIMEOUT_SECONDS = 10;
+
     private final MultiModel models;
     private final UIManager uiManager;
     protected final Preferences prefs;
-    private final RepoIO repoIO = TestController.createApplicationRepoIO();
-    private final RepoOpControl repoOpControl = new RepoOpControl(repoIO);
+    private final RepoIO repoIO;
+    private final RepoOpControl repoOpControl;
+    private final RefreshScheduler refreshScheduler;
 
     public LoginController loginController;
     public UpdateController updateController;
@@ -46,6 +53,11 @@ public class Logic {
         this.uiManager = uiManager;
         this.prefs = prefs;
         this.models = models.orElse(new MultiModel(prefs));
+        this.repoIO = TestController.createApplicationRepoIO(prefs);
+        this.repoOpControl = new RepoOpControl(repoIO);
+        this.refreshScheduler = new RefreshScheduler(prefs.getRefreshRequestsPerHour());
+
+        repoIO.setOnRedownload(this::onRedownloaded);
 
         loginController = new LoginController(this);
         updateController = new UpdateController(this);
@@ -68,28 +80,83 @@ public class Logic {
             logger.info(e.repoId + " not currently in model.");
         }
         models.replace(toReplace);
+        models.discardInactive(e.repoId);
 
         // Re-"download" repo after clearing
         openPrimaryRepository(e.repoId);
     }
 
+    /**
+     * Replaces the model of a repository which was downloaded again in the background.
+     */
+    private void onRedownloaded(Model model) {
+        logger.info(HTLog.format(model.getRepoId(), "Downloaded again after a corrupted save"));
+        if (models.update(Collections.singletonList(model)).stream().anyMatch(changes -> !changes.isEmpty())) {
+            refreshUI();
+        }
+    }
+
     private CompletableFuture<Boolean> isRepositoryValid(String repoId) {
         return repoIO.isRepositoryValid(repoId);
     }
 
+    /**
+     * Refreshes all open repositories.
+     */
     public void refresh() {
-        String message = "Refreshing " + models.toModels().stream()
+        refresh(models.toModels());
+    }
+
+    /**
+     * Refreshes the open repositories which are due to be refreshed, each according to its own interval.
+     *
+     * @param visibleRepos the ids of the repositories used by panels, which are refreshed more often
+     */
+    public void refreshDue(Set<String> visibleRepos) {
+        List<String> dueRepos = refreshScheduler.getReposDue(getOpenRepositories(),
+                                                             Utility.convertSetToLowerCase(visibleRepos));
+        if (dueRepos.isEmpty()) {
+            return;
+        }
+        refresh(models.toModels().stream()
+                .filter(model -> dueRepos.contains(model.getRepoId().toLowerCase()))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the number of seconds until the next repository is due to be refreshed, or -1 if there are none.
+     */
+    public int getSecondsToNextRefresh() {
+        return refreshScheduler.getSecondsToNextRefresh();
+    }
+
+    private void refresh(List<Model> toRefresh) {
+        String message = "Refreshing " + toRefresh.stream()
                 .map(Model::getRepoId)
                 .collect(Collectors.joining(", "));
 
         logger.info(message);
         UI.status.displayMessage(message);
 
-        Futures.sequence(models.toModels().stream()
+        Futures.sequence(toRefresh.stream()
                 .map(repoOpControl::updateModel)
                 .collect(Collectors.toList()))
-                .thenApply(models::replace)
-                .thenRun(this::refreshUI)
+                .thenApply(updatedModels -> {
+                    for (int i = 0; i < updatedModels.size(); i++) {
+                        // Models which do not know their changes (e.g. as they were downloaded again) may have any
+                        refreshScheduler.onRefreshed(toRefresh.get(i).getRepoId(),
+                                updatedModels.get(i).getChanges().map(changes -> !changes.isEmpty()).orElse(true));
+                    }
+                    return updatedModels;
+                })
+                .thenApply(models::update)
+                .thenAccept(changes -> {
+                    if (changes.stream().allMatch(ModelChanges::isEmpty)) {
+                        logger.info("Nothing changed; not refreshing panels");
+                    } else {
+                        refreshUI();
+                    }
+                })
                 .thenCompose(n -> getRateLimitResetTime())
                 .thenApply(this::updateRemainingRate)
                 .exceptionally(Futures::log);
@@ -136,7 +203,16 @@ public class Logic {
 
         boolean isPrimaryRepository = !panel.isPresent();
         if (isPrimaryRepository) prefs.setLastViewedRepository(repoId);
-        if (isAlreadyOpen(repoId) || models.isRepositoryPending(repoId)) {
+        boolean isInMemory = isAlreadyOpen(repoId) || models.isRepositoryPending(repoId);
+        if (!isInMemory) {
+            // Repositories which were used earlier may still be in memory, in which case they need not be loaded
+            isInMemory = models.activate(repoId);
+            if (isInMemory) {
+                // The model may have fallen behind while it was not in use
+                refreshScheduler.scheduleNow(repoId);
+            }
+        }
+        if (isInMemory) {
             if (isPrimaryRepository) {
                 // The content of panels with an empty filter text should change when the primary repo is changed.
                 // Thus we refresh panels even when the repo is already open.
@@ -214,22 +290,39 @@ public class Logic {
         return models.getDefaultRepo();
     }
 
+    /**
+     * Writes any repository data which the store has not written yet. Blocks for at most
+     * QUIT_FLUSH_TIMEOUT_SECONDS, as it is called when quitting.
+     */
+    public void onAppQuit() {
+        try {
+            repoIO.flushStore().get(QUIT_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            logger.error("Unable to write pending changes to store", e);
+        }
+    }
+
     public CompletableFuture<Boolean> removeStoredRepository(String repoId) {
+        models.discardInactive(repoId);
         return repoOpControl.removeRepository(repoId);
     }
 
     /**
+     * Deactivates the models of repositories which are not in use. They are kept in memory, within
+     * a budget, so that they need not be loaded again if they are used again soon.
+     *
      * Recommended Pre-condition: normalize reposInUse to lower case
      *                           - using Utility.convertSetToLowerCase()
      */
     public void removeUnusedModels(Set<String> reposInUse) {
         models.toModels().stream().map(Model::getRepoId)
                 .filter(repoId -> !reposInUse.contains(repoId.toLowerCase()))
-                .forEach(models::removeRepoModelById);
+                .forEach(models::deactivate);
     }
 
     public ImmutablePair<Integer, Long> updateRemainingRate
             (ImmutablePair<Integer, Long> rateLimits) {
+        refreshScheduler.updateRateLimits(rateLimits);
         uiManager.updateRateLimits(rateLimits);
         return rateLimits;
     }
@@ -362,14 +455,16 @@ public class Logic {
      *
      * @param repoId The repository containing issues to retrieve metadata for.
      * @param issues Issues sharing the same repository requiring a metadata update.
+     * @param prioritisedIds Ids of the issues whose metadata should be retrieved first, e.g. those in view.
      * @return True if metadata retrieval was a success, false otherwise.
      */
-    public CompletableFuture<Boolean> getIssueMetadata(String repoId, List<TurboIssue> issues) {
+    public CompletableFuture<Boolean> getIssueMetadata(String repoId, List<TurboIssue> issues,
+                                                       Set<Integer> prioritisedIds) {
         String message = "Getting metadata for " + repoId + "...";
         logger.info("Getting metadata for issues " + issues);
         UI.status.displayMessage(message);
 
-        return repoIO.getIssueMetadata(repoId, issues).thenApply(this::processUpdates)
+        return repoIO.getIssueMetadata(repoId, issues, prioritisedIds).thenApply(this::processUpdates)
                 .thenApply(metadata -> insertMetadata(metadata, repoId, prefs.getLastLoginUsername()))
                 .exceptionally(withResult(false));
     }
@@ -378,6 +473,7 @@ public class Logic {
         String updatedMessage = "Received metadata from " + repoId + "!";
         UI.status.displayMessage(updatedMessage);
         models.insertMetadata(repoId, metadata, currentUser);
+        repoIO.saveIssueMetadata(repoId, models.getIssueMetadata(repoId));
         return true;
     }
 
@@ -0,0 +1,202 @@
+package backend;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe. Decides when each open repository should be refreshed, giving each its own refresh interval
+ * instead of refreshing all of them together.
+ *
+ * A repository which changed when it was last refreshed has its interval halved, and one which did not have
+ * it doubled, so active repositories are refreshed more often and idle ones back off. Repositories used by
+ * panels are refreshed at least every MAX_VISIBLE_INTERVAL; the others may back off up to MAX_INTERVAL.
+ *
+ * Intervals never go below what the request budget allows: refreshing all open repositories should take no
+ * more than the given number of requests per hour, nor more than the remaining rate limit spread out until
+ * it is reset.
+ */
+public class RefreshScheduler {
+
+    private static final Logger logger = HTLog.get(RefreshScheduler.class);
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    // The interval of newly opened repositories, which was the refresh period of all of them before
+    public static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(60);
+    public static final long MIN_INTERVAL = TimeUnit.SECONDS.toMillis(20);
+    public static final long MAX_VISIBLE_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    public static final long MAX_INTERVAL = TimeUnit.MINUTES.toMillis(30);
+
+    public static final int DEFAULT_REQUESTS_PER_HOUR = 1500;
+
+    // The fewest requests taken by a refresh of a repository: its issues, pull requests, labels,
+    // milestones and collaborators
+    public static final int MIN_REQUESTS_PER_REFRESH = 5;
+
+    /**
+     * When a repository is to be refreshed next.
+     */
+    private static class RepoSchedule {
+        private long interval = DEFAULT_INTERVAL;
+        private long nextRefreshTime;
+        private boolean isVisible = true;
+
+        private RepoSchedule(long nextRefreshTime) {
+            this.nextRefreshTime = nextRefreshTime;
+        }
+    }
+
+    private final int requestsPerHour;
+    private final LongSupplier clock;
+    // Keyed by lower-case repository id
+    private final Map<String, RepoSchedule> schedules = new HashMap<>();
+
+    // The last-known rate limit; a negative number of remaining requests if unknown
+    private int remainingRequests = -1;
+    private long rateLimitResetTime = 0;
+
+    // The requests a refresh is estimated to take, from how many were used up by the refreshes between
+    // updates of the rate limit
+    private double requestsPerRefresh = MIN_REQUESTS_PER_REFRESH;
+    private int refreshesSinceRateLimitUpdate = 0;
+
+    /**
+     * @param requestsPerHour the number of requests refreshes may take per hour; the default is used if it
+     *                        is not positive
+     */
+    public RefreshScheduler(int requestsPerHour) {
+        this(requestsPerHour, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock gives the current time in milliseconds
+     */
+    public RefreshScheduler(int requestsPerHour, LongSupplier clock) {
+        this.requestsPerHour = requestsPerHour > 0 ? requestsPerHour : DEFAULT_REQUESTS_PER_HOUR;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the open repositories which are due to be refreshed, and schedules their next refresh as if
+     * they were unchanged, in case the refresh does not complete. Repositories which are no longer open
+     * are forgotten.
+     *
+     * @param openRepos the ids of the open repositories, in lower case
+     * @param visibleRepos the ids of the repositories used by panels, in lower case
+     */
+    public synchronized List<String> getReposDue(Set<String> openRepos, Set<String> visibleRepos) {
+        long now = clock.getAsLong();
+        schedules.keySet().retainAll(openRepos);
+
+        List<String> dueRepos = new ArrayList<>();
+        for (String repoId : openRepos) {
+            RepoSchedule schedule = schedules.computeIfAbsent(repoId, id -> new RepoSchedule(now + DEFAULT_INTERVAL));
+            schedule.isVisible = visibleRepos.contains(repoId);
+            if (schedule.nextRefreshTime <= now) {
+                dueRepos.add(repoId);
+                schedule.nextRefreshTime = now + getBoundedInterval(schedule, now);
+            }
+        }
+        return dueRepos;
+    }
+
+    /**
+     * Schedules the next refresh of a repository which has just been refreshed.
+     *
+     * @param hasChanged whether anything in the repository had changed
+     */
+    public synchronized void onRefreshed(String repoId, boolean hasChanged) {
+        long now = clock.getAsLong();
+        RepoSchedule schedule = schedules.computeIfAbsent(repoId.toLowerCase(), id -> new RepoSchedule(now));
+        refreshesSinceRateLimitUpdate++;
+        schedule.interval = hasChanged ? schedule.interval / 2 : schedule.interval * 2;
+        schedule.interval = getBoundedInterval(schedule, now);
+        schedule.nextRefreshTime = now + schedule.interval;
+        logger.info(HTLog.format(repoId, "Next refresh in %d seconds",
+                                 TimeUnit.MILLISECONDS.toSeconds(schedule.interval)));
+    }
+
+    /**
+     * Makes a repository due to be refreshed, e.g. as its model was kept while it was not in use
+     * and may have fallen behind.
+     */
+    public synchronized void scheduleNow(String repoId) {
+        long now = clock.getAsLong();
+        schedules.computeIfAbsent(repoId.toLowerCase(), id -> new RepoSchedule(now)).nextRefreshTime = now;
+    }
+
+    /**
+     * Updates the rate limit the intervals are kept within, and the estimate of the requests a refresh takes
+     * from the requests used up since the last update. Other requests made in the meantime are counted
+     * too, so the estimate errs on the side of refreshing less often.
+     *
+     * @param rateLimits the remaining requests, and the time in milliseconds at which they are reset
+     */
+    public synchronized void updateRateLimits(ImmutablePair<Integer, Long> rateLimits) {
+        boolean isSameWindow = remainingRequests >= rateLimits.left
+            && Math.abs(rateLimits.right - rateLimitResetTime) < MIN_INTERVAL;
+        if (isSameWindow && refreshesSinceRateLimitUpdate > 0) {
+            double measured = (remainingRequests - rateLimits.left) / (double) refreshesSinceRateLimitUpdate;
+            requestsPerRefresh = Math.max(MIN_REQUESTS_PER_REFRESH, (requestsPerRefresh + measured) / 2);
+        }
+        refreshesSinceRateLimitUpdate = 0;
+        remainingRequests = rateLimits.left;
+        rateLimitResetTime = rateLimits.right;
+    }
+
+    /**
+     * Returns the number of seconds until the next repository is due, or -1 if there are none.
+     */
+    public synchronized int getSecondsToNextRefresh() {
+        long now = clock.getAsLong();
+        OptionalLong timeToNextRefresh = schedules.values().stream()
+            .mapToLong(schedule -> Math.max(0, schedule.nextRefreshTime - now))
+            .min();
+        return timeToNextRefresh.isPresent()
+            ? (int) TimeUnit.MILLISECONDS.toSeconds(timeToNextRefresh.getAsLong())
+            : -1;
+    }
+
+    private long getBoundedInterval(RepoSchedule schedule, long now) {
+        long maxInterval = schedule.isVisible ? MAX_VISIBLE_INTERVAL : MAX_INTERVAL;
+        // The budget takes precedence over the longest interval
+        return Math.max(getMinInterval(now), Math.min(schedule.interval, maxInterval));
+    }
+
+    /**
+     * Returns the shortest interval at which all open repositories may be refreshed within the budget.
+     */
+    private long getMinInterval(long now) {
+        double allowedRequestsPerHour = requestsPerHour;
+        long timeToReset = getTimeToRateLimitReset(now);
+        if (timeToReset > 0) {
+            // The remaining requests are spread out until they are reset
+            double remainingRequestsPerHour = remainingRequests * (double) HOUR / Math.max(timeToReset, MIN_INTERVAL);
+            allowedRequestsPerHour = Math.min(allowedRequestsPerHour, remainingRequestsPerHour);
+        }
+        double requestsPerRound = Math.max(1, schedules.size()) * requestsPerRefresh;
+        double minInterval = requestsPerRound * HOUR / allowedRequestsPerHour;
+        if (timeToReset > 0) {
+            // Requests become available again when the rate limit is reset
+            minInterval = Math.min(minInterval, timeToReset);
+        }
+        return Math.max(MIN_INTERVAL, (long) Math.ceil(Math.min(minInterval, Long.MAX_VALUE)));
+    }
+
+    /**
+     * Returns the time in milliseconds until the rate limit is reset, or 0 if it is unknown or past.
+     */
+    private long getTimeToRateLimitReset(long now) {
+        return remainingRequests < 0 ? 0 : Math.max(0, rateLimitResetTime - now);
+    }
+}
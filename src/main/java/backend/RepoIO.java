@@ -10,6 +10,7 @@ import backend.resource.serialization.SerializableModel;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.logging.log4j.Logger;
 import ui.UI;
+import util.Futures;
 import util.HTLog;
 import util.events.ShowErrorDialogEvent;
 import util.events.UpdateProgressEvent;
@@ -18,8 +19,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static util.Futures.withResult;
 
@@ -32,6 +36,9 @@ public class RepoIO {
 
     private final List<String> storedRepos;
 
+    // Receives repositories which were downloaded again in the background, after updateModel returned
+    private Consumer<Model> onRedownloadCallback = model -> {};
+
     private static final int MAX_REDOWNLOAD_TRIES = 2;
 
     /**
@@ -53,6 +60,15 @@ public class RepoIO {
         return storedRepos;
     }
 
+    /**
+     * Sets the callback which receives the models of repositories downloaded again in the background,
+     * as happens when a deferred save turns out to be corrupted. The current models of those repositories
+     * should be replaced with them.
+     */
+    public void setOnRedownload(Consumer<Model> callback) {
+        onRedownloadCallback = callback;
+    }
+
     public CompletableFuture<Boolean> login(UserCredentials credentials) {
         return repoSource.login(credentials);
     }
@@ -67,17 +83,15 @@ public class RepoIO {
         Optional<String> matchingRepoName = storedRepos.stream().filter(repoName ->
                 repoName.equalsIgnoreCase(repoId)).findFirst();
         if (matchingRepoName.isPresent()) {
-            // TODO avoid CI deadlock in the .exceptionally call. Explanation:
-            /* loadRepoFromStoreAsync will execute in jsonStore's single thread pool, and if
-             it has an exception then downloadRepoFromSourceBlocking will also run there. Eventually,
-             this results in jsonStore.saveRepository in updateModel being placed as another Task on the
-             same thread pool. However, since the current task is still carrying out and waiting for the second
-             task to complete, the program gets deadlocked on the CI.
-             One example of how this can happen is when storedRepos contains the repo name but the json was
-             deleted while the program is still running. */
+            // If loading fails (e.g. the file was deleted while the program is running), the repository
+            // is downloaded instead. This must not block: the failure is reported on a store thread, and
+            // the download ends with a save which is queued behind the failed load.
             String repoToLoad = matchingRepoName.get();
             return loadRepoFromStoreAsync(repoToLoad)
-                    .exceptionally(e -> downloadRepoFromSourceBlocking(repoToLoad));
+                    .handle((model, e) -> e == null
+                            ? CompletableFuture.completedFuture(model)
+                            : downloadRepoFromSourceAsync(repoToLoad))
+                    .thenCompose(model -> model);
         } else {
             return downloadRepoFromSourceAsync(repoId);
         }
@@ -90,33 +104,45 @@ public class RepoIO {
 
     private CompletableFuture<Model> loadRepoFromStoreAsync(String repoId) {
         return jsonStore.loadRepository(repoId)
+                .thenCombine(jsonStore.loadMetadata(repoId), RepoIO::withCachedMetadata)
                 .thenCompose(this::updateModel);
     }
 
+    /**
+     * Returns a copy of a model loaded from the store in which the issues carry the metadata cached
+     * for them, so that it can be revalidated rather than downloaded again.
+     */
+    private static Model withCachedMetadata(Model model, Map<Integer, IssueMetadata> metadata) {
+        // The loaded issues are copied rather than changed, as models are shared with their readers
+        return model.withIssues(model.getIssues().stream()
+                .filter(issue -> metadata.containsKey(issue.getId()))
+                .map(issue -> {
+                    TurboIssue withMetadata = new TurboIssue(issue);
+                    withMetadata.setMetadata(metadata.get(issue.getId()));
+                    return withMetadata;
+                })
+                .collect(Collectors.toList()));
+    }
+
     private CompletableFuture<Model> downloadRepoFromSourceAsync(String repoID) {
         return downloadRepoFromSourceAsync(repoID, MAX_REDOWNLOAD_TRIES);
     }
 
     private CompletableFuture<Model> downloadRepoFromSourceAsync(String repoId, int remainingTries) {
+        return downloadRepoFromSource(repoId, remainingTries).exceptionally(withResult(new Model(repoId)));
+    }
+
+    /**
+     * Downloads a repository, failing rather than resulting in an empty model if it cannot.
+     */
+    private CompletableFuture<Model> downloadRepoFromSource(String repoId, int remainingTries) {
         UI.status.displayMessage("Downloading " + repoId);
         return repoSource.downloadRepository(repoId)
                 .thenCompose(newModel -> updateModel(newModel, remainingTries))
                 .thenApply(model -> {
                     storedRepos.add(repoId);
                     return model;
-                })
-                .exceptionally(withResult(new Model(repoId)));
-    }
-
-    private Model downloadRepoFromSourceBlocking(String repoId) {
-        try {
-            return downloadRepoFromSourceAsync(repoId).get();
-        } catch (ExecutionException | InterruptedException e) {
-            logger.info("Error while downloading " + repoId);
-            logger.error(e.getLocalizedMessage());
-
-            return new Model(repoId);
-        }
+                });
     }
 
     public CompletableFuture<Model> updateModel(Model model) {
@@ -127,12 +153,26 @@ public class RepoIO {
         return repoSource.updateModel(model)
             .thenApply(newModel -> {
                 boolean corruptedJson = false;
-                if (!model.equals(newModel)) {
-                    try {
-                        corruptedJson =
-                                jsonStore.saveRepository(newModel.getRepoId(), new SerializableModel(newModel)).get();
-                    } catch (InterruptedException | ExecutionException ex) {
-                        corruptedJson = true;
+                // Changes to the contents of a model change its version, and those of the ETags its signature
+                boolean hasChanged = newModel.getVersion() != model.getVersion()
+                        || !newModel.getUpdateSignature().equals(model.getUpdateSignature());
+                if (hasChanged) {
+                    CompletableFuture<Boolean> saved =
+                            jsonStore.saveRepository(newModel.getRepoId(), new SerializableModel(newModel));
+                    if (jsonStore.defersWrites()) {
+                        // Waiting would hold up the update until the save is written; corruption is
+                        // dealt with once it is
+                        saved.thenAccept(corrupted -> {
+                            if (corrupted) {
+                                onCorruptedJson(model.getRepoId(), remainingTries);
+                            }
+                        });
+                    } else {
+                        try {
+                            corruptedJson = saved.get();
+                        } catch (InterruptedException | ExecutionException ex) {
+                            corruptedJson = true;
+                        }
                     }
                 } else {
                     logger.info(HTLog.format(model.getRepoId(),
@@ -142,11 +182,7 @@ public class RepoIO {
                     return downloadRepoFromSourceAsync(model.getRepoId(), remainingTries - 1).join();
                 } else {
                     if (corruptedJson && remainingTries == 0) {
-                        UI.events.triggerEvent(new ShowErrorDialogEvent("Could not sync " + model.getRepoId(),
-                                "We were not able to sync with GitHub to retrieve and store data for the repository "
-                                + model.getRepoId()
-                                + ". Please let us know if you encounter this issue consistently."
-                        ));
+                        showSyncError(model.getRepoId());
                     } else {
                         UI.status.displayMessage(model.getRepoId() + " is up to date!");
                     }
@@ -156,8 +192,46 @@ public class RepoIO {
             }).exceptionally(withResult(new Model(model.getRepoId())));
     }
 
-    public CompletableFuture<Map<Integer, IssueMetadata>> getIssueMetadata(String repoId, List<TurboIssue> issues) {
-        return repoSource.downloadMetadata(repoId, issues);
+    /**
+     * Handles a save which turned out to be corrupted after updateModel returned,
+     * by downloading the repository again in the background and passing it on to the callback.
+     */
+    private void onCorruptedJson(String repoId, int remainingTries) {
+        if (remainingTries > 0) {
+            downloadRepoFromSource(repoId, remainingTries - 1)
+                .thenAccept(model -> onRedownloadCallback.accept(model))
+                .exceptionally(Futures::log);
+        } else {
+            showSyncError(repoId);
+        }
+    }
+
+    private static void showSyncError(String repoId) {
+        UI.events.triggerEvent(new ShowErrorDialogEvent("Could not sync " + repoId,
+                "We were not able to sync with GitHub to retrieve and store data for the repository "
+                + repoId
+                + ". Please let us know if you encounter this issue consistently."
+        ));
+    }
+
+    /**
+     * Writes any saves which the store has held back. Should be called before quitting.
+     */
+    public CompletableFuture<Void> flushStore() {
+        return jsonStore.flush();
+    }
+
+    public CompletableFuture<Map<Integer, IssueMetadata>> getIssueMetadata(String repoId, List<TurboIssue> issues,
+                                                                           Set<Integer> prioritisedIds) {
+        return repoSource.downloadMetadata(repoId, issues, prioritisedIds);
+    }
+
+    /**
+     * Caches the metadata of the issues of a repository in the store.
+     * @param metadata the metadata of the repository's issues, keyed by issue id
+     */
+    public CompletableFuture<Boolean> saveIssueMetadata(String repoId, Map<Integer, IssueMetadata> metadata) {
+        return jsonStore.saveMetadata(repoId, metadata);
     }
 
     public CompletableFuture<Boolean> replaceIssueLabels(TurboIssue issue, List<String> labels) {
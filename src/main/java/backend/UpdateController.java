@@ -1,7 +1,7 @@
 package backend;
 
+import backend.interfaces.IModel;
 import backend.resource.Model;
-import backend.resource.MultiModel;
 import backend.resource.TurboIssue;
 import filter.expression.FilterExpression;
 import filter.expression.Qualifier;
@@ -47,6 +47,12 @@ public class UpdateController {
         .thenRun(() -> {
             // First filter, for issues requiring a metadata update.
             Map<String, List<TurboIssue>> toUpdate = tallyMetadataUpdate(filterExprs);
+            // Those in the focused panel are updated first
+            Map<String, Set<Integer>> prioritised = tallyMetadataUpdate(getFocusedFilterExpressions(filterPanels))
+                    .entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().stream()
+                            .map(TurboIssue::getId)
+                            .collect(Collectors.toSet())));
 
             if (toUpdate.isEmpty()) {
                 // If no issues requiring metadata update, just run the filter and sort.
@@ -57,7 +63,8 @@ public class UpdateController {
             // If there are issues requiring metadata update, we dispatch the metadata requests...
             ArrayList<CompletableFuture<Boolean>> metadataRetrievalTasks = new ArrayList<>();
             toUpdate.forEach((repoId, issues) ->
-                    metadataRetrievalTasks.add(logic.getIssueMetadata(repoId, issues)));
+                    metadataRetrievalTasks.add(logic.getIssueMetadata(repoId, issues,
+                            prioritised.getOrDefault(repoId, Collections.emptySet()))));
             // ...and then wait for all of them to complete.
             Futures.sequence(metadataRetrievalTasks)
                     .thenAccept(results -> logger.info("Metadata retrieval successful for "
@@ -75,6 +82,21 @@ public class UpdateController {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Returns the filter expression of the focused panel, if it is among the given panels.
+     */
+    private List<FilterExpression> getFocusedFilterExpressions(List<FilterPanel> panels) {
+        return panels.stream()
+                .filter(UpdateController::isFocused)
+                .map(panel -> panel.getCurrentFilterExpression())
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isFocused(FilterPanel panel) {
+        return panel.parentPanelControl != null
+                && panel.parentPanelControl.getCurrentlySelectedPanel().equals(Optional.of(panel.panelIndex));
+    }
+
     /**
      * Given a list of filter panels, opens all repositories necessary for processing the filter expressions
      *
@@ -95,7 +117,7 @@ public class UpdateController {
      * @return Repo IDs and the corresponding issues in the repo requiring a metadata update.
      */
     private Map<String, List<TurboIssue>> tallyMetadataUpdate(List<FilterExpression> filterExprs) {
-        MultiModel models = logic.getModels();
+        IModel models = logic.getModels().getSnapshot();
         List<TurboIssue> allModelIssues = models.getIssues();
 
         return filterExprs.stream()
@@ -109,12 +131,14 @@ public class UpdateController {
     /**
      * Filters, sorts and counts issues within the model according to the given filter expressions.
      * In here, "processed" is equivalent to "filtered, sorted and counted".
+     * All filter expressions are processed against a single snapshot of the models, so that they see the same
+     * issues even if the models are updated meanwhile.
      *
      * @param filterExprs Filter expressions to process.
      * @return Filter expressions and their corresponding issues after filtering, sorting and counting.
      */
     private Map<FilterExpression, List<GuiElement>> processFilter(List<FilterExpression> filterExprs) {
-        MultiModel models = logic.getModels();
+        IModel models = logic.getModels().getSnapshot();
         List<TurboIssue> allModelIssues = models.getIssues();
 
         Map<FilterExpression, List<GuiElement>> processed = new HashMap<>();
@@ -126,7 +150,7 @@ public class UpdateController {
 
             List<TurboIssue> processedIssues = allModelIssues.stream()
                     .filter(issue -> Qualifier.process(models, filterExprNoAlias, issue))
-                    .sorted(determineComparator(filterExprNoAlias, hasUpdatedQualifier))
+                    .sorted(determineComparator(models, filterExprNoAlias, hasUpdatedQualifier))
                     .limit(Qualifier.determineCount(allModelIssues, filterExprNoAlias))
                     .collect(Collectors.toList());
 
@@ -141,13 +165,13 @@ public class UpdateController {
     /**
      * Produces a suitable comparator based on the given filter expression.
      *
+     * @param models              The models against which issues are compared.
      * @param filterExpr          The given filter expression.
      * @param hasUpdatedQualifier Determines the behaviour of the sort key "nonSelfUpdate".
      * @return The comparator to use.
      */
-    private Comparator<TurboIssue> determineComparator(FilterExpression filterExpr,
+    private Comparator<TurboIssue> determineComparator(IModel models, FilterExpression filterExpr,
                                                        boolean hasUpdatedQualifier) {
-        MultiModel models = logic.getModels();
         for (Qualifier metaQualifier : filterExpr.find(Qualifier::isMetaQualifier)) {
             // Only take into account the first sort qualifier found
             if (metaQualifier.getType() == QualifierType.SORT) {
@@ -168,11 +192,11 @@ public class UpdateController {
      * Constructs GuiElements (including all necessary references to labels/milestones/users to properly display
      * the issue) corresponding to a list of issues without changing the order.
      *
-     * @param models The MultiModel from which necessary references are extracted.
+     * @param models The models from which necessary references are extracted.
      * @param processedIssues The list of issues to construct GUIElements for.
      * @return A list of GUIElements corresponding to the given list of issues.
      */
-    private List<GuiElement> produceGuiElements(MultiModel models, List<TurboIssue> processedIssues) {
+    private List<GuiElement> produceGuiElements(IModel models, List<TurboIssue> processedIssues) {
         return processedIssues.stream().map(issue -> {
             Optional<Model> modelOfIssue = models.getModelById(issue.getRepoId());
             assert modelOfIssue.isPresent();
@@ -4,15 +4,21 @@ import backend.IssueMetadata;
 import backend.interfaces.Repo;
 import backend.interfaces.TaskRunner;
 import backend.resource.TurboIssue;
+import github.GraphQLMetadataService;
 import github.TurboIssueEvent;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.Comment;
 import util.HTLog;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 public class DownloadMetadataTask extends GitHubRepoTask<Map<Integer, IssueMetadata>> {
@@ -21,38 +27,127 @@ public class DownloadMetadataTask extends GitHubRepoTask<Map<Integer, IssueMetad
 
     private final String repoId;
     private final List<TurboIssue> issuesToUpdate;
+    private final Set<Integer> prioritisedIds;
+    private final MetadataFetchScheduler scheduler;
 
+    /**
+     * @param prioritisedIds the ids of the issues whose metadata should be downloaded first
+     * @param scheduler paces the downloads of the metadata, whether in batches or one issue at a time
+     */
     public DownloadMetadataTask(TaskRunner taskRunner, Repo repo, String repoId,
-                                List<TurboIssue> issuesToUpdate) {
+                                List<TurboIssue> issuesToUpdate, Set<Integer> prioritisedIds,
+                                MetadataFetchScheduler scheduler) {
         super(taskRunner, repo);
         this.repoId = repoId;
         this.issuesToUpdate = issuesToUpdate;
+        this.prioritisedIds = prioritisedIds;
+        this.scheduler = scheduler;
     }
 
     @Override
     public void run() {
-        Map<Integer, IssueMetadata> result = new HashMap<>();
+        Map<Integer, IssueMetadata> result = repo.isBatchedMetadataAvailable()
+            ? downloadInBatches()
+            : downloadEachIssue(issuesToUpdate);
 
-        issuesToUpdate.forEach(issue -> {
-            String currEventsETag = issue.getMetadata().getEventsETag();
-            String currCommentsETag = issue.getMetadata().getCommentsETag();
-            int id = issue.getId();
+        logger.info(HTLog.format(repoId, "Downloaded " + result.entrySet().stream()
+            .map(entry -> "(" + entry.getValue().summarise() + ") for #" + entry.getKey())
+            .collect(Collectors.joining(", "))));
+
+        response.complete(result);
+    }
 
-            ImmutablePair<List<TurboIssueEvent>, String> changes = repo.getUpdatedEvents(repoId, id, currEventsETag);
+    /**
+     * Downloads the metadata of the issues in batches, prioritised issues first, then the review comments
+     * of the pull requests among them. The issues of batches which could not be downloaded that way are
+     * downloaded one issue at a time instead.
+     */
+    private Map<Integer, IssueMetadata> downloadInBatches() {
+        List<TurboIssue> failed = new CopyOnWriteArrayList<>();
+        Map<Integer, IssueMetadata> batched = scheduler.fetchBatches(repoId, getBatches(), prioritisedIds,
+            batch -> 1, batch -> {
+                Optional<Map<Integer, IssueMetadata>> metadata = repo.getMetadata(repoId, batch);
+                if (!metadata.isPresent()) {
+                    failed.addAll(batch);
+                }
+                return metadata.orElseGet(HashMap::new);
+            });
 
-            List<TurboIssueEvent> events = changes.getLeft();
-            String updatedEventsETag = changes.getRight();
+        List<TurboIssue> pullRequests = issuesToUpdate.stream()
+            .filter(issue -> issue.isPullRequest() && batched.containsKey(issue.getId()))
+            .collect(Collectors.toList());
+        Map<Integer, IssueMetadata> result = new HashMap<>(batched);
+        result.keySet().removeAll(pullRequests.stream().map(TurboIssue::getId).collect(Collectors.toList()));
 
-            List<Comment> comments = repo.getAllComments(repoId, issue);
+        // Pull requests whose review comments are skipped keep the metadata they have, like skipped issues
+        result.putAll(scheduler.fetch(repoId, pullRequests, prioritisedIds, pullRequest -> 1,
+                                      pullRequest -> addReviewComments(batched.get(pullRequest.getId()),
+                                                                       pullRequest.getId())));
+        result.putAll(downloadEachIssue(failed));
+        return result;
+    }
 
-            IssueMetadata metadata = IssueMetadata.intermediate(events, comments, updatedEventsETag, currCommentsETag);
-            result.put(id, metadata);
-        });
+    /**
+     * Splits the issues into batches, with the prioritised issues in the first batches.
+     */
+    private List<List<TurboIssue>> getBatches() {
+        List<TurboIssue> ordered = new ArrayList<>(issuesToUpdate);
+        ordered.sort(Comparator.comparing(issue -> !prioritisedIds.contains(issue.getId())));
 
-        logger.info(HTLog.format(repoId, "Downloaded " + result.entrySet().stream()
-            .map(entry -> "(" + entry.getValue().summarise() + ") for #" + entry.getKey())
-            .collect(Collectors.joining(", "))));
+        List<List<TurboIssue>> batches = new ArrayList<>();
+        for (int i = 0; i < ordered.size(); i += GraphQLMetadataService.DEFAULT_BATCH_SIZE) {
+            batches.add(ordered.subList(i, Math.min(ordered.size(), i + GraphQLMetadataService.DEFAULT_BATCH_SIZE)));
+        }
+        return batches;
+    }
 
-        response.complete(result);
+    private IssueMetadata addReviewComments(IssueMetadata metadata, int pullRequestId) {
+        List<Comment> comments = new ArrayList<>(metadata.getComments());
+        comments.addAll(repo.getReviewComments(repoId, pullRequestId));
+        return IssueMetadata.intermediate(metadata.getEvents(), comments,
+                                          metadata.getEventsETag(), metadata.getCommentsETag());
+    }
+
+    /**
+     * Downloads the metadata of the issues one issue at a time, using the issues' events ETags.
+     * Several issues are downloaded at the same time, within the rate limit.
+     */
+    private Map<Integer, IssueMetadata> downloadEachIssue(List<TurboIssue> issues) {
+        return scheduler.fetch(repoId, issues, prioritisedIds,
+                               DownloadMetadataTask::countRequests, this::downloadIssue);
+    }
+
+    /**
+     * Returns the number of requests needed to download the metadata of an issue: one for its events,
+     * one for its comments and, for pull requests, one for their review comments.
+     */
+    private static int countRequests(TurboIssue issue) {
+        return issue.isPullRequest() ? 3 : 2;
+    }
+
+    private IssueMetadata downloadIssue(TurboIssue issue) {
+        String currEventsETag = issue.getMetadata().getEventsETag();
+        String currCommentsETag = issue.getMetadata().getCommentsETag();
+        int id = issue.getId();
+
+        ImmutablePair<List<TurboIssueEvent>, String> changes = repo.getUpdatedEvents(repoId, id, currEventsETag);
+
+        List<TurboIssueEvent> events = changes.getLeft();
+        String updatedEventsETag = changes.getRight();
+        if (!currEventsETag.isEmpty() && currEventsETag.equals(updatedEventsETag)) {
+            // Not modified; the events we have (e.g. from the store's metadata cache) are current
+            events = issue.getMetadata().getEvents();
+        }
+
+        ImmutablePair<List<Comment>, String> commentChanges = repo.getUpdatedComments(repoId, issue, currCommentsETag);
+
+        List<Comment> comments = commentChanges.getLeft();
+        String updatedCommentsETag = commentChanges.getRight();
+        if (!currCommentsETag.isEmpty() && currCommentsETag.equals(updatedCommentsETag)) {
+            // Likewise for comments
+            comments = issue.getMetadata().getComments();
+        }
+
+        return IssueMetadata.intermediate(events, comments, updatedEventsETag, updatedCommentsETag);
     }
 }
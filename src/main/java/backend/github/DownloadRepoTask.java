@@ -8,6 +8,8 @@ import org.apache.logging.log4j.Logger;
 import util.HTLog;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class DownloadRepoTask extends GitHubRepoTask<Model> {
 
@@ -22,12 +24,24 @@ public class DownloadRepoTask extends GitHubRepoTask<Model> {
 
     @Override
     public void run() {
-        List<TurboIssue> issues = repo.getIssues(repoId);
-        List<TurboLabel> labels = repo.getLabels(repoId);
-        List<TurboMilestone> milestones = repo.getMilestones(repoId);
-        List<TurboUser> users = repo.getCollaborators(repoId);
-        Model result = new Model(repoId, issues, labels, milestones, users, UpdateSignature.EMPTY);
-        logger.info(HTLog.format(repoId, "Downloaded " + result.summarise()));
-        response.complete(result);
+        // The resources are independent, so they are downloaded at the same time
+        CompletableFuture<List<TurboIssue>> issues =
+            CompletableFuture.supplyAsync(() -> repo.getIssues(repoId), taskRunner::execute);
+        CompletableFuture<List<TurboLabel>> labels =
+            CompletableFuture.supplyAsync(() -> repo.getLabels(repoId), taskRunner::execute);
+        CompletableFuture<List<TurboMilestone>> milestones =
+            CompletableFuture.supplyAsync(() -> repo.getMilestones(repoId), taskRunner::execute);
+        CompletableFuture<List<TurboUser>> users =
+            CompletableFuture.supplyAsync(() -> repo.getCollaborators(repoId), taskRunner::execute);
+
+        try {
+            Model result = new Model(repoId, issues.get(), labels.get(), milestones.get(), users.get(),
+                UpdateSignature.EMPTY);
+            logger.info(HTLog.format(repoId, "Downloaded " + result.summarise()));
+            response.complete(result);
+        } catch (InterruptedException | ExecutionException e) {
+            HTLog.error(logger, e);
+            response.completeExceptionally(e);
+        }
     }
 }
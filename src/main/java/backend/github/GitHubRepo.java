@@ -1,5 +1,6 @@
 package backend.github;
 
+import backend.IssueMetadata;
 import backend.UserCredentials;
 import backend.interfaces.Repo;
 import backend.resource.TurboIssue;
@@ -24,6 +25,7 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_REPOS;
@@ -32,12 +34,35 @@ public class GitHubRepo implements Repo {
 
     private static final Logger logger = HTLog.get(GitHubRepo.class);
 
+    // Separates the ETags of a pull request's comments from those of its review comments
+    private static final String REVIEW_COMMENTS_ETAG_SEPARATOR = "|";
+
     private final GitHubClientEx client = new GitHubClientEx();
     private final IssueServiceEx issueService = new IssueServiceEx(client);
     private final PullRequestServiceEx pullRequestService = new PullRequestServiceEx(client);
     private final CollaboratorService collaboratorService = new CollaboratorService(client);
     private final LabelServiceEx labelService = new LabelServiceEx(client);
     private final MilestoneService milestoneService = new MilestoneService(client);
+    private final GraphQLMetadataService graphQLMetadataService = new GraphQLMetadataService(client);
+    private final RepoEventsTracker eventsTracker = new RepoEventsTracker(new RepoEventsService(client));
+
+    // If set, only the resources which the events feed says have changed are updated
+    private final boolean isEventSyncEnabled;
+
+    // Cleared if the server has no GraphQL API, after which metadata is only fetched with the REST API
+    private volatile boolean isGraphQLAvailable = true;
+
+    public GitHubRepo() {
+        this(false);
+    }
+
+    /**
+     * @param isEventSyncEnabled whether to update only the resources which the events feed
+     *                           of a repository says have changed
+     */
+    public GitHubRepo(boolean isEventSyncEnabled) {
+        this.isEventSyncEnabled = isEventSyncEnabled;
+    }
 
     @Override
     public boolean login(UserCredentials credentials) {
@@ -55,6 +80,11 @@ public class GitHubRepo implements Repo {
         return true;
     }
 
+    @Override
+    public Optional<Set<RepoResource>> getChangedResources(String repoId) {
+        return isEventSyncEnabled ? eventsTracker.getChangedResources(repoId) : Optional.empty();
+    }
+
     @Override
     public ImmutableTriple<List<TurboIssue>, String, Date> getUpdatedIssues(String repoId,
                                                                             String eTag, Date lastCheckTime) {
@@ -150,46 +180,25 @@ public class GitHubRepo implements Repo {
         Map<String, String> filters = new HashMap<>();
         filters.put(IssueService.FIELD_FILTER, "all");
         filters.put(IssueService.FILTER_STATE, "all");
-        return getAll(issueService.pageIssues(RepositoryId.createFromId(repoId), filters), repoId).stream()
+        return getAll(issueService.pageIssues(RepositoryId.createFromId(repoId), filters).getRequest(), repoId)
+            .stream()
             .map(i -> new TurboIssue(repoId, i))
             .collect(Collectors.toList());
     }
 
-    private List<Issue> getAll(PageIterator<Issue> iterator, String repoId) {
+    private List<Issue> getAll(PagedRequest<Issue> request, String repoId) {
         List<Issue> elements = new ArrayList<>();
-
-        // Assume there is at least one page
-        int knownLastPage = 1;
-
         try {
-            while (iterator.hasNext()) {
-                Collection<Issue> additions = iterator.next();
-                elements.addAll(additions);
-
-                // Compute progress
-
-                // iterator.getLastPage() only has a value after iterator.next() is called,
-                // so it's used directly in this loop. It returns the 1-based index of the last
-                // page, except when we are actually on the last page, in which case it returns -1.
-                // This portion deals with all these quirks.
-
-                knownLastPage = Math.max(knownLastPage, iterator.getLastPage());
-                int totalIssueCount = knownLastPage * PagedRequest.PAGE_SIZE;
-                // Total is approximate: always >= the actual amount
-                assert totalIssueCount >= elements.size();
-
-                float progress = (float) elements.size() / (float) totalIssueCount;
+            // Pages after the first are fetched concurrently, so progress is reported in pages
+            elements = new ParallelPageFetcher(client).getAll(request, (pagesFetched, totalPages) -> {
+                float progress = (float) pagesFetched / (float) totalPages;
                 UI.events.triggerEvent(new UpdateProgressEvent(repoId, progress));
-                logger.info(HTLog.format(repoId, "Loaded %d issues (%.0f%% done)",
-                    elements.size(), progress * 100));
-            }
+                logger.info(HTLog.format(repoId, "Loaded %d of %d pages of issues (%.0f%% done)",
+                    pagesFetched, totalPages, progress * 100));
+            });
             UI.events.triggerEvent(new UpdateProgressEvent(repoId));
-        } catch (NoSuchPageException pageException) {
-            try {
-                throw pageException.getCause();
-            } catch (IOException e) {
-                HTLog.error(logger, e);
-            }
+        } catch (IOException e) {
+            HTLog.error(logger, e);
         }
         return elements;
     }
@@ -248,6 +257,81 @@ public class GitHubRepo implements Repo {
         return result;
     }
 
+    /**
+     * Gets all types of comments for an issue if any of them have changed since they had the given ETag,
+     * which is made up of the ETags of each page of comments (and, for pull requests, of review comments).
+     * Unchanged comments cost a 304 Not Modified response for each page.
+     * @return the comments and their updated ETag, or no comments and the given ETag if they have not changed
+     */
+    @Override
+    public ImmutablePair<List<Comment>, String> getUpdatedComments(String repoId, TurboIssue issue,
+                                                                   String currentETag) {
+        RepositoryId repository = RepositoryId.createFromId(repoId);
+        String[] eTags = currentETag.split(Pattern.quote(REVIEW_COMMENTS_ETAG_SEPARATOR), -1);
+        try {
+            ConditionalPageFetcher.Result<Comment> comments =
+                issueService.getUpdatedComments(repository, issue.getId(), eTags[0]);
+            if (!issue.isPullRequest()) {
+                return comments.isModified()
+                    ? new ImmutablePair<>(comments.getItems(), comments.getETags())
+                    : new ImmutablePair<>(new ArrayList<>(), currentETag);
+            }
+
+            ConditionalPageFetcher.Result<ReviewComment> reviewComments = pullRequestService
+                .getUpdatedReviewComments(repository, issue.getId(), eTags.length > 1 ? eTags[1] : "");
+            if (!comments.isModified() && !reviewComments.isModified()) {
+                return new ImmutablePair<>(new ArrayList<>(), currentETag);
+            }
+
+            // Both kinds are needed once either has changed, so the unchanged kind is fetched again
+            if (!comments.isModified()) {
+                comments = issueService.getUpdatedComments(repository, issue.getId(), "");
+            }
+            if (!reviewComments.isModified()) {
+                reviewComments = pullRequestService.getUpdatedReviewComments(repository, issue.getId(), "");
+            }
+            List<Comment> result = new ArrayList<>(comments.getItems());
+            result.addAll(reviewComments.getItems());
+            return new ImmutablePair<>(result,
+                comments.getETags() + REVIEW_COMMENTS_ETAG_SEPARATOR + reviewComments.getETags());
+        } catch (IOException e) {
+            HTLog.error(logger, e);
+            return new ImmutablePair<>(new ArrayList<>(), currentETag);
+        }
+    }
+
+    @Override
+    public boolean isBatchedMetadataAvailable() {
+        return isGraphQLAvailable;
+    }
+
+    /**
+     * Fetches the events and comments of the issues with batched GraphQL queries. Review comments of
+     * pull requests are not available there, so they are left to be fetched with the REST API.
+     * @return the metadata of each issue, or empty if it should be fetched with the REST API instead
+     */
+    @Override
+    public Optional<Map<Integer, IssueMetadata>> getMetadata(String repoId, List<TurboIssue> issues) {
+        if (!isGraphQLAvailable || issues.isEmpty()) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(graphQLMetadataService.getMetadata(RepositoryId.createFromId(repoId), issues));
+        } catch (RequestException e) {
+            if (e.getStatus() == HttpURLConnection.HTTP_NOT_FOUND) {
+                logger.warn(HTLog.format(repoId, "GraphQL API unavailable; using the REST API from now on"));
+                isGraphQLAvailable = false;
+            } else {
+                HTLog.error(logger, e);
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            HTLog.error(logger, e);
+            return Optional.empty();
+        }
+    }
+
     @Override
     public List<Label> setLabels(String repoId, int issueId, List<String> labels) throws IOException {
         return labelService.setLabels(
@@ -280,7 +364,14 @@ public class GitHubRepo implements Repo {
 
     @Override
     public ImmutablePair<Integer, Long> getRateLimitResetTime() throws IOException {
-        return client.getRateLimitResetTime();
+        // The rate limit reported by earlier responses is used, unless it is stale
+        Optional<ImmutablePair<Integer, Long>> rateLimits = client.getRateLimitTracker().getCoreRateLimits();
+        return rateLimits.isPresent() ? rateLimits.get() : client.getRateLimitResetTime();
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return client.getRateLimiter();
     }
 }
 
@@ -12,13 +12,30 @@ import util.HTLog;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 public class GitHubSource extends RepoSource {
 
     private static final Logger logger = HTLog.get(GitHubSource.class);
 
-    private final Repo gitHub = new GitHubRepo();
+    private final Repo gitHub;
+
+    // Shared by the metadata downloads of all repositories, so that together they keep to the rate limit
+    private final MetadataFetchScheduler metadataScheduler;
+
+    public GitHubSource() {
+        this(false);
+    }
+
+    /**
+     * @param isEventSyncEnabled whether repositories should be updated as their events feeds say,
+     *                           rather than by checking every resource for updates
+     */
+    public GitHubSource(boolean isEventSyncEnabled) {
+        gitHub = new GitHubRepo(isEventSyncEnabled);
+        metadataScheduler = new MetadataFetchScheduler(gitHub.getRateLimiter());
+    }
 
     @Override
     public String getName() {
@@ -50,8 +67,10 @@ public class GitHubSource extends RepoSource {
     }
 
     @Override
-    public CompletableFuture<Map<Integer, IssueMetadata>> downloadMetadata(String repoId, List<TurboIssue> issues) {
-        return addTask(new DownloadMetadataTask(this, gitHub, repoId, issues)).response;
+    public CompletableFuture<Map<Integer, IssueMetadata>> downloadMetadata(String repoId, List<TurboIssue> issues,
+                                                                           Set<Integer> prioritisedIds) {
+        return addTask(new DownloadMetadataTask(this, gitHub, repoId, issues, prioritisedIds,
+                                                metadataScheduler)).response;
     }
 
     @Override
@@ -0,0 +1,190 @@
+package backend.github;
+
+import backend.IssueMetadata;
+import backend.resource.TurboIssue;
+import github.ParallelPageFetcher;
+import github.RateLimiter;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Thread-safe. Downloads the metadata of issues one issue (or one batch of issues) at a time, but several
+ * at the same time, for all repositories of a source.
+ *
+ * Every issue or batch waits on a rate limiter for as many tokens as the requests it takes, so that metadata
+ * downloads for several repositories together keep to the source's rate limit. Issues which are
+ * prioritised (e.g. those in the focused panel) are downloaded before all others waiting, whichever
+ * repository they are from. Once the rate limiter has given out all but its reserve, the issues still
+ * waiting are skipped, so they keep the metadata they have until the rate limit is reset.
+ */
+public class MetadataFetchScheduler {
+
+    private static final Logger logger = HTLog.get(MetadataFetchScheduler.class);
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = ParallelPageFetcher.DEFAULT_MAX_CONCURRENT_REQUESTS;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+    private final RateLimiter rateLimiter;
+    private final ThreadPoolExecutor pool;
+
+    // Orders the issues of the same priority by when they were scheduled
+    private final AtomicLong nextSequenceNumber = new AtomicLong(0);
+
+    public MetadataFetchScheduler(RateLimiter rateLimiter) {
+        this(rateLimiter, DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * @param rateLimiter paces the requests for metadata
+     * @param maxConcurrentIssues the number of issues whose metadata may be downloaded at the same time
+     */
+    public MetadataFetchScheduler(RateLimiter rateLimiter, int maxConcurrentIssues) {
+        assert maxConcurrentIssues > 0;
+        this.rateLimiter = rateLimiter;
+        pool = new ThreadPoolExecutor(maxConcurrentIssues, maxConcurrentIssues,
+            IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "MetadataFetchScheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * An issue, or a batch of issues, waiting for its metadata to be downloaded.
+     */
+    private static class Download implements Runnable, Comparable<Download> {
+        private final boolean isPrioritised;
+        private final long sequenceNumber;
+        private final Runnable work;
+
+        Download(boolean isPrioritised, long sequenceNumber, Runnable work) {
+            this.isPrioritised = isPrioritised;
+            this.sequenceNumber = sequenceNumber;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            work.run();
+        }
+
+        @Override
+        public int compareTo(Download other) {
+            if (isPrioritised != other.isPrioritised) {
+                return isPrioritised ? -1 : 1;
+            }
+            return Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+
+    /**
+     * Downloads the metadata of issues, blocking until all of them are downloaded or skipped.
+     *
+     * @param repoId the repository of the issues, for logging
+     * @param issues the issues whose metadata should be downloaded
+     * @param prioritisedIds the ids of the issues to download before others
+     * @param requestsOf gives the number of requests needed to download the metadata of an issue
+     * @param download downloads the metadata of an issue; called on several threads
+     * @return the metadata of the issues which were not skipped, keyed by issue id
+     */
+    public Map<Integer, IssueMetadata> fetch(String repoId, List<TurboIssue> issues, Set<Integer> prioritisedIds,
+                                             ToIntFunction<TurboIssue> requestsOf,
+                                             Function<TurboIssue, IssueMetadata> download) {
+
+        Map<Integer, IssueMetadata> result = new ConcurrentHashMap<>();
+        List<TurboIssue> skipped = runAll(repoId, issues, issue -> prioritisedIds.contains(issue.getId()),
+            requestsOf, issue -> result.put(issue.getId(), download.apply(issue)));
+
+        logSkipped(repoId, skipped.size(), issues.size());
+        return result;
+    }
+
+    /**
+     * Downloads the metadata of batches of issues, blocking until all of them are downloaded or skipped.
+     * A batch is downloaded before others if any of its issues is prioritised.
+     *
+     * @param repoId the repository of the issues, for logging
+     * @param batches the batches of issues whose metadata should be downloaded
+     * @param prioritisedIds the ids of the issues to download before others
+     * @param requestsOf gives the number of requests needed to download the metadata of a batch
+     * @param download downloads the metadata of a batch, keyed by issue id; called on several threads
+     * @return the metadata of the issues in batches which were not skipped, keyed by issue id
+     */
+    public Map<Integer, IssueMetadata> fetchBatches(String repoId, List<List<TurboIssue>> batches,
+                                                    Set<Integer> prioritisedIds,
+                                                    ToIntFunction<List<TurboIssue>> requestsOf,
+                                                    Function<List<TurboIssue>, Map<Integer, IssueMetadata>> download) {
+
+        Map<Integer, IssueMetadata> result = new ConcurrentHashMap<>();
+        List<List<TurboIssue>> skipped = runAll(repoId, batches,
+            batch -> batch.stream().anyMatch(issue -> prioritisedIds.contains(issue.getId())),
+            requestsOf, batch -> result.putAll(download.apply(batch)));
+
+        logSkipped(repoId, skipped.stream().mapToInt(List::size).sum(),
+                   batches.stream().mapToInt(List::size).sum());
+        return result;
+    }
+
+    /**
+     * Runs the work on each unit once the rate limiter gives it tokens, blocking until all units are done
+     * or skipped.
+     * @return the units which were skipped
+     */
+    private <T> List<T> runAll(String repoId, List<T> units, Predicate<T> isPrioritised,
+                               ToIntFunction<T> requestsOf, Consumer<T> work) {
+
+        List<T> skipped = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(units.size());
+
+        for (T unit : units) {
+            pool.execute(new Download(isPrioritised.test(unit), nextSequenceNumber.getAndIncrement(),
+                () -> {
+                    try {
+                        if (rateLimiter.acquire(requestsOf.applyAsInt(unit))) {
+                            work.accept(unit);
+                        } else {
+                            skipped.add(unit);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        skipped.add(unit);
+                    } catch (RuntimeException e) {
+                        HTLog.error(logger, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }));
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn(HTLog.format(repoId, "Interrupted while downloading metadata"));
+        }
+        return skipped;
+    }
+
+    private void logSkipped(String repoId, int skipped, int total) {
+        if (skipped > 0) {
+            logger.warn(HTLog.format(repoId, "Skipped metadata of %d of %d issues to stay within the rate limit "
+                + "(%d requests remaining)", skipped, total, rateLimiter.getRemainingRequests()));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package backend.github;
+
+import github.RepoEvent;
+import github.RepoEventsResponse;
+import github.RepoEventsService;
+import github.RepoResource;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.egit.github.core.RepositoryId;
+import util.HTLog;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe. Follows the events feeds of repositories, to tell which of their resources have changed
+ * since they were last updated, so that only those need to be updated.
+ *
+ * The feed is read with conditional requests, no more often than GitHub's poll interval allows, so a
+ * repository in which nothing happens costs a 304 Not Modified response per poll interval. All resources
+ * are updated instead when the feed cannot tell what changed: the first time a repository is updated, when
+ * more events have happened than fit on the first page of the feed, when the feed cannot be read, and every
+ * FULL_UPDATE_INTERVAL, as changes to labels and milestones themselves do not appear in the feed.
+ */
+public class RepoEventsTracker {
+
+    private static final Logger logger = HTLog.get(RepoEventsTracker.class);
+
+    public static final long FULL_UPDATE_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * What is known of the events feed of a repository.
+     */
+    private static class FeedState {
+        private String eTag = "";
+        // The id of the newest event seen, which is empty if there were none; null before the first update
+        private String lastEventId = null;
+        private long nextPollTime = 0;
+        private long lastFullUpdateTime = 0;
+    }
+
+    private final RepoEventsService service;
+    private final LongSupplier clock;
+    private final Map<String, FeedState> feeds = new ConcurrentHashMap<>();
+
+    public RepoEventsTracker(RepoEventsService service) {
+        this(service, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock gives the current time in milliseconds
+     */
+    public RepoEventsTracker(RepoEventsService service, LongSupplier clock) {
+        this.service = service;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the resources of a repository which have changed since the last call for it.
+     * @return the changed resources, which are none if nothing has happened (or the feed may not be polled yet);
+     * or empty if all resources should be updated
+     */
+    public Optional<Set<RepoResource>> getChangedResources(String repoId) {
+        FeedState feed = feeds.computeIfAbsent(repoId.toLowerCase(), id -> new FeedState());
+        synchronized (feed) {
+            long now = clock.getAsLong();
+            boolean isFullUpdateDue = feed.lastEventId == null
+                || now - feed.lastFullUpdateTime >= FULL_UPDATE_INTERVAL;
+            if (!isFullUpdateDue && now < feed.nextPollTime) {
+                return Optional.of(EnumSet.noneOf(RepoResource.class));
+            }
+
+            RepoEventsResponse response;
+            try {
+                response = service.getEvents(RepositoryId.createFromId(repoId), feed.eTag);
+            } catch (IOException e) {
+                HTLog.error(logger, e);
+                feed.lastFullUpdateTime = now;
+                return Optional.empty();
+            }
+            feed.nextPollTime = now + TimeUnit.SECONDS.toMillis(response.getPollInterval());
+
+            if (!response.isModified()) {
+                logger.info(HTLog.format(repoId, "No new events"));
+                return updateAllIf(isFullUpdateDue, feed, now, EnumSet.noneOf(RepoResource.class));
+            }
+
+            String previousEventId = feed.lastEventId;
+            feed.eTag = response.getETag();
+            feed.lastEventId = response.getEvents().isEmpty() ? "" : response.getEvents().get(0).getId();
+
+            Set<RepoResource> changed = EnumSet.noneOf(RepoResource.class);
+            boolean isPreviousEventFound = false;
+            for (RepoEvent event : response.getEvents()) {
+                if (event.getId().equals(previousEventId)) {
+                    isPreviousEventFound = true;
+                    break;
+                }
+                changed.addAll(event.getChangedResources());
+            }
+            // Events may have been missed if the last one seen is not on the first page
+            boolean isGap = !isPreviousEventFound && response.hasOlderEvents();
+            logger.info(HTLog.format(repoId, "Changed according to events: %s%s", changed,
+                                     isGap ? ", and possibly more" : ""));
+            return updateAllIf(isFullUpdateDue || isGap, feed, now, changed);
+        }
+    }
+
+    private static Optional<Set<RepoResource>> updateAllIf(boolean shouldUpdateAll, FeedState feed, long now,
+                                                            Set<RepoResource> changed) {
+        if (shouldUpdateAll) {
+            feed.lastFullUpdateTime = now;
+            return Optional.empty();
+        }
+        return Optional.of(changed);
+    }
+}
@@ -8,10 +8,19 @@ import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.PullRequest;
 import util.HTLog;
+import util.PersistentSortedMap;
 
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+/**
+ * Results in the issues which may have changed, reconciled with those of the model;
+ * the other issues of the model are left out.
+ */
 public class UpdateIssuesTask extends GitHubRepoTask<GitHubRepoTask.Result<TurboIssue>> {
 
     private static final Logger logger = HTLog.get(UpdateIssuesTask.class);
@@ -30,7 +39,7 @@ public class UpdateIssuesTask extends GitHubRepoTask<GitHubRepoTask.Result<Turbo
         List<PullRequest> updatedPullRequests = repo.getUpdatedPullRequests(
                 model.getRepoId(), model.getUpdateSignature().lastCheckTime);
 
-        List<TurboIssue> existing = model.getIssues();
+        PersistentSortedMap<Integer, TurboIssue> existing = model.getIssuesById();
         List<TurboIssue> updatedIssues = changes.left;
 
         logger.info(HTLog.format(model.getRepoId(), "%s issue(s)) changed%s",
@@ -38,11 +47,19 @@ public class UpdateIssuesTask extends GitHubRepoTask<GitHubRepoTask.Result<Turbo
         logger.info(HTLog.format(model.getRepoId(), "%s pr(s)) changed%s",
                 updatedPullRequests.size(), updatedPullRequests.isEmpty() ? "" : ": " + updatedPullRequests));
 
-        List<TurboIssue> updated = updatedIssues.isEmpty()
+        PersistentSortedMap<Integer, TurboIssue> updated = updatedIssues.isEmpty()
             ? existing
             : TurboIssue.reconcile(existing, updatedIssues);
         updated = TurboIssue.combineWithPullRequests(updated, updatedPullRequests);
 
-        response.complete(new Result<>(updated, changes.middle, changes.right));
+        Set<Integer> changedIds = new LinkedHashSet<>();
+        updatedIssues.forEach(issue -> changedIds.add(issue.getId()));
+        updatedPullRequests.forEach(pullRequest -> changedIds.add(pullRequest.getNumber()));
+        List<TurboIssue> changed = changedIds.stream()
+            .map(updated::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+
+        response.complete(new Result<>(changed, changes.middle, changes.right));
     }
 }
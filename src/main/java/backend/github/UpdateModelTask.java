@@ -4,10 +4,19 @@ import backend.UpdateSignature;
 import backend.interfaces.Repo;
 import backend.interfaces.TaskRunner;
 import backend.resource.*;
+import github.RepoResource;
 import org.apache.logging.log4j.Logger;
 import util.HTLog;
+import util.PersistentSortedMap;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 public class UpdateModelTask extends GitHubRepoTask<Model> {
 
@@ -22,33 +31,71 @@ public class UpdateModelTask extends GitHubRepoTask<Model> {
 
     @Override
     public void run() {
-        UpdateIssuesTask issuesTask = new UpdateIssuesTask(taskRunner, repo, model);
-        UpdateLabelsTask labelsTask = new UpdateLabelsTask(taskRunner, repo, model);
-        UpdateMilestonesTask milestonesTask = new UpdateMilestonesTask(taskRunner, repo, model);
-        UpdateUsersTask usersTask = new UpdateUsersTask(taskRunner, repo, model);
+        Optional<Set<RepoResource>> changes = repo.getChangedResources(model.getRepoId());
+        if (changes.isPresent() && changes.get().isEmpty()) {
+            logger.info(HTLog.format(model.getRepoId(), "Nothing changed according to events; not updating"));
+            response.complete(model.withChanges(ModelChanges.none(model.getRepoId()), model.getUpdateSignature()));
+            return;
+        }
+        // Resources which have not changed are not updated, unless all should be
+        Set<RepoResource> changed = changes.orElse(EnumSet.allOf(RepoResource.class));
+        UpdateSignature signature = model.getUpdateSignature();
 
-        taskRunner.execute(issuesTask);
-        taskRunner.execute(labelsTask);
-        taskRunner.execute(milestonesTask);
-        taskRunner.execute(usersTask);
+        // Resources which are not updated have no changes
+        CompletableFuture<Result<TurboIssue>> issuesResponse = changed.contains(RepoResource.ISSUES)
+            ? execute(new UpdateIssuesTask(taskRunner, repo, model))
+            : CompletableFuture.completedFuture(
+                new Result<>(Collections.emptyList(), signature.issuesETag, signature.lastCheckTime));
+        CompletableFuture<Result<TurboLabel>> labelsResponse = changed.contains(RepoResource.LABELS)
+            ? execute(new UpdateLabelsTask(taskRunner, repo, model))
+            : CompletableFuture.completedFuture(new Result<>(Collections.emptyList(), signature.labelsETag));
+        CompletableFuture<Result<TurboMilestone>> milestonesResponse = changed.contains(RepoResource.MILESTONES)
+            ? execute(new UpdateMilestonesTask(taskRunner, repo, model))
+            : CompletableFuture.completedFuture(new Result<>(Collections.emptyList(), signature.milestonesETag));
+        CompletableFuture<Result<TurboUser>> usersResponse = changed.contains(RepoResource.COLLABORATORS)
+            ? execute(new UpdateUsersTask(taskRunner, repo, model))
+            : CompletableFuture.completedFuture(new Result<>(Collections.emptyList(), signature.collaboratorsETag));
 
         try {
-            GitHubRepoTask.Result<TurboIssue> issuesResult = issuesTask.response.get();
-            GitHubRepoTask.Result<TurboLabel> labelsResult = labelsTask.response.get();
-            GitHubRepoTask.Result<TurboMilestone> milestonesResult = milestonesTask.response.get();
-            GitHubRepoTask.Result<TurboUser> usersResult = usersTask.response.get();
+            GitHubRepoTask.Result<TurboIssue> issuesResult = issuesResponse.get();
+            GitHubRepoTask.Result<TurboLabel> labelsResult = labelsResponse.get();
+            GitHubRepoTask.Result<TurboMilestone> milestonesResult = milestonesResponse.get();
+            GitHubRepoTask.Result<TurboUser> usersResult = usersResponse.get();
 
             UpdateSignature newSignature =
                 new UpdateSignature(issuesResult.eTag, labelsResult.eTag,
                     milestonesResult.eTag, usersResult.eTag, issuesResult.lastCheckTime);
 
-            Model result = new Model(model.getRepoId(), issuesResult.items,
-                labelsResult.items, milestonesResult.items, usersResult.items, newSignature);
+            // Only the issues which may have changed are given, but the other resources are given in full
+            ModelChanges modelChanges = new ModelChanges(model.getRepoId(),
+                ModelChanges.Changes.of(model.getIssuesById(), issuesResult.items, TurboIssue::getId),
+                changesTo(changed, RepoResource.LABELS, model.getLabelsByName(),
+                    labelsResult.items, TurboLabel::getFullName),
+                changesTo(changed, RepoResource.MILESTONES, model.getMilestonesById(),
+                    milestonesResult.items, TurboMilestone::getId),
+                changesTo(changed, RepoResource.COLLABORATORS, model.getUsersByLogin(),
+                    usersResult.items, TurboUser::getLoginName));
+            // Whatever has not changed is shared with the existing model
+            Model result = model.withChanges(modelChanges, newSignature);
 
             logger.info(HTLog.format(model.getRepoId(), "Updated model with " + result.summarise()));
+            logger.info(HTLog.format(model.getRepoId(), "Changes: " + modelChanges));
             response.complete(result);
         } catch (InterruptedException | ExecutionException e) {
             HTLog.error(logger, e);
         }
     }
+
+    private static <K extends Comparable<? super K>, T> ModelChanges.Changes<T> changesTo(
+            Set<RepoResource> changed, RepoResource resource, PersistentSortedMap<K, T> existing, List<T> items,
+            Function<T, K> key) {
+        return changed.contains(resource)
+            ? ModelChanges.Changes.between(existing, PersistentSortedMap.of(items, key))
+            : ModelChanges.Changes.none();
+    }
+
+    private <R> CompletableFuture<R> execute(GitHubRepoTask<R> task) {
+        taskRunner.execute(task);
+        return task.response;
+    }
 }
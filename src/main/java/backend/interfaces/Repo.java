@@ -1,10 +1,13 @@
 package backend.interfaces;
 
+import backend.IssueMetadata;
 import backend.UserCredentials;
 import backend.resource.TurboIssue;
 import backend.resource.TurboLabel;
 import backend.resource.TurboMilestone;
 import backend.resource.TurboUser;
+import github.RateLimiter;
+import github.RepoResource;
 import github.ReviewComment;
 import github.TurboIssueEvent;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -16,6 +19,9 @@ import org.eclipse.egit.github.core.PullRequest;
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 public interface Repo {
 
@@ -26,6 +32,9 @@ public interface Repo {
     List<TurboMilestone> getMilestones(String repoId);
     List<TurboUser> getCollaborators(String repoId);
 
+    // Returns the resources which have changed since the last call, or empty if all should be updated
+    Optional<Set<RepoResource>> getChangedResources(String repoId);
+
     // Returns tuples in order to be maximally generic
     ImmutableTriple<List<TurboIssue>, String, Date>
         getUpdatedIssues(String repoId, String eTag, Date lastCheckTime);
@@ -38,9 +47,19 @@ public interface Repo {
     List<Comment> getComments(String repoId, int issueId);
     List<ReviewComment> getReviewComments(String repoId, int pullRequestId);
     List<Comment> getAllComments(String repoId, TurboIssue issue);
+    // Returns the current ETag and no comments if the comments have not changed
+    ImmutablePair<List<Comment>, String> getUpdatedComments(String repoId, TurboIssue issue, String eTag);
+
+    // Fetches the events and comments (but not review comments) of many issues at once, if possible;
+    // otherwise they are fetched one issue at a time with the methods above
+    boolean isBatchedMetadataAvailable();
+    Optional<Map<Integer, IssueMetadata>> getMetadata(String repoId, List<TurboIssue> issues);
 
     boolean isRepositoryValid(String repoId);
     List<Label> setLabels(String repoId, int issueId, List<String> labels) throws IOException;
     ImmutablePair<Integer, Long> getRateLimitResetTime() throws IOException;
 
+    // Paces requests made on behalf of the user which may be deferred, e.g. for metadata
+    RateLimiter getRateLimiter();
+
 }
@@ -8,6 +8,7 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -35,8 +36,11 @@ public abstract class RepoSource implements TaskRunner {
 
     public abstract CompletableFuture<Model> updateModel(Model model);
 
+    /**
+     * Downloads the metadata of issues of a repository, that of the prioritised issues first.
+     */
     public abstract CompletableFuture<Map<Integer, IssueMetadata>>
-        downloadMetadata(String repoId, List<TurboIssue> issues);
+        downloadMetadata(String repoId, List<TurboIssue> issues, Set<Integer> prioritisedIds);
 
     public abstract CompletableFuture<Boolean> isRepositoryValid(String repoId);
 
@@ -5,22 +5,40 @@ import backend.resource.serialization.SerializableModel;
 import util.Utility;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public abstract class RepoStore {
     protected static String directory = "store";
     public static final String TEST_DIRECTORY = "store/test";
-    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+    private final StoreTaskScheduler scheduler = new StoreTaskScheduler();
+
+    public static final String CHANGE_LOG_EXTENSION = ".log";
+    public static final String INDEX_FILE_NAME = "repositories.index";
+    public static final String METADATA_EXTENSION = ".metadata";
+    public static final String MAPPED_DESCRIPTIONS_EXTENSION = ".descriptions";
 
     public static String escapeRepoName(String repoName) {
         return repoName.replace("/", "-") + ".json";
     }
 
+    public static String escapeRepoChangeLogName(String repoName) {
+        return escapeRepoName(repoName) + CHANGE_LOG_EXTENSION;
+    }
+
+    public static String escapeRepoMetadataName(String repoName) {
+        return escapeRepoName(repoName) + METADATA_EXTENSION;
+    }
+
+    /**
+     * Schedules a task after the tasks previously added for the same repository.
+     * Tasks for different repositories may run concurrently.
+     */
     protected void addTask(StoreTask task) {
-        pool.execute(task);
+        scheduler.addTask(task);
     }
 
     public abstract CompletableFuture<Model> loadRepository(String repoId);
@@ -34,10 +52,47 @@ public abstract class RepoStore {
         return Optional.empty();
     }
 
+    private static Optional<String> getChangeLogPath(String repoId) {
+        if (ensureDirectoryExists()) {
+            String logName = RepoStore.escapeRepoChangeLogName(repoId);
+            return Optional.of(new File(RepoStore.directory, logName).getAbsolutePath());
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> getMetadataPath(String repoId) {
+        if (ensureDirectoryExists()) {
+            String metadataName = RepoStore.escapeRepoMetadataName(repoId);
+            return Optional.of(new File(RepoStore.directory, metadataName).getAbsolutePath());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the file in which a repository is stored, for stores which read it incrementally.
+     */
+    public static Optional<Path> getRepoFile(String repoId) {
+        return getRepoPath(repoId).map(Paths::get);
+    }
+
+    /**
+     * Returns the file which indexes the repositories in the store directory.
+     */
+    public static Optional<Path> getIndexFile() {
+        if (ensureDirectoryExists()) {
+            return Optional.of(Paths.get(RepoStore.directory, INDEX_FILE_NAME).toAbsolutePath());
+        }
+        return Optional.empty();
+    }
+
     public static boolean write(String repoId, String output, int issueCount) {
         return Utility.writeFile(getRepoPath(repoId).orElse(""), output, issueCount);
     }
 
+    public static boolean write(String repoId, byte[] output, int issueCount) {
+        return Utility.writeFile(getRepoPath(repoId).orElse(""), output, issueCount);
+    }
+
     public static Optional<String> read(String repoId) {
         return Utility.readFile(getRepoPath(repoId).orElse(""));
     }
@@ -46,6 +101,52 @@ public abstract class RepoStore {
         return Utility.deleteFile(getRepoPath(repoId).orElse(""));
     }
 
+    /**
+     * Appends an entry to the change log of a repository.
+     * @return true on error in appending the entry
+     */
+    public static boolean appendToChangeLog(String repoId, String entry) {
+        return Utility.appendLine(getChangeLogPath(repoId).orElse(""), entry);
+    }
+
+    public static List<String> readChangeLog(String repoId) {
+        return Utility.readLines(getChangeLogPath(repoId).orElse(""));
+    }
+
+    /**
+     * Deletes the change log of a repository, if there is one.
+     * @return true on error in deleting the change log
+     */
+    public static boolean deleteChangeLog(String repoId) {
+        String logPath = getChangeLogPath(repoId).orElse("");
+        return new File(logPath).exists() && Utility.deleteFile(logPath);
+    }
+
+    /**
+     * Writes the cached issue metadata of a repository.
+     * @return true on error in writing the metadata
+     */
+    public static boolean writeMetadata(String repoId, String output) {
+        return Utility.writeFile(getMetadataPath(repoId).orElse(""), output, 0);
+    }
+
+    public static Optional<String> readMetadata(String repoId) {
+        String metadataPath = getMetadataPath(repoId).orElse("");
+        if (!new File(metadataPath).exists()) {
+            return Optional.empty();
+        }
+        return Utility.readFile(metadataPath);
+    }
+
+    /**
+     * Deletes the cached issue metadata of a repository, if there is any.
+     * @return true on error in deleting the metadata
+     */
+    public static boolean deleteMetadata(String repoId) {
+        String metadataPath = getMetadataPath(repoId).orElse("");
+        return new File(metadataPath).exists() && Utility.deleteFile(metadataPath);
+    }
+
     /**
      * Returns true on success.
      * @return
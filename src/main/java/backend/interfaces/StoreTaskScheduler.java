@@ -0,0 +1,61 @@
+package backend.interfaces;
+
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tasks of a RepoStore on a bounded pool of threads.
+ *
+ * Tasks for the same repository are run one at a time, in the order they were added, so they
+ * never see each other's files half-written. Tasks for different repositories run in parallel,
+ * so that e.g. a large write does not hold up loading every other repository.
+ *
+ * Repository ids are compared case-insensitively, as they may refer to the same file.
+ */
+class StoreTaskScheduler {
+
+    private static final Logger logger = HTLog.get(StoreTaskScheduler.class);
+
+    public static final int MAX_THREADS = 4;
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+
+    private final ThreadPoolExecutor pool;
+
+    // The last task added for each repository which has tasks that have not completed
+    private final Map<String, CompletableFuture<Void>> lastTasks = new ConcurrentHashMap<>();
+
+    StoreTaskScheduler() {
+        pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>());
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules a task to run once every task previously added for its repository has completed.
+     */
+    public void addTask(StoreTask task) {
+        String key = task.repoId.toLowerCase();
+        CompletableFuture<Void> queued = lastTasks.compute(key, (repoId, lastTask) ->
+            (lastTask == null ? CompletableFuture.<Void>completedFuture(null) : lastTask)
+                .handleAsync((result, failure) -> {
+                    run(task);
+                    return null;
+                }, pool));
+        queued.whenComplete((result, failure) -> lastTasks.remove(key, queued));
+    }
+
+    private static void run(StoreTask task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.error(HTLog.format(task.repoId, "Store task failed"), e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package backend.json;
+
+import backend.interfaces.RepoStore;
+import backend.interfaces.StoreTask;
+import backend.resource.serialization.SerializableModel;
+import com.google.gson.Gson;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Saves a repository to the incremental store. Only the resources which changed since the
+ * last save are appended to the repository's change log. If nothing is known about what was
+ * last persisted, a full snapshot is written instead and the change log is discarded.
+ */
+class AppendTask extends StoreTask {
+
+    private static final Logger logger = HTLog.get(AppendTask.class);
+
+    public final SerializableModel toSave;
+    public final ChangeLog changeLog;
+    public final CompletableFuture<Boolean> response;
+
+    public AppendTask(String repoId, SerializableModel toSave, ChangeLog changeLog,
+                      CompletableFuture<Boolean> response) {
+        super(repoId);
+        this.toSave = toSave;
+        this.changeLog = changeLog;
+        this.response = response;
+    }
+
+    @Override
+    public void run() {
+        if (changeLog.isInitialised()) {
+            response.complete(append(repoId, toSave));
+        } else {
+            response.complete(snapshot(repoId, toSave, changeLog));
+        }
+    }
+
+    private boolean append(String repoId, SerializableModel model) {
+        ChangeLogEntry entry = changeLog.record(model);
+        boolean failed = RepoStore.appendToChangeLog(repoId, new Gson().toJson(entry));
+        if (failed) {
+            // The persisted state is no longer known, so start over from a snapshot
+            return snapshot(repoId, model, changeLog);
+        }
+        RepoIndex.recordSave(repoId, model, false);
+        logger.info(HTLog.format(repoId, "Appended %d changed and %d removed resource(s) to change log",
+            entry.issues.size() + entry.labels.size() + entry.milestones.size() + entry.users.size(),
+            entry.removedIssues.size() + entry.removedLabels.size()
+                + entry.removedMilestones.size() + entry.removedUsers.size()));
+        return false;
+    }
+
+    /**
+     * Writes a full snapshot of the model and discards the change log.
+     *
+     * The change log is deleted before the snapshot is written, as its entries would otherwise be replayed
+     * on top of the new snapshot if writing it were interrupted, reverting the resources they hold. An
+     * interruption in between leaves the old snapshot without its change log instead, which is consistent
+     * with its own update signature, so the next update brings it up to date again.
+     *
+     * @return true on JSON corruption, as with RepoStore.write, or if the change log could not be deleted
+     */
+    static boolean snapshot(String repoId, SerializableModel model, ChangeLog changeLog) {
+        if (RepoStore.deleteChangeLog(repoId)) {
+            logger.error(HTLog.format(repoId, "Unable to delete change log; not writing snapshot"));
+            changeLog.invalidate();
+            return true;
+        }
+        boolean corruptedJson = RepoStore.write(repoId, new Gson().toJson(model), model.issues.size());
+        RepoIndex.recordSave(repoId, model, true);
+        if (corruptedJson) {
+            changeLog.invalidate();
+        } else {
+            changeLog.reset(model, 0);
+        }
+        logger.info(HTLog.format(repoId, "Written snapshot to JSON store"));
+        return corruptedJson;
+    }
+}
@@ -0,0 +1,519 @@
+package backend.json;
+
+import backend.UpdateSignature;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import backend.resource.serialization.SerializableIssue;
+import backend.resource.serialization.SerializableLabel;
+import backend.resource.serialization.SerializableMilestone;
+import backend.resource.serialization.SerializableModel;
+import backend.resource.serialization.SerializableUser;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A compact binary encoding of a stored repository, as an alternative to Gson's output.
+ *
+ * The file starts with a magic number and a format version. Label names and logins, which are
+ * repeated across issues, are written once into a string table and referred to by index.
+ * Timestamps are written as seconds since the epoch (plus nanoseconds), and integers as varints.
+ * Strings are length-prefixed UTF-8, so there is no limit on their size.
+ *
+ * Issue descriptions, which make up most of a repository, are written back to back in a
+ * section of their own before the issues. This allows them to be memory-mapped instead of
+ * read, in which case they are only decoded when an issue's description is asked for.
+ *
+ * Like StreamingModelReader, reading constructs resources directly without intermediate
+ * Serializable- resources.
+ */
+final class BinarySnapshot {
+
+    // "HTMS" -- HubTurbo model snapshot
+    private static final int MAGIC = 0x48544D53;
+    static final int VERSION = 2;
+
+    // Version 1 held descriptions inline in issues rather than in a section of their own
+    private static final int INLINE_DESCRIPTIONS_VERSION = 1;
+
+    // Descriptions shorter than this are not worth mapping, as the mapped source would take
+    // about as much memory as the description itself
+    private static final int MIN_MAPPED_DESCRIPTION_LENGTH = 64;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Issue flags
+    private static final int PULL_REQUEST = 1;
+    private static final int OPEN = 1 << 1;
+    private static final int HAS_ASSIGNEE = 1 << 2;
+    private static final int HAS_MILESTONE = 1 << 3;
+    private static final int HAS_CREATED_AT = 1 << 4;
+    private static final int HAS_UPDATED_AT = 1 << 5;
+
+    // Milestone flags
+    private static final int HAS_DUE_DATE = 1 << 2;
+
+    private BinarySnapshot() {}
+
+    /**
+     * Returns true if the given file is in this format, as opposed to JSON.
+     */
+    public static boolean isBinary(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private void ______WRITING______() {}
+
+    public static byte[] serialize(SerializableModel model) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            new Writer(out, model).write();
+        } catch (IOException e) {
+            // Not possible when writing to memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class Writer {
+        private final DataOutputStream out;
+        private final SerializableModel model;
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final List<byte[]> descriptions = new ArrayList<>();
+        private int issueIndex = 0;
+
+        Writer(DataOutputStream out, SerializableModel model) {
+            this.out = out;
+            this.model = model;
+        }
+
+        void write() throws IOException {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeString(model.repoId);
+            writeUpdateSignature(model.updateSignature);
+
+            internStrings();
+            writeVarInt(strings.size());
+            for (String string : strings.keySet()) {
+                writeString(string);
+            }
+
+            writeDescriptions();
+
+            writeVarInt(model.issues.size());
+            for (SerializableIssue issue : model.issues) {
+                writeIssue(issue);
+            }
+            writeVarInt(model.labels.size());
+            for (SerializableLabel label : model.labels) {
+                writeReference(label.getFullName());
+                writeString(label.getColour());
+            }
+            writeVarInt(model.milestones.size());
+            for (SerializableMilestone milestone : model.milestones) {
+                writeMilestone(milestone);
+            }
+            writeVarInt(model.users.size());
+            for (SerializableUser user : model.users) {
+                writeReference(user.getLoginName());
+                writeString(user.getRealName());
+                writeString(user.getAvatarURL());
+            }
+        }
+
+        private void internStrings() {
+            for (SerializableIssue issue : model.issues) {
+                intern(issue.getCreator());
+                issue.getAssignee().ifPresent(this::intern);
+                issue.getLabels().forEach(this::intern);
+            }
+            model.labels.forEach(label -> intern(label.getFullName()));
+            model.users.forEach(user -> intern(user.getLoginName()));
+        }
+
+        private void intern(String string) {
+            if (string != null) {
+                strings.putIfAbsent(string, strings.size());
+            }
+        }
+
+        /**
+         * Writes the length of the description section, then every issue's description.
+         */
+        private void writeDescriptions() throws IOException {
+            long length = 0;
+            for (SerializableIssue issue : model.issues) {
+                // Mapped descriptions are copied as they are, rather than decoded and encoded again
+                byte[] description = issue.getDescriptionSource()
+                    .flatMap(MappedDescriptions::getEncoded)
+                    .orElseGet(() -> encode(issue.getDescription()));
+                descriptions.add(description);
+                length += description == null ? 0 : description.length;
+            }
+            out.writeLong(length);
+            for (byte[] description : descriptions) {
+                if (description != null) {
+                    out.write(description);
+                }
+            }
+        }
+
+        private void writeUpdateSignature(UpdateSignature signature) throws IOException {
+            writeString(signature.issuesETag);
+            writeString(signature.labelsETag);
+            writeString(signature.milestonesETag);
+            writeString(signature.collaboratorsETag);
+            writeVarLong(signature.lastCheckTime.getTime());
+        }
+
+        private void writeIssue(SerializableIssue issue) throws IOException {
+            int flags = (issue.isPullRequest() ? PULL_REQUEST : 0)
+                | (issue.isOpen() ? OPEN : 0)
+                | (issue.getAssignee().isPresent() ? HAS_ASSIGNEE : 0)
+                | (issue.getMilestone().isPresent() ? HAS_MILESTONE : 0)
+                | (issue.getCreatedAt() != null ? HAS_CREATED_AT : 0)
+                | (issue.getUpdatedAt() != null ? HAS_UPDATED_AT : 0);
+
+            writeVarInt(issue.getId());
+            out.writeByte(flags);
+            writeString(issue.getTitle());
+            writeReference(issue.getCreator());
+            if (issue.getCreatedAt() != null) {
+                writeDateTime(issue.getCreatedAt());
+            }
+            writeLength(descriptions.get(issueIndex++));
+            if (issue.getUpdatedAt() != null) {
+                writeDateTime(issue.getUpdatedAt());
+            }
+            writeVarInt(issue.getCommentCount());
+            if (issue.getAssignee().isPresent()) {
+                writeReference(issue.getAssignee().get());
+            }
+            writeVarInt(issue.getLabels().size());
+            for (String label : issue.getLabels()) {
+                writeReference(label);
+            }
+            if (issue.getMilestone().isPresent()) {
+                writeVarInt(issue.getMilestone().get());
+            }
+        }
+
+        private void writeMilestone(SerializableMilestone milestone) throws IOException {
+            boolean hasDueDate = milestone.getDueDate() != null && milestone.getDueDate().isPresent();
+            writeVarInt(milestone.getId());
+            out.writeByte((milestone.isOpen() ? OPEN : 0) | (hasDueDate ? HAS_DUE_DATE : 0));
+            writeString(milestone.getTitle());
+            if (hasDueDate) {
+                writeVarLong(milestone.getDueDate().get().toEpochDay());
+            }
+            writeString(milestone.getDescription());
+            writeVarInt(milestone.getOpenIssues());
+            writeVarInt(milestone.getClosedIssues());
+        }
+
+        private void writeDateTime(LocalDateTime dateTime) throws IOException {
+            writeVarLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+            writeVarInt(dateTime.getNano());
+        }
+
+        /**
+         * Writes a string from the string table as its index, offset by one so that 0 means null.
+         */
+        private void writeReference(String string) throws IOException {
+            writeVarInt(string == null ? 0 : strings.get(string) + 1);
+        }
+
+        /**
+         * Writes the length of a string in bytes, offset by one so that 0 means null, then its bytes.
+         */
+        private void writeString(String string) throws IOException {
+            byte[] bytes = encode(string);
+            writeLength(bytes);
+            if (bytes != null) {
+                out.write(bytes);
+            }
+        }
+
+        private void writeLength(byte[] bytes) throws IOException {
+            writeVarInt(bytes == null ? 0 : bytes.length + 1);
+        }
+
+        private byte[] encode(String string) {
+            return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        /**
+         * Longs are zigzag-encoded first, so that small negative values stay short.
+         */
+        private void writeVarLong(long value) throws IOException {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.writeByte((int) zigzag);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private void ______READING______() {}
+
+    /**
+     * Reads the repository stored in the given file.
+     * @param mapDescriptions whether issue descriptions should be memory-mapped and decoded on
+     *                        demand, rather than read into memory
+     * @throws IOException if the file cannot be read or is truncated
+     * @throws JsonParseException if the file is not in this format, or in an unsupported version of it
+     */
+    public static Model read(Path file, boolean mapDescriptions) throws IOException {
+        try (CountingInputStream in = new CountingInputStream(
+            new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            return new Reader(file, in, mapDescriptions).read();
+        } catch (NegativeArraySizeException | IndexOutOfBoundsException | IllegalArgumentException
+                 | DateTimeException e) {
+            throw new JsonParseException(e);
+        }
+    }
+
+    private static class Reader {
+        private final Path file;
+        private final CountingInputStream position;
+        private final DataInputStream in;
+        private final boolean mapDescriptions;
+        private final List<String> strings = new ArrayList<>();
+
+        private int version;
+
+        // The description section, and the position of the next description in it
+        private ByteBuffer descriptions;
+        private MappedDescriptions mappedDescriptions;
+        private int descriptionOffset = 0;
+
+        Reader(Path file, CountingInputStream in, boolean mapDescriptions) {
+            this.file = file;
+            this.position = in;
+            this.in = new DataInputStream(in);
+            this.mapDescriptions = mapDescriptions;
+        }
+
+        Model read() throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new JsonParseException("Not a binary repository snapshot");
+            }
+            version = in.readUnsignedByte();
+            if (version != VERSION && version != INLINE_DESCRIPTIONS_VERSION) {
+                throw new JsonParseException("Unsupported binary snapshot version " + version);
+            }
+            String repoId = readString();
+            if (repoId == null) {
+                throw new JsonParseException("Binary snapshot has no repository id");
+            }
+            UpdateSignature updateSignature = readUpdateSignature();
+
+            int stringCount = readVarInt();
+            for (int i = 0; i < stringCount; i++) {
+                strings.add(readString());
+            }
+
+            if (version != INLINE_DESCRIPTIONS_VERSION) {
+                readDescriptionSection();
+            }
+
+            int issueCount = readVarInt();
+            List<TurboIssue> issues = new ArrayList<>(issueCount);
+            for (int i = 0; i < issueCount; i++) {
+                issues.add(readIssue(repoId));
+            }
+            int labelCount = readVarInt();
+            List<TurboLabel> labels = new ArrayList<>(labelCount);
+            for (int i = 0; i < labelCount; i++) {
+                String fullName = readReference();
+                labels.add(new TurboLabel(repoId, readString(), fullName));
+            }
+            int milestoneCount = readVarInt();
+            List<TurboMilestone> milestones = new ArrayList<>(milestoneCount);
+            for (int i = 0; i < milestoneCount; i++) {
+                milestones.add(readMilestone(repoId));
+            }
+            int userCount = readVarInt();
+            List<TurboUser> users = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                String loginName = readReference();
+                String realName = readString();
+                users.add(new TurboUser(repoId, loginName, realName, readString()));
+            }
+
+            return new Model(repoId, issues, labels, milestones, users, updateSignature);
+        }
+
+        private void readDescriptionSection() throws IOException {
+            long length = in.readLong();
+            if (length < 0 || length > Integer.MAX_VALUE || position.getCount() + length > Files.size(file)) {
+                throw new JsonParseException("Invalid description section length " + length);
+            }
+            if (mapDescriptions) {
+                mappedDescriptions = MappedDescriptions.map(file, position.getCount(), length);
+                descriptions = mappedDescriptions.getRegion();
+                ByteStreams.skipFully(in, length);
+            } else {
+                byte[] bytes = new byte[(int) length];
+                in.readFully(bytes);
+                descriptions = ByteBuffer.wrap(bytes);
+            }
+        }
+
+        private UpdateSignature readUpdateSignature() throws IOException {
+            String issuesETag = readString();
+            String labelsETag = readString();
+            String milestonesETag = readString();
+            String collaboratorsETag = readString();
+            Date lastCheckTime = new Date(readVarLong());
+            return new UpdateSignature(issuesETag, labelsETag, milestonesETag, collaboratorsETag, lastCheckTime);
+        }
+
+        private TurboIssue readIssue(String repoId) throws IOException {
+            int id = readVarInt();
+            int flags = in.readUnsignedByte();
+            String title = readString();
+            String creator = readReference();
+            LocalDateTime createdAt = (flags & HAS_CREATED_AT) != 0 ? readDateTime() : null;
+            Optional<Supplier<String>> descriptionSource = Optional.empty();
+            String description;
+            if (version == INLINE_DESCRIPTIONS_VERSION) {
+                description = readString();
+            } else {
+                int length = readVarInt() - 1;
+                if (descriptionOffset + length > descriptions.limit()) {
+                    throw new JsonParseException("Description out of bounds");
+                }
+                if (length < 0) {
+                    description = null;
+                } else if (mapDescriptions && length >= MIN_MAPPED_DESCRIPTION_LENGTH) {
+                    descriptionSource = Optional.of(mappedDescriptions.get(descriptionOffset, length));
+                    description = null;
+                } else {
+                    description = MappedDescriptions.decode(descriptions, descriptionOffset, length);
+                }
+                descriptionOffset += Math.max(length, 0);
+            }
+            LocalDateTime updatedAt = (flags & HAS_UPDATED_AT) != 0 ? readDateTime() : null;
+            int commentCount = readVarInt();
+            Optional<String> assignee = (flags & HAS_ASSIGNEE) != 0
+                ? Optional.of(readReference())
+                : Optional.empty();
+            int labelCount = readVarInt();
+            List<String> labels = new ArrayList<>(labelCount);
+            for (int i = 0; i < labelCount; i++) {
+                labels.add(readReference());
+            }
+            Optional<Integer> milestone = (flags & HAS_MILESTONE) != 0
+                ? Optional.of(readVarInt())
+                : Optional.empty();
+
+            TurboIssue issue = new TurboIssue(repoId, id, title, creator, createdAt, (flags & PULL_REQUEST) != 0,
+                description, updatedAt, commentCount, (flags & OPEN) != 0, assignee, labels, milestone);
+            descriptionSource.ifPresent(issue::setDescriptionSource);
+            return issue;
+        }
+
+        private TurboMilestone readMilestone(String repoId) throws IOException {
+            int id = readVarInt();
+            int flags = in.readUnsignedByte();
+            TurboMilestone milestone = new TurboMilestone(repoId, id, readString());
+            milestone.setDueDate((flags & HAS_DUE_DATE) != 0
+                ? Optional.of(LocalDate.ofEpochDay(readVarLong()))
+                : Optional.empty());
+            milestone.setDescription(readString());
+            milestone.setOpen((flags & OPEN) != 0);
+            milestone.setOpenIssues(readVarInt());
+            milestone.setClosedIssues(readVarInt());
+            return milestone;
+        }
+
+        private LocalDateTime readDateTime() throws IOException {
+            long epochSecond = readVarLong();
+            return LocalDateTime.ofEpochSecond(epochSecond, readVarInt(), ZoneOffset.UTC);
+        }
+
+        private String readReference() throws IOException {
+            int index = readVarInt();
+            if (index < 0 || index > strings.size()) {
+                throw new JsonParseException("Invalid string table reference " + index);
+            }
+            return index == 0 ? null : strings.get(index - 1);
+        }
+
+        private String readString() throws IOException {
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length - 1];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new JsonParseException("Malformed varint");
+        }
+
+        private long readVarLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new JsonParseException("Malformed varlong");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package backend.json;
+
+import backend.resource.ModelChanges;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import backend.resource.serialization.SerializableIssue;
+import backend.resource.serialization.SerializableLabel;
+import backend.resource.serialization.SerializableMilestone;
+import backend.resource.serialization.SerializableModel;
+import backend.resource.serialization.SerializableUser;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Tracks what has been persisted for a single repository in the incremental store, so that
+ * a save only has to write the resources which differ from it.
+ *
+ * If the model being saved was updated from the model last persisted, the changes of that update
+ * give the resources which may differ, and only those are compared. Otherwise, e.g. for the first
+ * save after loading, every resource is compared.
+ *
+ * Only digests of the serialised resources are kept, not the resources themselves.
+ * Not thread-safe; it should only be accessed from store tasks of its repository.
+ */
+class ChangeLog {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final Gson gson = new Gson();
+
+    private final Map<Integer, HashCode> issues = new HashMap<>();
+    private final Map<String, HashCode> labels = new HashMap<>();
+    private final Map<Integer, HashCode> milestones = new HashMap<>();
+    private final Map<String, HashCode> users = new HashMap<>();
+
+    // Number of entries appended since the snapshot was last written
+    private int entryCount = 0;
+
+    // Whether the persisted state is known, i.e. whether entries may be computed against it
+    private boolean isInitialised = false;
+
+    // The version of the model which was last persisted, or 0 if not known
+    private long persistedVersion = 0;
+
+    /**
+     * Forgets everything recorded so far and records the given model as the persisted state.
+     * @param model the model which is now on disk
+     * @param entryCount the number of change log entries on disk on top of the snapshot
+     */
+    public void reset(SerializableModel model, int entryCount) {
+        issues.clear();
+        labels.clear();
+        milestones.clear();
+        users.clear();
+        // Every resource is recorded, whatever changes the model knows of
+        persistedVersion = 0;
+        record(model);
+        this.entryCount = entryCount;
+        this.isInitialised = true;
+    }
+
+    public boolean isInitialised() {
+        return isInitialised;
+    }
+
+    /**
+     * Marks the persisted state as unknown, so that the next save writes a full snapshot.
+     */
+    public void invalidate() {
+        isInitialised = false;
+    }
+
+    /**
+     * Records the version of the model which was made from the persisted state, e.g. as it was loaded,
+     * so that the changes of updates made to that model may be saved.
+     */
+    public void setPersistedVersion(long version) {
+        persistedVersion = version;
+    }
+
+    public boolean isCompactionDue(int threshold) {
+        return isInitialised && entryCount >= threshold;
+    }
+
+    /**
+     * Computes the entry which brings the persisted state up to date with the given model,
+     * and records the model as the persisted state.
+     */
+    public ChangeLogEntry record(SerializableModel model) {
+        List<Integer> removedIssues = new ArrayList<>();
+        List<String> removedLabels = new ArrayList<>();
+        List<Integer> removedMilestones = new ArrayList<>();
+        List<String> removedUsers = new ArrayList<>();
+
+        Optional<ModelChanges> changes = model.getChangesFrom(persistedVersion);
+        ChangeLogEntry entry = new ChangeLogEntry(model.updateSignature,
+            diff(issues, model.issues, SerializableIssue::getId,
+                changes.map(c -> getKeys(c.getIssues(), TurboIssue::getId)), removedIssues),
+            removedIssues,
+            diff(labels, model.labels, SerializableLabel::getFullName,
+                changes.map(c -> getKeys(c.getLabels(), TurboLabel::getFullName)), removedLabels),
+            removedLabels,
+            diff(milestones, model.milestones, SerializableMilestone::getId,
+                changes.map(c -> getKeys(c.getMilestones(), TurboMilestone::getId)), removedMilestones),
+            removedMilestones,
+            diff(users, model.users, SerializableUser::getLoginName,
+                changes.map(c -> getKeys(c.getUsers(), TurboUser::getLoginName)), removedUsers),
+            removedUsers);
+        entryCount++;
+        persistedVersion = model.getVersion();
+        return entry;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Updates digests with the given items, returning the items whose digests changed.
+     * Keys which no longer have a corresponding item are removed and added to removedKeys.
+     * @param changedKeys the keys of the only items which may have changed, or empty to compare every item
+     */
+    private <K, T> List<T> diff(Map<K, HashCode> digests, List<T> items, Function<T, K> key,
+                                Optional<Set<K>> changedKeys, List<K> removedKeys) {
+        List<T> changed = new ArrayList<>();
+        Set<K> seen = new HashSet<>();
+        for (T item : items) {
+            K itemKey = key.apply(item);
+            seen.add(itemKey);
+            if (changedKeys.isPresent() && !changedKeys.get().contains(itemKey)) {
+                continue;
+            }
+            HashCode digest = HASH.hashString(gson.toJson(item), StandardCharsets.UTF_8);
+            if (!digest.equals(digests.put(itemKey, digest))) {
+                changed.add(item);
+            }
+        }
+        Collection<K> removalCandidates = changedKeys.isPresent()
+            ? changedKeys.get()
+            : new ArrayList<>(digests.keySet());
+        for (K existingKey : removalCandidates) {
+            if (!seen.contains(existingKey) && digests.remove(existingKey) != null) {
+                removedKeys.add(existingKey);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the keys of every resource which was added, updated or removed.
+     */
+    private static <K, T> Set<K> getKeys(ModelChanges.Changes<T> changes, Function<T, K> key) {
+        Set<K> keys = new HashSet<>();
+        changes.getAdded().forEach(item -> keys.add(key.apply(item)));
+        changes.getUpdated().forEach(item -> keys.add(key.apply(item)));
+        changes.getRemoved().forEach(item -> keys.add(key.apply(item)));
+        return keys;
+    }
+}
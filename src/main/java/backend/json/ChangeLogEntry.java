@@ -0,0 +1,81 @@
+package backend.json;
+
+import backend.UpdateSignature;
+import backend.resource.serialization.SerializableIssue;
+import backend.resource.serialization.SerializableLabel;
+import backend.resource.serialization.SerializableMilestone;
+import backend.resource.serialization.SerializableModel;
+import backend.resource.serialization.SerializableUser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A single line of a repository's change log: the resources which were added, changed or
+ * removed by one save, together with the update signature of the model after that save.
+ *
+ * Entries hold complete resources rather than field-level differences, so replaying
+ * an entry more than once has no further effect. Entries are only ever replayed on top of the
+ * snapshot they were appended to, as the change log is deleted before a new snapshot is written
+ * (see AppendTask.snapshot).
+ */
+class ChangeLogEntry {
+
+    public final UpdateSignature updateSignature;
+
+    public final List<SerializableIssue> issues;
+    public final List<SerializableLabel> labels;
+    public final List<SerializableMilestone> milestones;
+    public final List<SerializableUser> users;
+
+    public final List<Integer> removedIssues;
+    public final List<String> removedLabels;
+    public final List<Integer> removedMilestones;
+    public final List<String> removedUsers;
+
+    ChangeLogEntry(UpdateSignature updateSignature,
+                   List<SerializableIssue> issues, List<Integer> removedIssues,
+                   List<SerializableLabel> labels, List<String> removedLabels,
+                   List<SerializableMilestone> milestones, List<Integer> removedMilestones,
+                   List<SerializableUser> users, List<String> removedUsers) {
+        this.updateSignature = updateSignature;
+        this.issues = issues;
+        this.removedIssues = removedIssues;
+        this.labels = labels;
+        this.removedLabels = removedLabels;
+        this.milestones = milestones;
+        this.removedMilestones = removedMilestones;
+        this.users = users;
+        this.removedUsers = removedUsers;
+    }
+
+    public boolean hasResourceChanges() {
+        return !issues.isEmpty() || !labels.isEmpty() || !milestones.isEmpty() || !users.isEmpty()
+            || !removedIssues.isEmpty() || !removedLabels.isEmpty()
+            || !removedMilestones.isEmpty() || !removedUsers.isEmpty();
+    }
+
+    /**
+     * Replays this entry on top of a model, returning the resulting model.
+     * Resources which are changed keep their position; new resources are appended.
+     */
+    public SerializableModel applyTo(SerializableModel model) {
+        return new SerializableModel(model.repoId, updateSignature,
+            apply(model.issues, SerializableIssue::getId, issues, removedIssues),
+            apply(model.labels, SerializableLabel::getFullName, labels, removedLabels),
+            apply(model.milestones, SerializableMilestone::getId, milestones, removedMilestones),
+            apply(model.users, SerializableUser::getLoginName, users, removedUsers));
+    }
+
+    private static <K, T> List<T> apply(List<T> existing, Function<T, K> key,
+                                        List<T> changed, List<K> removed) {
+        Map<K, T> result = new LinkedHashMap<>();
+        existing.forEach(item -> result.put(key.apply(item), item));
+        changed.forEach(item -> result.put(key.apply(item), item));
+        removed.forEach(result::remove);
+        return new ArrayList<>(result.values());
+    }
+}
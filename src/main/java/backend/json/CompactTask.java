@@ -0,0 +1,39 @@
+package backend.json;
+
+import backend.interfaces.StoreTask;
+import backend.resource.serialization.SerializableModel;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+import util.exceptions.RepoStoreException;
+
+/**
+ * Folds the change log of a repository back into its snapshot.
+ */
+class CompactTask extends StoreTask {
+
+    private static final Logger logger = HTLog.get(CompactTask.class);
+
+    public final ChangeLog changeLog;
+
+    public CompactTask(String repoId, ChangeLog changeLog) {
+        super(repoId);
+        this.changeLog = changeLog;
+    }
+
+    @Override
+    public void run() {
+        // The change log may have been compacted or discarded since this task was queued
+        if (!changeLog.isInitialised() || changeLog.getEntryCount() == 0) {
+            return;
+        }
+        try {
+            int entryCount = changeLog.getEntryCount();
+            SerializableModel model = ReplayTask.replay(repoId, changeLog);
+            AppendTask.snapshot(repoId, model, changeLog);
+            logger.info(HTLog.format(repoId, "Compacted %d change log entries", entryCount));
+        } catch (RepoStoreException e) {
+            logger.error(HTLog.format(repoId, "Unable to compact change log"));
+            changeLog.invalidate();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package backend.json;
+
+import backend.interfaces.StoreTask;
+import backend.resource.serialization.SerializableModel;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+import util.exceptions.RepoStoreException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Rewrites a stored repository in the given snapshot format, whatever format it is currently in.
+ */
+class ConvertTask extends StoreTask {
+
+    private static final Logger logger = HTLog.get(ConvertTask.class);
+
+    public final SnapshotFormat format;
+    public final CompletableFuture<Boolean> response;
+
+    public ConvertTask(String repoId, SnapshotFormat format, CompletableFuture<Boolean> response) {
+        super(repoId);
+        this.format = format;
+        this.response = response;
+    }
+
+    @Override
+    public void run() {
+        try {
+            SerializableModel model = ReadTask.loadSerializableModel(repoId);
+            boolean corruptedJson = format.write(repoId, model);
+            RepoIndex.recordSave(repoId, model, true);
+            logger.info(HTLog.format(repoId, "Converted to %s snapshot", format));
+            response.complete(corruptedJson);
+        } catch (RepoStoreException e) {
+            logger.error(HTLog.format(repoId, "Unable to convert to %s snapshot", format));
+            response.complete(true);
+        }
+    }
+}
@@ -20,6 +20,10 @@ class DeleteTask extends StoreTask {
 
     @Override
     public void run() {
-        response.complete(RepoStore.delete(repoId));
+        boolean deleteFailed = RepoStore.delete(repoId);
+        deleteFailed = RepoStore.deleteMetadata(repoId) || deleteFailed;
+        RepoStore.getRepoFile(repoId).ifPresent(MappedDescriptions::deleteGenerations);
+        RepoIndex.recordRemoval(repoId);
+        response.complete(deleteFailed);
     }
 }
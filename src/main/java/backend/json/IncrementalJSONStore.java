@@ -0,0 +1,67 @@
+package backend.json;
+
+import backend.interfaces.RepoStore;
+import backend.resource.Model;
+import backend.resource.serialization.SerializableModel;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A JSONStore whose write cost scales with the number of changed resources rather than
+ * the size of the repository.
+ *
+ * The first save of a repository writes the usual JSON snapshot. Subsequent saves append the
+ * issues, labels, milestones and users which changed (or were removed) to a change log next to
+ * the snapshot. Loading replays the change log on top of the snapshot. Once the change log has
+ * COMPACTION_THRESHOLD entries, it is folded back into the snapshot by a CompactTask which runs
+ * after the save has completed.
+ *
+ * Snapshots are in the same format as JSONStore's, so the two stores may be used interchangeably
+ * as long as the change log is compacted or discarded.
+ */
+public class IncrementalJSONStore extends JSONStore {
+
+    public static final int COMPACTION_THRESHOLD = 50;
+
+    private final Map<String, ChangeLog> changeLogs = new ConcurrentHashMap<>();
+
+    @Override
+    public CompletableFuture<Model> loadRepository(String repoId) {
+        CompletableFuture<Model> response = new CompletableFuture<>();
+        addTask(new ReplayTask(repoId, getChangeLog(repoId), response));
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveRepository(String repoId, SerializableModel model) {
+        CompletableFuture<Boolean> response = new CompletableFuture<>();
+        ChangeLog changeLog = getChangeLog(repoId);
+        addTask(new AppendTask(repoId, model, changeLog, response));
+        return response.thenApply(corruptedJson -> {
+            if (changeLog.isCompactionDue(COMPACTION_THRESHOLD)) {
+                addTask(new CompactTask(repoId, changeLog));
+            }
+            return corruptedJson;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeStoredRepo(String repoId) {
+        changeLogs.remove(repoId);
+        return super.removeStoredRepo(repoId)
+            .thenApply(deleteFailed -> RepoStore.deleteChangeLog(repoId) || deleteFailed);
+    }
+
+    /**
+     * Schedules compaction of the change log of a repository, regardless of its size.
+     */
+    public void compact(String repoId) {
+        addTask(new CompactTask(repoId, getChangeLog(repoId)));
+    }
+
+    private ChangeLog getChangeLog(String repoId) {
+        return changeLogs.computeIfAbsent(repoId, id -> new ChangeLog());
+    }
+}
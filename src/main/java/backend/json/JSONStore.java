@@ -1,23 +1,18 @@
 package backend.json;
 
+import backend.IssueMetadata;
 import backend.interfaces.RepoStore;
 import backend.resource.Model;
 import backend.resource.serialization.SerializableModel;
-import com.google.gson.Gson;
-import com.google.gson.JsonParseException;
-import com.google.gson.reflect.TypeToken;
 import org.apache.logging.log4j.Logger;
 import util.HTLog;
-import util.Utility;
 
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -27,54 +22,117 @@ public class JSONStore extends RepoStore {
 
     private static final Logger logger = HTLog.get(JSONStore.class);
 
+    private final SnapshotFormat format;
+    private final boolean mapDescriptions;
+
+    public JSONStore() {
+        this(SnapshotFormat.JSON);
+    }
+
+    public JSONStore(SnapshotFormat format) {
+        this(format, false);
+    }
+
+    /**
+     * @param format the format in which repositories are written. Repositories are read
+     *               in whichever format they were written.
+     * @param mapDescriptions whether issue descriptions are memory-mapped and decoded on demand, instead of
+     *                        being loaded onto the heap. Only applies to stores in SnapshotFormat.BINARY.
+     */
+    public JSONStore(SnapshotFormat format, boolean mapDescriptions) {
+        this.format = format;
+        // Only binary snapshots have a section of descriptions which can be mapped
+        this.mapDescriptions = mapDescriptions && format == SnapshotFormat.BINARY;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return format;
+    }
+
     @Override
     public CompletableFuture<Model> loadRepository(String repoId) {
         CompletableFuture<Model> response = new CompletableFuture<>();
-        addTask(new ReadTask(repoId, response));
+        addTask(new ReadTask(repoId, mapDescriptions, response));
         return response;
     }
 
     @Override
     public CompletableFuture<Boolean> saveRepository(String repoId, SerializableModel model) {
         CompletableFuture<Boolean> response = new CompletableFuture<>();
-        addTask(new WriteTask(repoId, model, response));
+        addTask(new WriteTask(repoId, model, format, response));
+        return response;
+    }
+
+    /**
+     * Loads the issue metadata cached for a repository, keyed by issue id. The metadata is not the
+     * latest, but carries the ETags with which it may be revalidated.
+     * @return a future which completes with the cached metadata, which is empty if there is none
+     */
+    public CompletableFuture<Map<Integer, IssueMetadata>> loadMetadata(String repoId) {
+        CompletableFuture<Map<Integer, IssueMetadata>> response = new CompletableFuture<>();
+        addTask(new ReadMetadataTask(repoId, response));
+        return response;
+    }
+
+    /**
+     * Replaces the issue metadata cached for a repository.
+     * @param metadata the metadata of the repository's issues, keyed by issue id
+     * @return a future which completes with true on error
+     */
+    public CompletableFuture<Boolean> saveMetadata(String repoId, Map<Integer, IssueMetadata> metadata) {
+        CompletableFuture<Boolean> response = new CompletableFuture<>();
+        addTask(new WriteMetadataTask(repoId, metadata, response));
         return response;
     }
 
+    /**
+     * Lists the repositories in the store directory. Their ids are taken from the repository
+     * index where possible, so that the repository files need not be read.
+     */
     public List<String> getStoredRepos() {
         ensureDirectoryExists();
         try {
-            return Files.walk(Paths.get(RepoStore.directory), 1)
+            return RepoIndex.getStoredRepos(Files.walk(Paths.get(RepoStore.directory), 1)
                     .filter(Files::isRegularFile)
                     .filter(p -> getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("json"))
-                    .map(JSONStore::getRepositoryIdFromJson)
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .collect(Collectors.toList());
+                    .collect(Collectors.toList()));
         } catch (IOException e) {
             logger.error("Unable to open stored repository directory. ");
             return new ArrayList<>();
         }
     }
 
+    /**
+     * Rewrites a stored repository in this store's format, e.g. to convert existing
+     * JSON files to SnapshotFormat.BINARY.
+     * @return a future which completes with true on error
+     */
+    public CompletableFuture<Boolean> convertStoredRepo(String repoId) {
+        CompletableFuture<Boolean> response = new CompletableFuture<>();
+        addTask(new ConvertTask(repoId, format, response));
+        return response;
+    }
+
     public CompletableFuture<Boolean> removeStoredRepo(String repoId) {
         CompletableFuture<Boolean> response = new CompletableFuture<>();
         addTask(new DeleteTask(repoId, response));
         return response;
     }
 
-    private static Optional<String> getRepositoryIdFromJson(Path p) {
-        try {
-            String repoId = new Model(
-                    (SerializableModel) new Gson().fromJson(Utility.readFile(String.valueOf(p.toAbsolutePath())).get(),
-                            new TypeToken<SerializableModel>() {}.getType())).getRepoId();
-            if (String.valueOf(p.getFileName()).equalsIgnoreCase(escapeRepoName(repoId))) {
-                logger.info("Adding " + p.getFileName() + " to stored repository list. ");
-                return Optional.of(repoId);
-            }
-        } catch (NullPointerException | JsonParseException e) {
-            logger.error("Unable to load repository from " + p.getFileName());
-        }
-        return Optional.empty();
+    /**
+     * Returns true if saves are not written as soon as they are made (see WriteBehindJSONStore),
+     * in which case the futures returned by saveRepository may take a while to complete.
+     */
+    public boolean defersWrites() {
+        return false;
+    }
+
+    /**
+     * Writes any saves which this store has not written yet, and the repository index.
+     * @return a future which completes once they are written
+     */
+    public CompletableFuture<Void> flush() {
+        RepoIndex.flush();
+        return CompletableFuture.completedFuture(null);
     }
 }
@@ -1,9 +1,12 @@
 package backend.json;
 
+import backend.IssueMetadata;
 import backend.resource.serialization.SerializableModel;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -21,6 +24,16 @@ public class JSONStoreStub extends JSONStore {
         return CompletableFuture.completedFuture(false);
     }
 
+    @Override
+    public CompletableFuture<Map<Integer, IssueMetadata>> loadMetadata(String repoId) {
+        return CompletableFuture.completedFuture(new HashMap<>());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveMetadata(String repoId, Map<Integer, IssueMetadata> metadata) {
+        return CompletableFuture.completedFuture(false);
+    }
+
     @Override
     public List<String> getStoredRepos() {
         return new ArrayList<>();
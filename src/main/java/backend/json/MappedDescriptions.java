@@ -0,0 +1,227 @@
+package backend.json;
+
+import backend.interfaces.RepoStore;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The issue descriptions of a binary snapshot, memory-mapped rather than read onto the heap.
+ *
+ * Descriptions are decoded whenever they are asked for. The most recently used ones are kept
+ * in a small cache shared by all snapshots, so that e.g. the issue currently being viewed is
+ * not decoded over and over.
+ *
+ * Snapshots are not mapped themselves, as a mapped file cannot be replaced on some platforms
+ * (e.g. Windows) until it is unmapped, which only happens once no issue refers to it. Instead,
+ * the descriptions are copied (on disk, without reading them onto the heap) into a generation
+ * file of their own, which is mapped and never written again. The generation is reused by later
+ * loads of the snapshot until it is written again. Generation files which are no longer mapped are
+ * deleted when the repository is next mapped or removed.
+ *
+ * Descriptions which are saved again unchanged are written from their mapped bytes, without
+ * decoding them.
+ */
+final class MappedDescriptions {
+
+    private static final Logger logger = HTLog.get(MappedDescriptions.class);
+
+    static final int CACHE_SIZE = 128;
+
+    // Numbers the generation files mapped by this process, so that their names are unique
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static final Map<Description, String> cache = new LinkedHashMap<Description, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Description, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // The generation last mapped for each snapshot, keyed by its absolute path, which is reused until
+    // the snapshot is written again
+    private static final Map<Path, Generation> generations = new HashMap<>();
+
+    /**
+     * The part of a snapshot which a generation file was copied from.
+     */
+    private static final class Generation {
+        private final long offset;
+        private final long length;
+        private final MappedDescriptions descriptions;
+
+        Generation(long offset, long length, MappedDescriptions descriptions) {
+            this.offset = offset;
+            this.length = length;
+            this.descriptions = descriptions;
+        }
+    }
+
+    private final ByteBuffer region;
+
+    private MappedDescriptions(ByteBuffer region) {
+        this.region = region;
+    }
+
+    /**
+     * Maps the given part of a snapshot, which holds UTF-8 encoded descriptions back to back,
+     * by way of its current generation file if it has not been written since, or else a new one.
+     */
+    static MappedDescriptions map(Path file, long offset, long length) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        synchronized (generations) {
+            Generation current = generations.get(key);
+            if (current != null && current.offset == offset && current.length == length) {
+                return current.descriptions;
+            }
+        }
+
+        deleteGenerations(file);
+        Path generationFile = file.resolveSibling(
+            file.getFileName() + "." + generation.incrementAndGet() + RepoStore.MAPPED_DESCRIPTIONS_EXTENSION);
+        try (FileChannel snapshot = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel channel = FileChannel.open(generationFile, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long copied = 0;
+            while (copied < length) {
+                long transferred = snapshot.transferTo(offset + copied, length - copied, channel);
+                if (transferred <= 0) {
+                    throw new IOException("Description section of " + file.getFileName() + " is truncated");
+                }
+                copied += transferred;
+            }
+            MappedDescriptions descriptions =
+                new MappedDescriptions(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+            synchronized (generations) {
+                generations.put(key, new Generation(offset, length, descriptions));
+            }
+            return descriptions;
+        }
+    }
+
+    /**
+     * Stops the current generation of a snapshot from being reused, as the snapshot is about to be
+     * written again. The descriptions already mapped from it remain readable.
+     */
+    static void invalidate(Path file) {
+        synchronized (generations) {
+            generations.remove(file.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Deletes the generation files of a snapshot. Those which are still mapped may not be deletable,
+     * depending on the platform, and are left for a later attempt.
+     */
+    static void deleteGenerations(Path file) {
+        invalidate(file);
+        String prefix = file.getFileName() + ".";
+        try (DirectoryStream<Path> generations = Files.newDirectoryStream(file.toAbsolutePath().getParent(),
+            path -> path.getFileName().toString().startsWith(prefix)
+                && path.getFileName().toString().endsWith(RepoStore.MAPPED_DESCRIPTIONS_EXTENSION))) {
+            for (Path generationFile : generations) {
+                try {
+                    Files.deleteIfExists(generationFile);
+                } catch (IOException e) {
+                    logger.debug("Unable to delete " + generationFile.getFileName() + ", which may be mapped");
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to list mapped descriptions of " + file.getFileName());
+        }
+    }
+
+    ByteBuffer getRegion() {
+        return region;
+    }
+
+    /**
+     * Decodes the UTF-8 encoded text at the given position in a buffer, without changing the buffer.
+     */
+    static String decode(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.position(offset);
+        bytes.limit(offset + length);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    /**
+     * Returns the UTF-8 encoded bytes of a description, without decoding it, if it is read from
+     * a mapped region.
+     */
+    static Optional<byte[]> getEncoded(Supplier<String> source) {
+        if (!(source instanceof Description)) {
+            return Optional.empty();
+        }
+        Description description = (Description) source;
+        ByteBuffer bytes = description.getMapping().region.duplicate();
+        bytes.position(description.offset);
+        byte[] encoded = new byte[description.length];
+        bytes.get(encoded);
+        return Optional.of(encoded);
+    }
+
+    /**
+     * Returns a source for the description at the given position in the mapped region. Sources of
+     * the same description are equal, so issues may be compared without decoding it.
+     */
+    Supplier<String> get(int offset, int length) {
+        return new Description(offset, length);
+    }
+
+    private class Description implements Supplier<String> {
+        private final int offset;
+        private final int length;
+
+        Description(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public String get() {
+            synchronized (cache) {
+                String cached = cache.get(this);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            String description = decode(region, offset, length);
+            synchronized (cache) {
+                cache.put(this, description);
+            }
+            return description;
+        }
+
+        private MappedDescriptions getMapping() {
+            return MappedDescriptions.this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Description that = (Description) o;
+            return getMapping() == that.getMapping() && offset == that.offset && length == that.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(getMapping()) + offset) + length;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package backend.json;
+
+import backend.IssueMetadata;
+import backend.interfaces.RepoStore;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import github.TurboIssueEvent;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.egit.github.core.Comment;
+import util.HTLog;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The issue metadata (events, comments and their ETags) of a repository, as kept in the store
+ * next to the repository's file, so that it survives restarts.
+ *
+ * Metadata read from the cache is never considered the latest; it is there so that it can be
+ * revalidated with conditional requests using its ETags, rather than downloaded again.
+ */
+final class MetadataCache {
+
+    private static final Logger logger = HTLog.get(MetadataCache.class);
+
+    // Dates are kept as milliseconds, as the default format depends on the locale and drops milliseconds
+    private static final Gson gson = new GsonBuilder()
+        .registerTypeAdapter(Date.class, (JsonSerializer<Date>) (date, type, context) ->
+            new JsonPrimitive(date.getTime()))
+        .registerTypeAdapter(Date.class, (JsonDeserializer<Date>) (json, type, context) ->
+            new Date(json.getAsLong()))
+        .create();
+
+    /**
+     * The cached metadata of a single issue.
+     */
+    private static class Entry {
+        private final int issueId;
+        private final List<TurboIssueEvent> events;
+        private final List<Comment> comments;
+        private final String eventsETag;
+        private final String commentsETag;
+
+        Entry(int issueId, IssueMetadata metadata) {
+            this.issueId = issueId;
+            this.events = metadata.getEvents();
+            this.comments = metadata.getComments();
+            this.eventsETag = metadata.getEventsETag();
+            this.commentsETag = metadata.getCommentsETag();
+        }
+
+        private IssueMetadata toMetadata() {
+            return IssueMetadata.intermediate(
+                events == null ? new ArrayList<>() : events,
+                comments == null ? new ArrayList<>() : comments,
+                eventsETag == null ? "" : eventsETag,
+                commentsETag == null ? "" : commentsETag);
+        }
+    }
+
+    private final String repoId;
+    private final List<Entry> issues;
+
+    private MetadataCache(String repoId, List<Entry> issues) {
+        this.repoId = repoId;
+        this.issues = issues;
+    }
+
+    /**
+     * Reads the cached metadata of a repository, keyed by issue id.
+     * A missing or corrupted cache is treated as empty.
+     */
+    static Map<Integer, IssueMetadata> read(String repoId) {
+        Map<Integer, IssueMetadata> result = new HashMap<>();
+        Optional<String> contents = RepoStore.readMetadata(repoId);
+        if (!contents.isPresent()) {
+            return result;
+        }
+        try {
+            MetadataCache cache = gson.fromJson(contents.get(), MetadataCache.class);
+            if (cache != null && cache.issues != null && repoId.equalsIgnoreCase(cache.repoId)) {
+                cache.issues.forEach(entry -> result.put(entry.issueId, entry.toMetadata()));
+            }
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            logger.error(HTLog.format(repoId, "Metadata cache is corrupted; ignoring it"));
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the cached metadata of a repository.
+     * @return true on error in writing the cache
+     */
+    static boolean write(String repoId, Map<Integer, IssueMetadata> metadata) {
+        List<Entry> entries = new ArrayList<>();
+        metadata.forEach((issueId, issueMetadata) -> entries.add(new Entry(issueId, issueMetadata)));
+        return RepoStore.writeMetadata(repoId, gson.toJson(new MetadataCache(repoId, entries)));
+    }
+}
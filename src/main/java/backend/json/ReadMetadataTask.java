@@ -0,0 +1,22 @@
+package backend.json;
+
+import backend.IssueMetadata;
+import backend.interfaces.StoreTask;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+class ReadMetadataTask extends StoreTask {
+
+    public final CompletableFuture<Map<Integer, IssueMetadata>> response;
+
+    public ReadMetadataTask(String repoId, CompletableFuture<Map<Integer, IssueMetadata>> response) {
+        super(repoId);
+        this.response = response;
+    }
+
+    @Override
+    public void run() {
+        response.complete(MetadataCache.read(repoId));
+    }
+}
@@ -4,14 +4,15 @@ import backend.interfaces.RepoStore;
 import backend.interfaces.StoreTask;
 import backend.resource.Model;
 import backend.resource.serialization.SerializableModel;
-import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
-import com.google.gson.reflect.TypeToken;
 import org.apache.logging.log4j.Logger;
 import util.HTLog;
 import util.exceptions.JSONLoadException;
 import util.exceptions.RepoStoreException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -19,17 +20,19 @@ class ReadTask extends StoreTask {
 
     private static final Logger logger = HTLog.get(ReadTask.class);
 
+    public final boolean mapDescriptions;
     public final CompletableFuture<Model> response;
 
-    public ReadTask(String repoId, CompletableFuture<Model> response) {
+    public ReadTask(String repoId, boolean mapDescriptions, CompletableFuture<Model> response) {
         super(repoId);
+        this.mapDescriptions = mapDescriptions;
         this.response = response;
     }
 
     @Override
     public void run() {
         try {
-            Model model = load(repoId);
+            Model model = load(repoId, mapDescriptions);
             response.complete(model);
         } catch (RepoStoreException e) {
             logger.error(HTLog.format(repoId, "Unable to load from store"));
@@ -39,30 +42,44 @@ class ReadTask extends StoreTask {
 
     /**
      * Loads repository data from RepoStore into a new Model.
+     * The data is streamed from disk rather than read into memory first, and may be in any SnapshotFormat.
+     * It is checked against the checksum in the repository index first, so damaged files are not loaded.
      * @param repoId the string id of the repository to be loaded
+     * @param mapDescriptions whether issue descriptions should be memory-mapped where possible
      * @return a new Model containing data for the requested repository.
      * @throws JSONLoadException when the repository's JSON data cannot be
-     *         retrieved from the local store or is corrupted
+     *         retrieved from the local store, is corrupted or does not match its checksum
      */
-    private Model load(String repoId) throws RepoStoreException {
-        Optional<String> input = RepoStore.read(repoId);
+    static Model load(String repoId, boolean mapDescriptions) throws RepoStoreException {
+        Optional<Path> file = RepoStore.getRepoFile(repoId);
 
-        if (!input.isPresent()) {
+        if (!file.isPresent() || !Files.isRegularFile(file.get())) {
             logger.error("Unable to load " + repoId + " from JSON cache");
             throw new JSONLoadException();
-        } else {
-            logger.info(HTLog.format(repoId, "Data loaded from JSON cache"));
-
-            try {
-                SerializableModel sModel = new Gson().fromJson(input.get(),
-                        new TypeToken<SerializableModel>(){}.getType());
+        }
 
-                return new Model(sModel);
-            } catch (NullPointerException | JsonParseException e) {
-                logger.error(HTLog.format(repoId, "JSON data is corrupted"));
-                throw new JSONLoadException(e);
+        try {
+            if (!RepoIndex.hasValidChecksum(repoId, file.get())) {
+                logger.error(HTLog.format(repoId, "JSON cache does not match its checksum"));
+                throw new JSONLoadException();
             }
+            Model model = SnapshotFormat.read(file.get(), mapDescriptions);
+            logger.info(HTLog.format(repoId, "Data loaded from JSON cache"));
+            return model;
+        } catch (IOException | JsonParseException e) {
+            logger.error(HTLog.format(repoId, "JSON data is corrupted"));
+            throw new JSONLoadException(e);
         }
     }
-}
 
+    /**
+     * Loads repository data from RepoStore as Serializable- resources.
+     * @param repoId the string id of the repository to be loaded
+     * @return the deserialised repository data
+     * @throws JSONLoadException when the repository's JSON data cannot be
+     *         retrieved from the local store or is corrupted
+     */
+    static SerializableModel loadSerializableModel(String repoId) throws RepoStoreException {
+        return new SerializableModel(load(repoId, false));
+    }
+}
@@ -0,0 +1,81 @@
+package backend.json;
+
+import backend.interfaces.RepoStore;
+import backend.interfaces.StoreTask;
+import backend.resource.Model;
+import backend.resource.serialization.SerializableModel;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+import util.exceptions.RepoStoreException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads a repository from the incremental store by replaying its change log on top of its snapshot.
+ */
+class ReplayTask extends StoreTask {
+
+    private static final Logger logger = HTLog.get(ReplayTask.class);
+
+    public final ChangeLog changeLog;
+    public final CompletableFuture<Model> response;
+
+    public ReplayTask(String repoId, ChangeLog changeLog, CompletableFuture<Model> response) {
+        super(repoId);
+        this.changeLog = changeLog;
+        this.response = response;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Model model = new Model(replay(repoId, changeLog));
+            // Updates made to the loaded model may then be saved as their changes alone
+            changeLog.setPersistedVersion(model.getVersion());
+            response.complete(model);
+        } catch (RepoStoreException e) {
+            logger.error(HTLog.format(repoId, "Unable to load from store"));
+            response.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Reads the snapshot of a repository and applies every entry of its change log to it.
+     * The change log is then reset to the result.
+     *
+     * Replaying stops at the first entry which cannot be parsed, which happens if a previous append
+     * was interrupted, leaving a torn last line. The entries before it were flushed to disk when they
+     * were appended, so they are intact. The change log is invalidated in that case, so the next save
+     * writes a snapshot, which discards the torn line.
+     */
+    static SerializableModel replay(String repoId, ChangeLog changeLog) throws RepoStoreException {
+        SerializableModel model = ReadTask.loadSerializableModel(repoId);
+        List<String> entries = RepoStore.readChangeLog(repoId);
+        Gson gson = new Gson();
+
+        int replayed = 0;
+        for (String line : entries) {
+            try {
+                ChangeLogEntry entry = gson.fromJson(line, ChangeLogEntry.class);
+                if (entry == null) {
+                    throw new JsonParseException("Empty change log entry");
+                }
+                model = entry.applyTo(model);
+                replayed++;
+            } catch (NullPointerException | JsonParseException e) {
+                logger.error(HTLog.format(repoId, "Change log entry %d is corrupted; ignoring the rest", replayed));
+                break;
+            }
+        }
+        logger.info(HTLog.format(repoId, "Replayed %d change log entries", replayed));
+
+        changeLog.reset(model, replayed);
+        if (replayed < entries.size()) {
+            changeLog.invalidate();
+        }
+        return model;
+    }
+}
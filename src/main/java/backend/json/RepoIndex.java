@@ -0,0 +1,307 @@
+package backend.json;
+
+import backend.UpdateSignature;
+import backend.interfaces.RepoStore;
+import backend.resource.Model;
+import backend.resource.serialization.SerializableModel;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+import util.Utility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A manifest of the repositories in the store directory, kept in RepoStore.INDEX_FILE_NAME.
+ *
+ * For every stored repository it records the repository id, the name of its file, its issue count,
+ * its update signature and a checksum of the file, so that the stored repositories can be listed
+ * without reading their files. When the repositories are listed, an entry is trusted only if the size
+ * and modification time of its file are the ones recorded; otherwise it is rebuilt from the file.
+ * When a repository is loaded, its file is checked against the checksum of its entry, if it has one,
+ * so that files damaged after they were written (e.g. truncated) are not loaded.
+ *
+ * The index is read once for each store directory and kept in memory. Saves only change it there;
+ * it is written when the repositories are listed (on startup) and when flush() is called (on quit).
+ * Entries left out of date by a crash in between are rebuilt the next time the repositories are listed.
+ * Access is synchronised as it happens both in store tasks and on the caller's thread.
+ */
+final class RepoIndex {
+
+    private static final Logger logger = HTLog.get(RepoIndex.class);
+
+    private static final Object lock = new Object();
+
+    // The index of the store directory last used, keyed by file name, and whether it has unwritten changes
+    private static Optional<Path> loadedIndexFile = Optional.empty();
+    private static Map<String, Entry> loadedIndex = new LinkedHashMap<>();
+    private static boolean isDirty = false;
+
+    /**
+     * The index entry of a single stored repository.
+     */
+    static class Entry {
+        public final String repoId;
+        public final String fileName;
+        public final int issueCount;
+        public final UpdateSignature updateSignature;
+        public final String checksum;
+
+        // Fingerprint of the file at the time the entry was made
+        public final long fileSize;
+        public final long lastModified;
+
+        Entry(String repoId, String fileName, int issueCount, UpdateSignature updateSignature,
+              String checksum, long fileSize, long lastModified) {
+            this.repoId = repoId;
+            this.fileName = fileName;
+            this.issueCount = issueCount;
+            this.updateSignature = updateSignature;
+            this.checksum = checksum;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+        }
+
+        private Entry withContents(int issueCount, UpdateSignature updateSignature) {
+            return new Entry(repoId, fileName, issueCount, updateSignature, checksum, fileSize, lastModified);
+        }
+
+        /**
+         * Returns true if the file has not changed since this entry was made.
+         */
+        private boolean isCurrent(Path file) throws IOException {
+            return Files.size(file) == fileSize && Files.getLastModifiedTime(file).toMillis() == lastModified;
+        }
+
+        /**
+         * Creates an entry describing a repository file.
+         */
+        private static Entry of(Path file, String repoId, int issueCount, UpdateSignature updateSignature)
+            throws IOException {
+
+            long fileSize = Files.size(file);
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            return new Entry(repoId, String.valueOf(file.getFileName()), issueCount, updateSignature,
+                checksum(file), fileSize, lastModified);
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private RepoIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    @SuppressWarnings("unused")
+    private void ______STORE_OPERATIONS______() {}
+
+    /**
+     * Lists the ids of the repositories stored in the given files, using the index where it is
+     * up to date and rebuilding it where it is not.
+     * @param files the repository files in the store directory
+     */
+    static List<String> getStoredRepos(List<Path> files) {
+        synchronized (lock) {
+            Map<String, Entry> index = index();
+            Map<String, Entry> updated = new LinkedHashMap<>();
+            List<String> repoIds = new ArrayList<>();
+
+            for (Path file : files) {
+                String fileName = String.valueOf(file.getFileName());
+                Optional<Entry> entry = getCurrentEntry(index.get(fileName), file);
+                if (!entry.isPresent()) {
+                    entry = rebuild(file);
+                }
+                if (entry.isPresent()) {
+                    updated.put(fileName, entry.get());
+                    if (fileName.equalsIgnoreCase(RepoStore.escapeRepoName(entry.get().repoId))) {
+                        logger.info("Adding " + fileName + " to stored repository list. ");
+                        repoIds.add(entry.get().repoId);
+                    }
+                }
+            }
+
+            boolean isIndexFileMissing = loadedIndexFile.isPresent() && !Files.isRegularFile(loadedIndexFile.get());
+            if (!updated.equals(index) || isIndexFileMissing) {
+                index.clear();
+                index.putAll(updated);
+                isDirty = true;
+            }
+            writeIfDirty();
+            return repoIds;
+        }
+    }
+
+    /**
+     * Records the state of a repository after it was saved.
+     * @param model the model which was saved
+     * @param fileWritten whether the repository's file was rewritten, as opposed to the
+     *                    save being recorded elsewhere (e.g. in a change log)
+     */
+    static void recordSave(String repoId, SerializableModel model, boolean fileWritten) {
+        String fileName = RepoStore.escapeRepoName(repoId);
+        Optional<Path> file = RepoStore.getRepoFile(repoId);
+
+        // The file is read for its checksum outside the lock, so saves of other repositories need not wait
+        Optional<Entry> written = Optional.empty();
+        boolean isIndexable = file.isPresent() && Files.isRegularFile(file.get());
+        if (isIndexable && fileWritten) {
+            try {
+                written = Optional.of(Entry.of(file.get(), repoId, model.issues.size(), model.updateSignature));
+            } catch (IOException e) {
+                logger.error(HTLog.format(repoId, "Unable to index stored repository"), e);
+                isIndexable = false;
+            }
+        }
+
+        synchronized (lock) {
+            Map<String, Entry> index = index();
+            Entry existing = index.get(fileName);
+            if (!isIndexable) {
+                // Possibly moved aside as corrupted
+                index.remove(fileName);
+            } else if (written.isPresent()) {
+                index.put(fileName, written.get());
+            } else if (existing != null) {
+                index.put(fileName, existing.withContents(model.issues.size(), model.updateSignature));
+            }
+            isDirty = true;
+        }
+    }
+
+    static void recordRemoval(String repoId) {
+        synchronized (lock) {
+            if (index().remove(RepoStore.escapeRepoName(repoId)) != null) {
+                isDirty = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the index, if it has changed since it was last written.
+     */
+    static void flush() {
+        synchronized (lock) {
+            writeIfDirty();
+        }
+    }
+
+    /**
+     * Returns the index entry of a repository, if there is one.
+     */
+    static Optional<Entry> getEntry(String repoId) {
+        synchronized (lock) {
+            return Optional.ofNullable(index().get(RepoStore.escapeRepoName(repoId)));
+        }
+    }
+
+    /**
+     * Checks a repository file against the checksum recorded when it was written, whatever its size and
+     * modification time, as damage such as truncation changes them. Files which have no index entry
+     * (e.g. as they were put in the store directory by hand) cannot be checked and are assumed to be intact.
+     * @return false if the file's contents are known to differ from what was written
+     */
+    static boolean hasValidChecksum(String repoId, Path file) throws IOException {
+        Optional<Entry> entry = getEntry(repoId);
+        if (!entry.isPresent() || entry.get().checksum == null) {
+            return true;
+        }
+        return entry.get().checksum.equals(checksum(file));
+    }
+
+    /**
+     * Computes the checksum recorded for a repository file.
+     */
+    static String checksum(Path file) throws IOException {
+        return com.google.common.io.Files.hash(file.toFile(), Hashing.crc32()).toString();
+    }
+
+    @SuppressWarnings("unused")
+    private void ______INDEX_FILE______() {}
+
+    private static Optional<Entry> getCurrentEntry(Entry entry, Path file) {
+        try {
+            if (entry != null && entry.isCurrent(file)) {
+                return Optional.of(entry);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to check " + file.getFileName() + " against repository index");
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reads a repository file in full to create its index entry.
+     */
+    private static Optional<Entry> rebuild(Path file) {
+        logger.info("Indexing " + file.getFileName());
+        try {
+            Model model = SnapshotFormat.read(file, false);
+            return Optional.of(Entry.of(file, model.getRepoId(), model.getIssues().size(),
+                model.getUpdateSignature()));
+        } catch (IOException | JsonParseException e) {
+            logger.error("Unable to load repository from " + file.getFileName());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the index of the current store directory, keyed by file name, reading it if the directory
+     * has changed since it was last used. Must be called holding the lock.
+     */
+    private static Map<String, Entry> index() {
+        Optional<Path> indexFile = RepoStore.getIndexFile();
+        if (!indexFile.equals(loadedIndexFile)) {
+            writeIfDirty();
+            loadedIndexFile = indexFile;
+            loadedIndex = read(indexFile);
+            isDirty = false;
+        }
+        return loadedIndex;
+    }
+
+    private static void writeIfDirty() {
+        if (isDirty) {
+            loadedIndexFile.ifPresent(indexFile -> write(indexFile, loadedIndex));
+            isDirty = false;
+        }
+    }
+
+    /**
+     * Reads an index file, keyed by file name. A missing or corrupted index is treated as empty.
+     */
+    private static Map<String, Entry> read(Optional<Path> indexFile) {
+        Map<String, Entry> index = new LinkedHashMap<>();
+        if (!indexFile.isPresent() || !Files.isRegularFile(indexFile.get())) {
+            return index;
+        }
+        try {
+            RepoIndex repoIndex = new Gson().fromJson(
+                Utility.readFile(indexFile.get().toString()).orElse(""), RepoIndex.class);
+            if (repoIndex != null && repoIndex.entries != null) {
+                repoIndex.entries.stream()
+                    .filter(entry -> entry.fileName != null && entry.repoId != null)
+                    .forEach(entry -> index.put(entry.fileName, entry));
+            }
+        } catch (JsonParseException e) {
+            logger.error("Repository index is corrupted; rebuilding it");
+        }
+        return index;
+    }
+
+    private static void write(Path indexFile, Map<String, Entry> index) {
+        String output = new Gson().toJson(new RepoIndex(new ArrayList<>(index.values())));
+        if (Utility.writeFile(indexFile.toString(), output, 0)) {
+            logger.error("Unable to write repository index");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package backend.json;
+
+import backend.interfaces.RepoStore;
+import backend.resource.Model;
+import backend.resource.serialization.SerializableModel;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The formats in which a JSONStore may write repository snapshots.
+ *
+ * Snapshots keep the same file name whatever their format, and are read according to the format
+ * found in the file, so a store may be switched from one format to another at any time.
+ */
+public enum SnapshotFormat {
+    /**
+     * Gson's serialisation of SerializableModel.
+     */
+    JSON,
+
+    /**
+     * The compact encoding of BinarySnapshot.
+     */
+    BINARY;
+
+    /**
+     * Writes a snapshot of a repository in this format.
+     * @return true on JSON corruption, as with RepoStore.write
+     */
+    boolean write(String repoId, SerializableModel model) {
+        // Later loads map the descriptions of the new snapshot rather than those of the old one
+        RepoStore.getRepoFile(repoId).ifPresent(MappedDescriptions::invalidate);
+        switch (this) {
+            case BINARY:
+                return RepoStore.write(repoId, BinarySnapshot.serialize(model), model.issues.size());
+            case JSON:
+            default:
+                return RepoStore.write(repoId, new Gson().toJson(model), model.issues.size());
+        }
+    }
+
+    /**
+     * Reads a snapshot in whichever format it was written.
+     * @param mapDescriptions whether issue descriptions should be memory-mapped where the format allows it
+     */
+    static Model read(Path file, boolean mapDescriptions) throws IOException {
+        return BinarySnapshot.isBinary(file)
+            ? BinarySnapshot.read(file, mapDescriptions)
+            : StreamingModelReader.read(file);
+    }
+}
@@ -0,0 +1,450 @@
+package backend.json;
+
+import backend.UpdateSignature;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads a repository stored in the format written by WriteTask (a Gson-serialised SerializableModel)
+ * directly into a Model, token by token.
+ *
+ * Unlike deserialising with Gson, neither the file contents as a string nor the intermediate
+ * Serializable- resources are ever held in memory, so loading a large repository needs roughly
+ * one copy of it on the heap rather than three.
+ *
+ * Since resources are constructed as they are read, repoId has to precede them in the file.
+ * This is always the case for files written by Gson, which follows field declaration order.
+ */
+final class StreamingModelReader {
+
+    private static final String REPO_ID = "repoId";
+    private static final String UPDATE_SIGNATURE = "updateSignature";
+    private static final String ISSUES = "issues";
+    private static final String LABELS = "labels";
+    private static final String MILESTONES = "milestones";
+    private static final String USERS = "users";
+
+    private final Gson gson = new Gson();
+    private final JsonReader reader;
+
+    private StreamingModelReader(JsonReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the repository stored in the given file.
+     * @throws IOException if the file cannot be read or is malformed
+     * @throws JsonParseException if the file does not describe a repository
+     */
+    public static Model read(Path file) throws IOException {
+        try (JsonReader reader = open(file)) {
+            return new StreamingModelReader(reader).readModel();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new JsonParseException(e);
+        }
+    }
+
+    private static JsonReader open(Path file) throws IOException {
+        return new JsonReader(new InputStreamReader(
+            new BufferedInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unused")
+    private void ______RESOURCES______() {}
+
+    private Model readModel() throws IOException {
+        String repoId = null;
+        UpdateSignature updateSignature = UpdateSignature.EMPTY;
+        List<TurboIssue> issues = new ArrayList<>();
+        List<TurboLabel> labels = new ArrayList<>();
+        List<TurboMilestone> milestones = new ArrayList<>();
+        List<TurboUser> users = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (isNull()) {
+                continue;
+            }
+            switch (name) {
+                case REPO_ID:
+                    repoId = reader.nextString();
+                    break;
+                case UPDATE_SIGNATURE:
+                    updateSignature = gson.fromJson(reader, UpdateSignature.class);
+                    break;
+                case ISSUES:
+                    readArray(issues, requireRepoId(repoId), this::readIssue);
+                    break;
+                case LABELS:
+                    readArray(labels, requireRepoId(repoId), this::readLabel);
+                    break;
+                case MILESTONES:
+                    readArray(milestones, requireRepoId(repoId), this::readMilestone);
+                    break;
+                case USERS:
+                    readArray(users, requireRepoId(repoId), this::readUser);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return new Model(requireRepoId(repoId), issues, labels, milestones, users, updateSignature);
+    }
+
+    private static String requireRepoId(String repoId) {
+        if (repoId == null) {
+            throw new JsonParseException("Repository id must precede repository resources");
+        }
+        return repoId;
+    }
+
+    @FunctionalInterface
+    private interface ResourceReader<T> {
+        T read(String repoId) throws IOException;
+    }
+
+    private <T> void readArray(List<T> into, String repoId, ResourceReader<T> readResource) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            into.add(readResource.read(repoId));
+        }
+        reader.endArray();
+    }
+
+    private TurboIssue readIssue(String repoId) throws IOException {
+        // Defaults are the same as SerializableIssue's
+        int id = 0;
+        String title = "";
+        String creator = "";
+        LocalDateTime createdAt = LocalDateTime.now();
+        boolean isPullRequest = false;
+        String description = "";
+        LocalDateTime updatedAt = LocalDateTime.now();
+        int commentCount = 0;
+        boolean isOpen = true;
+        Optional<String> assignee = Optional.empty();
+        List<String> labels = new ArrayList<>();
+        Optional<Integer> milestone = Optional.empty();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (isNull()) {
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = reader.nextInt();
+                    break;
+                case "title":
+                    title = reader.nextString();
+                    break;
+                case "creator":
+                    creator = reader.nextString();
+                    break;
+                case "createdAt":
+                    createdAt = readLocalDateTime();
+                    break;
+                case "isPullRequest":
+                    isPullRequest = reader.nextBoolean();
+                    break;
+                case "description":
+                    description = reader.nextString();
+                    break;
+                case "updatedAt":
+                    updatedAt = readLocalDateTime();
+                    break;
+                case "commentCount":
+                    commentCount = reader.nextInt();
+                    break;
+                case "isOpen":
+                    isOpen = reader.nextBoolean();
+                    break;
+                case "assignee":
+                    assignee = readOptional(reader::nextString);
+                    break;
+                case "labels":
+                    labels = readStrings();
+                    break;
+                case "milestone":
+                    milestone = readOptional(reader::nextInt);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return new TurboIssue(repoId, id, title, creator, createdAt, isPullRequest,
+            description, updatedAt, commentCount, isOpen, assignee, labels, milestone);
+    }
+
+    private TurboLabel readLabel(String repoId) throws IOException {
+        String fullName = "";
+        String colour = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (isNull()) {
+                continue;
+            }
+            switch (name) {
+                case "fullName":
+                    fullName = reader.nextString();
+                    break;
+                case "colour":
+                    colour = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return new TurboLabel(repoId, colour, fullName);
+    }
+
+    private TurboMilestone readMilestone(String repoId) throws IOException {
+        int id = 0;
+        String title = null;
+        Optional<LocalDate> dueDate = null;
+        String description = null;
+        boolean isOpen = false;
+        int openIssues = 0;
+        int closedIssues = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (isNull()) {
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = reader.nextInt();
+                    break;
+                case "title":
+                    title = reader.nextString();
+                    break;
+                case "dueDate":
+                    dueDate = readOptional(this::readLocalDate);
+                    break;
+                case "description":
+                    description = reader.nextString();
+                    break;
+                case "isOpen":
+                    isOpen = reader.nextBoolean();
+                    break;
+                case "openIssues":
+                    openIssues = reader.nextInt();
+                    break;
+                case "closedIssues":
+                    closedIssues = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        // SerializableMilestone has no defaults, so absent fields are left as Gson would leave them
+        TurboMilestone milestone = new TurboMilestone(repoId, id, title);
+        milestone.setDueDate(dueDate);
+        milestone.setDescription(description);
+        milestone.setOpen(isOpen);
+        milestone.setOpenIssues(openIssues);
+        milestone.setClosedIssues(closedIssues);
+        return milestone;
+    }
+
+    private TurboUser readUser(String repoId) throws IOException {
+        String loginName = "";
+        String realName = "";
+        String avatarURL = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (isNull()) {
+                continue;
+            }
+            switch (name) {
+                case "loginName":
+                    loginName = reader.nextString();
+                    break;
+                case "realName":
+                    realName = reader.nextString();
+                    break;
+                case "avatarURL":
+                    avatarURL = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return new TurboUser(repoId, loginName, realName, avatarURL);
+    }
+
+    /**
+     * Values which Gson serialises reflectively are read back according to the structure
+     * of their classes' fields.
+     */
+    @SuppressWarnings("unused")
+    private void ______VALUES______() {}
+
+    @FunctionalInterface
+    private interface ValueReader<T> {
+        T read() throws IOException;
+    }
+
+    /**
+     * Returns true (consuming the value) if the next value is null.
+     */
+    private boolean isNull() throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    private List<String> readStrings() throws IOException {
+        List<String> result = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            result.add(reader.nextString());
+        }
+        reader.endArray();
+        return result;
+    }
+
+    /**
+     * Optional is serialised as {"value": ...}, or {} when empty.
+     */
+    private <T> Optional<T> readOptional(ValueReader<T> readValue) throws IOException {
+        T value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("value") && !isNull()) {
+                value = readValue.read();
+            } else if (!name.equals("value")) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * LocalDateTime is serialised as {"date": {LocalDate}, "time": {LocalTime}}.
+     */
+    private LocalDateTime readLocalDateTime() throws IOException {
+        LocalDate date = LocalDate.MIN;
+        LocalTime time = LocalTime.MIDNIGHT;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("date")) {
+                date = readLocalDate();
+            } else if (name.equals("time")) {
+                time = readLocalTime();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return LocalDateTime.of(date, time);
+    }
+
+    /**
+     * LocalDate is serialised as {"year": ..., "month": ..., "day": ...}.
+     */
+    private LocalDate readLocalDate() throws IOException {
+        int year = 0;
+        int month = 1;
+        int day = 1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "year":
+                    year = reader.nextInt();
+                    break;
+                case "month":
+                    month = reader.nextInt();
+                    break;
+                case "day":
+                    day = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return LocalDate.of(year, month, day);
+    }
+
+    /**
+     * LocalTime is serialised as {"hour": ..., "minute": ..., "second": ..., "nano": ...}.
+     */
+    private LocalTime readLocalTime() throws IOException {
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int nano = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "hour":
+                    hour = reader.nextInt();
+                    break;
+                case "minute":
+                    minute = reader.nextInt();
+                    break;
+                case "second":
+                    second = reader.nextInt();
+                    break;
+                case "nano":
+                    nano = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return LocalTime.of(hour, minute, second, nano);
+    }
+}
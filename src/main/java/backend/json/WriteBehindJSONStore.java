@@ -0,0 +1,210 @@
+package backend.json;
+
+import backend.IssueMetadata;
+import backend.resource.Model;
+import backend.resource.serialization.SerializableModel;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JSONStore which holds back saves for a while before passing them on to another store,
+ * so that a burst of saves to the same repository (e.g. a refresh, a label change and a
+ * metadata fetch in quick succession) results in a single write.
+ *
+ * The first save of a repository is written delayMillis after it was made. Saves of the
+ * same repository made in the meantime replace the pending model rather than adding writes,
+ * and their futures complete along with the single write. Only the future of the first save
+ * reports the write as corrupted, so that a corrupted write is dealt with once, not once for
+ * every save merged into it. Pending saves are written early
+ * when the repository is loaded, converted, or when flush() is called (e.g. on quit), and are
+ * dropped when it is removed.
+ *
+ * Repository ids are compared case-insensitively, as they may refer to the same file.
+ */
+public class WriteBehindJSONStore extends JSONStore {
+
+    private static final Logger logger = HTLog.get(WriteBehindJSONStore.class);
+
+    public static final long DEFAULT_DELAY_MILLIS = 5000;
+
+    private final JSONStore store;
+    private final long delayMillis;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WriteBehindJSONStore");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Mutable state -- all access to these fields must be synchronized on pendingWrites
+    private final Map<String, PendingWrite> pendingWrites = new HashMap<>();
+    private long savesRequested = 0;
+    private long writesSaved = 0;
+
+    /**
+     * A save which has not been passed on to the underlying store yet.
+     */
+    private static class PendingWrite {
+        private final String repoId;
+        private SerializableModel model;
+        private final CompletableFuture<Boolean> response = new CompletableFuture<>();
+        private ScheduledFuture<?> flushTimer;
+
+        PendingWrite(String repoId, SerializableModel model) {
+            this.repoId = repoId;
+            this.model = model;
+        }
+    }
+
+    public WriteBehindJSONStore(JSONStore store) {
+        this(store, DEFAULT_DELAY_MILLIS);
+    }
+
+    /**
+     * @param store the store to which saves are passed on
+     * @param delayMillis how long a save is held back for; DEFAULT_DELAY_MILLIS is used if it is not positive
+     */
+    public WriteBehindJSONStore(JSONStore store, long delayMillis) {
+        super(store.getSnapshotFormat());
+        this.store = store;
+        this.delayMillis = delayMillis > 0 ? delayMillis : DEFAULT_DELAY_MILLIS;
+    }
+
+    /**
+     * Saves are acknowledged once they are written, which may be much later than they were made,
+     * so callers should not wait for them.
+     */
+    @Override
+    public boolean defersWrites() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<Model> loadRepository(String repoId) {
+        flush(repoId);
+        return store.loadRepository(repoId);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveRepository(String repoId, SerializableModel model) {
+        String key = repoId.toLowerCase();
+        synchronized (pendingWrites) {
+            savesRequested++;
+            PendingWrite pending = pendingWrites.get(key);
+            if (pending != null) {
+                writesSaved++;
+                pending.model = model.replacing(pending.model);
+                return pending.response.thenApply(corruptedJson -> false);
+            }
+            PendingWrite write = new PendingWrite(repoId, model);
+            pendingWrites.put(key, write);
+            write.flushTimer = timer.schedule(() -> flush(repoId), delayMillis, TimeUnit.MILLISECONDS);
+            return write.response;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, IssueMetadata>> loadMetadata(String repoId) {
+        return store.loadMetadata(repoId);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveMetadata(String repoId, Map<Integer, IssueMetadata> metadata) {
+        return store.saveMetadata(repoId, metadata);
+    }
+
+    @Override
+    public List<String> getStoredRepos() {
+        return store.getStoredRepos();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> convertStoredRepo(String repoId) {
+        flush(repoId);
+        return store.convertStoredRepo(repoId);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeStoredRepo(String repoId) {
+        takePendingWrite(repoId).ifPresent(pending -> pending.response.complete(false));
+        return store.removeStoredRepo(repoId);
+    }
+
+    /**
+     * Passes the pending save of a repository, if any, on to the underlying store.
+     * @return a future which completes with true on error in writing the repository
+     */
+    public CompletableFuture<Boolean> flush(String repoId) {
+        Optional<PendingWrite> pending = takePendingWrite(repoId);
+        if (!pending.isPresent()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        PendingWrite write = pending.get();
+        logger.info(HTLog.format(write.repoId, "Writing pending save to store"));
+        store.saveRepository(write.repoId, write.model).whenComplete((corruptedJson, failure) -> {
+            if (failure == null) {
+                write.response.complete(corruptedJson);
+            } else {
+                write.response.completeExceptionally(failure);
+            }
+        });
+        return write.response;
+    }
+
+    /**
+     * Passes every pending save on to the underlying store, then flushes it. Should be called before quitting,
+     * as pending saves are otherwise lost.
+     * @return a future which completes once all pending saves are written
+     */
+    @Override
+    public CompletableFuture<Void> flush() {
+        List<String> repoIds;
+        synchronized (pendingWrites) {
+            repoIds = new ArrayList<>();
+            pendingWrites.values().forEach(pending -> repoIds.add(pending.repoId));
+        }
+        return CompletableFuture.allOf(repoIds.stream()
+            .map(this::flush)
+            .toArray(CompletableFuture[]::new))
+            .thenCompose(done -> store.flush());
+    }
+
+    /**
+     * Returns the number of saves made to this store.
+     */
+    public long getSavesRequested() {
+        synchronized (pendingWrites) {
+            return savesRequested;
+        }
+    }
+
+    /**
+     * Returns the number of saves which were merged into another pending save instead of being written.
+     */
+    public long getWritesSaved() {
+        synchronized (pendingWrites) {
+            return writesSaved;
+        }
+    }
+
+    private Optional<PendingWrite> takePendingWrite(String repoId) {
+        synchronized (pendingWrites) {
+            PendingWrite pending = pendingWrites.remove(repoId.toLowerCase());
+            if (pending != null) {
+                pending.flushTimer.cancel(false);
+            }
+            return Optional.ofNullable(pending);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package backend.json;
+
+import backend.IssueMetadata;
+import backend.interfaces.StoreTask;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+class WriteMetadataTask extends StoreTask {
+
+    private static final Logger logger = HTLog.get(WriteMetadataTask.class);
+
+    public final Map<Integer, IssueMetadata> toSave;
+    public final CompletableFuture<Boolean> response;
+
+    public WriteMetadataTask(String repoId, Map<Integer, IssueMetadata> toSave, CompletableFuture<Boolean> response) {
+        super(repoId);
+        this.toSave = toSave;
+        this.response = response;
+    }
+
+    @Override
+    public void run() {
+        boolean writeFailed = MetadataCache.write(repoId, toSave);
+        logger.info(HTLog.format(repoId, "Metadata of " + toSave.size() + " issues written to store"));
+        response.complete(writeFailed);
+    }
+}
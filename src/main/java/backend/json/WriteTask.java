@@ -1,10 +1,7 @@
 package backend.json;
 
-import backend.interfaces.RepoStore;
 import backend.interfaces.StoreTask;
 import backend.resource.serialization.SerializableModel;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.apache.logging.log4j.Logger;
 import util.HTLog;
 
@@ -15,11 +12,14 @@ class WriteTask extends StoreTask {
     private static final Logger logger = HTLog.get(WriteTask.class);
 
     public final SerializableModel toSave;
+    public final SnapshotFormat format;
     public final CompletableFuture<Boolean> response;
 
-    public WriteTask(String repoName, SerializableModel toSave, CompletableFuture<Boolean> response) {
+    public WriteTask(String repoName, SerializableModel toSave, SnapshotFormat format,
+                     CompletableFuture<Boolean> response) {
         super(repoName);
         this.toSave = toSave;
+        this.format = format;
         this.response = response;
     }
 
@@ -29,8 +29,8 @@ class WriteTask extends StoreTask {
     }
 
     private boolean save(String repoId, SerializableModel model) {
-        String output = new Gson().toJson(model);
-        boolean corruptedJson = RepoStore.write(repoId, output, model.issues.size());
+        boolean corruptedJson = format.write(repoId, model);
+        RepoIndex.recordSave(repoId, model, true);
         logger.info(HTLog.format(repoId, "Written to JSON store"));
         return corruptedJson;
     }
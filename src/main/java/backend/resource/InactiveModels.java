@@ -0,0 +1,92 @@
+package backend.resource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Models of repositories which are no longer used by any panel (e.g. those only used by other boards),
+ * kept in memory so that switching back to them does not reload them.
+ *
+ * The models are kept within a limit on the memory they take, as estimated by Model.estimateSize (which
+ * counts the metadata of issues, i.e. their events and comments). Once it is exceeded, the least recently
+ * used models are dropped, leaving their snapshots in the store (and their summaries in its index) to be
+ * loaded again when needed.
+ *
+ * Not thread-safe; MultiModel synchronises access to it.
+ */
+class InactiveModels {
+
+    private static final Logger logger = LogManager.getLogger(InactiveModels.class.getName());
+
+    private final long byteBudget;
+
+    // Keyed by lower-cased repo id, in access order
+    private final LinkedHashMap<String, Model> models = new LinkedHashMap<>(16, 0.75f, true);
+    // The estimated sizes of the models, which do not change while they are inactive
+    private final Map<String, Long> sizes = new HashMap<>();
+    private long size = 0;
+
+    /**
+     * @param byteBudget the most memory the models may take in total
+     */
+    InactiveModels(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Keeps a model which has been deactivated, dropping the least recently used models if they no longer
+     * fit in the budget as a result.
+     */
+    void add(Model model) {
+        remove(model.getRepoId());
+        String key = model.getRepoId().toLowerCase();
+        long modelSize = model.estimateSize();
+        models.put(key, model);
+        sizes.put(key, modelSize);
+        size += modelSize;
+        trim();
+    }
+
+    /**
+     * Drops the least recently used models until the rest fit in the budget.
+     */
+    private void trim() {
+        Iterator<Map.Entry<String, Model>> leastRecentlyUsed = models.entrySet().iterator();
+        while (size > byteBudget && leastRecentlyUsed.hasNext()) {
+            Map.Entry<String, Model> evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            size -= sizes.remove(evicted.getKey());
+            logger.info("Paged out " + evicted.getValue().getRepoId()
+                + "; it will be loaded from the store when needed");
+        }
+    }
+
+    /**
+     * Takes the model of a repository out, e.g. to make it active again.
+     */
+    Optional<Model> remove(String repoId) {
+        String key = repoId.toLowerCase();
+        Model model = models.remove(key);
+        if (model != null) {
+            size -= sizes.remove(key);
+        }
+        return Optional.ofNullable(model);
+    }
+
+    boolean contains(String repoId) {
+        return models.containsKey(repoId.toLowerCase());
+    }
+
+    /**
+     * Returns the estimated memory taken by the models, in bytes.
+     */
+    long getSize() {
+        return size;
+    }
+}
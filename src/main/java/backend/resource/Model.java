@@ -5,11 +5,14 @@ import backend.interfaces.IBaseModel;
 import backend.resource.serialization.SerializableModel;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import util.Utility;
+import util.PersistentSortedMap;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @SuppressWarnings("unused")
@@ -17,26 +20,63 @@ public class Model implements IBaseModel {
 
     private final UpdateSignature updateSignature;
     private final String repoId;
-    private final List<TurboIssue> issues;
-    private final List<TurboLabel> labels;
-    private final List<TurboMilestone> milestones;
-    private final List<TurboUser> users;
+
+    // Persistent maps, so that a model updated with a few changes shares most of its structure with this one,
+    // and lookups, which are made for every issue whenever panels are filtered, take O(log n)
+    private final PersistentSortedMap<Integer, TurboIssue> issues;
+    private final PersistentSortedMap<String, TurboLabel> labels;
+    private final PersistentSortedMap<Integer, TurboMilestone> milestones;
+    private final PersistentSortedMap<String, TurboMilestone> milestonesByTitle;
+    private final PersistentSortedMap<String, TurboUser> users;
+
+    // The changes from the model this one was updated from, if it was made by an update, and that model's version
+    private final Optional<ModelChanges> changes;
+    private final long changesBaseVersion;
+
+    // Stamps the contents of this model; see getVersion
+    private final long version;
+
+    // The estimate of the memory taken by this model, worked out when first needed; negative until then
+    private volatile long estimatedSize = -1;
+
+    private static final AtomicLong nextVersion = new AtomicLong(0);
+
+    // A rough size in bytes of a label, milestone or user, for estimating memory use
+    private static final long RESOURCE_SIZE = 200;
 
     private static final Logger logger = LogManager.getLogger(Model.class);
 
     /**
-     * Standard constructor.
+     * Standard constructor. The resources are kept by their keys (see getIssues etc.), so they are returned
+     * in key order rather than the order given, and of resources with the same key, only the first is kept.
      */
     public Model(String repoId, List<TurboIssue> issues,
         List<TurboLabel> labels, List<TurboMilestone> milestones, List<TurboUser> users,
         UpdateSignature updateSignature) {
 
+        this(repoId, PersistentSortedMap.of(issues, TurboIssue::getId),
+            PersistentSortedMap.of(labels, TurboLabel::getFullName),
+            PersistentSortedMap.of(milestones, TurboMilestone::getId),
+            PersistentSortedMap.of(milestones, TurboMilestone::getTitle),
+            PersistentSortedMap.of(users, TurboUser::getLoginName),
+            updateSignature, Optional.empty(), 0, nextVersion.incrementAndGet());
+    }
+
+    private Model(String repoId, PersistentSortedMap<Integer, TurboIssue> issues,
+        PersistentSortedMap<String, TurboLabel> labels, PersistentSortedMap<Integer, TurboMilestone> milestones,
+        PersistentSortedMap<String, TurboMilestone> milestonesByTitle, PersistentSortedMap<String, TurboUser> users,
+        UpdateSignature updateSignature, Optional<ModelChanges> changes, long changesBaseVersion, long version) {
+
         this.updateSignature = updateSignature;
         this.repoId = repoId;
         this.issues = issues;
         this.labels = labels;
         this.milestones = milestones;
+        this.milestonesByTitle = milestonesByTitle;
         this.users = users;
+        this.changes = changes;
+        this.changesBaseVersion = changesBaseVersion;
+        this.version = version;
     }
 
     /**
@@ -46,53 +86,39 @@ public class Model implements IBaseModel {
     public Model(String repoId, List<TurboIssue> issues,
         List<TurboLabel> labels, List<TurboMilestone> milestones, List<TurboUser> users) {
 
-        this.updateSignature = UpdateSignature.EMPTY;
-        this.repoId = repoId;
-        this.issues = issues;
-        this.labels = labels;
-        this.milestones = milestones;
-        this.users = users;
+        this(repoId, issues, labels, milestones, users, UpdateSignature.EMPTY);
     }
 
     /**
      * Constructor for the empty model.
      */
     public Model(String repoId) {
-        this.updateSignature = UpdateSignature.EMPTY;
-        this.repoId = repoId;
-        this.issues = new ArrayList<>();
-        this.labels = new ArrayList<>();
-        this.milestones = new ArrayList<>();
-        this.users = new ArrayList<>();
+        this(repoId, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
     }
 
     /**
      * Copy constructor.
      */
     public Model(Model model) {
-        this.updateSignature = model.updateSignature;
-        this.repoId = model.getRepoId();
-        this.issues = new ArrayList<>(model.getIssues());
-        this.labels = new ArrayList<>(model.getLabels());
-        this.milestones = new ArrayList<>(model.getMilestones());
-        this.users = new ArrayList<>(model.getUsers());
+        this(model.repoId, model.issues, model.labels, model.milestones, model.milestonesByTitle, model.users,
+            model.updateSignature, model.changes, model.changesBaseVersion, model.version);
     }
 
     public Model(SerializableModel model) {
-        this.updateSignature = model.updateSignature;
-        this.repoId = model.repoId;
-        this.issues = model.issues.stream()
-            .map(i -> new TurboIssue(model.repoId, i))
-            .collect(Collectors.toList());
-        this.labels = model.labels.stream()
-            .map(l -> new TurboLabel(model.repoId, l))
-            .collect(Collectors.toList());
-        this.milestones = model.milestones.stream()
-            .map(m -> new TurboMilestone(model.repoId, m))
-            .collect(Collectors.toList());
-        this.users = model.users.stream()
-            .map(u -> new TurboUser(model.repoId, u))
-            .collect(Collectors.toList());
+        this(model.repoId,
+            model.issues.stream()
+                .map(i -> new TurboIssue(model.repoId, i))
+                .collect(Collectors.toList()),
+            model.labels.stream()
+                .map(l -> new TurboLabel(model.repoId, l))
+                .collect(Collectors.toList()),
+            model.milestones.stream()
+                .map(m -> new TurboMilestone(model.repoId, m))
+                .collect(Collectors.toList()),
+            model.users.stream()
+                .map(u -> new TurboUser(model.repoId, u))
+                .collect(Collectors.toList()),
+            model.updateSignature);
     }
 
     public String getRepoId() {
@@ -103,24 +129,97 @@ public class Model implements IBaseModel {
         return updateSignature;
     }
 
+    /**
+     * Returns the issues in order of their ids.
+     */
     @Override
-    public synchronized List<TurboIssue> getIssues() {
-        return new ArrayList<>(issues);
+    public List<TurboIssue> getIssues() {
+        return issues.values();
     }
 
+    /**
+     * Returns the labels in order of their names.
+     */
     @Override
     public List<TurboLabel> getLabels() {
-        return new ArrayList<>(labels);
+        return labels.values();
     }
 
+    /**
+     * Returns the milestones in order of their ids.
+     */
     @Override
     public List<TurboMilestone> getMilestones() {
-        return new ArrayList<>(milestones);
+        return milestones.values();
     }
 
+    /**
+     * Returns the users in order of their logins.
+     */
     @Override
     public List<TurboUser> getUsers() {
-        return new ArrayList<>(users);
+        return users.values();
+    }
+
+    @Override
+    public String summarise() {
+        return String.format("%d issue(s), %d label(s), %d milestone(s), %d user(s)",
+            issues.size(), labels.size(), milestones.size(), users.size());
+    }
+
+    /**
+     * Returns a rough estimate of the memory taken by this model, including the metadata of its issues, in bytes.
+     * The first call takes time in proportion to the number of issues; the estimate is kept for later ones.
+     */
+    public long estimateSize() {
+        if (estimatedSize < 0) {
+            long[] size = {(labels.size() + milestones.size() + users.size()) * RESOURCE_SIZE};
+            issues.forEach((id, issue) -> size[0] += issue.estimateSize());
+            estimatedSize = size[0];
+        }
+        return estimatedSize;
+    }
+
+    /**
+     * Returns the changes from the model this one was updated from, if it was made by an update.
+     * Models which were downloaded or loaded have none.
+     */
+    public Optional<ModelChanges> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Returns the version of the model this one was updated from, to which its changes apply,
+     * or 0 if its changes are not known.
+     */
+    public long getChangesBaseVersion() {
+        return changes.isPresent() ? changesBaseVersion : 0;
+    }
+
+    /**
+     * Returns the version of the contents of this model. A model made from another without changing its issues,
+     * labels, milestones or users (e.g. a copy, or an update which found no changes) has the same version;
+     * any other model has a different one. So whether a model has changed is found in O(1), without comparing
+     * its contents.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public PersistentSortedMap<Integer, TurboIssue> getIssuesById() {
+        return issues;
+    }
+
+    public PersistentSortedMap<String, TurboLabel> getLabelsByName() {
+        return labels;
+    }
+
+    public PersistentSortedMap<Integer, TurboMilestone> getMilestonesById() {
+        return milestones;
+    }
+
+    public PersistentSortedMap<String, TurboUser> getUsersByLogin() {
+        return users;
     }
 
     @SuppressWarnings("unused")
@@ -128,52 +227,27 @@ public class Model implements IBaseModel {
 
     public Optional<TurboIssue> getIssueById(int issueId) {
         assert issueId >= 1 : "Invalid issue id " + issueId;
-        for (TurboIssue issue : getIssues()) {
-            if (issue.getId() == issueId) {
-                return Optional.of(issue);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(issues.get(issueId));
     }
 
     public Optional<TurboLabel> getLabelByActualName(String labelName) {
         assert labelName != null && !labelName.isEmpty() : "Invalid label name " + labelName;
-        for (TurboLabel label : getLabels()) {
-            if (label.getFullName().equals(labelName)) {
-                return Optional.of(label);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(labels.get(labelName));
     }
 
     public Optional<TurboUser> getUserByLogin(String login) {
         assert login != null && !login.isEmpty() : "Invalid user name " + login;
-        for (TurboUser user : getUsers()) {
-            if (user.getLoginName().equals(login)) {
-                return Optional.of(user);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(users.get(login));
     }
 
     public Optional<TurboMilestone> getMilestoneByTitle(String title) {
         assert title != null && !title.isEmpty() : "Invalid milestone title " + title;
-        for (TurboMilestone milestone : getMilestones()) {
-            if (milestone.getTitle().equals(title)) {
-                return Optional.of(milestone);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(milestonesByTitle.get(title));
     }
 
     public Optional<TurboMilestone> getMilestoneById(int id) {
         assert id >= 1 : "Invalid milestone id " + id;
-        for (TurboMilestone milestone : getMilestones()) {
-            if (milestone.getId() == id) {
-                return Optional.of(milestone);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(milestones.get(id));
     }
 
     public Optional<TurboMilestone> getMilestoneOfIssue(TurboIssue issue) {
@@ -196,19 +270,53 @@ public class Model implements IBaseModel {
     }
 
     /**
-     * Replaces labels of an issue specified by {@code issueId} with {@code labels}
-     * @param issueId
-     * @param labels
-     * @return the modified TurboIssue if successful
+     * Returns a copy of this model in which the issues with the same ids as the given ones are replaced by them.
+     * This model is left as it is.
      */
-    public synchronized Optional<TurboIssue> replaceIssueLabels(int issueId, List<String> labels) {
-        Optional<TurboIssue> issueLookUpResult = getIssueById(issueId);
-        return Utility.safeFlatMapOptional(issueLookUpResult,
-                (issue) -> {
-                    issue.setLabels(labels);
-                    return Optional.of(new TurboIssue(issue));
-                },
-                () -> logger.error("Issue " + issueId + " not found in model for " + repoId));
+    public Model withIssues(Collection<TurboIssue> replacements) {
+        PersistentSortedMap<Integer, TurboIssue> newIssues = issues;
+        for (TurboIssue replacement : replacements) {
+            if (newIssues.containsKey(replacement.getId())) {
+                newIssues = newIssues.put(replacement.getId(), replacement);
+            }
+        }
+        return new Model(repoId, newIssues, labels, milestones, milestonesByTitle, users, updateSignature,
+            Optional.empty(), 0, newIssues == issues ? version : nextVersion.incrementAndGet());
+    }
+
+    /**
+     * Returns a copy of this model with the given changes made to it, and the given update signature.
+     * Takes O(log n) for each change; whatever did not change is shared with this model, which is left as it is.
+     */
+    public Model withChanges(ModelChanges newChanges, UpdateSignature newUpdateSignature) {
+        PersistentSortedMap<Integer, TurboMilestone> newMilestones =
+            apply(milestones, newChanges.getMilestones(), TurboMilestone::getId);
+        return new Model(repoId,
+            apply(issues, newChanges.getIssues(), TurboIssue::getId),
+            apply(labels, newChanges.getLabels(), TurboLabel::getFullName),
+            newMilestones,
+            // Milestones are few, and their titles may have changed
+            newChanges.getMilestones().isEmpty()
+                ? milestonesByTitle
+                : PersistentSortedMap.of(newMilestones.values(), TurboMilestone::getTitle),
+            apply(users, newChanges.getUsers(), TurboUser::getLoginName),
+            newUpdateSignature, Optional.of(newChanges), version,
+            newChanges.isEmpty() ? version : nextVersion.incrementAndGet());
+    }
+
+    private static <K extends Comparable<? super K>, T> PersistentSortedMap<K, T> apply(
+            PersistentSortedMap<K, T> items, ModelChanges.Changes<T> changes, Function<T, K> key) {
+        PersistentSortedMap<K, T> result = items;
+        for (T item : changes.getRemoved()) {
+            result = result.remove(key.apply(item));
+        }
+        for (T item : changes.getAdded()) {
+            result = result.put(key.apply(item), item);
+        }
+        for (T item : changes.getUpdated()) {
+            result = result.put(key.apply(item), item);
+        }
+        return result;
     }
 
     @SuppressWarnings("unused")
@@ -219,6 +327,10 @@ public class Model implements IBaseModel {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Model model = (Model) o;
+        if (version == model.version) {
+            // The same contents
+            return repoId.equals(model.repoId) && updateSignature.equals(model.updateSignature);
+        }
         return issues.equals(model.issues) &&
                 labels.equals(model.labels) &&
                 milestones.equals(model.milestones) &&
@@ -0,0 +1,190 @@
+package backend.resource;
+
+import util.PersistentSortedMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The changes an update made to the model of a repository: the issues, labels, milestones and users
+ * which were added, updated or removed. Consumers of updated models may use them to do only as much
+ * work as there were changes, and none when there were none.
+ */
+public class ModelChanges {
+
+    /**
+     * The changes to one type of resource.
+     */
+    public static class Changes<T> {
+        private final List<T> added;
+        private final List<T> updated;
+        private final List<T> removed;
+
+        public Changes(List<T> added, List<T> updated, List<T> removed) {
+            this.added = Collections.unmodifiableList(new ArrayList<>(added));
+            this.updated = Collections.unmodifiableList(new ArrayList<>(updated));
+            this.removed = Collections.unmodifiableList(new ArrayList<>(removed));
+        }
+
+        public static <T> Changes<T> none() {
+            return new Changes<>(Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        }
+
+        /**
+         * Returns the changes from the existing items to the given ones, which may be some of them,
+         * as only the given items are looked up. Nothing is removed.
+         */
+        public static <K extends Comparable<? super K>, T> Changes<T> of(PersistentSortedMap<K, T> existing,
+                                                                         Collection<T> items, Function<T, K> key) {
+            List<T> added = new ArrayList<>();
+            List<T> updated = new ArrayList<>();
+            for (T item : items) {
+                T existingItem = existing.get(key.apply(item));
+                if (existingItem == null) {
+                    added.add(item);
+                } else if (!existingItem.equals(item)) {
+                    updated.add(item);
+                }
+            }
+            return new Changes<>(added, updated, Collections.emptyList());
+        }
+
+        /**
+         * Returns the changes from one map of items to another.
+         */
+        public static <K extends Comparable<? super K>, T> Changes<T> between(PersistentSortedMap<K, T> existing,
+                                                                              PersistentSortedMap<K, T> items) {
+            if (existing == items) {
+                return none();
+            }
+            List<T> added = new ArrayList<>();
+            List<T> updated = new ArrayList<>();
+            List<T> removed = new ArrayList<>();
+            items.forEach((key, item) -> {
+                T existingItem = existing.get(key);
+                if (existingItem == null) {
+                    added.add(item);
+                } else if (!existingItem.equals(item)) {
+                    updated.add(item);
+                }
+            });
+            existing.forEach((key, existingItem) -> {
+                if (!items.containsKey(key)) {
+                    removed.add(existingItem);
+                }
+            });
+            return new Changes<>(added, updated, removed);
+        }
+
+        private static <T> Changes<T> combine(Changes<T> first, Changes<T> second) {
+            List<T> added = new ArrayList<>(first.added);
+            added.addAll(second.added);
+            List<T> updated = new ArrayList<>(first.updated);
+            updated.addAll(second.updated);
+            List<T> removed = new ArrayList<>(first.removed);
+            removed.addAll(second.removed);
+            return new Changes<>(added, updated, removed);
+        }
+
+        public List<T> getAdded() {
+            return added;
+        }
+
+        public List<T> getUpdated() {
+            return updated;
+        }
+
+        public List<T> getRemoved() {
+            return removed;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d added, %d updated, %d removed", added.size(), updated.size(), removed.size());
+        }
+    }
+
+    private final String repoId;
+    private final Changes<TurboIssue> issues;
+    private final Changes<TurboLabel> labels;
+    private final Changes<TurboMilestone> milestones;
+    private final Changes<TurboUser> users;
+
+    public ModelChanges(String repoId, Changes<TurboIssue> issues, Changes<TurboLabel> labels,
+                        Changes<TurboMilestone> milestones, Changes<TurboUser> users) {
+        this.repoId = repoId;
+        this.issues = issues;
+        this.labels = labels;
+        this.milestones = milestones;
+        this.users = users;
+    }
+
+    public static ModelChanges none(String repoId) {
+        return new ModelChanges(repoId, Changes.none(), Changes.none(), Changes.none(), Changes.none());
+    }
+
+    /**
+     * Returns the changes of two successive updates together. Every resource which either of them added,
+     * updated or removed is listed, but a resource may be listed more than once, e.g. as added by the first
+     * and updated by the second, so the result is only meant for finding which resources were touched.
+     */
+    public static ModelChanges combine(ModelChanges first, ModelChanges second) {
+        return new ModelChanges(second.getRepoId(),
+            Changes.combine(first.getIssues(), second.getIssues()),
+            Changes.combine(first.getLabels(), second.getLabels()),
+            Changes.combine(first.getMilestones(), second.getMilestones()),
+            Changes.combine(first.getUsers(), second.getUsers()));
+    }
+
+    /**
+     * Returns the changes from one model of a repository to another. Takes time in proportion to their size,
+     * so is for models whose changes are not known otherwise.
+     */
+    public static ModelChanges between(Model existing, Model model) {
+        return new ModelChanges(model.getRepoId(),
+            Changes.between(existing.getIssuesById(), model.getIssuesById()),
+            Changes.between(existing.getLabelsByName(), model.getLabelsByName()),
+            Changes.between(existing.getMilestonesById(), model.getMilestonesById()),
+            Changes.between(existing.getUsersByLogin(), model.getUsersByLogin()));
+    }
+
+    public String getRepoId() {
+        return repoId;
+    }
+
+    public Changes<TurboIssue> getIssues() {
+        return issues;
+    }
+
+    public Changes<TurboLabel> getLabels() {
+        return labels;
+    }
+
+    public Changes<TurboMilestone> getMilestones() {
+        return milestones;
+    }
+
+    public Changes<TurboUser> getUsers() {
+        return users;
+    }
+
+    public boolean isEmpty() {
+        return issues.isEmpty() && labels.isEmpty() && milestones.isEmpty() && users.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return repoId + ": no changes";
+        }
+        return String.format("%s: issues %s; labels %s; milestones %s; users %s",
+                             repoId, issues, labels, milestones, users);
+    }
+}
@@ -5,36 +5,282 @@ import backend.interfaces.IModel;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import prefs.Preferences;
+import util.PersistentSortedMap;
 import util.Utility;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Thread-safe. The only top-level state in the application.
+ *
+ * The models are kept in an immutable snapshot, which is replaced (copy-on-write) whenever they change,
+ * so that reads, such as those made for every issue while filtering, neither lock nor copy anything,
+ * and always see a consistent set of models. Only the contents of the models which changed are gathered
+ * again. Changes are made one at a time, under the lock of this object.
  */
 @SuppressWarnings("unused")
 public class MultiModel implements IModel {
 
-    private final HashMap<String, Model> models;
+    // The share of the most memory the JVM may use which the models of unused repositories kept in memory
+    // may take, unless a budget is configured
+    public static final int INACTIVE_MEMORY_FRACTION = 8;
+    // The budget used if the JVM has no memory limit
+    public static final long FALLBACK_INACTIVE_BYTE_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * The issues, labels, milestones and users of a model, gathered from it beforehand.
+     */
+    private static final class Contents {
+        private final long version;
+        private final List<TurboIssue> issues;
+        private final List<TurboLabel> labels;
+        private final List<TurboMilestone> milestones;
+        private final List<TurboUser> users;
+
+        private Contents(Model model) {
+            this.version = model.getVersion();
+            this.issues = Collections.unmodifiableList(model.getIssues());
+            this.labels = Collections.unmodifiableList(model.getLabels());
+            this.milestones = Collections.unmodifiableList(model.getMilestones());
+            this.users = Collections.unmodifiableList(model.getUsers());
+        }
+    }
+
+    /**
+     * The models at some point in time, with their issues, labels, milestones and users gathered
+     * together beforehand.
+     */
+    private static final class Snapshot {
+        private final Map<String, Model> models;
+        // Keyed by the same repository ids as the models
+        private final Map<String, Contents> contents;
+        private final List<TurboIssue> issues;
+        private final List<TurboLabel> labels;
+        private final List<TurboMilestone> milestones;
+        private final List<TurboUser> users;
+
+        private Snapshot() {
+            this.models = Collections.emptyMap();
+            this.contents = Collections.emptyMap();
+            this.issues = Collections.emptyList();
+            this.labels = Collections.emptyList();
+            this.milestones = Collections.emptyList();
+            this.users = Collections.emptyList();
+        }
+
+        /**
+         * A snapshot of models changed from those of another snapshot. Only the contents of the models
+         * whose versions changed are gathered again; if none did, the gathered lists are those of the other.
+         */
+        private Snapshot(Map<String, Model> models, Snapshot previous) {
+            this.models = Collections.unmodifiableMap(models);
+            Map<String, Contents> contents = new HashMap<>();
+            models.forEach((repoId, model) -> {
+                Contents previousContents = previous.contents.get(repoId);
+                contents.put(repoId, previousContents != null && previousContents.version == model.getVersion()
+                    ? previousContents
+                    : new Contents(model));
+            });
+            this.contents = Collections.unmodifiableMap(contents);
+
+            // Contents are compared by identity, so these are equal only if none were gathered again
+            if (contents.equals(previous.contents)) {
+                this.issues = previous.issues;
+                this.labels = previous.labels;
+                this.milestones = previous.milestones;
+                this.users = previous.users;
+            } else {
+                this.issues = new ConcatenatedList<>(contents.values(), c -> c.issues);
+                this.labels = new ConcatenatedList<>(contents.values(), c -> c.labels);
+                this.milestones = new ConcatenatedList<>(contents.values(), c -> c.milestones);
+                this.users = new ConcatenatedList<>(contents.values(), c -> c.users);
+            }
+        }
+    }
+
+    /**
+     * An unmodifiable list of the items of the lists of several models one after another, which are not copied.
+     */
+    private static final class ConcatenatedList<T> extends AbstractList<T> {
+        private final List<List<T>> lists = new ArrayList<>();
+        // The index after the last item of each list
+        private final int[] ends;
+
+        private ConcatenatedList(Collection<Contents> contents, Function<Contents, List<T>> items) {
+            contents.forEach(c -> lists.add(items.apply(c)));
+            ends = new int[lists.size()];
+            int end = 0;
+            for (int i = 0; i < ends.length; i++) {
+                end += lists.get(i).size();
+                ends[i] = end;
+            }
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            // The first list which ends after the index
+            int low = 0;
+            int high = ends.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] > index) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return lists.get(low).get(low == 0 ? index : index - ends[low - 1]);
+        }
+
+        @Override
+        public int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return lists.stream().flatMap(List::stream).iterator();
+        }
+    }
+
+    /**
+     * A read-only view of the models in a snapshot, which does not change as the models are updated.
+     */
+    private static final class SnapshotView implements IModel {
+        private final Snapshot snapshot;
+        private final String defaultRepo;
+
+        private SnapshotView(Snapshot snapshot, String defaultRepo) {
+            this.snapshot = snapshot;
+            this.defaultRepo = defaultRepo;
+        }
+
+        @Override
+        public String getDefaultRepo() {
+            return defaultRepo;
+        }
+
+        @Override
+        public void setDefaultRepo(String repoId) {
+            throw new UnsupportedOperationException("A snapshot of the models cannot be changed");
+        }
+
+        @Override
+        public List<TurboIssue> getIssues() {
+            return snapshot.issues;
+        }
+
+        @Override
+        public List<TurboLabel> getLabels() {
+            return snapshot.labels;
+        }
+
+        @Override
+        public List<TurboMilestone> getMilestones() {
+            return snapshot.milestones;
+        }
+
+        @Override
+        public List<TurboUser> getUsers() {
+            return snapshot.users;
+        }
+
+        @Override
+        public Optional<Model> getModelById(String repoId) {
+            return Optional.ofNullable(snapshot.models.get(repoId));
+        }
+
+        @Override
+        public Optional<TurboUser> getAssigneeOfIssue(TurboIssue issue) {
+            return getModelById(issue.getRepoId())
+                .flatMap(m -> m.getAssigneeOfIssue(issue));
+        }
+
+        @Override
+        public Optional<TurboUser> getAuthorOfIssue(TurboIssue issue) {
+            return getModelById(issue.getRepoId())
+                .flatMap(m -> m.getCreatorOfIssue(issue));
+        }
+
+        @Override
+        public List<TurboLabel> getLabelsOfIssue(TurboIssue issue, Predicate<TurboLabel> predicate) {
+            return getLabelsOfIssue(issue).stream()
+                .filter(predicate)
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public List<TurboLabel> getLabelsOfIssue(TurboIssue issue) {
+            return getModelById(issue.getRepoId())
+                .flatMap(m -> Optional.of(m.getLabelsOfIssue(issue)))
+                .get();
+        }
+
+        @Override
+        public Optional<TurboMilestone> getMilestoneOfIssue(TurboIssue issue) {
+            return getModelById(issue.getRepoId())
+                .flatMap(m -> m.getMilestoneOfIssue(issue));
+        }
+    }
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot());
     private final Preferences prefs;
 
+    // Models of repositories which are not in use, kept so they need not be loaded again
+    private final InactiveModels inactiveModels;
+
     // A pending repository is one that has been requested to load but has
     // not finished loading. We keep track of it because we don't want repeated
     // requests for the same repository to load it multiple times.
     private final HashSet<String> pendingRepositories;
 
     // Guaranteed to have a value throughout
-    private String defaultRepo = null;
+    private volatile String defaultRepo = null;
 
     private static final Logger logger = LogManager.getLogger(MultiModel.class.getName());
 
     public MultiModel(Preferences prefs) {
-        this.models = new HashMap<>();
+        this(prefs, prefs.getInactiveModelsByteBudget());
+    }
+
+    /**
+     * @param inactiveByteBudget the most memory, in bytes, which deactivated models may take in total
+     *                           before the least recently used ones are dropped; if not positive, a share
+     *                           of the most memory the JVM may use
+     */
+    public MultiModel(Preferences prefs, long inactiveByteBudget) {
         this.pendingRepositories = new HashSet<>();
         this.prefs = prefs;
+        this.inactiveModels = new InactiveModels(inactiveByteBudget > 0
+            ? inactiveByteBudget
+            : getDefaultInactiveByteBudget());
+    }
+
+    private static long getDefaultInactiveByteBudget() {
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        return maxMemory == Long.MAX_VALUE ? FALLBACK_INACTIVE_BYTE_BUDGET : maxMemory / INACTIVE_MEMORY_FRACTION;
+    }
+
+    /**
+     * Publishes a new snapshot, made by changing a copy of the current models.
+     */
+    private synchronized void modify(Consumer<Map<String, Model>> change) {
+        Map<String, Model> models = new HashMap<>(snapshot.get().models);
+        change.accept(models);
+        snapshot.set(new Snapshot(models, snapshot.get()));
+    }
+
+    private Map<String, Model> models() {
+        return snapshot.get().models;
     }
 
     public synchronized MultiModel addPending(Model model) {
@@ -44,18 +290,19 @@ public class MultiModel implements IModel {
                 .findFirst();
         assert matchingRepoId.isPresent() : "No pending repository " + repoId + "!";
         pendingRepositories.remove(matchingRepoId.get());
-        add(model);
+        // Before the model is published, so that its issues are never seen unprocessed
         preprocessNewIssues(model);
+        add(model);
         return this;
     }
 
     private synchronized MultiModel add(Model model) {
-        this.models.put(model.getRepoId(), model);
+        modify(models -> models.put(model.getRepoId(), model));
         return this;
     }
 
     public synchronized MultiModel removeRepoModelById(String repoId) {
-        Optional<String> repoIdCorrectCase = models.keySet().stream()
+        Optional<String> repoIdCorrectCase = models().keySet().stream()
                 .filter(key -> key.equalsIgnoreCase(repoId)).findFirst();
         if (!repoIdCorrectCase.isPresent()) {
             logger.error("RepoId specified does not have a model.");
@@ -63,29 +310,132 @@ public class MultiModel implements IModel {
         
         Optional<Model> repoModelToBeDeleted = getModelById(repoIdCorrectCase.get());
         if (repoModelToBeDeleted.isPresent()) {
-            this.models.remove(repoModelToBeDeleted.get().getRepoId());
+            modify(models -> models.remove(repoModelToBeDeleted.get().getRepoId()));
         } else {
             logger.error("RepoModel to be deleted does not exist.");
         }
         return this;
     }
 
-    public synchronized Model get(String repoId) {
-        return models.get(repoId);
+    /**
+     * Removes the model of a repository which is no longer in use, keeping it in memory in case it is used again.
+     * Deactivated models are kept within a budget; the least recently used ones are dropped beyond it.
+     */
+    public MultiModel deactivate(String repoId) {
+        // Estimated before taking the lock, as the first estimate of a model takes time in proportion to
+        // its issues; the model deactivated below has usually kept it
+        getModelById(getCorrectCase(repoId)).ifPresent(Model::estimateSize);
+
+        synchronized (this) {
+            getModelById(getCorrectCase(repoId)).ifPresent(model -> {
+                modify(models -> models.remove(model.getRepoId()));
+                inactiveModels.add(model);
+            });
+        }
+        return this;
     }
 
-    public synchronized List<Model> toModels() {
-        return new ArrayList<>(models.values());
+    /**
+     * Makes the model of a repository active again, if it was deactivated and is still in memory.
+     * @return true if the repository now has a model, false if it has to be loaded
+     */
+    public synchronized boolean activate(String repoId) {
+        Optional<Model> model = inactiveModels.remove(repoId);
+        model.ifPresent(this::add);
+        return model.isPresent();
+    }
+
+    /**
+     * Drops the model of a deactivated repository, e.g. as it was removed from the store.
+     */
+    public synchronized void discardInactive(String repoId) {
+        inactiveModels.remove(repoId);
+    }
+
+    public synchronized boolean isInactive(String repoId) {
+        return inactiveModels.contains(repoId);
+    }
+
+    private String getCorrectCase(String repoId) {
+        return models().keySet().stream()
+                .filter(key -> key.equalsIgnoreCase(repoId)).findFirst()
+                .orElse(repoId);
+    }
+
+    public Model get(String repoId) {
+        return models().get(repoId);
+    }
+
+    public List<Model> toModels() {
+        return new ArrayList<>(models().values());
     }
 
     public synchronized MultiModel replace(List<Model> newModels) {
-        this.models.clear();
-        newModels.forEach(this::add);
+        modify(models -> {
+            models.clear();
+            newModels.forEach(model -> models.put(model.getRepoId(), model));
+        });
         return this;
     }
 
     /**
-     * Replaces labels of an issue specified by {@code issueId} in {@code repoId} with {@code labels}
+     * Makes the changes of updated models of some of the repositories to their current models, leaving the
+     * others as they are. Models of repositories which are no longer open are not added back.
+     *
+     * The changes of updated models which do not know them are worked out by comparing them with the current
+     * models. Issues updated from an older model are reconciled with the current ones. If nothing changed,
+     * only the update signatures are replaced.
+     *
+     * @return the changes made to each repository which is still open
+     */
+    public synchronized List<ModelChanges> update(List<Model> updatedModels) {
+        Map<String, Model> models = new HashMap<>(models());
+        List<ModelChanges> changes = new ArrayList<>();
+        for (Model updatedModel : updatedModels) {
+            Model model = models.get(updatedModel.getRepoId());
+            if (model == null) {
+                continue;
+            }
+            ModelChanges modelChanges = updatedModel.getChanges()
+                    .orElseGet(() -> ModelChanges.between(model, updatedModel));
+            if (updatedModel.getChangesBaseVersion() == model.getVersion()) {
+                // Updated from the current model, so the updated model (as it was saved) is used as it is
+                models.put(model.getRepoId(), updatedModel);
+            } else {
+                modelChanges = reconcileIssues(model, modelChanges);
+                models.put(model.getRepoId(), model.withChanges(modelChanges, updatedModel.getUpdateSignature()));
+            }
+            changes.add(modelChanges);
+        }
+        snapshot.set(new Snapshot(models, snapshot.get()));
+        return changes;
+    }
+
+    /**
+     * Reconciles the issues which changes made from an older model add or update with those of the current
+     * model, as issues are reconciled when they are updated, so that metadata and labels changed since
+     * (e.g. by insertMetadata or replaceIssueLabels) are not overwritten by the older copies.
+     */
+    private static ModelChanges reconcileIssues(Model model, ModelChanges changes) {
+        ModelChanges.Changes<TurboIssue> issues = changes.getIssues();
+        return new ModelChanges(changes.getRepoId(),
+                new ModelChanges.Changes<>(reconcileIssues(model, issues.getAdded()),
+                                           reconcileIssues(model, issues.getUpdated()),
+                                           issues.getRemoved()),
+                changes.getLabels(), changes.getMilestones(), changes.getUsers());
+    }
+
+    private static List<TurboIssue> reconcileIssues(Model model, List<TurboIssue> issues) {
+        PersistentSortedMap<Integer, TurboIssue> reconciled = TurboIssue.reconcile(model.getIssuesById(), issues);
+        return issues.stream()
+                .map(issue -> reconciled.get(issue.getId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Replaces labels of an issue specified by {@code issueId} in {@code repoId} with {@code labels}.
+     * The issue is replaced by a copy with the new labels, so that readers of the models as they were
+     * do not see it change.
      * @param repoId
      * @param issueId
      * @param labels
@@ -94,24 +444,54 @@ public class MultiModel implements IModel {
     public synchronized Optional<TurboIssue> replaceIssueLabels(String repoId, int issueId, List<String> labels) {
         Optional<Model> modelLookUpResult = getModelById(repoId);
         return Utility.safeFlatMapOptional(modelLookUpResult,
-                (model) -> model.replaceIssueLabels(issueId, labels),
+                (model) -> {
+                    Optional<TurboIssue> issueLookUpResult = model.getIssueById(issueId);
+                    if (!issueLookUpResult.isPresent()) {
+                        logger.error("Issue " + issueId + " not found in model for " + repoId);
+                        return Optional.empty();
+                    }
+                    TurboIssue modifiedIssue = new TurboIssue(issueLookUpResult.get());
+                    modifiedIssue.setLabels(labels);
+                    add(model.withIssues(Collections.singletonList(modifiedIssue)));
+                    return Optional.of(new TurboIssue(modifiedIssue));
+                },
                 () -> logger.error("Model " + repoId + " not found in models"));
     }
 
+    /**
+     * Inserts the metadata of issues of a repository. The issues are replaced by copies with the metadata,
+     * so that readers of the models as they were do not see them change.
+     */
     public synchronized void insertMetadata(String repoId, Map<Integer, IssueMetadata> metadata, String currentUser) {
-        models.get(repoId).getIssues().forEach(issue -> {
+        Model model = models().get(repoId);
+        List<TurboIssue> modifiedIssues = new ArrayList<>();
+        model.getIssues().forEach(issue -> {
             if (metadata.containsKey(issue.getId())) {
                 IssueMetadata toBeInserted = metadata.get(issue.getId());
 
-                // ETag comparison is based on IssueMetadata constructor for more granularity, so that we can choose
-                // to not replace events while still replacing comments in the case of same ETag.
-                // TODO move ETag comparison here when comments ETag implementation is complete.
+                // Events and comments are compared by their own ETags, so that either may be kept
+                // while the other is replaced.
                 LocalDateTime nonSelfUpdatedAt = reconcileCreationDate(toBeInserted.getNonSelfUpdatedAt(),
                         issue.getCreatedAt(), currentUser, issue.getCreator());
-                issue.setMetadata(toBeInserted.reconcile(nonSelfUpdatedAt,
-                    issue.getMetadata().getEvents(), issue.getMetadata().getEventsETag()));
+                TurboIssue modifiedIssue = new TurboIssue(issue);
+                modifiedIssue.setMetadata(toBeInserted.reconcile(nonSelfUpdatedAt, issue.getMetadata()));
+                modifiedIssues.add(modifiedIssue);
             }
         });
+        add(model.withIssues(modifiedIssues));
+    }
+
+    /**
+     * Returns the metadata of the issues of a repository which have any, keyed by issue id.
+     */
+    public Map<Integer, IssueMetadata> getIssueMetadata(String repoId) {
+        Map<Integer, IssueMetadata> result = new HashMap<>();
+        getModelById(repoId).ifPresent(model -> model.getIssues().stream()
+                .filter(issue -> !issue.getMetadata().getEventsETag().isEmpty()
+                        || !issue.getMetadata().getEvents().isEmpty()
+                        || !issue.getMetadata().getComments().isEmpty())
+                .forEach(issue -> result.put(issue.getId(), issue.getMetadata())));
+        return result;
     }
 
     private static LocalDateTime reconcileCreationDate(LocalDateTime lastNonSelfUpdate,
@@ -135,89 +515,90 @@ public class MultiModel implements IModel {
     }
 
     @Override
-    public synchronized String getDefaultRepo() {
+    public String getDefaultRepo() {
         return defaultRepo;
     }
 
     @Override
-    public synchronized void setDefaultRepo(String repoId) {
+    public void setDefaultRepo(String repoId) {
         this.defaultRepo = repoId;
     }
 
+    /**
+     * Returns the models as they are now, which later updates do not affect, so that a series of reads,
+     * such as those made while filtering every issue, all see the same models.
+     */
+    public IModel getSnapshot() {
+        return new SnapshotView(snapshot.get(), defaultRepo);
+    }
+
+    /**
+     * Returns the issues of all models, which may not be modified.
+     */
     @Override
-    public synchronized List<TurboIssue> getIssues() {
-        List<TurboIssue> result = new ArrayList<>();
-        models.values().forEach(m -> result.addAll(m.getIssues()));
-        return result;
+    public List<TurboIssue> getIssues() {
+        return snapshot.get().issues;
     }
 
+    /**
+     * Returns the labels of all models, which may not be modified.
+     */
     @Override
-    public synchronized List<TurboLabel> getLabels() {
-        List<TurboLabel> result = new ArrayList<>();
-        models.values().forEach(m -> result.addAll(m.getLabels()));
-        return result;
+    public List<TurboLabel> getLabels() {
+        return snapshot.get().labels;
     }
 
+    /**
+     * Returns the milestones of all models, which may not be modified.
+     */
     @Override
-    public synchronized List<TurboMilestone> getMilestones() {
-        List<TurboMilestone> result = new ArrayList<>();
-        models.values().forEach(m -> result.addAll(m.getMilestones()));
-        return result;
+    public List<TurboMilestone> getMilestones() {
+        return snapshot.get().milestones;
     }
 
+    /**
+     * Returns the users of all models, which may not be modified.
+     */
     @Override
-    public synchronized List<TurboUser> getUsers() {
-        List<TurboUser> result = new ArrayList<>();
-        models.values().forEach(m -> result.addAll(m.getUsers()));
-        return result;
+    public List<TurboUser> getUsers() {
+        return snapshot.get().users;
     }
 
     @Override
-    public synchronized Optional<Model> getModelById(String repoId) {
-        return models.containsKey(repoId)
-            ? Optional.of(models.get(repoId))
-            : Optional.empty();
+    public Optional<Model> getModelById(String repoId) {
+        return Optional.ofNullable(models().get(repoId));
     }
 
     @Override
     public Optional<TurboUser> getAssigneeOfIssue(TurboIssue issue) {
-        return getModelById(issue.getRepoId())
-            .flatMap(m -> m.getAssigneeOfIssue(issue));
+        return getSnapshot().getAssigneeOfIssue(issue);
     }
 
     @Override
     public Optional<TurboUser> getAuthorOfIssue(TurboIssue issue) {
-        return getModelById(issue.getRepoId())
-                .flatMap(m -> m.getCreatorOfIssue(issue));
+        return getSnapshot().getAuthorOfIssue(issue);
     }
 
     @Override
     public List<TurboLabel> getLabelsOfIssue(TurboIssue issue, Predicate<TurboLabel> predicate) {
-        return getModelById(issue.getRepoId())
-            .flatMap(m -> Optional.of(m.getLabelsOfIssue(issue)))
-            .get().stream()
-            .filter(predicate)
-            .collect(Collectors.toList());
+        return getSnapshot().getLabelsOfIssue(issue, predicate);
     }
 
     @Override
     public List<TurboLabel> getLabelsOfIssue(TurboIssue issue) {
-        return getModelById(issue.getRepoId())
-            .flatMap(m -> Optional.of(m.getLabelsOfIssue(issue)))
-            .get();
+        return getSnapshot().getLabelsOfIssue(issue);
     }
 
     @Override
     public Optional<TurboMilestone> getMilestoneOfIssue(TurboIssue issue) {
-        return getModelById(issue.getRepoId())
-            .flatMap(m -> m.getMilestoneOfIssue(issue));
+        return getSnapshot().getMilestoneOfIssue(issue);
     }
 
     public synchronized boolean isRepositoryPending(String repoId) {
         return pendingRepositories.stream().anyMatch(pendingRepo -> pendingRepo.equalsIgnoreCase(repoId));
     }
 
-    public void queuePendingRepository(String repoId) {
+    public synchronized void queuePendingRepository(String repoId) {
         pendingRepositories.add(repoId);
     }
 
@@ -242,12 +623,12 @@ public class MultiModel implements IModel {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MultiModel that = (MultiModel) o;
-        return models.equals(that.models);
+        return models().equals(that.models());
     }
 
     @Override
     public int hashCode() {
-        return models.hashCode();
+        return models().hashCode();
     }
 
 }
@@ -2,18 +2,21 @@ package backend.resource;
 
 import backend.IssueMetadata;
 import backend.resource.serialization.SerializableIssue;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.Issue;
 import org.eclipse.egit.github.core.Label;
 import org.eclipse.egit.github.core.PullRequest;
 import prefs.Preferences;
 import util.HTLog;
+import util.PersistentSortedMap;
 import util.Utility;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static util.Utility.replaceNull;
@@ -27,6 +30,9 @@ public class TurboIssue {
     public static final String STATE_CLOSED = "closed";
     public static final String STATE_OPEN = "open";
 
+    // A rough size in bytes of an issue without its text and metadata, for estimating memory use
+    private static final long ISSUE_SIZE = 400;
+
     /**
      * Serialized fields.
      *
@@ -67,6 +73,10 @@ public class TurboIssue {
        the labels must also update this field. If this is empty, updatedAt time is used instead */
     private Optional<LocalDateTime> labelsLastModifiedAt = Optional.empty();
 
+    /* If present, the description is not held by this issue but read from this source on demand,
+       and the description field is null. Setting the description discards the source. */
+    private Supplier<String> descriptionSource = null;
+
     @SuppressWarnings("unused")
     private void ______CONSTRUCTORS______() {}
 
@@ -110,6 +120,7 @@ public class TurboIssue {
         this.isPullRequest = issue.isPullRequest;
 
         this.description = issue.description;
+        this.descriptionSource = issue.descriptionSource;
         this.updatedAt = replaceNull(issue.updatedAt, this.createdAt);
         this.commentCount = issue.commentCount;
         this.isOpen = issue.isOpen;
@@ -161,7 +172,8 @@ public class TurboIssue {
         this.isPullRequest = issue.isPullRequest();
 
         this.title = issue.getTitle();
-        this.description = issue.getDescription();
+        this.descriptionSource = issue.getDescriptionSource().orElse(null);
+        this.description = descriptionSource == null ? issue.getDescription() : null;
         this.updatedAt = replaceNull(issue.getUpdatedAt(), this.createdAt);
         this.commentCount = issue.getCommentCount();
         this.isOpen = issue.isOpen();
@@ -174,6 +186,32 @@ public class TurboIssue {
         this.markedReadAt = Optional.empty();
     }
 
+    /**
+     * Constructor taking every serialized field, for use when deserializing
+     * without going through a SerializableIssue.
+     */
+    public TurboIssue(String repoId, int id, String title, String creator, LocalDateTime createdAt,
+                      boolean isPullRequest, String description, LocalDateTime updatedAt, int commentCount,
+                      boolean isOpen, Optional<String> assignee, List<String> labels, Optional<Integer> milestone) {
+        this.id = id;
+        this.creator = creator;
+        this.createdAt = createdAt;
+        this.isPullRequest = isPullRequest;
+
+        this.title = title;
+        this.description = description;
+        this.updatedAt = replaceNull(updatedAt, this.createdAt);
+        this.commentCount = commentCount;
+        this.isOpen = isOpen;
+        this.assignee = assignee;
+        this.labels = labels;
+        this.milestone = milestone;
+
+        this.metadata = IssueMetadata.empty();
+        this.repoId = repoId;
+        this.markedReadAt = Optional.empty();
+    }
+
     @SuppressWarnings("unused")
     private void ______CONSTRUCTOR_HELPER_FUNCTIONS______() {}
 
@@ -245,32 +283,37 @@ public class TurboIssue {
 
     /**
      * Takes lists of TurboIssues and reconciles the changes between them,
-     * returning a list of TurboIssues with updates from the second.
+     * returning a list of TurboIssues with updates from the second, in order of their ids.
      * @param existing
      * @param changed
      */
     public static List<TurboIssue> reconcile(List<TurboIssue> existing, List<TurboIssue> changed) {
-        List<TurboIssue> existingCopy = new ArrayList<>(existing);
-        for (TurboIssue issue : changed) {
-            int id = issue.getId();
-
-            Optional<Integer> correspondingIssueIndex = findIssueWithId(existingCopy, id);
-            if (!correspondingIssueIndex.isPresent()) {
-                existingCopy.add(new TurboIssue(issue));
-            } else {
-                TurboIssue existingIssue = existingCopy.get(correspondingIssueIndex.get());
-                TurboIssue newIssue = new TurboIssue(issue);
+        return reconcile(PersistentSortedMap.of(existing, TurboIssue::getId), changed).values();
+    }
 
+    /**
+     * Reconciles changed TurboIssues with existing ones, returning a map of TurboIssues with
+     * updates from the changed ones. Only the changed issues are looked up, so this takes
+     * O(k log n) for k changed issues, and the returned map shares the rest with the existing one.
+     * @param existing
+     * @param changed
+     */
+    public static PersistentSortedMap<Integer, TurboIssue> reconcile(PersistentSortedMap<Integer, TurboIssue> existing,
+                                                                     List<TurboIssue> changed) {
+        PersistentSortedMap<Integer, TurboIssue> result = existing;
+        for (TurboIssue issue : changed) {
+            TurboIssue existingIssue = result.get(issue.getId());
+            TurboIssue newIssue = new TurboIssue(issue);
+            if (existingIssue != null) {
                 // newIssue is constructed from an external Issue object.
                 // It won't have the transient state that its TurboIssue
                 // counterpart has, so we have to explicitly transfer it.
                 newIssue.transferTransientState(existingIssue);
                 newIssue.reconcile(existingIssue);
-
-                existingCopy.set(correspondingIssueIndex.get(), newIssue);
             }
+            result = result.put(issue.getId(), newIssue);
         }
-        return existingCopy;
+        return result;
     }
 
     /**
@@ -278,26 +321,34 @@ public class TurboIssue {
      * issues and original issue instances are not mutated
      * @param issues
      * @param pullRequests
-     * @return a new list of issues
+     * @return a new list of issues, in order of their ids
      */
     public static List<TurboIssue> combineWithPullRequests(List<TurboIssue> issues,
                                                            List<PullRequest> pullRequests) {
-        List<TurboIssue> issuesCopy = new ArrayList<>(issues);
+        return combineWithPullRequests(PersistentSortedMap.of(issues, TurboIssue::getId), pullRequests).values();
+    }
 
+    /**
+     * Updates data for issues with corresponding pull requests, looking up only those issues.
+     * The original map and issue instances are not mutated
+     * @param issues
+     * @param pullRequests
+     * @return a new map of issues
+     */
+    public static PersistentSortedMap<Integer, TurboIssue> combineWithPullRequests(
+            PersistentSortedMap<Integer, TurboIssue> issues, List<PullRequest> pullRequests) {
+        PersistentSortedMap<Integer, TurboIssue> result = issues;
         for (PullRequest pullRequest : pullRequests) {
             int id = pullRequest.getNumber();
-
-            Optional<Integer> corresponding = findIssueWithId(issuesCopy, id);
-            if (corresponding.isPresent()) {
-                TurboIssue issue = issuesCopy.get(corresponding.get());
-                issuesCopy.set(corresponding.get(), issue.combineWithPullRequest(pullRequest));
+            TurboIssue issue = result.get(id);
+            if (issue != null) {
+                result = result.put(id, issue.combineWithPullRequest(pullRequest));
             } else {
                 String errorMsg = "No corresponding issue for pull request " + pullRequest;
                 logger.error(errorMsg);
             }
         }
-
-        return issuesCopy;
+        return result;
     }
 
     /**
@@ -369,11 +420,28 @@ public class TurboIssue {
     }
 
     public String getDescription() {
-        return description;
+        return descriptionSource == null ? description : descriptionSource.get();
     }
 
     public void setDescription(String description) {
         this.description = description;
+        this.descriptionSource = null;
+    }
+
+    /**
+     * Makes the description of this issue be read from the given source whenever it is needed,
+     * instead of being held in memory.
+     */
+    public void setDescriptionSource(Supplier<String> descriptionSource) {
+        this.description = null;
+        this.descriptionSource = descriptionSource;
+    }
+
+    /**
+     * Returns the source the description of this issue is read from, if it is not held in memory.
+     */
+    public Optional<Supplier<String>> getDescriptionSource() {
+        return Optional.ofNullable(descriptionSource);
     }
 
     public LocalDateTime getUpdatedAt() {
@@ -451,6 +519,15 @@ public class TurboIssue {
         return metadata;
     }
 
+    /**
+     * Returns a rough estimate of the memory taken by this issue and its metadata, in bytes.
+     * Descriptions which are read from a source on demand are not held, so are not counted.
+     */
+    public long estimateSize() {
+        return ISSUE_SIZE + 2L * (StringUtils.length(title) + StringUtils.length(description))
+            + (metadata == null ? 0 : metadata.estimateSize());
+    }
+
     public void setMetadata(IssueMetadata metadata) {
         this.metadata = metadata;
     }
@@ -497,14 +574,31 @@ public class TurboIssue {
                 !(assignee != null ? !assignee.equals(issue.assignee) : issue.assignee != null) &&
                 !(createdAt != null ? !createdAt.equals(issue.createdAt) : issue.createdAt != null) &&
                 !(creator != null ? !creator.equals(issue.creator) : issue.creator != null) &&
-                !(description != null ? !description.equals(issue.description) : issue.description != null) &&
                 !(labels != null ? !labels.equals(issue.labels) : issue.labels != null) &&
                 !(milestone != null ? !milestone.equals(issue.milestone) : issue.milestone != null) &&
                 !(title != null ? !title.equals(issue.title) : issue.title != null) &&
                 !(updatedAt != null ? !updatedAt.equals(issue.updatedAt) : issue.updatedAt != null) &&
-                !(markedReadAt != null ? !markedReadAt.equals(issue.markedReadAt) : issue.markedReadAt != null);
+                !(markedReadAt != null ? !markedReadAt.equals(issue.markedReadAt) : issue.markedReadAt != null) &&
+                hasEqualDescription(issue);
     }
 
+    /**
+     * Compares descriptions without reading them from their sources if those are equal,
+     * e.g. refer to the same part of the same mapped snapshot.
+     */
+    private boolean hasEqualDescription(TurboIssue issue) {
+        if (descriptionSource != null && descriptionSource.equals(issue.descriptionSource)) {
+            return true;
+        }
+        String thisDescription = getDescription();
+        String otherDescription = issue.getDescription();
+        return thisDescription != null ? thisDescription.equals(otherDescription) : otherDescription == null;
+    }
+
+    /**
+     * The description is left out, so that issues whose descriptions are read on demand
+     * may be hashed without reading them.
+     */
     @Override
     public int hashCode() {
         int result = id;
@@ -512,7 +606,6 @@ public class TurboIssue {
         result = 31 * result + (createdAt != null ? createdAt.hashCode() : 0);
         result = 31 * result + (isPullRequest ? 1 : 0);
         result = 31 * result + (title != null ? title.hashCode() : 0);
-        result = 31 * result + (description != null ? description.hashCode() : 0);
         result = 31 * result + (updatedAt != null ? updatedAt.hashCode() : 0);
         result = 31 * result + (markedReadAt != null ? markedReadAt.hashCode() : 0);
         result = 31 * result + commentCount;
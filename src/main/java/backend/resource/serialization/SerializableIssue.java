@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Warnings are suppressed to prevent complaints about fields not being final.
@@ -25,6 +26,10 @@ public class SerializableIssue {
     private Optional<String> assignee = Optional.empty();
     private List<String> labels = new ArrayList<>();
     private Optional<Integer> milestone = Optional.empty();
+    // If present, the description is read from this source when asked for, and the description field is null.
+    // Only the binary snapshot format, which can copy mapped descriptions without decoding them, writes
+    // such issues; the JSON formats are never used with mapped descriptions.
+    private transient Supplier<String> descriptionSource = null;
 
     public SerializableIssue(TurboIssue issue) {
         this.id = issue.getId();
@@ -32,7 +37,8 @@ public class SerializableIssue {
         this.creator = issue.getCreator();
         this.createdAt = issue.getCreatedAt();
         this.isPullRequest = issue.isPullRequest();
-        this.description = issue.getDescription();
+        this.descriptionSource = issue.getDescriptionSource().orElse(null);
+        this.description = descriptionSource == null ? issue.getDescription() : null;
         this.updatedAt = issue.getUpdatedAt();
         this.commentCount = issue.getCommentCount();
         this.isOpen = issue.isOpen();
@@ -57,7 +63,10 @@ public class SerializableIssue {
         return isPullRequest;
     }
     public String getDescription() {
-        return description;
+        return descriptionSource == null ? description : descriptionSource.get();
+    }
+    public Optional<Supplier<String>> getDescriptionSource() {
+        return Optional.ofNullable(descriptionSource);
     }
     public LocalDateTime getUpdatedAt() {
         return updatedAt;
@@ -2,8 +2,10 @@ package backend.resource.serialization;
 
 import backend.UpdateSignature;
 import backend.resource.Model;
+import backend.resource.ModelChanges;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -18,9 +20,18 @@ public class SerializableModel {
     public final List<SerializableMilestone> milestones;
     public final List<SerializableUser> users;
 
+    // The version of the model this was made from, and the changes which made that model from the one of
+    // changesBaseVersion; 0 and null if not known. Used to save only the changes, and never serialised.
+    private final transient long version;
+    private final transient long changesBaseVersion;
+    private final transient ModelChanges changes;
+
     public SerializableModel(Model model) {
         this.repoId = model.getRepoId();
         this.updateSignature = model.getUpdateSignature();
+        this.version = model.getVersion();
+        this.changesBaseVersion = model.getChangesBaseVersion();
+        this.changes = model.getChanges().orElse(null);
 
         this.issues = model.getIssues().stream()
             .map(SerializableIssue::new).collect(Collectors.toList());
@@ -31,6 +42,64 @@ public class SerializableModel {
         this.users = model.getUsers().stream()
             .map(SerializableUser::new).collect(Collectors.toList());
     }
+
+    public SerializableModel(String repoId, UpdateSignature updateSignature,
+                             List<SerializableIssue> issues, List<SerializableLabel> labels,
+                             List<SerializableMilestone> milestones, List<SerializableUser> users) {
+        this.repoId = repoId;
+        this.updateSignature = updateSignature;
+        this.version = 0;
+        this.changesBaseVersion = 0;
+        this.changes = null;
+
+        this.issues = issues;
+        this.labels = labels;
+        this.milestones = milestones;
+        this.users = users;
+    }
+
+    /**
+     * A copy of a model which was saved after another, whose changes are combined with those of the other,
+     * so that they are the changes from the model the other was updated from.
+     */
+    private SerializableModel(SerializableModel model, SerializableModel previous) {
+        this.repoId = model.repoId;
+        this.updateSignature = model.updateSignature;
+        this.version = model.version;
+        boolean followsPrevious = model.changes != null && previous.changes != null
+            && model.changesBaseVersion == previous.version;
+        this.changesBaseVersion = followsPrevious ? previous.changesBaseVersion : 0;
+        this.changes = followsPrevious ? ModelChanges.combine(previous.changes, model.changes) : null;
+
+        this.issues = model.issues;
+        this.labels = model.labels;
+        this.milestones = model.milestones;
+        this.users = model.users;
+    }
+
+    /**
+     * Returns this model as saved in place of the given one, which was not written, so that its changes
+     * include those of the given one where they are known.
+     */
+    public SerializableModel replacing(SerializableModel previous) {
+        return new SerializableModel(this, previous);
+    }
+
+    /**
+     * Returns the version of the model this was made from, or 0 if not known.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the changes which made this model from the model of the given version, if they are known.
+     */
+    public Optional<ModelChanges> getChangesFrom(long baseVersion) {
+        return baseVersion != 0 && baseVersion == changesBaseVersion
+            ? Optional.ofNullable(changes)
+            : Optional.empty();
+    }
 }
 
 
@@ -1,19 +1,22 @@
 package backend.stub;
 
 import backend.github.DownloadMetadataTask;
+import backend.github.MetadataFetchScheduler;
 import backend.interfaces.TaskRunner;
 import backend.resource.TurboIssue;
 
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 public class DownloadMetadataTaskStub extends DownloadMetadataTask {
 
     public DownloadMetadataTaskStub(TaskRunner taskRunner,
                                     DummyRepo repo,
                                     String repoId,
-                                    List<TurboIssue> issuesToUpdate) {
-        super(taskRunner, repo, repoId, issuesToUpdate);
+                                    List<TurboIssue> issuesToUpdate,
+                                    Set<Integer> prioritisedIds,
+                                    MetadataFetchScheduler scheduler) {
+        super(taskRunner, repo, repoId, issuesToUpdate, prioritisedIds, scheduler);
     }
 
     @Override
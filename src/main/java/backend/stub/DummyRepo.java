@@ -1,11 +1,14 @@
 package backend.stub;
 
+import backend.IssueMetadata;
 import backend.UserCredentials;
 import backend.interfaces.Repo;
 import backend.resource.TurboIssue;
 import backend.resource.TurboLabel;
 import backend.resource.TurboMilestone;
 import backend.resource.TurboUser;
+import github.RateLimiter;
+import github.RepoResource;
 import github.ReviewComment;
 import github.TurboIssueEvent;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -21,6 +24,9 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 public class DummyRepo implements Repo {
 
@@ -28,6 +34,7 @@ public class DummyRepo implements Repo {
 
     // Only decreases after API retrievals
     private int apiQuota = 3500;
+    private final RateLimiter rateLimiter = new RateLimiter();
 
     public DummyRepo() {
         if (UI.events == null) {
@@ -172,11 +179,36 @@ public class DummyRepo implements Repo {
         return result;
     }
 
+    /**
+     * Dummy comments have no ETags, so they are always returned.
+     */
+    @Override
+    public ImmutablePair<List<Comment>, String> getUpdatedComments(String repoId, TurboIssue issue, String eTag) {
+        return new ImmutablePair<>(getAllComments(repoId, issue), "");
+    }
+
     @Override
     public List<ReviewComment> getReviewComments(String repoId, int pullRequestId) {
         return new ArrayList<>();
     }
 
+    @Override
+    public Optional<Set<RepoResource>> getChangedResources(String repoId) {
+        // Dummy repositories have no events feed, so every resource is checked for updates
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isBatchedMetadataAvailable() {
+        // Metadata is fetched one issue at a time, as from the REST API
+        return false;
+    }
+
+    @Override
+    public Optional<Map<Integer, IssueMetadata>> getMetadata(String repoId, List<TurboIssue> issues) {
+        return Optional.empty();
+    }
+
     @Override
     public List<Label> setLabels(String repoId, int issueId, List<String> labels) {
         return getRepoState(repoId).setLabels(issueId, labels);
@@ -198,4 +230,12 @@ public class DummyRepo implements Repo {
         return new ImmutablePair<>(apiQuota, new Date().getTime() + 2700000);
     }
 
+    /**
+     * Requests to a dummy repository cost nothing, so they are never limited.
+     */
+    @Override
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
 }
@@ -4,6 +4,7 @@ import backend.IssueMetadata;
 import backend.UserCredentials;
 import backend.github.CheckRateLimitTask;
 import backend.github.DownloadRepoTask;
+import backend.github.MetadataFetchScheduler;
 import backend.github.ReplaceIssueLabelsTask;
 import backend.github.UpdateModelTask;
 import backend.interfaces.RepoSource;
@@ -14,11 +15,13 @@ import util.Futures;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 public class DummySource extends RepoSource {
 
     private final DummyRepo dummy = new DummyRepo();
+    private final MetadataFetchScheduler metadataScheduler = new MetadataFetchScheduler(dummy.getRateLimiter());
 
     @Override
     public String getName() {
@@ -44,8 +47,10 @@ public class DummySource extends RepoSource {
 
     @Override
     public CompletableFuture<Map<Integer, IssueMetadata>> downloadMetadata(String repoId,
-                                                                           List<TurboIssue> issues) {
-        return addTask(new DownloadMetadataTaskStub(this, dummy, repoId, issues)).response;
+                                                                           List<TurboIssue> issues,
+                                                                           Set<Integer> prioritisedIds) {
+        return addTask(new DownloadMetadataTaskStub(this, dummy, repoId, issues, prioritisedIds,
+                                                    metadataScheduler)).response;
     }
 
     @Override
@@ -0,0 +1,182 @@
+package github;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.PagedRequest;
+import util.HTLog;
+import util.Utility;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Gets every page of a paged request with conditional requests, using the last-known ETag of each page,
+ * so that a request whose pages have not changed costs no more than a 304 response for each page.
+ *
+ * Once a page is found to have changed, its body is kept, and the pages after it are fetched unconditionally
+ * with a ParallelPageFetcher, as their items will be needed anyway. Only the unmodified pages before it are
+ * fetched again.
+ *
+ * The ETags of the pages of a request are kept together as a single string.
+ */
+public class ConditionalPageFetcher {
+
+    private static final Logger logger = HTLog.get(ConditionalPageFetcher.class);
+
+    private static final String ETAG_SEPARATOR = "#";
+
+    private final GitHubClientEx client;
+
+    public ConditionalPageFetcher(GitHubClientEx client) {
+        this.client = client;
+    }
+
+    /**
+     * The pages of a request, and whether any of them had changed.
+     */
+    public static class Result<T> {
+        private final Optional<List<T>> items;
+        private final List<String> pageETags;
+        private final HttpURLConnection firstResponse;
+
+        private Result(Optional<List<T>> items, List<String> pageETags, HttpURLConnection firstResponse) {
+            this.items = items;
+            this.pageETags = pageETags;
+            this.firstResponse = firstResponse;
+        }
+
+        public boolean isModified() {
+            return items.isPresent();
+        }
+
+        /**
+         * Returns the items on all pages, or an empty list if none of the pages has changed.
+         */
+        public List<T> getItems() {
+            return items.orElse(Collections.emptyList());
+        }
+
+        public List<String> getPageETags() {
+            return Collections.unmodifiableList(pageETags);
+        }
+
+        /**
+         * Returns the ETags of all pages together, to be used as the last-known ETags of the next request.
+         */
+        public String getETags() {
+            return combineETags(pageETags);
+        }
+
+        public HttpURLConnection getFirstResponse() {
+            return firstResponse;
+        }
+    }
+
+    /**
+     * Gets the pages of a request if any of them has changed since they had the given ETags,
+     * or if there are more or fewer pages than there were.
+     * @param request the request for the first page
+     * @param lastETags the last-known ETags of the pages, as given by Result::getETags; may be null or empty,
+     *                  in which case all pages are fetched unconditionally
+     */
+    public <T> Result<T> getAll(PagedRequest<T> request, String lastETags) throws IOException {
+        List<String> lastPageETags = splitETags(lastETags);
+        List<String> pageETags = new ArrayList<>();
+        // The response for each page, or null for pages which were not modified
+        List<GitHubResponse> pages = new ArrayList<>();
+        HttpURLConnection firstResponse = null;
+
+        PagedRequest<T> pageRequest = request;
+        while (pageRequest != null) {
+            int index = pages.size();
+            String lastPageETag = index < lastPageETags.size() ? lastPageETags.get(index) : "";
+
+            ImmutablePair<HttpURLConnection, GitHubResponse> response =
+                client.getConditionally(pageRequest, lastPageETag);
+            HttpURLConnection connection = response.getLeft();
+            boolean isNotModified = client.isNotModified(connection.getResponseCode());
+            if (index == 0) {
+                firstResponse = connection;
+            }
+
+            String pageETag = isNotModified ? lastPageETag : getETag(response.getRight());
+            // The server may not honour If-None-Match, so the ETag is compared as well
+            if (!isNotModified && !pageETag.equals(lastPageETag)) {
+                for (GitHubResponse page : new ParallelPageFetcher(client)
+                        .getPages(pageRequest, response.getRight(), (fetched, total) -> {})) {
+                    pages.add(page);
+                    pageETags.add(getETag(page));
+                }
+                return new Result<>(Optional.of(getItems(request, pages)), pageETags, firstResponse);
+            }
+            pageETags.add(pageETag);
+            pages.add(isNotModified ? null : response.getRight());
+
+            // 304 responses may omit the Link header, in which case the last-known number of pages is used
+            boolean hasNextPage = response.getRight().getNext() != null
+                || isNotModified && connection.getHeaderField("Link") == null
+                    && index + 1 < lastPageETags.size();
+            pageRequest = hasNextPage
+                ? ParallelPageFetcher.createPageRequest(request, request.getPage() + index + 1)
+                : null;
+        }
+
+        if (pages.size() == lastPageETags.size()) {
+            return new Result<>(Optional.empty(), pageETags, firstResponse);
+        }
+        return new Result<>(Optional.of(getItems(request, pages)), pageETags, firstResponse);
+    }
+
+    /**
+     * Gets the items on the given pages, fetching those which were not modified again.
+     */
+    private <T> List<T> getItems(PagedRequest<T> request, List<GitHubResponse> pages) throws IOException {
+        List<T> result = new ArrayList<>();
+        for (int index = 0; index < pages.size(); index++) {
+            GitHubResponse page = pages.get(index);
+            if (page == null) {
+                page = client.get(ParallelPageFetcher.createPageRequest(request, request.getPage() + index));
+            }
+            Collection<T> items = getItems(page);
+            result.addAll(items);
+            logger.info(request.getUri() + " | page " + index + ": " + items.size() + " items");
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Collection<T> getItems(GitHubResponse response) {
+        Collection<T> items = (Collection<T>) response.getBody();
+        return items == null ? new ArrayList<>() : items;
+    }
+
+    private static String getETag(GitHubResponse response) {
+        return Utility.stripQuotes(Optional.ofNullable(response.getHeader("ETag")).orElse(""));
+    }
+
+    /**
+     * Combines the ETags of several pages into one string.
+     */
+    public static String combineETags(List<String> eTags) {
+        return Utility.join(eTags, ETAG_SEPARATOR);
+    }
+
+    /**
+     * Splits a string of combined ETags into the ETags of each page.
+     * @param eTags string of combined ETags; may be null
+     * @return the ETags of each page, which is empty if there are none
+     */
+    public static List<String> splitETags(String eTags) {
+        if (eTags == null || eTags.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return Arrays.asList(eTags.split(ETAG_SEPARATOR, -1));
+    }
+}
@@ -0,0 +1,74 @@
+package github;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe. Counts the responses received from a host, and the bytes they took, to show
+ * how much is saved by conditional requests and compression.
+ */
+public class ConnectionStats {
+
+    private final String host;
+
+    private final AtomicLong responses = new AtomicLong(0);
+    private final AtomicLong notModifiedResponses = new AtomicLong(0);
+    private final AtomicLong compressedResponses = new AtomicLong(0);
+
+    // Bytes as sent by the host, and after decompression
+    private final AtomicLong bytesReceived = new AtomicLong(0);
+    private final AtomicLong bytesDecoded = new AtomicLong(0);
+
+    public ConnectionStats(String host) {
+        this.host = host;
+    }
+
+    void recordResponse(int code, boolean isCompressed) {
+        responses.incrementAndGet();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            notModifiedResponses.incrementAndGet();
+        }
+        if (isCompressed) {
+            compressedResponses.incrementAndGet();
+        }
+    }
+
+    void recordBytesReceived(long bytes) {
+        bytesReceived.addAndGet(bytes);
+    }
+
+    void recordBytesDecoded(long bytes) {
+        bytesDecoded.addAndGet(bytes);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public long getResponses() {
+        return responses.get();
+    }
+
+    public long getNotModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    public long getCompressedResponses() {
+        return compressedResponses.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getBytesDecoded() {
+        return bytesDecoded.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d responses (%d not modified, %d compressed), %d bytes received, %d decoded",
+            host, getResponses(), getNotModifiedResponses(), getCompressedResponses(),
+            getBytesReceived(), getBytesDecoded());
+    }
+}
@@ -3,6 +3,7 @@ package github;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.apache.commons.io.input.NullInputStream;
+import org.apache.commons.io.input.ProxyInputStream;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.client.GitHubClient;
@@ -12,21 +13,35 @@ import util.HTLog;
 import util.IOUtilities;
 import util.Utility;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
 
 public class GitHubClientEx extends GitHubClient {
     private static final Logger logger = HTLog.get(GitHubClientEx.class);
 
     protected static final int CONNECTION_TIMEOUT = 30000;
 
-    // Request method for HEAD API call
-    protected static final String METHOD_HEAD = "HEAD";
+    protected static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    protected static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    protected static final String ENCODING_GZIP = "gzip";
+
+    // Connections are kept alive and reused by the JDK, but it keeps only http.maxConnections idle ones
+    // per host (5 by default), fewer than the requests made at the same time. The application raises it
+    // to this at startup (see UI.main), as it applies to every connection in the JVM.
+    public static final int MAX_KEEP_ALIVE_CONNECTIONS = 2 * ParallelPageFetcher.DEFAULT_MAX_CONCURRENT_REQUESTS;
+
+    private final Map<String, ConnectionStats> connectionStats = new ConcurrentHashMap<>();
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private final RateLimitTracker rateLimitTracker = new RateLimitTracker();
 
     public GitHubClientEx() {
         super();
@@ -37,25 +52,94 @@ public class GitHubClientEx extends GitHubClient {
     }
 
     /**
-     * Extends superclass method with connection timeout parameters.
+     * Extends superclass method with connection timeout parameters, and asks for responses
+     * to be compressed.
+     *
+     * Connections are persistent (HttpURLConnection keeps them alive and reuses them for
+     * later requests to the same host) as long as their responses are read to the end,
+     * which is the case for every response read through getStream.
      */
     @Override
     protected HttpURLConnection createConnection(String uri) throws IOException {
         HttpURLConnection connection = super.createConnection(uri);
         connection.setConnectTimeout(CONNECTION_TIMEOUT);
         connection.setReadTimeout(CONNECTION_TIMEOUT);
+        connection.setRequestProperty(HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
         return connection;
     }
 
     /**
-     * Creates a HEAD request connection to the URI
-     *
-     * @param uri
-     * @return connection
-     * @throws IOException
+     * Extends superclass method to record the response in the stats of its host, and to feed
+     * its rate limit headers to the rate limit tracker and, for the REST API, the rate limiter.
+     * Called on every response to a request to the API.
+     */
+    @Override
+    protected GitHubClient updateRateLimits(HttpURLConnection request) {
+        try {
+            getConnectionStats(request.getURL().getHost())
+                .recordResponse(request.getResponseCode(), isCompressed(request));
+        } catch (IOException e) {
+            logger.warn("Unable to record response from " + request.getURL().getHost());
+        }
+        super.updateRateLimits(request);
+
+        // Read from the response itself, as the superclass's fields are shared by concurrent requests
+        Optional<RateLimitTracker.RateLimit> rateLimit = rateLimitTracker.update(request);
+        if (rateLimit.isPresent() && RateLimitTracker.CORE.equals(rateLimit.get().getResource())) {
+            rateLimiter.update(rateLimit.get().getRemaining(), rateLimit.get().getResetTime());
+        }
+        return this;
+    }
+
+    /**
+     * Returns the rate limiter fed by the responses to this client's requests.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Returns the tracker of the rate limits reported by the responses to this client's requests.
+     */
+    public RateLimitTracker getRateLimitTracker() {
+        return rateLimitTracker;
+    }
+
+    /**
+     * Returns the stats of the responses received from a host so far.
+     */
+    public ConnectionStats getConnectionStats(String host) {
+        return connectionStats.computeIfAbsent(host, ConnectionStats::new);
+    }
+
+    /**
+     * Returns the stats of the responses received so far, keyed by host.
+     */
+    public Map<String, ConnectionStats> getConnectionStats() {
+        return Collections.unmodifiableMap(connectionStats);
+    }
+
+    private static boolean isCompressed(HttpURLConnection request) {
+        return ENCODING_GZIP.equalsIgnoreCase(request.getHeaderField(HEADER_CONTENT_ENCODING));
+    }
+
+    /**
+     * An input stream which reports the number of bytes read from it.
      */
-    protected HttpURLConnection createHead(String uri) throws IOException {
-        return createConnection(uri, METHOD_HEAD);
+    private static class MeteredInputStream extends ProxyInputStream {
+        private final LongConsumer onRead;
+
+        MeteredInputStream(InputStream stream, LongConsumer onRead) {
+            super(stream);
+            this.onRead = onRead;
+        }
+
+        @Override
+        protected void afterRead(int bytesRead) {
+            if (bytesRead > 0) {
+                onRead.accept(bytesRead);
+            }
+        }
     }
 
     /**
@@ -111,23 +195,14 @@ public class GitHubClientEx extends GitHubClient {
         if (isOk(code)) { // 200 OK
             String updatedEtag = Utility.stripQuotes(httpRequest.getHeaderField("ETag"));
 
-            // Copy the httpRequest input stream into a byte array
-            InputStream reqIS = getStream(httpRequest);
-            ByteArrayOutputStream buffer = IOUtilities.inputStreamToByteArrayOutputStream(reqIS);
-            InputStream reqIS2 = new ByteArrayInputStream(buffer.toByteArray());
-            InputStream reqIS3 = new ByteArrayInputStream(buffer.toByteArray());
-
-            // The first copy is used to produce the GitHubResponse
-            GitHubResponse ghResponse = new GitHubResponse(httpRequest, getBody(request, reqIS2));
-
-            // The second is parsed again for event-specific information
-            return new GitHubEventsResponse(ghResponse, reqIS3, updatedEtag);
+            // The events are parsed as the body is read
+            try (InputStream body = getStream(httpRequest)) {
+                return new GitHubEventsResponse(new GitHubResponse(httpRequest, null), body, updatedEtag);
+            }
         } else if (isNotModified(code)) { // 304 Not Modified
-            GitHubResponse ghResponse = new GitHubResponse(httpRequest, null);
-            return new GitHubEventsResponse(ghResponse, new NullInputStream(0), currentETag);
+            return new GitHubEventsResponse(new GitHubResponse(httpRequest, null), currentETag);
         } else if (isEmpty(code)) {
-            GitHubResponse ghResponse = new GitHubResponse(httpRequest, null);
-            return new GitHubEventsResponse(ghResponse, new NullInputStream(0), "");
+            return new GitHubEventsResponse(new GitHubResponse(httpRequest, null), "");
         } else {
             throw createException(getStream(httpRequest), code, httpRequest.getResponseMessage());
         }
@@ -136,6 +211,7 @@ public class GitHubClientEx extends GitHubClient {
     /**
      * Accesses the Rate Limit API endpoint to retrieve the number of remaining requests for the hour,
      * as well as the next reset time. Calling this function itself does not count towards the API limit.
+     * The rate limit retrieved is recorded in the rate limit tracker.
      *
      * @return A pair consisting of the number of requests remaining for the hour and the next reset time.
      * @throws IOException
@@ -154,6 +230,8 @@ public class GitHubClientEx extends GitHubClient {
 
             long reset = mapRate.get("reset").longValue() * 1000; // seconds to milliseconds
             int remaining = mapRate.get("remaining").intValue();
+            int limit = Optional.ofNullable(mapRate.get("limit")).map(Double::intValue).orElse(-1);
+            rateLimitTracker.update(RateLimitTracker.CORE, limit, remaining, reset);
 
             return new ImmutablePair<>(remaining, reset);
         } else {
@@ -162,27 +240,36 @@ public class GitHubClientEx extends GitHubClient {
     }
 
     /**
-     * Gets a pair of HTTP connection and corresponding response from a header-only API call
+     * Gets a page of a request unless it has not been modified since it had the given ETag.
+     * The body of the response is null if the page has not been modified (or has no content).
      *
      * @param request for the API call
+     * @param eTag the last known ETag of the page, without quotes; the page is fetched
+     *             unconditionally if it is empty
      * @return a pair of HTTP connection and response for the API call
      * @throws IOException
      */
-    public ImmutablePair<HttpURLConnection, GitHubResponse> head(GitHubRequest request) throws IOException {
-        HttpURLConnection httpRequest = createHead(request.generateUri());
+    public ImmutablePair<HttpURLConnection, GitHubResponse> getConditionally(GitHubRequest request, String eTag)
+        throws IOException {
+
+        HttpURLConnection httpRequest = createGet(request.generateUri());
+        if (!eTag.isEmpty()) {
+            httpRequest.setRequestProperty("If-None-Match", "\"" + eTag + "\"");
+        }
         String accept = request.getResponseContentType();
         if (accept != null) {
             httpRequest.setRequestProperty(HEADER_ACCEPT, accept);
         }
-        logger.info(String.format("Requesting: %s %s",
-                    httpRequest.getRequestMethod(), httpRequest.getURL().getFile()));
 
         final int code = httpRequest.getResponseCode();
         updateRateLimits(httpRequest);
 
         logger.info(String.format("%s responded with %d %s",
-                    httpRequest.getURL().getPath(), code, httpRequest.getResponseMessage()));
-        if (isOk(code) || code == HttpURLConnection.HTTP_NOT_MODIFIED || isEmpty(code)) {
+                    httpRequest.getURL().getFile(), code, httpRequest.getResponseMessage()));
+        if (isOk(code)) {
+            return new ImmutablePair<>(httpRequest,
+                new GitHubResponse(httpRequest, getBody(request, getStream(httpRequest))));
+        } else if (isNotModified(code) || isEmpty(code)) {
             return new ImmutablePair<>(httpRequest, new GitHubResponse(httpRequest, null));
         }
 
@@ -209,12 +296,31 @@ public class GitHubClientEx extends GitHubClient {
     }
 
     /**
-     * Overridden to make public.
+     * Overridden to make public, to decompress compressed responses, and to record the
+     * bytes read in the stats of the host.
      */
     @Override
     @SuppressWarnings("PMD")
     public InputStream getStream(HttpURLConnection request) throws IOException {
-        return super.getStream(request);
+        InputStream stream = super.getStream(request);
+        if (stream == null) {
+            return null;
+        }
+        ConnectionStats stats = getConnectionStats(request.getURL().getHost());
+        if (!isCompressed(request)) {
+            return new MeteredInputStream(stream, bytes -> {
+                stats.recordBytesReceived(bytes);
+                stats.recordBytesDecoded(bytes);
+            });
+        }
+        try {
+            return new MeteredInputStream(
+                new GZIPInputStream(new MeteredInputStream(stream, stats::recordBytesReceived)),
+                stats::recordBytesDecoded);
+        } catch (EOFException e) {
+            // The body is empty
+            return new NullInputStream(0);
+        }
     }
 
     /**
@@ -1,22 +1,21 @@
 package github;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.eclipse.egit.github.core.IssueEvent;
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
 import org.eclipse.egit.github.core.User;
 import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.GsonUtils;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 import static org.eclipse.egit.github.core.client.IGitHubConstants.CHARSET_UTF8;
 
@@ -26,95 +25,122 @@ import static org.eclipse.egit.github.core.client.IGitHubConstants.CHARSET_UTF8;
  */
 public class GitHubEventsResponse {
 
-    private static final Logger logger = LogManager.getLogger(GitHubEventsResponse.class.getName());
+    // Shares egit's field naming and date formats
+    private static final Gson gson = GsonUtils.getGson();
 
     private final GitHubResponse response;
     private final List<TurboIssueEvent> turboIssueEvents;
     private final String updatedETag;
 
-    public GitHubEventsResponse(GitHubResponse response, InputStream jsonBody, String updatedETag) {
+    /**
+     * Creates a response with the events in the given body, which is parsed as it is read.
+     * @param jsonBody the body of the response, which is read to the end but not closed
+     * @throws IOException if the body could not be read or is not a list of events
+     */
+    public GitHubEventsResponse(GitHubResponse response, InputStream jsonBody, String updatedETag)
+        throws IOException {
         this.response = response;
-        this.turboIssueEvents = parseEventParameters(jsonBody);
+        this.turboIssueEvents = parseEvents(jsonBody);
         this.updatedETag = updatedETag;
     }
 
-    @SuppressWarnings("unchecked")
-    private List<TurboIssueEvent> parseEventParameters(InputStream jsonBody) {
-        ArrayList<TurboIssueEvent> eventsInJson = new ArrayList<>();
+    /**
+     * Creates a response without events, e.g. as they were not modified.
+     */
+    public GitHubEventsResponse(GitHubResponse response, String updatedETag) {
+        this.response = response;
+        this.turboIssueEvents = new ArrayList<>();
+        this.updatedETag = updatedETag;
+    }
 
-        Gson gson = new Gson();
-        Type type = new TypeToken<Map<String, Object>[]>(){}.getType();
-        BufferedReader reader;
+    /**
+     * The parts of an issue event in the response that are used, including the
+     * event-specific ones (which are only present for the corresponding types of events).
+     */
+    private static class IssueEventJson {
+        private User actor;
+        private String event;
+        private Date createdAt;
+
+        private Rename rename;
+        private Milestone milestone;
+        private Label label;
+        private User assignee;
+    }
+
+    private static class Rename {
+        private String from;
+        private String to;
+    }
 
+    /**
+     * Parses the events in a response body in a single pass, one event at a time.
+     */
+    private static List<TurboIssueEvent> parseEvents(InputStream jsonBody) throws IOException {
+        List<TurboIssueEvent> events = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(jsonBody, CHARSET_UTF8));
         try {
-            reader = new BufferedReader(new InputStreamReader(jsonBody, CHARSET_UTF8));
+            reader.beginArray();
+            while (reader.hasNext()) {
+                IssueEventJson event = gson.fromJson(reader, IssueEventJson.class);
+                events.add(toTurboIssueEvent(event));
+            }
+            reader.endArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Unable to parse issue events: " + e.getLocalizedMessage(), e);
+        }
+        return events;
+    }
 
-            Map<String, Object>[] eventsWithParameters = gson.fromJson(reader, type);
+    private static TurboIssueEvent toTurboIssueEvent(IssueEventJson json) {
+        TurboIssueEvent event = new TurboIssueEvent(json.actor, IssueEventType.fromString(json.event),
+                                                    json.createdAt);
 
-            if (eventsWithParameters == null) {
-                return eventsInJson;
+        switch (event.getType()) {
+        case Renamed:
+            // two string keys: from, to
+            if (json.rename != null) {
+                event.setRenamedFrom(json.rename.from);
+                event.setRenamedTo(json.rename.to);
             }
-
-            IssueEvent[] issueEvents = (IssueEvent[]) response.getBody();
-
-            Map<String, String> parameters;
-            for (int i = 0; i < issueEvents.length; i++) {
-                TurboIssueEvent event = new TurboIssueEvent(
-                        issueEvents[i].getActor(),
-                        IssueEventType.fromString(issueEvents[i].getEvent()),
-                        issueEvents[i].getCreatedAt());
-
-                switch (event.getType()) {
-                case Renamed:
-                    // two string keys: from, to
-                    parameters = (Map<String, String>) eventsWithParameters[i].get("rename");
-                    event.setRenamedFrom(parameters.get("from"));
-                    event.setRenamedTo(parameters.get("to"));
-                    break;
-                case Milestoned:
-                case Demilestoned:
-                    // one string key: title
-                    parameters = (Map<String, String>) eventsWithParameters[i].get("milestone");
-                    event.setMilestoneTitle(parameters.get("title"));
-                    break;
-                case Labeled:
-                case Unlabeled:
-                    // two string keys: name, color (hex, without #)
-                    parameters = (Map<String, String>) eventsWithParameters[i].get("label");
-                    event.setLabelColour(parameters.get("color"));
-                    event.setLabelName(parameters.get("name"));
-                    break;
-                case Assigned:
-                case Unassigned:
-                    // User object
-                    // re-serialise it using Gson
-                    Object assigneeMap = eventsWithParameters[i].get("assignee");
-                    String json = new Gson().toJson(assigneeMap);
-                    User user = gson.fromJson(json, User.class);
-                    event.setAssignedUser(user);
-                    break;
-                case Closed:
-                case Reopened:
-                case Locked:
-                case Unlocked:
-                    // No need to do anything
-                    break;
-                case Subscribed:
-                case Unsubscribed:
-                case Merged:
-                case HeadRefDeleted:
-                case HeadRefRestored:
-                case Referenced:
-                case Mentioned:
-                default:
-                    // Not yet implemented, or no events triggered
-                }
-                eventsInJson.add(event);
+            break;
+        case Milestoned:
+        case Demilestoned:
+            // one string key: title
+            if (json.milestone != null) {
+                event.setMilestoneTitle(json.milestone.getTitle());
+            }
+            break;
+        case Labeled:
+        case Unlabeled:
+            // two string keys: name, color (hex, without #)
+            if (json.label != null) {
+                event.setLabelColour(json.label.getColor());
+                event.setLabelName(json.label.getName());
             }
-        } catch (UnsupportedEncodingException e) {
-            logger.error(e.getLocalizedMessage(), e);
+            break;
+        case Assigned:
+        case Unassigned:
+            // User object
+            event.setAssignedUser(json.assignee);
+            break;
+        case Closed:
+        case Reopened:
+        case Locked:
+        case Unlocked:
+            // No need to do anything
+            break;
+        case Subscribed:
+        case Unsubscribed:
+        case Merged:
+        case HeadRefDeleted:
+        case HeadRefRestored:
+        case Referenced:
+        case Mentioned:
+        default:
+            // Not yet implemented, or no events triggered
         }
-        return eventsInJson;
+        return event;
     }
 
     public List<TurboIssueEvent> getTurboIssueEvents() {
@@ -0,0 +1,374 @@
+package github;
+
+import backend.IssueMetadata;
+import backend.resource.TurboIssue;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.GsonUtils;
+import util.HTLog;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Fetches the events and comments of many issues at once through the GitHub GraphQL API,
+ * instead of making a request (or two) per issue with the REST API.
+ *
+ * Each query asks for the first page of the events and comments of a batch of issues. Issues which
+ * have more events or comments than fit in a page are queried again, in later batches, from the
+ * cursor where their previous page ended, and only for what remains.
+ *
+ * GraphQL responses have no ETags. The events of each issue are given an ETag computed from their
+ * contents instead, so that unchanged events are still recognised as such when metadata is reconciled.
+ */
+public class GraphQLMetadataService {
+
+    private static final Logger logger = HTLog.get(GraphQLMetadataService.class);
+
+    public static final String SEGMENT_GRAPHQL = "/graphql";
+
+    // The number of issues in each query
+    public static final int DEFAULT_BATCH_SIZE = 25;
+    // The number of events or comments of an issue in each query (the most GitHub allows)
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    public static final String ETAG_PREFIX = "graphql-";
+
+    private static final String PAGE_INFO = "pageInfo { hasNextPage endCursor }";
+    private static final String ACTOR = "createdAt actor { login }";
+
+    // The fields of each type of event, by their GraphQL type names
+    private static final Map<String, String> EVENT_FIELDS = new LinkedHashMap<>();
+
+    static {
+        EVENT_FIELDS.put("AssignedEvent", ACTOR + " assignee { ... on User { login avatarUrl } }");
+        EVENT_FIELDS.put("UnassignedEvent", ACTOR + " assignee { ... on User { login avatarUrl } }");
+        EVENT_FIELDS.put("LabeledEvent", ACTOR + " label { name color }");
+        EVENT_FIELDS.put("UnlabeledEvent", ACTOR + " label { name color }");
+        EVENT_FIELDS.put("MilestonedEvent", ACTOR + " milestoneTitle");
+        EVENT_FIELDS.put("DemilestonedEvent", ACTOR + " milestoneTitle");
+        EVENT_FIELDS.put("RenamedTitleEvent", ACTOR + " previousTitle currentTitle");
+        EVENT_FIELDS.put("ClosedEvent", ACTOR);
+        EVENT_FIELDS.put("ReopenedEvent", ACTOR);
+        EVENT_FIELDS.put("LockedEvent", ACTOR);
+        EVENT_FIELDS.put("UnlockedEvent", ACTOR);
+        EVENT_FIELDS.put("ReferencedEvent", ACTOR);
+        EVENT_FIELDS.put("MentionedEvent", ACTOR);
+        EVENT_FIELDS.put("SubscribedEvent", ACTOR);
+        EVENT_FIELDS.put("UnsubscribedEvent", ACTOR);
+    }
+
+    // Events which only pull requests have
+    private static final Map<String, String> PULL_REQUEST_EVENT_FIELDS = new LinkedHashMap<>();
+
+    static {
+        PULL_REQUEST_EVENT_FIELDS.put("MergedEvent", ACTOR);
+        PULL_REQUEST_EVENT_FIELDS.put("HeadRefDeletedEvent", ACTOR);
+        PULL_REQUEST_EVENT_FIELDS.put("HeadRefRestoredEvent", ACTOR);
+    }
+
+    private static final Gson gson = GsonUtils.getGson();
+
+    private final GitHubClientEx client;
+    private final int batchSize;
+    private final int pageSize;
+
+    public GraphQLMetadataService(GitHubClientEx client) {
+        this(client, DEFAULT_BATCH_SIZE, DEFAULT_PAGE_SIZE);
+    }
+
+    public GraphQLMetadataService(GitHubClientEx client, int batchSize, int pageSize) {
+        assert batchSize > 0 && pageSize > 0;
+        this.client = client;
+        this.batchSize = batchSize;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * The progress of fetching the events and comments of an issue.
+     */
+    private static class IssueProgress {
+        private final TurboIssue issue;
+        private final List<TurboIssueEvent> events = new ArrayList<>();
+        private final List<Comment> comments = new ArrayList<>();
+        // Used to compute the ETag of the events
+        private final StringBuilder eventsContent = new StringBuilder();
+
+        // The cursors after which the next pages start; empty at the first page
+        private Optional<String> eventsCursor = Optional.empty();
+        private Optional<String> commentsCursor = Optional.empty();
+        private boolean hasMoreEvents = true;
+        private boolean hasMoreComments = true;
+
+        IssueProgress(TurboIssue issue) {
+            this.issue = issue;
+        }
+
+        String getAlias() {
+            return "issue" + issue.getId();
+        }
+
+        boolean isDone() {
+            return !hasMoreEvents && !hasMoreComments;
+        }
+
+        IssueMetadata toMetadata() {
+            String eventsETag = ETAG_PREFIX + Integer.toHexString(eventsContent.toString().hashCode());
+            return IssueMetadata.intermediate(events, comments, eventsETag, "");
+        }
+    }
+
+    /**
+     * Fetches the events and comments of the given issues of a repository. Review comments
+     * of pull requests are not included.
+     * @return the metadata of each issue, keyed by issue id
+     * @throws IOException if any query failed or had errors
+     */
+    public Map<Integer, IssueMetadata> getMetadata(IRepositoryIdProvider repository, List<TurboIssue> issues)
+        throws IOException {
+
+        Deque<IssueProgress> pending = issues.stream()
+            .map(IssueProgress::new)
+            .collect(Collectors.toCollection(ArrayDeque::new));
+        Map<Integer, IssueMetadata> result = new HashMap<>();
+        int queries = 0;
+
+        while (!pending.isEmpty()) {
+            List<IssueProgress> batch = new ArrayList<>();
+            while (batch.size() < batchSize && !pending.isEmpty()) {
+                batch.add(pending.poll());
+            }
+            JsonObject repositoryData = query(createQuery(repository, batch));
+            queries++;
+
+            for (IssueProgress progress : batch) {
+                JsonElement issueData = repositoryData.get(progress.getAlias());
+                if (issueData == null || !issueData.isJsonObject()) {
+                    throw new IOException("No data for #" + progress.issue.getId());
+                }
+                update(progress, issueData.getAsJsonObject());
+            }
+
+            // Issues with more to fetch go to the back, so that every batch is full until the end
+            for (IssueProgress progress : batch) {
+                if (progress.isDone()) {
+                    result.put(progress.issue.getId(), progress.toMetadata());
+                } else {
+                    pending.add(progress);
+                }
+            }
+        }
+
+        logger.info(HTLog.format(repository, "Fetched metadata of %d issues in %d queries",
+            issues.size(), queries));
+        return result;
+    }
+
+    /**
+     * Sends a query, returning the repository in its data.
+     */
+    private JsonObject query(String query) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        params.put("query", query);
+        JsonObject response = client.post(SEGMENT_GRAPHQL, params, JsonObject.class);
+
+        if (response == null) {
+            throw new IOException("Empty GraphQL response");
+        }
+        if (response.has("errors")) {
+            throw new IOException("GraphQL query failed: " + response.get("errors"));
+        }
+        JsonElement data = response.get("data");
+        if (data == null || !data.isJsonObject() || !data.getAsJsonObject().has("repository")
+            || !data.getAsJsonObject().get("repository").isJsonObject()) {
+            throw new IOException("GraphQL response has no repository");
+        }
+        return data.getAsJsonObject().getAsJsonObject("repository");
+    }
+
+    private String createQuery(IRepositoryIdProvider repository, List<IssueProgress> batch) {
+        String[] ownerAndName = repository.generateId().split("/");
+        Set<String> fragments = new LinkedHashSet<>();
+
+        StringBuilder query = new StringBuilder("query { repository(owner: ")
+            .append(gson.toJson(ownerAndName[0])).append(", name: ").append(gson.toJson(ownerAndName[1]))
+            .append(") {");
+        for (IssueProgress progress : batch) {
+            boolean isPullRequest = progress.issue.isPullRequest();
+            query.append(' ').append(progress.getAlias()).append(": ")
+                .append(isPullRequest ? "pullRequest" : "issue")
+                .append("(number: ").append(progress.issue.getId()).append(") {");
+            if (progress.hasMoreEvents) {
+                String fragment = isPullRequest ? "pullRequestEvents" : "issueEvents";
+                query.append(" timelineItems(").append(getPageArguments(progress.eventsCursor))
+                    .append(", itemTypes: [").append(getItemTypes(isPullRequest)).append("]) { ...")
+                    .append(fragment).append(" }");
+                fragments.add(fragment);
+            }
+            if (progress.hasMoreComments) {
+                query.append(" comments(").append(getPageArguments(progress.commentsCursor))
+                    .append(") { ...comments }");
+                fragments.add("comments");
+            }
+            query.append(" }");
+        }
+        query.append(" } }");
+
+        // Fragments may only be defined if they are used
+        if (fragments.contains("issueEvents")) {
+            query.append(" fragment issueEvents on IssueTimelineItemsConnection { ")
+                .append(getEventsSelection(false)).append(" }");
+        }
+        if (fragments.contains("pullRequestEvents")) {
+            query.append(" fragment pullRequestEvents on PullRequestTimelineItemsConnection { ")
+                .append(getEventsSelection(true)).append(" }");
+        }
+        if (fragments.contains("comments")) {
+            query.append(" fragment comments on IssueCommentConnection { ").append(PAGE_INFO)
+                .append(" nodes { databaseId body createdAt updatedAt author { login } } }");
+        }
+        return query.toString();
+    }
+
+    private String getPageArguments(Optional<String> cursor) {
+        return "first: " + pageSize + cursor.map(after -> ", after: " + gson.toJson(after)).orElse("");
+    }
+
+    private static Map<String, String> getEventFields(boolean isPullRequest) {
+        Map<String, String> fields = new LinkedHashMap<>(EVENT_FIELDS);
+        if (isPullRequest) {
+            fields.putAll(PULL_REQUEST_EVENT_FIELDS);
+        }
+        return fields;
+    }
+
+    /**
+     * Returns the item types of the events to fetch, e.g. LABELED_EVENT for LabeledEvent.
+     */
+    private static String getItemTypes(boolean isPullRequest) {
+        return getEventFields(isPullRequest).keySet().stream()
+            .map(type -> type.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase())
+            .collect(Collectors.joining(", "));
+    }
+
+    private static String getEventsSelection(boolean isPullRequest) {
+        return PAGE_INFO + " nodes { __typename " + getEventFields(isPullRequest).entrySet().stream()
+            .map(entry -> "... on " + entry.getKey() + " { " + entry.getValue() + " }")
+            .collect(Collectors.joining(" ")) + " }";
+    }
+
+    private static void update(IssueProgress progress, JsonObject issueData) throws IOException {
+        try {
+            if (progress.hasMoreEvents) {
+                JsonObject timelineItems = issueData.getAsJsonObject("timelineItems");
+                for (JsonElement node : timelineItems.getAsJsonArray("nodes")) {
+                    progress.eventsContent.append(node);
+                    toTurboIssueEvent(node.getAsJsonObject()).ifPresent(progress.events::add);
+                }
+                progress.eventsCursor = getEndCursor(timelineItems);
+                progress.hasMoreEvents = hasNextPage(timelineItems);
+            }
+            if (progress.hasMoreComments) {
+                JsonObject comments = issueData.getAsJsonObject("comments");
+                for (JsonElement node : comments.getAsJsonArray("nodes")) {
+                    progress.comments.add(toComment(node.getAsJsonObject()));
+                }
+                progress.commentsCursor = getEndCursor(comments);
+                progress.hasMoreComments = hasNextPage(comments);
+            }
+        } catch (ClassCastException | IllegalStateException | NullPointerException | JsonParseException e) {
+            throw new IOException("Unexpected GraphQL data for #" + progress.issue.getId() + ": " + e, e);
+        }
+    }
+
+    private static boolean hasNextPage(JsonObject connection) {
+        return connection.getAsJsonObject("pageInfo").get("hasNextPage").getAsBoolean();
+    }
+
+    private static Optional<String> getEndCursor(JsonObject connection) {
+        JsonElement cursor = connection.getAsJsonObject("pageInfo").get("endCursor");
+        return cursor == null || cursor.isJsonNull() ? Optional.empty() : Optional.of(cursor.getAsString());
+    }
+
+    /**
+     * Converts an event in the timeline of an issue, if it is of a known type.
+     */
+    private static Optional<TurboIssueEvent> toTurboIssueEvent(JsonObject node) {
+        String typeName = node.get("__typename").getAsString();
+        IssueEventType type;
+        try {
+            type = "RenamedTitleEvent".equals(typeName)
+                ? IssueEventType.Renamed
+                : IssueEventType.valueOf(typeName.replaceAll("Event$", ""));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring event of unknown type " + typeName);
+            return Optional.empty();
+        }
+
+        TurboIssueEvent event = new TurboIssueEvent(toUser(node.get("actor")), type,
+                                                    gson.fromJson(node.get("createdAt"), Date.class));
+        switch (type) {
+        case Renamed:
+            event.setRenamedFrom(getString(node, "previousTitle"));
+            event.setRenamedTo(getString(node, "currentTitle"));
+            break;
+        case Milestoned:
+        case Demilestoned:
+            event.setMilestoneTitle(getString(node, "milestoneTitle"));
+            break;
+        case Labeled:
+        case Unlabeled:
+            JsonElement label = node.get("label");
+            if (label != null && label.isJsonObject()) {
+                event.setLabelName(getString(label.getAsJsonObject(), "name"));
+                event.setLabelColour(getString(label.getAsJsonObject(), "color"));
+            }
+            break;
+        case Assigned:
+        case Unassigned:
+            event.setAssignedUser(toUser(node.get("assignee")));
+            break;
+        default:
+            // No event-specific details
+        }
+        return Optional.of(event);
+    }
+
+    private static Comment toComment(JsonObject node) {
+        Comment comment = new Comment();
+        if (node.has("databaseId") && !node.get("databaseId").isJsonNull()) {
+            comment.setId(node.get("databaseId").getAsLong());
+        }
+        comment.setBody(getString(node, "body"));
+        comment.setCreatedAt(gson.fromJson(node.get("createdAt"), Date.class));
+        comment.setUpdatedAt(gson.fromJson(node.get("updatedAt"), Date.class));
+        comment.setUser(toUser(node.get("author")));
+        return comment;
+    }
+
+    /**
+     * Converts an actor, author or assignee. Those of deleted accounts are null, and become the
+     * ghost user, as in the REST API.
+     */
+    private static User toUser(JsonElement actor) {
+        User user = new User().setLogin("ghost");
+        if (actor != null && actor.isJsonObject()) {
+            JsonObject object = actor.getAsJsonObject();
+            Optional.ofNullable(getString(object, "login")).ifPresent(user::setLogin);
+            user.setAvatarUrl(getString(object, "avatarUrl"));
+        }
+        return user;
+    }
+
+    private static String getString(JsonObject object, String member) {
+        JsonElement element = object.get(member);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+}
@@ -5,11 +5,14 @@ import static org.eclipse.egit.github.core.client.IGitHubConstants.*;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.HashMap;
+import java.util.List;
 
+import com.google.gson.reflect.TypeToken;
+import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
 import org.eclipse.egit.github.core.Issue;
-import org.eclipse.egit.github.core.IssueEvent;
 import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.PagedRequest;
 import org.eclipse.egit.github.core.service.IssueService;
 
 public class IssueServiceEx extends IssueService {
@@ -72,7 +75,29 @@ public class IssueServiceEx extends IssueService {
             .append(SEGMENT_ISSUES).append('/').append(issueId)
             .append(SEGMENT_EVENTS);
         request.setUri(uri);
-        request.setType(IssueEvent[].class);
         return ghClient.getEvent(request, eTag);
     }
+
+    /**
+     * Retrieves the comments of an issue if they have changed since they had the given ETags.
+     * Unchanged comments cost a 304 Not Modified response for each page.
+     *
+     * @param repository The repository from which to retrieve the comments
+     * @param issueId The numeric ID of the issue
+     * @param eTags The last-known ETags of the pages of comments, or empty to retrieve them unconditionally
+     * @return the comments, which are only present if they have changed, and their ETags
+     * @throws IOException
+     */
+    public ConditionalPageFetcher.Result<Comment> getUpdatedComments(IRepositoryIdProvider repository, int issueId,
+                                                                     String eTags) throws IOException {
+        StringBuilder uri = new StringBuilder(SEGMENT_REPOS);
+        uri.append('/').append(repository.generateId())
+            .append(SEGMENT_ISSUES).append('/').append(issueId)
+            .append(SEGMENT_COMMENTS);
+        PagedRequest<Comment> request = createPagedRequest();
+        request.setUri(uri);
+        request.setType(new TypeToken<List<Comment>>() {
+        }.getType());
+        return new ConditionalPageFetcher(ghClient).getAll(request, eTags);
+    }
 }
@@ -0,0 +1,228 @@
+package github;
+
+import org.apache.logging.log4j.Logger;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.PagedRequest;
+import org.eclipse.egit.github.core.util.UrlUtils;
+import util.HTLog;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.eclipse.egit.github.core.client.IGitHubConstants.PARAM_PAGE;
+
+/**
+ * Fetches every page of a paged request, several pages at a time.
+ *
+ * The first page is fetched on its own, as its Link header gives the number of the last page.
+ * The remaining pages are then fetched concurrently, at most maxConcurrentRequests at a time,
+ * and their items are returned in page order.
+ *
+ * If fewer requests remain within the rate limit than there are pages left, the pages are
+ * fetched one at a time instead, as with egit's PageIterator, so that a burst of requests
+ * does not use up what remains. The same happens if the last page is not known.
+ *
+ * @see org.eclipse.egit.github.core.client.PageIterator
+ */
+public class ParallelPageFetcher {
+
+    private static final Logger logger = HTLog.get(ParallelPageFetcher.class);
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    private final GitHubClient client;
+    private final int maxConcurrentRequests;
+
+    public ParallelPageFetcher(GitHubClient client) {
+        this(client, DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * @param client the client with which pages are requested
+     * @param maxConcurrentRequests the number of pages which may be requested at the same time
+     */
+    public ParallelPageFetcher(GitHubClient client, int maxConcurrentRequests) {
+        assert maxConcurrentRequests > 0;
+        this.client = client;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Fetches the items on every page of a request.
+     * @param request the request for the first page to fetch
+     * @param onProgress called with the number of pages fetched and the (possibly estimated) total,
+     *                   possibly on several threads
+     * @return the items on all pages, in order
+     * @throws IOException if any of the pages could not be fetched
+     */
+    public <V> List<V> getAll(PagedRequest<V> request, BiConsumer<Integer, Integer> onProgress)
+        throws IOException {
+
+        return getAll(request, client.get(request), onProgress);
+    }
+
+    /**
+     * Fetches the items on every page of a request whose first page has already been fetched.
+     * @param request the request for the first page
+     * @param firstPage the response to the request for the first page
+     * @param onProgress called with the number of pages fetched and the (possibly estimated) total,
+     *                   possibly on several threads
+     * @return the items on all pages, including the first, in order
+     * @throws IOException if any of the remaining pages could not be fetched
+     */
+    public <V> List<V> getAll(PagedRequest<V> request, GitHubResponse firstPage,
+                              BiConsumer<Integer, Integer> onProgress) throws IOException {
+        List<V> items = new ArrayList<>();
+        for (GitHubResponse page : getPages(request, firstPage, onProgress)) {
+            items.addAll(getItems(page));
+        }
+        return items;
+    }
+
+    /**
+     * Fetches every page of a request whose first page has already been fetched.
+     * @param request the request for the first page
+     * @param firstPage the response to the request for the first page
+     * @param onProgress called with the number of pages fetched and the (possibly estimated) total,
+     *                   possibly on several threads
+     * @return the responses for all pages, including the first, in order
+     * @throws IOException if any of the remaining pages could not be fetched
+     */
+    public <V> List<GitHubResponse> getPages(PagedRequest<V> request, GitHubResponse firstPage,
+                                             BiConsumer<Integer, Integer> onProgress) throws IOException {
+        List<GitHubResponse> pages = new ArrayList<>();
+        pages.add(firstPage);
+
+        int lastPage = parsePageNumber(firstPage.getLast());
+        if (lastPage <= request.getPage()) {
+            if (firstPage.getNext() != null) {
+                // There are more pages, but we do not know how many
+                pages.addAll(getRemainingSequentially(request, firstPage, onProgress));
+            } else {
+                onProgress.accept(1, 1);
+            }
+            return pages;
+        }
+
+        int totalPages = lastPage - request.getPage() + 1;
+        onProgress.accept(1, totalPages);
+
+        int remainingRequests = client.getRemainingRequests();
+        int concurrency = remainingRequests >= 0 && remainingRequests < totalPages - 1
+            ? 1
+            : Math.min(maxConcurrentRequests, totalPages - 1);
+        logger.info(String.format("Fetching %d more pages of %s, %d at a time",
+            totalPages - 1, request.getUri(), concurrency));
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ParallelPageFetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            AtomicInteger pagesFetched = new AtomicInteger(1);
+            List<Future<GitHubResponse>> remaining = new ArrayList<>();
+            for (int page = request.getPage() + 1; page <= lastPage; page++) {
+                PagedRequest<V> pageRequest = createPageRequest(request, page);
+                remaining.add(pool.submit(() -> {
+                    GitHubResponse response = client.get(pageRequest);
+                    onProgress.accept(pagesFetched.incrementAndGet(), totalPages);
+                    return response;
+                }));
+            }
+            for (Future<GitHubResponse> page : remaining) {
+                pages.add(page.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching " + request.getUri(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return pages;
+    }
+
+    private <V> List<GitHubResponse> getRemainingSequentially(PagedRequest<V> request, GitHubResponse firstPage,
+                                                              BiConsumer<Integer, Integer> onProgress)
+        throws IOException {
+
+        List<GitHubResponse> pages = new ArrayList<>();
+        String next = firstPage.getNext();
+        int pagesFetched = 1;
+        while (next != null) {
+            PagedRequest<V> pageRequest = createPageRequest(request, request.getPage() + pagesFetched);
+            pageRequest.setUri(getFile(next));
+            GitHubResponse response = client.get(pageRequest);
+            pages.add(response);
+            next = response.getNext();
+            pagesFetched++;
+            // The total is unknown; assume there is one more page until there is none
+            onProgress.accept(pagesFetched, next == null ? pagesFetched : pagesFetched + 1);
+        }
+        return pages;
+    }
+
+    /**
+     * Creates a request for another page of the given request.
+     */
+    public static <V> PagedRequest<V> createPageRequest(PagedRequest<V> request, int page) {
+        PagedRequest<V> pageRequest = new PagedRequest<>(page, request.getPageSize());
+        pageRequest.setUri(request.getUri());
+        pageRequest.setParams(request.getParams());
+        pageRequest.setType(request.getType());
+        pageRequest.setArrayType(request.getArrayType());
+        pageRequest.setResponseContentType(request.getResponseContentType());
+        return pageRequest;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Collection<V> getItems(GitHubResponse response) {
+        Collection<V> items = (Collection<V>) response.getBody();
+        return items == null ? new ArrayList<>() : items;
+    }
+
+    /**
+     * Strips the host from a link, as requests are made relative to the client's host.
+     */
+    private static String getFile(String uri) {
+        try {
+            return new URL(uri).getFile();
+        } catch (MalformedURLException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * Parses the page number from a link.
+     * @return the page number, or -1 if there is none
+     */
+    static int parsePageNumber(String uri) {
+        if (uri == null || uri.isEmpty()) {
+            return -1;
+        }
+        try {
+            String param = UrlUtils.getParam(new URI(uri), PARAM_PAGE);
+            return param == null || param.isEmpty() ? -1 : Integer.parseInt(param);
+        } catch (URISyntaxException | NumberFormatException e) {
+            return -1;
+        }
+    }
+}
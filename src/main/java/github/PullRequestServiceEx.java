@@ -3,7 +3,6 @@ package github;
 import com.google.gson.reflect.TypeToken;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
-import org.eclipse.egit.github.core.client.GitHubClient;
 import org.eclipse.egit.github.core.client.PagedRequest;
 import org.eclipse.egit.github.core.service.PullRequestService;
 import util.HTLog;
@@ -16,8 +15,11 @@ import static org.eclipse.egit.github.core.client.IGitHubConstants.*;
 public class PullRequestServiceEx extends PullRequestService {
     private static final Logger logger = HTLog.get(PullRequestServiceEx.class);
 
-    public PullRequestServiceEx(GitHubClient client) {
+    private final GitHubClientEx ghClient;
+
+    public PullRequestServiceEx(GitHubClientEx client) {
         super(client);
+        this.ghClient = client;
     }
 
     /**
@@ -66,6 +68,26 @@ public class PullRequestServiceEx extends PullRequestService {
 
         logger.info("Getting review comments for PR" + pullRequestNumber + " " + repoId);
 
+        return getAll(createReviewCommentsRequest(repoId, pullRequestNumber));
+    }
+
+    /**
+     * Gets a pull request's review comments if they have changed since they had the given ETags
+     *
+     * @param repository
+     * @param pullRequestNumber
+     * @param eTags the last-known ETags of the pages of review comments, or empty to get them unconditionally
+     * @return the review comments, which are only present if they have changed, and their ETags
+     * @throws IOException
+     */
+    public ConditionalPageFetcher.Result<ReviewComment> getUpdatedReviewComments(IRepositoryIdProvider repository,
+                                                                                 int pullRequestNumber,
+                                                                                 String eTags) throws IOException {
+        return new ConditionalPageFetcher(ghClient)
+            .getAll(createReviewCommentsRequest(getId(repository), Integer.toString(pullRequestNumber)), eTags);
+    }
+
+    private PagedRequest<ReviewComment> createReviewCommentsRequest(String repoId, String pullRequestNumber) {
         StringBuilder uri = new StringBuilder(SEGMENT_REPOS);
         uri.append('/').append(repoId)
             .append(SEGMENT_PULLS)
@@ -76,7 +98,6 @@ public class PullRequestServiceEx extends PullRequestService {
         request.setUri(uri);
         request.setType(new TypeToken<List<ReviewComment>>() {
         }.getType());
-
-        return getAll(request);
+        return request;
     }
 }
@@ -0,0 +1,178 @@
+package github;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.logging.log4j.Logger;
+import util.HTLog;
+
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe. Keeps the rate limits last reported in the headers of responses, one for each of GitHub's
+ * rate limit resources (core, search, graphql and so on), so that they can be known without asking
+ * for them with a separate request.
+ *
+ * Reset times are given by GitHub's clock, so they are converted to the local clock using the Date header
+ * of the response which reported them.
+ *
+ * A rate limit is stale once it has been reset, or after MAX_AGE, as other clients using the same
+ * credentials may have used some of it since.
+ */
+public class RateLimitTracker {
+
+    private static final Logger logger = HTLog.get(RateLimitTracker.class);
+
+    public static final String HEADER_RATE_LIMIT_LIMIT = "X-RateLimit-Limit";
+    public static final String HEADER_RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+    public static final String HEADER_RATE_LIMIT_RESET = "X-RateLimit-Reset";
+    public static final String HEADER_RATE_LIMIT_RESOURCE = "X-RateLimit-Resource";
+
+    // The resource of the REST API, which responses without a resource header count against
+    public static final String CORE = "core";
+
+    public static final long MAX_AGE = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The rate limit of a resource, as reported by a response.
+     */
+    public static class RateLimit {
+        private final String resource;
+        private final int limit;
+        private final int remaining;
+        // By GitHub's clock, in milliseconds since the epoch
+        private final long resetTime;
+        // The difference between GitHub's clock and the local clock when the response was received
+        private final long clockOffset;
+        // By the local clock
+        private final long updateTime;
+
+        public RateLimit(String resource, int limit, int remaining, long resetTime, long clockOffset,
+                         long updateTime) {
+            this.resource = resource;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.resetTime = resetTime;
+            this.clockOffset = clockOffset;
+            this.updateTime = updateTime;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        /**
+         * Returns the number of requests allowed in a rate limit window, or -1 if it was not reported.
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        public int getRemaining() {
+            return remaining;
+        }
+
+        /**
+         * Returns the time at which the rate limit is reset by GitHub's clock, in milliseconds since the epoch.
+         */
+        public long getResetTime() {
+            return resetTime;
+        }
+
+        /**
+         * Returns the time at which the rate limit is reset by the local clock, in milliseconds since the epoch.
+         */
+        public long getLocalResetTime() {
+            return resetTime - clockOffset;
+        }
+
+        public long getUpdateTime() {
+            return updateTime;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Map<String, RateLimit> rateLimits = new ConcurrentHashMap<>();
+
+    public RateLimitTracker() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock gives the current time in milliseconds since the epoch
+     */
+    public RateLimitTracker(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Records the rate limit reported by the headers of a response, if any.
+     * @return the rate limit reported
+     */
+    public Optional<RateLimit> update(HttpURLConnection response) {
+        String remaining = response.getHeaderField(HEADER_RATE_LIMIT_REMAINING);
+        String reset = response.getHeaderField(HEADER_RATE_LIMIT_RESET);
+        if (remaining == null || reset == null) {
+            return Optional.empty();
+        }
+        String limit = response.getHeaderField(HEADER_RATE_LIMIT_LIMIT);
+        String resource = Optional.ofNullable(response.getHeaderField(HEADER_RATE_LIMIT_RESOURCE)).orElse(CORE);
+        long now = clock.getAsLong();
+        // The Date header is 0 if absent, in which case the clocks are assumed to agree
+        long serverTime = response.getDate();
+        try {
+            RateLimit rateLimit = new RateLimit(resource, limit == null ? -1 : Integer.parseInt(limit),
+                                                Integer.parseInt(remaining),
+                                                Long.parseLong(reset) * 1000, // seconds to milliseconds
+                                                serverTime == 0 ? 0 : serverTime - now, now);
+            update(rateLimit);
+            return Optional.of(rateLimit);
+        } catch (NumberFormatException e) {
+            logger.warn(String.format("Invalid rate limit headers: %s, %s, %s", limit, remaining, reset));
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Records the rate limit of a resource, obtained by the local clock at the time of the call.
+     * @param resetTime the time at which the rate limit is reset, in milliseconds since the epoch
+     */
+    public void update(String resource, int limit, int remaining, long resetTime) {
+        update(new RateLimit(resource, limit, remaining, resetTime, 0, clock.getAsLong()));
+    }
+
+    private void update(RateLimit rateLimit) {
+        // Responses to concurrent requests may arrive out of order, so within the same rate limit window,
+        // the number of requests remaining is never raised
+        rateLimits.merge(rateLimit.getResource(), rateLimit, (last, latest) ->
+            last.getResetTime() == latest.getResetTime() && last.getRemaining() < latest.getRemaining()
+                ? new RateLimit(latest.resource, latest.limit, last.remaining, latest.resetTime,
+                                latest.clockOffset, latest.updateTime)
+                : latest);
+    }
+
+    /**
+     * Returns the last-known rate limit of a resource, unless it is stale.
+     */
+    public Optional<RateLimit> getRateLimit(String resource) {
+        RateLimit rateLimit = rateLimits.get(resource);
+        if (rateLimit == null) {
+            return Optional.empty();
+        }
+        long now = clock.getAsLong();
+        boolean isStale = now >= rateLimit.getLocalResetTime() || now - rateLimit.getUpdateTime() > MAX_AGE;
+        return isStale ? Optional.empty() : Optional.of(rateLimit);
+    }
+
+    /**
+     * Returns the requests remaining of the core resource and the local time at which they are reset,
+     * in the form given by GitHubClientEx::getRateLimitResetTime, unless they are stale.
+     */
+    public Optional<ImmutablePair<Integer, Long>> getCoreRateLimits() {
+        return getRateLimit(CORE).map(rateLimit ->
+            new ImmutablePair<>(rateLimit.getRemaining(), rateLimit.getLocalResetTime()));
+    }
+}
@@ -0,0 +1,153 @@
+package github;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe. A token bucket which paces requests to the API so that they do not use up its rate limit.
+ *
+ * It is fed by the X-RateLimit-Remaining and X-RateLimit-Reset headers of every response. Tokens are added
+ * at the rate which would spread the requests remaining evenly until the limit is reset, and at most
+ * maxBurst of them are kept, so that a burst of requests is allowed but a sustained one is slowed down.
+ * Once only reserve requests remain, no more tokens are given out, so that they are left for the user's
+ * own actions.
+ *
+ * Until the first response (or after the limit has been reset), nothing is known of the rate limit, and
+ * tokens are given out freely.
+ */
+public class RateLimiter {
+
+    public static final int DEFAULT_RESERVE = 100;
+    public static final int DEFAULT_MAX_BURST = 100;
+
+    private final int reserve;
+    private final int maxBurst;
+    private final LongSupplier clock;
+
+    // The requests remaining as of the last response, less those given tokens since; -1 if unknown
+    private int remainingRequests = -1;
+    // The time at which the rate limit is reset, in milliseconds since the epoch
+    private long resetTime = 0;
+
+    private double tokens = 0;
+    private double tokensPerMilli = 0;
+    private long lastRefillTime = 0;
+
+    public RateLimiter() {
+        this(DEFAULT_RESERVE, DEFAULT_MAX_BURST, System::currentTimeMillis);
+    }
+
+    /**
+     * @param reserve the number of requests which are never given tokens
+     * @param maxBurst the number of tokens which may be given out at once
+     * @param clock gives the current time in milliseconds since the epoch
+     */
+    public RateLimiter(int reserve, int maxBurst, LongSupplier clock) {
+        assert reserve >= 0 && maxBurst > 0;
+        this.reserve = reserve;
+        this.maxBurst = maxBurst;
+        this.clock = clock;
+    }
+
+    /**
+     * Updates the rate limit from the headers of a response.
+     *
+     * Responses to concurrent requests may arrive out of order, so within the same rate limit window,
+     * the number of requests remaining is never raised.
+     *
+     * @param remaining the number of requests remaining
+     * @param reset the time at which the rate limit is reset, in milliseconds since the epoch
+     */
+    public synchronized void update(int remaining, long reset) {
+        if (remaining < 0) {
+            return;
+        }
+        boolean isSameWindow = remainingRequests >= 0 && reset == resetTime;
+        remainingRequests = isSameWindow ? Math.min(remainingRequests, remaining) : remaining;
+        resetTime = reset;
+
+        refill();
+        long now = clock.getAsLong();
+        int budget = getBudget();
+        tokensPerMilli = budget / (double) Math.max(1, resetTime - now);
+        if (!isSameWindow) {
+            tokens = Math.min(maxBurst, budget);
+        }
+        tokens = Math.min(tokens, budget);
+        notifyAll();
+    }
+
+    /**
+     * Takes a token, waiting for one if there is none.
+     * @return false, without waiting, if the requests remaining are all in reserve; true otherwise
+     */
+    public boolean acquire() throws InterruptedException {
+        return acquire(1);
+    }
+
+    /**
+     * Takes a number of tokens, waiting for them if there are not enough.
+     *
+     * The tokens are taken all at once, so none are taken unless all of them are. More tokens than
+     * maxBurst are given out once maxBurst are available, and the rest are repaid by later refills.
+     *
+     * @return false if fewer requests than that remain outside the reserve, which may happen while
+     *         waiting if the rate limit is lowered; true otherwise
+     */
+    public synchronized boolean acquire(int permits) throws InterruptedException {
+        assert permits > 0;
+        while (true) {
+            if (!isLimitKnown()) {
+                return true;
+            }
+            if (getBudget() < permits) {
+                return false;
+            }
+            refill();
+            int required = Math.min(permits, maxBurst);
+            if (tokens >= required) {
+                tokens -= permits;
+                remainingRequests -= permits;
+                return true;
+            }
+            long wait = (long) Math.ceil((required - tokens) / tokensPerMilli);
+            wait(Math.max(1, Math.min(wait, resetTime - clock.getAsLong())));
+        }
+    }
+
+    /**
+     * Returns true if the requests remaining are all in reserve, so that no more tokens will be given out
+     * until the rate limit is reset.
+     */
+    public synchronized boolean isExhausted() {
+        return isLimitKnown() && getBudget() <= 0;
+    }
+
+    /**
+     * Returns the number of requests remaining, or -1 if it is not known.
+     */
+    public synchronized int getRemainingRequests() {
+        return isLimitKnown() ? remainingRequests : -1;
+    }
+
+    /**
+     * Returns the time at which the rate limit is reset, in milliseconds since the epoch,
+     * or 0 if it is not known.
+     */
+    public synchronized long getResetTime() {
+        return isLimitKnown() ? resetTime : 0;
+    }
+
+    private boolean isLimitKnown() {
+        return remainingRequests >= 0 && clock.getAsLong() < resetTime;
+    }
+
+    private int getBudget() {
+        return remainingRequests - reserve;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(Math.min(maxBurst, getBudget()), tokens + (now - lastRefillTime) * tokensPerMilli);
+        lastRefillTime = now;
+    }
+}
@@ -0,0 +1,54 @@
+package github;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * An event in the events feed of a repository, with only the parts used to tell
+ * which resources of the repository it changed.
+ */
+public class RepoEvent {
+
+    private String id;
+    private String type;
+
+    public RepoEvent(String id, String type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the resources changed by the event. Changes to the labels and milestones themselves
+     * (as opposed to those of issues) do not appear in the events feed.
+     */
+    public Set<RepoResource> getChangedResources() {
+        if (type == null) {
+            return EnumSet.noneOf(RepoResource.class);
+        }
+        switch (type) {
+        case "IssuesEvent":
+        case "IssueCommentEvent":
+        case "PullRequestEvent":
+        case "PullRequestReviewEvent":
+        case "PullRequestReviewCommentEvent":
+            return EnumSet.of(RepoResource.ISSUES);
+        case "MemberEvent":
+            return EnumSet.of(RepoResource.COLLABORATORS);
+        default:
+            return EnumSet.noneOf(RepoResource.class);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id;
+    }
+}
@@ -0,0 +1,52 @@
+package github;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The latest events in the events feed of a repository, as of a conditional request for them.
+ */
+public class RepoEventsResponse {
+
+    private final boolean isModified;
+    private final List<RepoEvent> events;
+    private final String eTag;
+    private final int pollInterval;
+    private final boolean hasOlderEvents;
+
+    /**
+     * @param isModified false if the feed has not changed since it had the ETag of the request
+     * @param events the events on the first page of the feed, newest first; empty if not modified
+     * @param eTag the ETag of the feed
+     * @param pollInterval the number of seconds GitHub asks clients to wait before polling the feed again
+     * @param hasOlderEvents true if there are older events than those on the first page
+     */
+    public RepoEventsResponse(boolean isModified, List<RepoEvent> events, String eTag, int pollInterval,
+                              boolean hasOlderEvents) {
+        this.isModified = isModified;
+        this.events = new ArrayList<>(events);
+        this.eTag = eTag;
+        this.pollInterval = pollInterval;
+        this.hasOlderEvents = hasOlderEvents;
+    }
+
+    public boolean isModified() {
+        return isModified;
+    }
+
+    public List<RepoEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public int getPollInterval() {
+        return pollInterval;
+    }
+
+    public boolean hasOlderEvents() {
+        return hasOlderEvents;
+    }
+}
@@ -0,0 +1,85 @@
+package github;
+
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.PagedRequest;
+import org.eclipse.egit.github.core.service.GitHubService;
+import util.HTLog;
+import util.Utility;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_EVENTS;
+import static org.eclipse.egit.github.core.client.PagedRequest.PAGE_FIRST;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_REPOS;
+
+/**
+ * Reads the events feed of a repository (/repos/:owner/:repo/events), which tells what has happened
+ * in the repository recently, newest first.
+ */
+public class RepoEventsService extends GitHubService {
+
+    private static final Logger logger = HTLog.get(RepoEventsService.class);
+
+    public static final String HEADER_POLL_INTERVAL = "X-Poll-Interval";
+    public static final int DEFAULT_POLL_INTERVAL = 60;
+
+    // The largest page of events GitHub gives
+    private static final int PAGE_SIZE = 100;
+
+    private final GitHubClientEx ghClient;
+
+    public RepoEventsService(GitHubClientEx client) {
+        super(client);
+        this.ghClient = client;
+    }
+
+    /**
+     * Gets the first page of the events feed of a repository, unless it has not changed since it had
+     * the given ETag. A feed which has not changed costs a 304 Not Modified response.
+     *
+     * @param repository the repository whose events to get
+     * @param eTag the last-known ETag of the feed, or empty to get it unconditionally
+     * @return the events, newest first
+     * @throws IOException
+     */
+    public RepoEventsResponse getEvents(IRepositoryIdProvider repository, String eTag) throws IOException {
+        PagedRequest<RepoEvent> request = createPagedRequest(PAGE_FIRST, PAGE_SIZE);
+        request.setUri(SEGMENT_REPOS + '/' + getId(repository) + SEGMENT_EVENTS);
+        request.setType(new TypeToken<List<RepoEvent>>() {
+        }.getType());
+
+        ImmutablePair<HttpURLConnection, GitHubResponse> response = ghClient.getConditionally(request, eTag);
+        HttpURLConnection connection = response.getLeft();
+        int pollInterval = parsePollInterval(connection.getHeaderField(HEADER_POLL_INTERVAL));
+
+        if (ghClient.isNotModified(connection.getResponseCode())) {
+            return new RepoEventsResponse(false, new ArrayList<>(), eTag, pollInterval, false);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<RepoEvent> events = (List<RepoEvent>) response.getRight().getBody();
+        String updatedETag = Utility.stripQuotes(Optional.ofNullable(connection.getHeaderField("ETag")).orElse(""));
+        return new RepoEventsResponse(true, events == null ? new ArrayList<>() : events, updatedETag, pollInterval,
+                                      response.getRight().getNext() != null);
+    }
+
+    private static int parsePollInterval(String pollInterval) {
+        if (pollInterval == null) {
+            return DEFAULT_POLL_INTERVAL;
+        }
+        try {
+            return Integer.parseInt(pollInterval.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid poll interval: " + pollInterval);
+            return DEFAULT_POLL_INTERVAL;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package github;
+
+/**
+ * The kinds of resources of a repository which are kept up to date.
+ */
+public enum RepoResource {
+    ISSUES,
+    LABELS,
+    MILESTONES,
+    COLLABORATORS
+}
@@ -71,7 +71,7 @@ public class PullRequestUpdateService extends UpdateService<PullRequest> {
 
         try {
             PagedRequest<PullRequest> request = createUpdatedRequest(repoId);
-            result = new ArrayList<>(getPagedItems(resourceDesc, new PageIterator<>(request, client)));
+            result = new ArrayList<>(getPagedItems(resourceDesc, request));
         } catch (IOException e) {
             logger.error(e.getLocalizedMessage(), e);
             return result;
@@ -82,16 +82,17 @@ public class PullRequestUpdateService extends UpdateService<PullRequest> {
     }
 
     /**
-     * Overrides parent's method to stop getting items if some items in a page has
-     * updatedAt time before the lastIssueCheckTime
+     * Gets pages of pull requests, stopping if some items in a page has updatedAt time
+     * before the lastIssueCheckTime. As later pages are often not needed, pages are
+     * fetched one at a time.
      * @param resourceDesc
-     * @param iterator the paged request to iterate through
+     * @param request the request for the first page
      * @return
      * @throws IOException
      */
-    @Override
-    protected List<PullRequest> getPagedItems(String resourceDesc, PageIterator<PullRequest> iterator)
+    private List<PullRequest> getPagedItems(String resourceDesc, PagedRequest<PullRequest> request)
             throws IOException {
+        PageIterator<PullRequest> iterator = new PageIterator<>(request, client);
         List<PullRequest> elements = new ArrayList<>();
         int page = 0;
 
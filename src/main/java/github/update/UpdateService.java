@@ -1,13 +1,10 @@
 package github.update;
 
+import github.ConditionalPageFetcher;
 import github.GitHubClientEx;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
-import org.eclipse.egit.github.core.client.GitHubRequest;
-import org.eclipse.egit.github.core.client.NoSuchPageException;
-import org.eclipse.egit.github.core.client.PageIterator;
 import org.eclipse.egit.github.core.client.PagedRequest;
 import org.eclipse.egit.github.core.service.GitHubService;
 import util.Utility;
@@ -90,19 +87,10 @@ public class UpdateService<T> extends GitHubService {
 
         logger.info(String.format("Updating %s with ETag %s", resourceDesc, lastETags));
         try {
-            PagedRequest<T> headerRequest = createUpdatedRequest(repoId);
-            Optional<ImmutablePair<List<String>, HttpURLConnection>> etags = getPagedEtags(headerRequest, client);
-
-            if (!etags.isPresent()) {
-                /* Respond as if we succeeded and there were no updates.
-                   The assumption is that updates are cheap and we can do them as frequently as needed. */
-                logger.warn(String.format("%s: error getting updated items", getClass().getSimpleName()));
-            } else {
-                updatedETags = combineETags(etags.get().getLeft());
-                result = downloadUpdatedItems(repoId, resourceDesc, updatedETags);
-                updateCheckTime(etags.get().getRight());
-            }
+            result = downloadUpdatedItems(repoId, resourceDesc);
         } catch (IOException e) {
+            /* Respond as if we succeeded and there were no updates.
+               The assumption is that updates are cheap and we can do them as frequently as needed. */
             logger.error(e.getLocalizedMessage(), e);
             return result;
         }
@@ -111,20 +99,26 @@ public class UpdateService<T> extends GitHubService {
         return result;
     }
 
+    /**
+     * Gets every page of the items with a conditional request, using the page's last-known ETag,
+     * so that pages which have not changed cost no more than a 304 response.
+     *
+     * @return the items on all pages, or an empty list if none of the pages has changed
+     * @see ConditionalPageFetcher
+     */
     private ArrayList<T> downloadUpdatedItems(IRepositoryIdProvider repoId,
-                                              String resourceDesc,
-                                              Optional<String> updatedETags) throws IOException {
-        ArrayList<T> result = new ArrayList<>();
+                                              String resourceDesc) throws IOException {
+        ConditionalPageFetcher.Result<T> response =
+            new ConditionalPageFetcher(client).getAll(createUpdatedRequest(repoId), lastETags);
+        updateCheckTime(response.getFirstResponse());
+        updatedETags = combineETags(response.getPageETags());
 
-        if (!updatedETags.isPresent() || updatedETags.get().equals(lastETags)){
+        if (!response.isModified()) {
             logger.info("Nothing to update");
-        } else {
-            PagedRequest<T> request = createUpdatedRequest(repoId);
-            result = new ArrayList<>(getPagedItems(resourceDesc, new PageIterator<>(request, client)));
-            logger.info(String.format("New ETag for %s: %s", resourceDesc, updatedETags));
+            return new ArrayList<>();
         }
-
-        return result;
+        logger.info(String.format("New ETag for %s: %s", resourceDesc, updatedETags));
+        return new ArrayList<>(response.getItems());
     }
 
     /**
@@ -133,61 +127,7 @@ public class UpdateService<T> extends GitHubService {
      * @return string of combined etags
      */
     private static Optional<String> combineETags(List<String> etags) {
-        return Optional.of(Utility.join(etags, "#"));
-    }
-
-    /**
-     * Gets a list of ETags for all pages returned from an API request and
-     * also return the connection used to get the ETags so that their last check time
-     * can be recorded elsewhere
-     * @param request
-     * @param client
-     * @return a Optional list of ETags for all pages returned from an API request and
-     *         corresponding HTTP connection or an empty Optional if an error occurs
-     */
-    private Optional<ImmutablePair<List<String>, HttpURLConnection>> getPagedEtags(
-            GitHubRequest request, GitHubClientEx client) {
-
-        PageHeaderIterator iter = new PageHeaderIterator(request, client, "ETag");
-        List<String> etags = new ArrayList<>();
-        HttpURLConnection connection = null;
-
-        while (iter.hasNext()) {
-            try {
-                etags.add(Utility.stripQuotes(iter.next()));
-                if (connection == null) {
-                    connection = iter.getLastConnection();
-                }
-            } catch (NoSuchPageException e) {
-                logger.error("No such page exception at " + iter.getRequest().generateUri());
-                return Optional.empty();
-            }
-        }
-
-        return Optional.of(new ImmutablePair<>(etags, connection));
-    }
-
-    /**
-     * A specialised version of GitHubService::getPage that does logging.
-     * @param iterator the paged request to iterate through
-     * @return a list of items
-     * @throws IOException
-     */
-    protected List<T> getPagedItems(String resourceDesc, PageIterator<T> iterator) throws IOException {
-        List<T> elements = new ArrayList<>();
-        int length = 0;
-        int page = 0;
-        try {
-            while (iterator.hasNext()) {
-                elements.addAll(iterator.next());
-                int diff = elements.size() - length;
-                length = elements.size();
-                logger.info(resourceDesc + " | page " + (page++) + ": " + diff + " items");
-            }
-        } catch (NoSuchPageException pageException) {
-            throw pageException.getCause();
-        }
-        return elements;
+        return Optional.of(ConditionalPageFetcher.combineETags(etags));
     }
 
     /**
@@ -33,6 +33,36 @@ public class GlobalConfig {
     private final Map<String, List<PanelInfo>> savedBoards = new LinkedHashMap<>();
     private final Map<String, Map<Integer, LocalDateTime>> markedReadTimes = new HashMap<>();
     private Map<String, String> keyboardShortcuts = new HashMap<>();
+    // The requests per hour which refreshes may take; the default if not positive
+    private int refreshRequestsPerHour = 0;
+    // How long saves are held back for when writing behind; the default if not positive
+    private long writeBehindDelayMillis = 0;
+    // The most memory, in bytes, which models of repositories not in use may take; the default if not positive
+    private long inactiveModelsByteBudget = 0;
+
+    public int getRefreshRequestsPerHour() {
+        return refreshRequestsPerHour;
+    }
+
+    public void setRefreshRequestsPerHour(int refreshRequestsPerHour) {
+        this.refreshRequestsPerHour = refreshRequestsPerHour;
+    }
+
+    public long getWriteBehindDelayMillis() {
+        return writeBehindDelayMillis;
+    }
+
+    public void setWriteBehindDelayMillis(long writeBehindDelayMillis) {
+        this.writeBehindDelayMillis = writeBehindDelayMillis;
+    }
+
+    public long getInactiveModelsByteBudget() {
+        return inactiveModelsByteBudget;
+    }
+
+    public void setInactiveModelsByteBudget(long inactiveModelsByteBudget) {
+        this.inactiveModelsByteBudget = inactiveModelsByteBudget;
+    }
 
     public Map<String, String> getKeyboardShortcuts() {
         return new HashMap<>(keyboardShortcuts);
@@ -191,4 +191,28 @@ public class Preferences { // NOPMD
     public void setKeyboardShortcuts(Map<String, String> keyboardShortcuts) {
         global.setKeyboardShortcuts(keyboardShortcuts);
     }
+
+    public int getRefreshRequestsPerHour() {
+        return global.getRefreshRequestsPerHour();
+    }
+
+    public void setRefreshRequestsPerHour(int refreshRequestsPerHour) {
+        global.setRefreshRequestsPerHour(refreshRequestsPerHour);
+    }
+
+    public long getWriteBehindDelayMillis() {
+        return global.getWriteBehindDelayMillis();
+    }
+
+    public void setWriteBehindDelayMillis(long writeBehindDelayMillis) {
+        global.setWriteBehindDelayMillis(writeBehindDelayMillis);
+    }
+
+    public long getInactiveModelsByteBudget() {
+        return global.getInactiveModelsByteBudget();
+    }
+
+    public void setInactiveModelsByteBudget(long inactiveModelsByteBudget) {
+        global.setInactiveModelsByteBudget(inactiveModelsByteBudget);
+    }
 }
@@ -1,12 +1,18 @@
 package ui;
 
 import backend.RepoIO;
+import backend.github.GitHubSource;
 import backend.interfaces.RepoStore;
+import backend.json.IncrementalJSONStore;
 import backend.json.JSONStore;
 import backend.json.JSONStoreStub;
+import backend.json.SnapshotFormat;
+import backend.json.WriteBehindJSONStore;
 import backend.stub.DummySource;
 import javafx.application.Application;
+import org.apache.logging.log4j.Logger;
 import prefs.Preferences;
+import util.HTLog;
 
 import java.util.HashMap;
 import java.util.Optional;
@@ -25,6 +31,8 @@ import java.util.Optional;
  * instance which can be called from tests that need to access the UI class directly.
  */
 public final class TestController {
+    private static final Logger logger = HTLog.get(TestController.class);
+
     private static UI ui;
     private static HashMap<String, String> commandLineArgs;
 
@@ -88,6 +96,37 @@ public final class TestController {
         return hasUI() && commandLineArgs.getOrDefault("testchromedriver", "false").equalsIgnoreCase("true");
     }
 
+    // When --incrementalstore=true is passed as an argument, repositories are saved to an
+    // IncrementalJSONStore, which only writes the resources that changed.
+    public static boolean isIncrementalStoreEnabled() {
+        return hasUI() && commandLineArgs.getOrDefault("incrementalstore", "false").equalsIgnoreCase("true");
+    }
+
+    // When --binarystore=true is passed as an argument, repositories are saved in the compact
+    // SnapshotFormat.BINARY instead of JSON.
+    public static boolean isBinaryStoreEnabled() {
+        return hasUI() && commandLineArgs.getOrDefault("binarystore", "false").equalsIgnoreCase("true");
+    }
+
+    // When --mapdescriptions=true is passed as an argument along with --binarystore=true, issue
+    // descriptions are memory-mapped from the store and only decoded when needed.
+    public static boolean isMapDescriptionsEnabled() {
+        return hasUI() && commandLineArgs.getOrDefault("mapdescriptions", "false").equalsIgnoreCase("true");
+    }
+
+    // When --writebehind=true is passed as an argument, saves to the store are held back for a few
+    // seconds (the writeBehindDelayMillis setting), so that several saves of the same repository in
+    // quick succession are written once.
+    public static boolean isWriteBehindEnabled() {
+        return hasUI() && commandLineArgs.getOrDefault("writebehind", "false").equalsIgnoreCase("true");
+    }
+
+    // When --eventsync=true is passed as an argument, repositories are updated as their events feeds
+    // say, rather than by checking every resource for updates on every refresh.
+    public static boolean isEventSyncEnabled() {
+        return hasUI() && commandLineArgs.getOrDefault("eventsync", "false").equalsIgnoreCase("true");
+    }
+
     // Used for test mode to shutdown jvm on quit (not used for ci/tests because that will cause
     // tests to fail).
     public static boolean isCloseOnQuit() {
@@ -137,14 +176,45 @@ public final class TestController {
     /**
      * Creates a RepoIO for the application that uses different components
      * depending on various test options: --test, --testjson etc.
+     * @param prefs the preferences from which the settings of the store are taken
      * @return
      */
-    public static RepoIO createApplicationRepoIO() {
+    public static RepoIO createApplicationRepoIO(Preferences prefs) {
         if (isTestMode()) {
             return createTestingRepoIO(isTestJSONEnabled() ? Optional.of(new JSONStoreStub()) : Optional.empty());
         } else {
-            return new RepoIO(Optional.empty(), Optional.empty(), Optional.empty());
+            return new RepoIO(Optional.of(new GitHubSource(isEventSyncEnabled())), createApplicationStore(prefs),
+                              Optional.empty());
+        }
+    }
+
+    /**
+     * Creates the store used by the application outside of test mode, depending on
+     * the store options given: --incrementalstore, --binarystore, --mapdescriptions, --writebehind etc.
+     *
+     * The incremental store writes JSON snapshots only, so it cannot be combined with --binarystore;
+     * --incrementalstore is ignored in that case, so that existing binary snapshots are still used.
+     * @return the store to be used, or empty if the default JSONStore should be used
+     */
+    private static Optional<JSONStore> createApplicationStore(Preferences prefs) {
+        if (isIncrementalStoreEnabled() && isBinaryStoreEnabled()) {
+            logger.error("--incrementalstore cannot be combined with --binarystore; ignoring --incrementalstore");
+        }
+        if (isMapDescriptionsEnabled() && !isBinaryStoreEnabled()) {
+            logger.error("--mapdescriptions only applies along with --binarystore; ignoring --mapdescriptions");
+        }
+
+        Optional<JSONStore> store = Optional.empty();
+        if (isBinaryStoreEnabled()) {
+            store = Optional.of(new JSONStore(SnapshotFormat.BINARY, isMapDescriptionsEnabled()));
+        } else if (isIncrementalStoreEnabled()) {
+            store = Optional.of(new IncrementalJSONStore());
+        }
+        if (isWriteBehindEnabled()) {
+            return Optional.of(new WriteBehindJSONStore(store.orElseGet(JSONStore::new),
+                                                        prefs.getWriteBehindDelayMillis()));
         }
+        return store;
     }
 
     /**
@@ -7,6 +7,7 @@ import browserview.BrowserComponentStub;
 import com.google.common.eventbus.EventBus;
 import com.sun.jna.platform.win32.User32;
 import com.sun.jna.platform.win32.WinDef.HWND;
+import github.GitHubClientEx;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
@@ -61,7 +62,8 @@ public class UI extends Application implements EventDispatcher {
     private static HWND mainWindowHandle;
     private final GlobalHotkey globalHotkey = new GlobalHotkey(this);
 
-    private static final int REFRESH_PERIOD = 60;
+    // How often, in seconds, repositories are checked for being due to be refreshed
+    private static final int REFRESH_CHECK_PERIOD = 1;
 
     // Application-level state
 
@@ -91,6 +93,11 @@ public class UI extends Application implements EventDispatcher {
 
     @SuppressWarnings("PMD")
     public static void main(String[] args) {
+        // Keeps enough idle connections to GitHub for concurrent requests to reuse them, unless set on
+        // the command line; this is JVM-wide, so it is set once here before any connection is made
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(GitHubClientEx.MAX_KEEP_ALIVE_CONNECTIONS));
+        }
         Application.launch(args);
     }
 
@@ -216,8 +223,10 @@ public class UI extends Application implements EventDispatcher {
         // we can pass them in the form of an array.
         logic = new Logic(uiManager, prefs, Optional.empty());
         // TODO clear cache if necessary
-        refreshTimer = new TickingTimer("Refresh Timer", REFRESH_PERIOD,
-            status::updateTimeToRefresh, logic::refresh, TimeUnit.SECONDS);
+        refreshTimer = new TickingTimer("Refresh Timer", REFRESH_CHECK_PERIOD,
+            time -> status.updateTimeToRefresh(logic.getSecondsToNextRefresh()),
+            () -> Platform.runLater(() -> logic.refreshDue(panels.getRepositoriesReferencedOnAllPanels())),
+            TimeUnit.SECONDS);
         refreshTimer.start();
         undoController = new UndoController(notificationController);
     }
@@ -280,6 +289,9 @@ public class UI extends Application implements EventDispatcher {
         if (browserComponent != null) {
             browserComponent.onAppQuit();
         }
+        if (logic != null) {
+            logic.onAppQuit();
+        }
         if (!TestController.isTestMode() || TestController.isTestGlobalConfig()) {
             panels.saveSession();
             prefs.saveGlobalConfig();
@@ -325,7 +337,6 @@ public class UI extends Application implements EventDispatcher {
                     if (shouldRefresh) {
                         logger.info("Browser view has changed; refreshing");
                         logic.refresh();
-                        refreshTimer.restart();
                     }
                 }
             });
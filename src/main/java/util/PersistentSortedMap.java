@@ -0,0 +1,259 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * An immutable map sorted by its keys. Putting or removing an entry returns a new map which shares all but
+ * O(log n) of its nodes with the old one, so both can be kept at little cost, and a change to k entries of
+ * a large map costs O(k log n) instead of a copy of the whole map.
+ *
+ * Implemented as an AVL tree with path copying. Null keys are not allowed.
+ */
+public final class PersistentSortedMap<K, V> {
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+        private final int size;
+
+        private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return new PersistentSortedMap<>(Comparator.<K>naturalOrder(), null);
+    }
+
+    /**
+     * Returns a map of the given values by their keys. Where several values have the same key,
+     * the first is kept, as it would be found first by a linear search.
+     */
+    public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> of(Collection<V> values,
+                                                                                  Function<V, K> key) {
+        PersistentSortedMap<K, V> map = empty();
+        for (V value : values) {
+            map = map.putIfAbsent(key.apply(value), value);
+        }
+        return map;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the value of a key, or null if there is none or the key is null.
+     */
+    public V get(K key) {
+        Node<K, V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean containsKey(K key) {
+        return find(key) != null;
+    }
+
+    /**
+     * Returns a map in which the key has the given value. This map is returned if it already does.
+     */
+    public PersistentSortedMap<K, V> put(K key, V value) {
+        return withRoot(put(root, Objects.requireNonNull(key), value, true));
+    }
+
+    /**
+     * Returns a map in which the key has the given value, unless it already has one, in which case
+     * this map is returned.
+     */
+    public PersistentSortedMap<K, V> putIfAbsent(K key, V value) {
+        return withRoot(put(root, Objects.requireNonNull(key), value, false));
+    }
+
+    /**
+     * Returns a map without the key. This map is returned if it does not have the key.
+     */
+    public PersistentSortedMap<K, V> remove(K key) {
+        return withRoot(remove(root, key));
+    }
+
+    /**
+     * Returns the values in the order of their keys, in a new list.
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    /**
+     * Performs an action on each entry, in the order of the keys.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        forEach(root, action);
+    }
+
+    private Node<K, V> find(K key) {
+        if (key == null) {
+            return null;
+        }
+        Node<K, V> node = root;
+        while (node != null) {
+            int comparison = comparator.compare(key, node.key);
+            if (comparison == 0) {
+                return node;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private PersistentSortedMap<K, V> withRoot(Node<K, V> newRoot) {
+        return newRoot == root ? this : new PersistentSortedMap<>(comparator, newRoot);
+    }
+
+    private Node<K, V> put(Node<K, V> node, K key, V value, boolean replace) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int comparison = comparator.compare(key, node.key);
+        if (comparison < 0) {
+            Node<K, V> left = put(node.left, key, value, replace);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        } else if (comparison > 0) {
+            Node<K, V> right = put(node.right, key, value, replace);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        } else if (!replace || node.value == value) {
+            return node;
+        } else {
+            return new Node<>(key, value, node.left, node.right);
+        }
+    }
+
+    private Node<K, V> remove(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = comparator.compare(key, node.key);
+        if (comparison < 0) {
+            Node<K, V> left = remove(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        } else if (comparison > 0) {
+            Node<K, V> right = remove(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else {
+            Node<K, V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+        }
+    }
+
+    private static <K, V> Node<K, V> removeFirst(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, removeFirst(node.left), node.right);
+    }
+
+    /**
+     * Returns a node with the given entry and subtrees, rotated if their heights differ by more than one.
+     */
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            Node<K, V> middle = left.right;
+            return new Node<>(middle.key, middle.value,
+                              new Node<>(left.key, left.value, left.left, middle.left),
+                              new Node<>(key, value, middle.right, right));
+        } else if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            Node<K, V> middle = right.left;
+            return new Node<>(middle.key, middle.value,
+                              new Node<>(key, value, left, middle.left),
+                              new Node<>(right.key, right.value, middle.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static <K, V> void forEach(Node<K, V> node, BiConsumer<? super K, ? super V> action) {
+        if (node != null) {
+            forEach(node.left, action);
+            action.accept(node.key, node.value);
+            forEach(node.right, action);
+        }
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private List<Object> entries() {
+        List<Object> entries = new ArrayList<>(size() * 2);
+        forEach((key, value) -> {
+            entries.add(key);
+            entries.add(value);
+        });
+        return entries;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PersistentSortedMap<?, ?> that = (PersistentSortedMap<?, ?>) o;
+        return root == that.root || size() == that.size() && entries().equals(that.entries());
+    }
+
+    @Override
+    public int hashCode() {
+        int[] result = {0};
+        forEach((key, value) -> result[0] += key.hashCode() ^ Objects.hashCode(value));
+        return result[0];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        forEach((key, value) -> result.append(result.length() == 1 ? "" : ", ").append(key).append('=').append(value));
+        return result.append('}').toString();
+    }
+}
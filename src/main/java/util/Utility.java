@@ -1,6 +1,8 @@
 package util;
 
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -9,10 +11,14 @@ import ui.UI;
 import util.events.ShowErrorDialogEvent;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -30,6 +36,8 @@ public final class Utility {
 
     private static final Logger logger = LogManager.getLogger(Utility.class.getName());
 
+    public static final String TEMP_FILE_EXTENSION = ".tmp";
+
     public static boolean isWellFormedRepoId(String owner, String repo) {
         return !(owner == null || owner.isEmpty() || repo == null || repo.isEmpty())
                 && isWellFormedRepoId(RepositoryId.create(owner, repo).generateId());
@@ -56,6 +64,8 @@ public final class Utility {
     /**
      * Returns true on JSON corruption.
      * TODO remove JSON-specific parts
+     *
+     * The file is replaced atomically (see replaceFile), so it is never left half-written.
      * @param fileName
      * @param content
      * @param issueCount
@@ -65,12 +75,12 @@ public final class Utility {
         boolean validPath = !(fileName == null || fileName.isEmpty());
         if (validPath) {
             try {
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(fileName), "UTF-8"
-                ));
-                writer.write(content);
-                writer.newLine();
-                writer.close();
+                replaceFile(Paths.get(fileName), out -> {
+                    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+                    writer.write(content);
+                    writer.newLine();
+                    writer.flush();
+                });
 
                 long sizeAfterWrite = Files.size(Paths.get(fileName));
                 return processFileGrowth(sizeAfterWrite, issueCount, fileName);
@@ -82,6 +92,122 @@ public final class Utility {
         return false;
     }
 
+    /**
+     * Writes binary content to a file.
+     * Returns true on corruption, which is detected in the same way as for writeFile.
+     * The file is replaced atomically (see replaceFile), so it is never left half-written.
+     * @param fileName
+     * @param content
+     * @param issueCount
+     * @return
+     */
+    public static boolean writeFile(String fileName, byte[] content, int issueCount) {
+        boolean validPath = !(fileName == null || fileName.isEmpty());
+        if (validPath) {
+            try {
+                replaceFile(Paths.get(fileName), out -> out.write(content));
+                return processFileGrowth(content.length, issueCount, fileName);
+            } catch (IOException e) {
+                logger.error(e.getLocalizedMessage(), e);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    public interface FileContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Replaces the contents of a file in a way that survives crashes: the new contents are written
+     * to a temporary file next to it and flushed to disk, then the temporary file is renamed over
+     * the file. Either the old or the new contents are therefore on disk at any point.
+     *
+     * As the file is replaced rather than rewritten, memory mappings of the old file stay valid.
+     * @param file
+     * @param contentWriter writes the new contents; need not close the stream
+     * @throws IOException if the file could not be replaced, in which case it is left unchanged
+     */
+    public static void replaceFile(Path file, FileContentWriter contentWriter) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_FILE_EXTENSION);
+        try {
+            try (FileOutputStream out = new FileOutputStream(tempFile.toFile())) {
+                contentWriter.write(out);
+                out.flush();
+                out.getFD().sync();
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Flushes the renaming of a file in the given directory to disk, where the platform allows it.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on some platforms, e.g. Windows, where this is not needed
+            logger.debug("Unable to sync directory " + directory);
+        }
+    }
+
+    /**
+     * Appends a single line to a file, creating the file if it does not exist.
+     * The line is flushed to disk before this returns, as with replaceFile. An append interrupted by a crash
+     * may still leave a torn last line, which readers of the file should expect.
+     * @param fileName
+     * @param line
+     * @return true on error in appending to the file, false otherwise
+     */
+    public static boolean appendLine(String fileName, String line) {
+        boolean validPath = !(fileName == null || fileName.isEmpty());
+        if (validPath) {
+            Path file = Paths.get(fileName);
+            boolean isNewFile = !Files.exists(file);
+            try (FileOutputStream out = new FileOutputStream(fileName, true)) {
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+                writer.write(line);
+                writer.newLine();
+                writer.flush();
+                out.getFD().sync();
+            } catch (IOException e) {
+                logger.error(e.getLocalizedMessage(), e);
+                return true;
+            }
+            if (isNewFile) {
+                syncDirectory(file.toAbsolutePath().getParent());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads all lines of a file.
+     * @param fileName
+     * @return the lines of the file, or an empty list if the file does not exist
+     */
+    public static List<String> readLines(String fileName) {
+        boolean validPath = !(fileName == null || fileName.isEmpty());
+        if (validPath && Files.exists(Paths.get(fileName))) {
+            try {
+                return Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                logger.error(e.getLocalizedMessage(), e);
+            }
+        }
+        return new ArrayList<>();
+    }
+
     /**
      * Returns true on failure to delete file
      * @param fileName
@@ -135,12 +261,18 @@ public final class Utility {
             Path corruptedFile = Paths.get(fileName);
             if (Files.exists(corruptedFile)) {
                 String corruptedFileData = readFile(fileName).get();
+                JsonElement corruptedJson;
+                try {
+                    corruptedJson = new JsonParser().parse(corruptedFileData);
+                } catch (JsonParseException e) {
+                    // Not JSON (e.g. a binary snapshot), so keep the copy as it is
+                    Files.move(corruptedFile, Paths.get(fileName + "-err"), StandardCopyOption.REPLACE_EXISTING);
+                    return;
+                }
                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
                         new FileOutputStream(fileName + "-err"), "UTF-8"
                 ));
-                writer.write(new GsonBuilder().setPrettyPrinting().create().toJson(
-                        new JsonParser().parse(corruptedFileData)
-                ));
+                writer.write(new GsonBuilder().setPrettyPrinting().create().toJson(corruptedJson));
                 writer.newLine();
                 writer.close();
 
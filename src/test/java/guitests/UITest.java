@@ -112,7 +112,11 @@ public class UITest extends GuiTest {
                     .filter(Files::isRegularFile)
                     .filter(p ->
                         getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("json") ||
-                            getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("json-err")
+                            getFileExtension(String.valueOf(p.getFileName())).equalsIgnoreCase("json-err") ||
+                            String.valueOf(p.getFileName()).endsWith(RepoStore.CHANGE_LOG_EXTENSION) ||
+                            String.valueOf(p.getFileName()).endsWith(RepoStore.METADATA_EXTENSION) ||
+                            String.valueOf(p.getFileName()).endsWith(RepoStore.MAPPED_DESCRIPTIONS_EXTENSION) ||
+                            String.valueOf(p.getFileName()).equals(RepoStore.INDEX_FILE_NAME)
                     )
                     .forEach(p -> new File(p.toAbsolutePath().toString()).delete());
             }
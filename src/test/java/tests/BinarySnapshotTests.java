@@ -0,0 +1,212 @@
+package tests;
+
+import backend.interfaces.RepoStore;
+import backend.json.JSONStore;
+import backend.json.SnapshotFormat;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import backend.resource.serialization.SerializableModel;
+import guitests.UITest;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ui.UI;
+import util.events.EventDispatcherStub;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinarySnapshotTests {
+
+    private static final String REPO = "test/binary";
+    private static final Path SNAPSHOT = Paths.get("store/test/test-binary.json");
+
+    @BeforeClass
+    public static void setup() {
+        UI.events = new EventDispatcherStub();
+    }
+
+    @Before
+    public void enableTestDirectory() {
+        RepoStore.changeDirectory(RepoStore.TEST_DIRECTORY);
+    }
+
+    private static Model model() {
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            TurboIssue issue = new TurboIssue(REPO, i, "Issue " + i, "creator" + (i % 3),
+                LocalDateTime.of(2015, 7, 1, 12, 30, 15, i), i % 2 == 0);
+            issue.setDescription("Description of issue " + i + " – with non-ASCII text");
+            issue.setLabels(Arrays.asList("type.bug", "priority.p" + (i % 4)));
+            if (i % 2 == 0) {
+                issue.setAssignee("creator1");
+                issue.setMilestone(1);
+            }
+            issue.setOpen(i % 5 != 0);
+            issues.add(issue);
+        }
+        TurboMilestone milestone = new TurboMilestone(REPO, 1, "V0.1");
+        milestone.setDueDate(Optional.of(LocalDate.of(2015, 8, 1)));
+        return new Model(REPO, issues,
+            new ArrayList<>(Arrays.asList(new TurboLabel(REPO, "type.bug"), new TurboLabel(REPO, "ff0000", "p0"))),
+            new ArrayList<>(Arrays.asList(milestone, new TurboMilestone(REPO, 2, "V0.2"))),
+            new ArrayList<>(Arrays.asList(new TurboUser(REPO, "creator1", "Creator One"))));
+    }
+
+    @Test
+    public void binarySnapshot_roundTrips() throws ExecutionException, InterruptedException {
+        Model model = model();
+        JSONStore store = new JSONStore(SnapshotFormat.BINARY);
+        store.saveRepository(REPO, new SerializableModel(model)).get();
+
+        Model loaded = store.loadRepository(REPO).get();
+        assertEquals(model.getIssues(), loaded.getIssues());
+        assertEquals(model.getLabels(), loaded.getLabels());
+        assertEquals(model.getMilestones(), loaded.getMilestones());
+        assertEquals(model.getUsers(), loaded.getUsers());
+        assertEquals(Arrays.asList(REPO), store.getStoredRepos());
+    }
+
+    @Test
+    public void mappedDescriptions_areReadOnDemand() throws ExecutionException, InterruptedException {
+        Model model = model();
+        model.getIssues().get(0).setDescription(StringUtils.repeat("A long description. ", 100));
+        JSONStore store = new JSONStore(SnapshotFormat.BINARY, true);
+        store.saveRepository(REPO, new SerializableModel(model)).get();
+
+        Model loaded = store.loadRepository(REPO).get();
+        assertEquals(model.getIssues(), loaded.getIssues());
+
+        // Descriptions remain readable after the snapshot they are mapped from is replaced
+        model.getIssues().get(0).setDescription("Replaced");
+        store.saveRepository(REPO, new SerializableModel(model)).get();
+        assertEquals(StringUtils.repeat("A long description. ", 100), loaded.getIssues().get(0).getDescription());
+        assertEquals("Replaced", store.loadRepository(REPO).get().getIssues().get(0).getDescription());
+    }
+
+    @Test
+    public void mappedDescriptions_areMappedFromGenerationFiles() throws Exception {
+        Model model = model();
+        model.getIssues().get(0).setDescription(StringUtils.repeat("A long description. ", 100));
+        JSONStore store = new JSONStore(SnapshotFormat.BINARY, true);
+        store.saveRepository(REPO, new SerializableModel(model)).get();
+
+        // The snapshot itself is not mapped, so that it can be replaced on every platform
+        Model loaded = store.loadRepository(REPO).get();
+        assertEquals(1, countGenerationFiles());
+        Path generationFile = getGenerationFile();
+        // The generation is reused while the snapshot is unchanged
+        store.loadRepository(REPO).get();
+        assertEquals(1, countGenerationFiles());
+        assertEquals(generationFile, getGenerationFile());
+        assertEquals(model.getIssues().get(0).getDescription(), loaded.getIssues().get(0).getDescription());
+
+        // Issues which share a mapped description compare and hash without decoding it
+        TurboIssue copy = new TurboIssue(loaded.getIssues().get(0));
+        assertEquals(loaded.getIssues().get(0), copy);
+        assertEquals(loaded.getIssues().get(0).hashCode(), copy.hashCode());
+
+        assertFalse(store.removeStoredRepo(REPO).get());
+        assertEquals(0, countGenerationFiles());
+    }
+
+    @Test
+    public void mappedDescriptions_areSavedAgainUnchanged() throws Exception {
+        Model model = model();
+        model.getIssues().get(0).setDescription(StringUtils.repeat("A long description – ", 100));
+        JSONStore store = new JSONStore(SnapshotFormat.BINARY, true);
+        store.saveRepository(REPO, new SerializableModel(model)).get();
+
+        // Saved from their mapped bytes, then mapped from a new generation
+        Model loaded = store.loadRepository(REPO).get();
+        assertTrue(loaded.getIssues().get(0).getDescriptionSource().isPresent());
+        store.saveRepository(REPO, new SerializableModel(loaded)).get();
+        Model reloaded = store.loadRepository(REPO).get();
+        assertNotEquals(loaded.getIssues().get(0).getDescriptionSource(),
+                        reloaded.getIssues().get(0).getDescriptionSource());
+        assertEquals(model.getIssues(), reloaded.getIssues());
+    }
+
+    private static Path getGenerationFile() throws IOException {
+        return Files.list(SNAPSHOT.getParent())
+            .filter(p -> p.getFileName().toString().endsWith(RepoStore.MAPPED_DESCRIPTIONS_EXTENSION))
+            .findFirst().get();
+    }
+
+    private static long countGenerationFiles() throws IOException {
+        return Files.list(SNAPSHOT.getParent())
+            .filter(p -> p.getFileName().toString().endsWith(RepoStore.MAPPED_DESCRIPTIONS_EXTENSION))
+            .count();
+    }
+
+    @Test
+    public void binarySnapshot_isSmallerThanJson() throws ExecutionException, InterruptedException, IOException {
+        SerializableModel model = new SerializableModel(model());
+        new JSONStore().saveRepository(REPO, model).get();
+        long jsonSize = Files.size(SNAPSHOT);
+        new JSONStore(SnapshotFormat.BINARY).saveRepository(REPO, model).get();
+        long binarySize = Files.size(SNAPSHOT);
+
+        assertTrue(binarySize * 2 < jsonSize);
+    }
+
+    @Test
+    public void convertStoredRepo_convertsBetweenFormats() throws Exception {
+        Model model = model();
+        new JSONStore().saveRepository(REPO, new SerializableModel(model)).get();
+        byte[] json = Files.readAllBytes(SNAPSHOT);
+
+        // Either store reads either format
+        assertEquals(model.getIssues(), new JSONStore(SnapshotFormat.BINARY).loadRepository(REPO).get().getIssues());
+
+        assertFalse(new JSONStore(SnapshotFormat.BINARY).convertStoredRepo(REPO).get());
+        assertTrue(Files.size(SNAPSHOT) < json.length);
+        assertEquals(model.getIssues(), new JSONStore().loadRepository(REPO).get().getIssues());
+
+        assertFalse(new JSONStore().convertStoredRepo(REPO).get());
+        assertTrue(Arrays.equals(json, Files.readAllBytes(SNAPSHOT)));
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void unsupportedVersion_failsToLoad() throws Exception {
+        new JSONStore(SnapshotFormat.BINARY).saveRepository(REPO, new SerializableModel(model())).get();
+        byte[] snapshot = Files.readAllBytes(SNAPSHOT);
+        snapshot[4] = 99;
+        Files.write(SNAPSHOT, snapshot);
+
+        new JSONStore(SnapshotFormat.BINARY).loadRepository(REPO).get();
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void truncatedSnapshot_failsToLoad() throws Exception {
+        new JSONStore(SnapshotFormat.BINARY).saveRepository(REPO, new SerializableModel(model())).get();
+        byte[] snapshot = Files.readAllBytes(SNAPSHOT);
+        Files.write(SNAPSHOT, Arrays.copyOf(snapshot, snapshot.length / 2));
+
+        new JSONStore(SnapshotFormat.BINARY).loadRepository(REPO).get();
+    }
+
+    @After
+    public void cleanup() {
+        UITest.clearTestFolder();
+    }
+}
@@ -0,0 +1,124 @@
+package tests;
+
+import com.sun.net.httpserver.HttpServer;
+import github.ConditionalPageFetcher;
+import github.GitHubClientEx;
+import github.IssueServiceEx;
+import github.PullRequestServiceEx;
+import github.ReviewComment;
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConditionalCommentsTests {
+
+    private static final RepositoryId REPO = RepositoryId.createFromId("test/test");
+
+    private HttpServer server;
+    private GitHubClientEx client;
+
+    // The body served at each path; its ETag is derived from it
+    private final Map<String, String> bodies = new HashMap<>();
+    private final List<String> responses = new ArrayList<>();
+
+    /**
+     * Serves a single page at each path, honouring If-None-Match.
+     */
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String body = bodies.getOrDefault(path, "[]");
+            String eTag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+            exchange.getResponseHeaders().add("ETag", eTag);
+
+            if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                responses.add("304 " + path);
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            responses.add("200 " + path);
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        client = new GitHubClientEx("localhost", server.getAddress().getPort(), "http");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static String comments(String... bodies) {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < bodies.length; i++) {
+            result.append(i > 0 ? "," : "")
+                .append("{\"id\":").append(i + 1)
+                .append(",\"body\":\"").append(bodies[i])
+                .append("\",\"user\":{\"login\":\"alice\"}}");
+        }
+        return result.append("]").toString();
+    }
+
+    @Test
+    public void unchangedComments_costOneNotModifiedResponse() throws IOException {
+        String path = "/api/v3/repos/test/test/issues/1/comments";
+        bodies.put(path, comments("First", "Second"));
+        IssueServiceEx service = new IssueServiceEx(client);
+
+        ConditionalPageFetcher.Result<Comment> first = service.getUpdatedComments(REPO, 1, "");
+        assertTrue(first.isModified());
+        assertEquals(2, first.getItems().size());
+        assertEquals("Second", first.getItems().get(1).getBody());
+
+        ConditionalPageFetcher.Result<Comment> unchanged = service.getUpdatedComments(REPO, 1, first.getETags());
+        assertFalse(unchanged.isModified());
+        assertTrue(unchanged.getItems().isEmpty());
+        assertEquals(first.getETags(), unchanged.getETags());
+        assertEquals("304 " + path, responses.get(responses.size() - 1));
+
+        bodies.put(path, comments("First", "Second", "Third"));
+        ConditionalPageFetcher.Result<Comment> changed = service.getUpdatedComments(REPO, 1, first.getETags());
+        assertTrue(changed.isModified());
+        assertEquals(3, changed.getItems().size());
+        assertFalse(first.getETags().equals(changed.getETags()));
+    }
+
+    @Test
+    public void unchangedReviewComments_areNotDownloaded() throws IOException {
+        String path = "/api/v3/repos/test/test/pulls/2/comments";
+        bodies.put(path, comments("Looks good"));
+        PullRequestServiceEx service = new PullRequestServiceEx(client);
+
+        ConditionalPageFetcher.Result<ReviewComment> first = service.getUpdatedReviewComments(REPO, 2, "");
+        assertEquals(1, first.getItems().size());
+        assertEquals("Looks good", first.getItems().get(0).getBody());
+
+        ConditionalPageFetcher.Result<ReviewComment> unchanged =
+            service.getUpdatedReviewComments(REPO, 2, first.getETags());
+        assertFalse(unchanged.isModified());
+        assertEquals(2, responses.size());
+        assertEquals("304 " + path, responses.get(1));
+    }
+}
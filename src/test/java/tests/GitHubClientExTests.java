@@ -1,91 +1,86 @@
 package tests;
 
+import com.google.gson.reflect.TypeToken;
+import github.ConnectionStats;
 import github.GitHubClientEx;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.eclipse.egit.github.core.Milestone;
-import org.eclipse.egit.github.core.client.GitHubResponse;
 import org.eclipse.egit.github.core.client.PagedRequest;
 import org.junit.Test;
 import org.mockserver.client.server.MockServerClient;
 import org.mockserver.integration.ClientAndServer;
-import org.mockserver.model.HttpRequest;
-import org.mockserver.model.Parameter;
 import org.mockserver.verify.VerificationTimes;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
-import static org.eclipse.egit.github.core.client.IGitHubConstants.CONTENT_TYPE_JSON;
 import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_REPOS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
 
 public class GitHubClientExTests {
-    /**
-     * Tests that head request to nonexistent repo throws an exception
-     * @throws IOException
-     */
-    @Test(expected = IOException.class)
-    public void testInvalidHeadRequest() throws IOException {
-        GitHubClientEx client = new GitHubClientEx();
-
-        PagedRequest<Milestone> request = new PagedRequest<>();
-        Map<String, String> params = new HashMap<>();
-        params.put("state", "all");
 
-        String path = SEGMENT_REPOS + "/nonexistentrepo";
-        request.setUri(path);
-        request.setResponseContentType(CONTENT_TYPE_JSON);
-        request.setParams(params);
+    private static final int PORT = 8889;
 
-        client.head(request);
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return compressed.toByteArray();
     }
 
     /**
-     * Tests that GitHubClientEx' head method makes a HTTP HEAD request and receive a corresponding
-     * header response from a mocked server
-     * @throws IOException
+     * Tests that responses are requested compressed and decompressed, and that the responses
+     * are recorded in the stats of the host
      */
     @Test
-    public void testValidHeadRequest() throws IOException {
-        MockServerClient mockServer = ClientAndServer.startClientAndServer(8888);
-        HttpRequest expectedRequest = request()
-                        .withMethod("HEAD")
-                        .withPath(TestUtils.API_PREFIX + "/repos/repo")
-                        .withQueryStringParameters(
-                                new Parameter("state", "all"),
-                                new Parameter("per_page", "100"),
-                                new Parameter("page", "1")
-                        );
-        String eTagValue = "aaf65fc6b10d5afbdc9cd0aa6e6ada4c";
-
-        mockServer
-                .when(expectedRequest)
-                .respond(
-                        response()
-                                .withHeader(
-                                        "ETag", eTagValue
-                                )
-                );
-
-        PagedRequest<Milestone> request = new PagedRequest<>();
-        Map<String, String> params = new HashMap<>();
-        params.put("state", "all");
+    public void testCompressedResponses() throws IOException {
+        StringBuilder milestones = new StringBuilder("[");
+        for (int i = 1; i <= 100; i++) {
+            milestones.append(i > 1 ? "," : "").append("{\"number\":").append(i)
+                .append(",\"title\":\"Milestone ").append(i).append("\"}");
+        }
+        milestones.append("]");
 
-        GitHubClientEx client = new GitHubClientEx("localhost", 8888, "http");
+        MockServerClient mockServer = ClientAndServer.startClientAndServer(PORT);
+        try {
+            mockServer.when(
+                    request()
+                        .withPath(TestUtils.API_PREFIX + "/repos/test/test/milestones")
+                        .withHeader("Accept-Encoding", "gzip")
+            ).respond(
+                    response()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("Content-Encoding", "gzip")
+                        .withBody(gzip(milestones.toString()))
+            );
 
-        String path = SEGMENT_REPOS + "/repo";
-        request.setUri(path);
-        request.setResponseContentType(CONTENT_TYPE_JSON);
-        request.setParams(params);
-        ImmutablePair<HttpURLConnection, GitHubResponse> result = client.head(request);
+            GitHubClientEx client = new GitHubClientEx("localhost", PORT, "http");
+            for (int i = 0; i < 3; i++) {
+                PagedRequest<Milestone> request = new PagedRequest<>();
+                request.setUri(SEGMENT_REPOS + "/test/test/milestones");
+                request.setType(new TypeToken<ArrayList<Milestone>>() {}.getType());
 
-        mockServer.verify(expectedRequest, VerificationTimes.exactly(1));
-        assertEquals(eTagValue, result.getRight().getHeader("ETag"));
+                @SuppressWarnings("unchecked")
+                List<Milestone> result = (List<Milestone>) client.get(request).getBody();
+                assertEquals(100, result.size());
+                assertEquals("Milestone 100", result.get(99).getTitle());
+            }
 
-        mockServer.stop();
+            mockServer.verify(request().withHeader("Accept-Encoding", "gzip"), VerificationTimes.exactly(3));
+            ConnectionStats stats = client.getConnectionStats("localhost");
+            assertEquals(3, stats.getResponses());
+            assertEquals(3, stats.getCompressedResponses());
+            assertEquals(3 * milestones.length(), stats.getBytesDecoded());
+            assertTrue(stats.getBytesReceived() < stats.getBytesDecoded());
+        } finally {
+            mockServer.stop();
+        }
     }
 }
@@ -8,6 +8,7 @@ import org.eclipse.egit.github.core.IssueEvent;
 import org.eclipse.egit.github.core.User;
 import org.eclipse.egit.github.core.client.GitHubResponse;
 import org.junit.Test;
+import util.Utility;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -50,6 +51,39 @@ public class GitHubResponsesTest {
         assertEquals("3.0.0", issueEvents.get(1).getMilestoneTitle());
     }
 
+    @Test
+    public void gitHubEventsResponse_parsesEventSpecificDetails() throws IOException {
+        String eventsResponseJson =
+                "[{\"actor\":{\"login\":\"test\"},\"event\":\"labeled\"," +
+                "\"created_at\":\"2015-06-12T02:24:14Z\",\"label\":{\"name\":\"type.bug\",\"color\":\"ff0000\"}}," +
+                "{\"actor\":{\"login\":\"test\"},\"event\":\"assigned\"," +
+                "\"created_at\":\"2015-06-12T02:25:14Z\",\"assignee\":{\"login\":\"assignee\"," +
+                "\"avatar_url\":\"https://example.com/avatar\"}}," +
+                "{\"actor\":{\"login\":\"test\"},\"event\":\"closed\"," +
+                "\"created_at\":\"2015-06-12T02:26:14Z\"}]";
+
+        List<TurboIssueEvent> issueEvents = new GitHubEventsResponse(new GitHubResponse(null, null),
+            IOUtils.toInputStream(eventsResponseJson, "UTF-8"), "").getTurboIssueEvents();
+
+        assertEquals(3, issueEvents.size());
+        assertEquals(IssueEventType.Labeled, issueEvents.get(0).getType());
+        assertEquals("type.bug", issueEvents.get(0).getLabelName());
+        assertEquals("ff0000", issueEvents.get(0).getLabelColour());
+        assertEquals("test", issueEvents.get(0).getActor().getLogin());
+        assertEquals(Utility.parseHTTPLastModifiedDate("Fri, 12 Jun 2015 02:24:14 GMT"),
+                     issueEvents.get(0).getDate());
+        assertEquals(IssueEventType.Assigned, issueEvents.get(1).getType());
+        assertEquals("assignee", issueEvents.get(1).getAssignedUser().getLogin());
+        assertEquals("https://example.com/avatar", issueEvents.get(1).getAssignedUser().getAvatarUrl());
+        assertEquals(IssueEventType.Closed, issueEvents.get(2).getType());
+    }
+
+    @Test(expected = IOException.class)
+    public void gitHubEventsResponse_malformedBody() throws IOException {
+        new GitHubEventsResponse(new GitHubResponse(null, null),
+            IOUtils.toInputStream("{\"message\":\"Not Found\"}", "UTF-8"), "");
+    }
+
     /**
      * Stripped-down version of a GitHub events response body e.g. when you GET
      * /repos/HubTurbo/HubTurbo/issues/1/events.
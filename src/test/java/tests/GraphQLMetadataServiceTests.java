@@ -0,0 +1,249 @@
+package tests;
+
+import backend.IssueMetadata;
+import backend.github.DownloadMetadataTask;
+import backend.github.MetadataFetchScheduler;
+import backend.resource.TurboIssue;
+import backend.stub.DummyRepo;
+import backend.stub.DummySource;
+import com.google.gson.JsonObject;
+import github.GitHubClientEx;
+import github.GraphQLMetadataService;
+import github.IssueEventType;
+import github.ReviewComment;
+import github.TurboIssueEvent;
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.RequestException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphQLMetadataServiceTests {
+
+    private static final RepositoryId REPO = RepositoryId.createFromId("test/test");
+
+    private GraphQLStandInServer server;
+    private GitHubClientEx client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new GraphQLStandInServer();
+        client = new GitHubClientEx("localhost", server.getPort(), "http");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    private static TurboIssue issue(int id) {
+        return new TurboIssue(REPO.generateId(), id, "Issue " + id);
+    }
+
+    private static TurboIssue pullRequest(int id) {
+        return new TurboIssue(REPO.generateId(), id, "Pull request " + id, "", LocalDateTime.now(), true);
+    }
+
+    private static JsonObject details(String... membersAndValues) {
+        JsonObject details = new JsonObject();
+        for (int i = 0; i < membersAndValues.length; i += 2) {
+            details.addProperty(membersAndValues[i], membersAndValues[i + 1]);
+        }
+        return details;
+    }
+
+    @Test
+    public void metadata_isFetchedInBatches() throws IOException {
+        JsonObject label = new JsonObject();
+        label.add("label", details("name", "type.bug", "color", "ff0000"));
+        JsonObject assignee = new JsonObject();
+        assignee.add("assignee", GraphQLStandInServer.createUser("assignee"));
+
+        server.addEvent(1, "LabeledEvent", "alice", "2015-06-12T02:24:14Z", label)
+            .addEvent(1, "RenamedTitleEvent", "bob", "2015-06-12T02:25:14Z",
+                details("previousTitle", "Old", "currentTitle", "New"))
+            .addComment(1, 11, "carol", "A comment", "2015-06-12T02:26:14Z")
+            .addEvent(2, "AssignedEvent", "alice", "2015-06-13T02:24:14Z", assignee)
+            .addEvent(3, "MilestonedEvent", "alice", "2015-06-14T02:24:14Z", details("milestoneTitle", "V1"))
+            .addEvent(3, "MergedEvent", "alice", "2015-06-15T02:24:14Z", null)
+            .addComment(3, 31, null, "By a deleted user", "2015-06-15T02:25:14Z");
+
+        Map<Integer, IssueMetadata> metadata = new GraphQLMetadataService(client, 2, 100)
+            .getMetadata(REPO, Arrays.asList(issue(1), issue(2), pullRequest(3)));
+
+        // Three issues, two at a time
+        assertEquals(2, server.getQueries().size());
+        assertTrue(server.getQueries().get(1).contains("issue3: pullRequest(number: 3)"));
+        assertEquals(3, metadata.size());
+
+        List<TurboIssueEvent> events = metadata.get(1).getEvents();
+        assertEquals(2, events.size());
+        assertEquals(IssueEventType.Labeled, events.get(0).getType());
+        assertEquals("type.bug", events.get(0).getLabelName());
+        assertEquals("ff0000", events.get(0).getLabelColour());
+        assertEquals("alice", events.get(0).getActor().getLogin());
+        assertEquals(IssueEventType.Renamed, events.get(1).getType());
+        assertEquals("Old", events.get(1).getRenamedFrom());
+        assertEquals("New", events.get(1).getRenamedTo());
+
+        Comment comment = metadata.get(1).getComments().get(0);
+        assertEquals(11, comment.getId());
+        assertEquals("A comment", comment.getBody());
+        assertEquals("carol", comment.getUser().getLogin());
+
+        assertEquals("assignee", metadata.get(2).getEvents().get(0).getAssignedUser().getLogin());
+        assertTrue(metadata.get(2).getComments().isEmpty());
+
+        assertEquals("V1", metadata.get(3).getEvents().get(0).getMilestoneTitle());
+        assertEquals(IssueEventType.Merged, metadata.get(3).getEvents().get(1).getType());
+        assertEquals("ghost", metadata.get(3).getComments().get(0).getUser().getLogin());
+    }
+
+    @Test
+    public void remainingPages_areFetchedFromCursors() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            server.addEvent(1, "ClosedEvent", "alice", "2015-06-12T02:2" + i + ":14Z", null);
+        }
+        for (int i = 0; i < 3; i++) {
+            server.addComment(1, i, "bob", "Comment " + i, "2015-06-12T02:3" + i + ":14Z");
+        }
+        server.addComment(2, 20, "bob", "Only comment", "2015-06-12T02:24:14Z");
+
+        Map<Integer, IssueMetadata> metadata = new GraphQLMetadataService(client, 25, 2)
+            .getMetadata(REPO, Arrays.asList(issue(1), issue(2)));
+
+        // Events take three pages and comments two, so the last query is only for events
+        List<String> queries = server.getQueries();
+        assertEquals(3, queries.size());
+        assertTrue(queries.get(0).contains("issue2"));
+        assertFalse(queries.get(1).contains("issue2"));
+        assertTrue(queries.get(1).contains("timelineItems(first: 2, after: \"2\""));
+        assertTrue(queries.get(1).contains("comments(first: 2, after: \"2\")"));
+        assertTrue(queries.get(2).contains("timelineItems(first: 2, after: \"4\""));
+        assertFalse(queries.get(2).contains("comments("));
+        assertFalse(queries.get(2).contains("fragment comments"));
+
+        assertEquals(5, metadata.get(1).getEvents().size());
+        assertEquals(3, metadata.get(1).getComments().size());
+        assertEquals("Comment 2", metadata.get(1).getComments().get(2).getBody());
+        assertEquals(1, metadata.get(2).getComments().size());
+    }
+
+    @Test
+    public void eventsETag_dependsOnEvents() throws IOException {
+        server.addEvent(1, "ClosedEvent", "alice", "2015-06-12T02:24:14Z", null);
+        GraphQLMetadataService service = new GraphQLMetadataService(client);
+
+        String eTag = service.getMetadata(REPO, Arrays.asList(issue(1))).get(1).getEventsETag();
+        assertTrue(eTag.startsWith(GraphQLMetadataService.ETAG_PREFIX));
+        assertEquals(eTag, service.getMetadata(REPO, Arrays.asList(issue(1))).get(1).getEventsETag());
+
+        server.addEvent(1, "ReopenedEvent", "alice", "2015-06-12T02:25:14Z", null);
+        assertNotEquals(eTag, service.getMetadata(REPO, Arrays.asList(issue(1))).get(1).getEventsETag());
+    }
+
+    @Test
+    public void missingEndpoint_throwsRequestException() throws IOException {
+        server.setStatus(404);
+        try {
+            new GraphQLMetadataService(client).getMetadata(REPO, Arrays.asList(issue(1)));
+            fail();
+        } catch (RequestException e) {
+            assertEquals(404, e.getStatus());
+        }
+    }
+
+    @Test
+    public void downloadMetadataTask_prefersBatchedMetadata() throws Exception {
+        Map<Integer, IssueMetadata> batched = new HashMap<>();
+        batched.put(1, IssueMetadata.intermediate(new ArrayList<>(), new ArrayList<>(), "batched", ""));
+        DummyRepo repo = new DummyRepo() {
+            @Override
+            public boolean isBatchedMetadataAvailable() {
+                return true;
+            }
+
+            @Override
+            public Optional<Map<Integer, IssueMetadata>> getMetadata(String repoId, List<TurboIssue> issues) {
+                return Optional.of(batched);
+            }
+        };
+
+        DownloadMetadataTask task = new DownloadMetadataTask(new DummySource(), repo, "dummy/dummy",
+                                                             Arrays.asList(new TurboIssue("dummy/dummy", 1, "")),
+                                                             new HashSet<>(),
+                                                             new MetadataFetchScheduler(repo.getRateLimiter()));
+        task.run();
+
+        assertEquals("batched", task.response.get().get(1).getEventsETag());
+    }
+
+    @Test
+    public void downloadMetadataTask_addsReviewCommentsToBatchedMetadata() throws Exception {
+        DummyRepo repo = new DummyRepo() {
+            @Override
+            public boolean isBatchedMetadataAvailable() {
+                return true;
+            }
+
+            @Override
+            public Optional<Map<Integer, IssueMetadata>> getMetadata(String repoId, List<TurboIssue> issues) {
+                Map<Integer, IssueMetadata> result = new HashMap<>();
+                issues.forEach(issue -> result.put(issue.getId(), IssueMetadata.intermediate(
+                    new ArrayList<>(), new ArrayList<>(Arrays.asList(new Comment())), "batched", "")));
+                return Optional.of(result);
+            }
+
+            @Override
+            public List<ReviewComment> getReviewComments(String repoId, int pullRequestId) {
+                return new ArrayList<>(Arrays.asList(new ReviewComment()));
+            }
+        };
+
+        DownloadMetadataTask task = new DownloadMetadataTask(new DummySource(), repo, REPO.generateId(),
+                                                             Arrays.asList(issue(1), pullRequest(2)),
+                                                             new HashSet<>(),
+                                                             new MetadataFetchScheduler(repo.getRateLimiter()));
+        task.run();
+
+        assertEquals(1, task.response.get().get(1).getComments().size());
+        assertEquals(2, task.response.get().get(2).getComments().size());
+    }
+
+    @Test
+    public void downloadMetadataTask_failedBatches_areDownloadedPerIssue() throws Exception {
+        DummyRepo repo = new DummyRepo() {
+            @Override
+            public boolean isBatchedMetadataAvailable() {
+                return true;
+            }
+        };
+        repo.getIssues(REPO.generateId());
+
+        DownloadMetadataTask task = new DownloadMetadataTask(new DummySource(), repo, REPO.generateId(),
+                                                             Arrays.asList(issue(1), issue(2)),
+                                                             new HashSet<>(),
+                                                             new MetadataFetchScheduler(repo.getRateLimiter()));
+        task.run();
+
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), task.response.get().keySet());
+        assertFalse(task.response.get().get(1).getEventsETag().startsWith(GraphQLMetadataService.ETAG_PREFIX));
+    }
+}
@@ -0,0 +1,170 @@
+package tests;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for the GitHub GraphQL API, serving the events and comments of issues
+ * for the queries made by GraphQLMetadataService.
+ *
+ * It does not parse GraphQL. It only recognises the issues in a query, and the page (size and
+ * cursor) of events and comments asked of each, and responds with them in the shape GitHub would.
+ * Cursors are the indices at which pages end.
+ */
+public class GraphQLStandInServer {
+
+    private static final Pattern ISSUE_PATTERN =
+        Pattern.compile("(\\w+): (issue|pullRequest)\\(number: (\\d+)\\) \\{");
+    private static final Pattern EVENTS_PATTERN =
+        Pattern.compile("timelineItems\\(first: (\\d+)(?:, after: \"(\\d+)\")?");
+    private static final Pattern COMMENTS_PATTERN =
+        Pattern.compile("comments\\(first: (\\d+)(?:, after: \"(\\d+)\")?");
+
+    private static class Issue {
+        private final List<JsonObject> events = new ArrayList<>();
+        private final List<JsonObject> comments = new ArrayList<>();
+    }
+
+    private final HttpServer server;
+    private final Map<Integer, Issue> issues = new HashMap<>();
+    private final List<String> queries = new ArrayList<>();
+
+    // The status of every response, if not 200
+    private int status = 200;
+
+    public GraphQLStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public synchronized List<String> getQueries() {
+        return new ArrayList<>(queries);
+    }
+
+    public synchronized void setStatus(int status) {
+        this.status = status;
+    }
+
+    public synchronized GraphQLStandInServer addEvent(int issueId, String typeName, String actor,
+                                                      String createdAt, JsonObject details) {
+        JsonObject event = details == null ? new JsonObject() : details;
+        event.addProperty("__typename", typeName);
+        event.addProperty("createdAt", createdAt);
+        event.add("actor", createUser(actor));
+        getIssue(issueId).events.add(event);
+        return this;
+    }
+
+    public synchronized GraphQLStandInServer addComment(int issueId, long id, String author, String body,
+                                                        String createdAt) {
+        JsonObject comment = new JsonObject();
+        comment.addProperty("databaseId", id);
+        comment.addProperty("body", body);
+        comment.addProperty("createdAt", createdAt);
+        comment.addProperty("updatedAt", createdAt);
+        // The authors of comments by deleted accounts are null
+        comment.add("author", author == null ? JsonNull.INSTANCE : createUser(author));
+        getIssue(issueId).comments.add(comment);
+        return this;
+    }
+
+    public static JsonObject createUser(String login) {
+        JsonObject user = new JsonObject();
+        user.addProperty("login", login);
+        return user;
+    }
+
+    private Issue getIssue(int issueId) {
+        return issues.computeIfAbsent(issueId, id -> new Issue());
+    }
+
+    private synchronized void handle(HttpExchange exchange) throws IOException {
+        String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+        String query = new JsonParser().parse(body).getAsJsonObject().get("query").getAsString();
+        queries.add(query);
+
+        byte[] response = status == 200
+            ? createResponse(query).toString().getBytes("UTF-8")
+            : "{\"message\":\"Not Found\"}".getBytes("UTF-8");
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    private JsonObject createResponse(String query) {
+        JsonObject repository = new JsonObject();
+
+        Matcher issueMatcher = ISSUE_PATTERN.matcher(query);
+        List<Integer> starts = new ArrayList<>();
+        List<String[]> matches = new ArrayList<>();
+        while (issueMatcher.find()) {
+            starts.add(issueMatcher.end());
+            matches.add(new String[] {issueMatcher.group(1), issueMatcher.group(3)});
+        }
+        for (int i = 0; i < matches.size(); i++) {
+            // The part of the query for this issue ends where the next one starts
+            String issueQuery = query.substring(starts.get(i),
+                i + 1 < starts.size() ? starts.get(i + 1) : query.length());
+            Issue issue = getIssue(Integer.parseInt(matches.get(i)[1]));
+
+            JsonObject issueData = new JsonObject();
+            Matcher events = EVENTS_PATTERN.matcher(issueQuery);
+            if (events.find()) {
+                issueData.add("timelineItems", createPage(issue.events, events.group(1), events.group(2)));
+            }
+            Matcher comments = COMMENTS_PATTERN.matcher(issueQuery);
+            if (comments.find()) {
+                issueData.add("comments", createPage(issue.comments, comments.group(1), comments.group(2)));
+            }
+            repository.add(matches.get(i)[0], issueData);
+        }
+
+        JsonObject data = new JsonObject();
+        data.add("repository", repository);
+        JsonObject response = new JsonObject();
+        response.add("data", data);
+        return response;
+    }
+
+    private static JsonObject createPage(List<JsonObject> items, String first, String after) {
+        int start = after == null ? 0 : Integer.parseInt(after);
+        int end = Math.min(items.size(), start + Integer.parseInt(first));
+
+        JsonArray nodes = new JsonArray();
+        items.subList(start, end).forEach(nodes::add);
+        JsonObject pageInfo = new JsonObject();
+        pageInfo.addProperty("hasNextPage", end < items.size());
+        pageInfo.addProperty("endCursor", String.valueOf(end));
+
+        JsonObject page = new JsonObject();
+        page.add("pageInfo", pageInfo);
+        page.add("nodes", nodes);
+        return page;
+    }
+}
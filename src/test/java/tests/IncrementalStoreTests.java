@@ -0,0 +1,181 @@
+package tests;
+
+import backend.interfaces.RepoStore;
+import backend.json.IncrementalJSONStore;
+import backend.resource.Model;
+import backend.resource.ModelChanges;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.serialization.SerializableModel;
+import guitests.UITest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ui.UI;
+import util.events.EventDispatcherStub;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalStoreTests {
+
+    private static final String REPO = "test/incremental";
+    private static final String SNAPSHOT = "store/test/test-incremental.json";
+    private static final String CHANGE_LOG = "store/test/test-incremental.json.log";
+
+    @BeforeClass
+    public static void setup() {
+        UI.events = new EventDispatcherStub();
+    }
+
+    @Before
+    public void enableTestDirectory() {
+        RepoStore.changeDirectory(RepoStore.TEST_DIRECTORY);
+    }
+
+    private static Model model(List<TurboIssue> issues) {
+        return new Model(REPO, issues,
+            new ArrayList<>(Arrays.asList(new TurboLabel(REPO, "type.bug"))),
+            new ArrayList<>(), new ArrayList<>());
+    }
+
+    private static List<TurboIssue> issues(int count) {
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            issues.add(new TurboIssue(REPO, i, "Issue " + i));
+        }
+        return issues;
+    }
+
+    @Test
+    public void firstSave_writesSnapshotOnly() throws ExecutionException, InterruptedException {
+        IncrementalJSONStore store = new IncrementalJSONStore();
+        store.saveRepository(REPO, new SerializableModel(model(issues(3)))).get();
+
+        assertTrue(Files.exists(Paths.get(SNAPSHOT)));
+        assertFalse(Files.exists(Paths.get(CHANGE_LOG)));
+    }
+
+    @Test
+    public void subsequentSaves_appendChangedResources() throws Exception {
+        IncrementalJSONStore store = new IncrementalJSONStore();
+        List<TurboIssue> issues = issues(3);
+        store.saveRepository(REPO, new SerializableModel(model(issues))).get();
+        byte[] snapshot = Files.readAllBytes(Paths.get(SNAPSHOT));
+
+        issues.get(1).setTitle("Renamed");
+        issues.remove(2);
+        issues.add(new TurboIssue(REPO, 4, "Issue 4"));
+        store.saveRepository(REPO, new SerializableModel(model(issues))).get();
+
+        // The snapshot is untouched; a single entry holding issues 2 and 4 is appended
+        assertTrue(Arrays.equals(snapshot, Files.readAllBytes(Paths.get(SNAPSHOT))));
+        List<String> entries = Files.readAllLines(Paths.get(CHANGE_LOG));
+        assertEquals(1, entries.size());
+        assertTrue(entries.get(0).contains("Renamed"));
+        assertFalse(entries.get(0).contains("Issue 1"));
+
+        Model loaded = new IncrementalJSONStore().loadRepository(REPO).get();
+        assertEquals(3, loaded.getIssues().size());
+        assertEquals("Renamed", loaded.getIssueById(2).get().getTitle());
+        assertFalse(loaded.getIssueById(3).isPresent());
+        assertTrue(loaded.getIssueById(4).isPresent());
+        assertEquals(1, loaded.getLabels().size());
+    }
+
+    @Test
+    public void saveOfUpdatedModel_comparesOnlyChangedResources() throws Exception {
+        IncrementalJSONStore store = new IncrementalJSONStore();
+        Model model = model(issues(3));
+        store.saveRepository(REPO, new SerializableModel(model)).get();
+
+        TurboIssue renamed = new TurboIssue(REPO, 2, "Renamed");
+        Model updated = model.withChanges(new ModelChanges(REPO,
+            new ModelChanges.Changes<>(new ArrayList<>(), Arrays.asList(renamed), new ArrayList<>()),
+            ModelChanges.Changes.none(), ModelChanges.Changes.none(), ModelChanges.Changes.none()),
+            model.getUpdateSignature());
+        // Not among the changes of the update, so not looked at
+        updated.getIssueById(1).get().setTitle("Changed in place");
+        store.saveRepository(REPO, new SerializableModel(updated)).get();
+
+        List<String> entries = Files.readAllLines(Paths.get(CHANGE_LOG));
+        assertEquals(1, entries.size());
+        assertTrue(entries.get(0).contains("Renamed"));
+        assertFalse(entries.get(0).contains("Changed in place"));
+    }
+
+    @Test
+    public void saveAfterLoad_continuesChangeLog() throws Exception {
+        IncrementalJSONStore store = new IncrementalJSONStore();
+        store.saveRepository(REPO, new SerializableModel(model(issues(2)))).get();
+
+        IncrementalJSONStore newStore = new IncrementalJSONStore();
+        Model loaded = newStore.loadRepository(REPO).get();
+        List<TurboIssue> issues = loaded.getIssues();
+        issues.add(new TurboIssue(REPO, 3, "Issue 3"));
+        newStore.saveRepository(REPO, new SerializableModel(model(issues))).get();
+
+        assertEquals(1, Files.readAllLines(Paths.get(CHANGE_LOG)).size());
+        assertEquals(3, new IncrementalJSONStore().loadRepository(REPO).get().getIssues().size());
+    }
+
+    @Test
+    public void corruptedEntry_isIgnored() throws Exception {
+        IncrementalJSONStore store = new IncrementalJSONStore();
+        List<TurboIssue> issues = issues(2);
+        store.saveRepository(REPO, new SerializableModel(model(issues))).get();
+        issues.add(new TurboIssue(REPO, 3, "Issue 3"));
+        store.saveRepository(REPO, new SerializableModel(model(issues))).get();
+
+        // Simulates an append which was interrupted halfway
+        RepoStore.appendToChangeLog(REPO, "{\"issues\":[{\"id\":");
+
+        assertEquals(3, new IncrementalJSONStore().loadRepository(REPO).get().getIssues().size());
+    }
+
+    @Test
+    public void compaction_foldsChangeLogIntoSnapshot() throws Exception {
+        IncrementalJSONStore store = new IncrementalJSONStore();
+        List<TurboIssue> issues = issues(1);
+        store.saveRepository(REPO, new SerializableModel(model(issues))).get();
+
+        for (int i = 0; i < IncrementalJSONStore.COMPACTION_THRESHOLD; i++) {
+            issues.get(0).setTitle("Title " + i);
+            store.saveRepository(REPO, new SerializableModel(model(issues))).get();
+        }
+        // Compaction is queued after the last save; loading is queued after it
+        Model loaded = store.loadRepository(REPO).get();
+
+        assertFalse(Files.exists(Paths.get(CHANGE_LOG)));
+        assertEquals("Title " + (IncrementalJSONStore.COMPACTION_THRESHOLD - 1),
+            loaded.getIssueById(1).get().getTitle());
+    }
+
+    @Test
+    public void removeStoredRepo_deletesChangeLog() throws Exception {
+        IncrementalJSONStore store = new IncrementalJSONStore();
+        List<TurboIssue> issues = issues(1);
+        store.saveRepository(REPO, new SerializableModel(model(issues))).get();
+        issues.get(0).setTitle("Renamed");
+        store.saveRepository(REPO, new SerializableModel(model(issues))).get();
+
+        store.removeStoredRepo(REPO).get();
+
+        assertFalse(Files.exists(Paths.get(SNAPSHOT)));
+        assertFalse(Files.exists(Paths.get(CHANGE_LOG)));
+    }
+
+    @After
+    public void cleanup() {
+        UITest.clearTestFolder();
+    }
+}
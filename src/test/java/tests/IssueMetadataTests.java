@@ -1,6 +1,7 @@
 package tests;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -55,6 +56,19 @@ public class IssueMetadataTests {
         assertEquals(false, empty.isLatest());
     }
 
+    @Test
+    public void estimateSize_countsEventsAndComments() {
+        assertEquals(0, IssueMetadata.empty().estimateSize());
+
+        List<Comment> comments = stubComments();
+        long size = IssueMetadata.intermediate(stubEvents(), comments, "", "").estimateSize();
+        assertTrue(size > IssueMetadata.intermediate(stubEvents(), new ArrayList<>(), "", "").estimateSize());
+        assertTrue(size > IssueMetadata.intermediate(new ArrayList<>(), comments, "", "").estimateSize());
+
+        comments.get(0).setBody("A long comment. A long comment. A long comment.");
+        assertTrue(IssueMetadata.intermediate(stubEvents(), comments, "", "").estimateSize() > size);
+    }
+
     @Test
     public void invalidation() {
         IssueMetadata metadata = IssueMetadata.intermediate(stubEvents(), stubComments(), "events", "comments")
@@ -127,6 +141,32 @@ public class IssueMetadataTests {
         assertEquals("comments", updated.getCommentsETag());
     }
 
+    @Test
+    public void reconcile_keepsCommentsWithSameETag() {
+        IssueMetadata existing = IssueMetadata.intermediate(stubEvents(), stubComments(), "events", "comments")
+            .full("test");
+        LocalDateTime rightNow = LocalDateTime.now();
+
+        // Comments not modified
+        IssueMetadata updated = IssueMetadata.intermediate(new ArrayList<>(), new ArrayList<>(), "events2", "comments")
+            .reconcile(rightNow, existing);
+        assertEquals(0, updated.getEvents().size());
+        assertEquals(3, updated.getComments().size());
+
+        // Comments modified
+        updated = IssueMetadata.intermediate(stubEvents(), new ArrayList<>(), "events", "comments2")
+            .reconcile(rightNow, existing);
+        assertEquals(3, updated.getEvents().size());
+        assertEquals(0, updated.getComments().size());
+        assertEquals("comments2", updated.getCommentsETag());
+
+        // Comments without ETags are always replaced
+        IssueMetadata withoutETag = IssueMetadata.intermediate(stubEvents(), stubComments(), "events", "");
+        updated = IssueMetadata.intermediate(stubEvents(), new ArrayList<>(), "events", "")
+            .reconcile(rightNow, withoutETag);
+        assertEquals(0, updated.getComments().size());
+    }
+
     private static List<TurboIssueEvent> stubEvents() {
         List<TurboIssueEvent> events = new ArrayList<>();
         events.add(new TurboIssueEvent(new User().setLogin("test"), IssueEventType.Closed, now));
@@ -125,7 +125,6 @@ public class LogicTests {
                 10, () -> createIssueWithLabels(1, originalLabels));
 
         Model mockedModel = mock(Model.class);
-        when(mockedModel.replaceIssueLabels(issue.getId(), newLabels)).thenReturn(Optional.of(issue));
         when(mockedModel.getIssueById(issue.getId())).thenReturn(Optional.of(modifiedIssue));
         mockRepoIOReplaceIssueLabelsResult(false);
         mockMultiModelReplaceIssueLabels(Optional.of(issue), Optional.of(mockedModel));
@@ -0,0 +1,119 @@
+package tests;
+
+import backend.IssueMetadata;
+import backend.interfaces.RepoStore;
+import backend.json.JSONStore;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.serialization.SerializableModel;
+import github.IssueEventType;
+import github.TurboIssueEvent;
+import guitests.UITest;
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ui.TestController;
+import ui.UI;
+import ui.components.StatusUIStub;
+import util.events.EventDispatcherStub;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataCacheTests {
+
+    private static final String REPO = "test/metadata";
+    private static final String METADATA_FILE = "store/test/test-metadata.json.metadata";
+
+    @BeforeClass
+    public static void setup() {
+        UI.events = new EventDispatcherStub();
+        UI.status = new StatusUIStub();
+    }
+
+    @Before
+    public void enableTestDirectory() {
+        RepoStore.changeDirectory(RepoStore.TEST_DIRECTORY);
+    }
+
+    private static Map<Integer, IssueMetadata> metadata() {
+        User user = new User().setLogin("user");
+        TurboIssueEvent event = new TurboIssueEvent(user, IssueEventType.Labeled, new Date(1437000000123L))
+            .setLabelName("type.bug");
+        Comment comment = new Comment().setBody("A comment").setUser(user).setCreatedAt(new Date(1437000000456L));
+
+        Map<Integer, IssueMetadata> metadata = new HashMap<>();
+        metadata.put(1, IssueMetadata.intermediate(Arrays.asList(event), Arrays.asList(comment), "events", "comments"));
+        return metadata;
+    }
+
+    @Test
+    public void metadata_isCachedAcrossStores() throws Exception {
+        assertFalse(new JSONStore().saveMetadata(REPO, metadata()).get());
+
+        Map<Integer, IssueMetadata> loaded = new JSONStore().loadMetadata(REPO).get();
+        assertEquals(1, loaded.size());
+        IssueMetadata issueMetadata = loaded.get(1);
+        assertFalse(issueMetadata.isLatest());
+        assertEquals("events", issueMetadata.getEventsETag());
+        assertEquals("comments", issueMetadata.getCommentsETag());
+
+        TurboIssueEvent event = issueMetadata.getEvents().get(0);
+        assertEquals(IssueEventType.Labeled, event.getType());
+        assertEquals("type.bug", event.getLabelName());
+        assertEquals("user", event.getActor().getLogin());
+        assertEquals(new Date(1437000000123L), event.getDate());
+
+        Comment comment = issueMetadata.getComments().get(0);
+        assertEquals("A comment", comment.getBody());
+        assertEquals(new Date(1437000000456L), comment.getCreatedAt());
+    }
+
+    @Test
+    public void missingOrCorruptedCache_isEmpty() throws Exception {
+        assertTrue(new JSONStore().loadMetadata(REPO).get().isEmpty());
+
+        Files.write(Paths.get(METADATA_FILE), "abcde".getBytes("UTF-8"));
+        assertTrue(new JSONStore().loadMetadata(REPO).get().isEmpty());
+    }
+
+    @Test
+    public void removingRepo_removesCache() throws Exception {
+        JSONStore store = new JSONStore();
+        store.saveRepository(REPO, new SerializableModel(new Model(REPO))).get();
+        store.saveMetadata(REPO, metadata()).get();
+        assertTrue(Files.exists(Paths.get(METADATA_FILE)));
+
+        store.removeStoredRepo(REPO).get();
+        assertFalse(Files.exists(Paths.get(METADATA_FILE)));
+    }
+
+    @Test
+    public void loadedRepo_hasCachedMetadata() throws Exception {
+        String repoId = "dummy1/dummy1";
+        TestController.createTestingRepoIO(Optional.empty()).openRepository(repoId).get();
+        new JSONStore().saveMetadata(repoId, metadata()).get();
+
+        Model loaded = TestController.createTestingRepoIO(Optional.empty()).openRepository(repoId).get();
+        TurboIssue issue = loaded.getIssueById(1).get();
+        assertEquals("events", issue.getMetadata().getEventsETag());
+        assertEquals(1, issue.getMetadata().getEvents().size());
+    }
+
+    @After
+    public void cleanup() {
+        UITest.clearTestFolder();
+    }
+}
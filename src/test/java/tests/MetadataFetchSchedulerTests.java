@@ -0,0 +1,122 @@
+package tests;
+
+import backend.IssueMetadata;
+import backend.github.MetadataFetchScheduler;
+import backend.resource.TurboIssue;
+import github.RateLimiter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataFetchSchedulerTests {
+
+    private static final String REPO_ID = "test/test";
+
+    private static List<TurboIssue> issues(int count) {
+        return IntStream.rangeClosed(1, count)
+            .mapToObj(id -> new TurboIssue(REPO_ID, id, "Issue " + id))
+            .collect(Collectors.toList());
+    }
+
+    private static IssueMetadata metadata() {
+        return IssueMetadata.intermediate(new ArrayList<>(), new ArrayList<>(), "", "");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void prioritisedIssues_areDownloadedFirst() {
+        MetadataFetchScheduler scheduler = new MetadataFetchScheduler(new RateLimiter(), 1);
+        List<Integer> downloaded = new CopyOnWriteArrayList<>();
+
+        Map<Integer, IssueMetadata> result = scheduler.fetch(REPO_ID, issues(5), new HashSet<>(Arrays.asList(4, 5)),
+            issue -> 2, issue -> {
+                if (issue.getId() == 1) {
+                    // Gives the other issues time to be queued
+                    sleep(100);
+                }
+                downloaded.add(issue.getId());
+                return metadata();
+            });
+
+        assertEquals(5, result.size());
+        assertEquals(Arrays.asList(1, 4, 5, 2, 3), downloaded);
+    }
+
+    @Test
+    public void issues_areDownloadedConcurrently() {
+        MetadataFetchScheduler scheduler = new MetadataFetchScheduler(new RateLimiter(), 4);
+        AtomicInteger inFlight = new AtomicInteger(0);
+        AtomicInteger maxInFlight = new AtomicInteger(0);
+
+        Map<Integer, IssueMetadata> result = scheduler.fetch(REPO_ID, issues(8), new HashSet<>(),
+            issue -> 2, issue -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                sleep(50);
+                inFlight.decrementAndGet();
+                return metadata();
+            });
+
+        assertEquals(8, result.size());
+        assertTrue(maxInFlight.get() > 1);
+        assertTrue(maxInFlight.get() <= 4);
+    }
+
+    @Test
+    public void downloads_stopBeforeReserve() {
+        RateLimiter rateLimiter = new RateLimiter(10, 100, System::currentTimeMillis);
+        rateLimiter.update(15, System.currentTimeMillis() + 60 * 60 * 1000);
+        MetadataFetchScheduler scheduler = new MetadataFetchScheduler(rateLimiter, 1);
+        AtomicInteger downloads = new AtomicInteger(0);
+
+        Map<Integer, IssueMetadata> result = scheduler.fetch(REPO_ID, issues(5), new HashSet<>(),
+            issue -> 2, issue -> {
+                downloads.incrementAndGet();
+                return metadata();
+            });
+
+        // Five requests may be made, enough for two issues; the rest are skipped
+        assertEquals(2, downloads.get());
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), result.keySet());
+        assertEquals(11, rateLimiter.getRemainingRequests());
+    }
+
+    @Test
+    public void batchesWithPrioritisedIssues_areDownloadedFirst() {
+        MetadataFetchScheduler scheduler = new MetadataFetchScheduler(new RateLimiter(), 1);
+        List<Integer> downloaded = new CopyOnWriteArrayList<>();
+        List<TurboIssue> issues = issues(6);
+
+        Map<Integer, IssueMetadata> result = scheduler.fetchBatches(REPO_ID,
+            Arrays.asList(issues.subList(0, 2), issues.subList(2, 4), issues.subList(4, 6)),
+            new HashSet<>(Collections.singletonList(6)), batch -> 1, batch -> {
+                if (batch.get(0).getId() == 1) {
+                    // Gives the other batches time to be queued
+                    sleep(100);
+                }
+                downloaded.add(batch.get(0).getId());
+                return batch.stream().collect(Collectors.toMap(TurboIssue::getId, issue -> metadata()));
+            });
+
+        assertEquals(6, result.size());
+        assertEquals(Arrays.asList(1, 5, 3), downloaded);
+    }
+}
@@ -0,0 +1,50 @@
+package tests;
+
+import backend.resource.ModelChanges;
+import backend.resource.TurboLabel;
+import org.junit.Test;
+import util.PersistentSortedMap;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ModelChangesTests {
+
+    private static final String REPO = "test/test";
+
+    private static PersistentSortedMap<String, TurboLabel> labels(TurboLabel... labels) {
+        return PersistentSortedMap.of(Arrays.asList(labels), TurboLabel::getFullName);
+    }
+
+    @Test
+    public void between_findsAddedUpdatedAndRemovedItems() {
+        TurboLabel bug = new TurboLabel(REPO, "bug");
+        TurboLabel feature = new TurboLabel(REPO, "feature");
+        TurboLabel recoloured = new TurboLabel(REPO, "000000", "feature");
+        TurboLabel question = new TurboLabel(REPO, "question");
+
+        ModelChanges.Changes<TurboLabel> changes =
+            ModelChanges.Changes.between(labels(bug, feature), labels(recoloured, question));
+
+        assertEquals(Arrays.asList(question), changes.getAdded());
+        assertEquals(Arrays.asList(recoloured), changes.getUpdated());
+        assertEquals(Arrays.asList(bug), changes.getRemoved());
+        assertTrue(ModelChanges.Changes.between(labels(bug), labels(new TurboLabel(REPO, "bug"))).isEmpty());
+    }
+
+    @Test
+    public void of_looksUpOnlyGivenItems() {
+        TurboLabel bug = new TurboLabel(REPO, "bug");
+        TurboLabel question = new TurboLabel(REPO, "question");
+
+        ModelChanges.Changes<TurboLabel> changes =
+            ModelChanges.Changes.of(labels(bug), Arrays.asList(question), TurboLabel::getFullName);
+
+        assertEquals(Arrays.asList(question), changes.getAdded());
+        assertTrue(changes.getUpdated().isEmpty());
+        assertTrue(changes.getRemoved().isEmpty());
+        assertTrue(ModelChanges.none(REPO).isEmpty());
+    }
+}
@@ -9,9 +9,11 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 
 public class ModelTests {
 
@@ -96,21 +98,21 @@ public class ModelTests {
         assertNotEquals(model, modelUpdated);
 
         List<TurboIssue> issues = new ArrayList<>(modelUpdated.getIssues());
-        issues.add(new TurboIssue(REPO, 11, "something"));
+        issues.add(new TurboIssue(REPO, DummyRepoState.noOfDummyIssues + 1, "something"));
         model = new Model(REPO, issues, modelUpdated.getLabels(),
             modelUpdated.getMilestones(), modelUpdated.getUsers(), modelUpdated.getUpdateSignature());
         assertNotEquals(model.hashCode(), modelUpdated.hashCode());
         assertNotEquals(model, modelUpdated);
 
         List<TurboLabel> labels = new ArrayList<>(modelUpdated.getLabels());
-        labels.add(new TurboLabel(REPO, "Label 11"));
+        labels.add(new TurboLabel(REPO, "something"));
         model = new Model(REPO, modelUpdated.getIssues(), labels,
             modelUpdated.getMilestones(), modelUpdated.getUsers(), modelUpdated.getUpdateSignature());
         assertNotEquals(model.hashCode(), modelUpdated.hashCode());
         assertNotEquals(model, modelUpdated);
 
         List<TurboMilestone> milestones = new ArrayList<>(modelUpdated.getMilestones());
-        milestones.add(new TurboMilestone(REPO, 11, "something"));
+        milestones.add(new TurboMilestone(REPO, DummyRepoState.noOfDummyIssues + 1, "something"));
         model = new Model(REPO, modelUpdated.getIssues(), modelUpdated.getLabels(),
             milestones, modelUpdated.getUsers(), modelUpdated.getUpdateSignature());
         assertNotEquals(model.hashCode(), modelUpdated.hashCode());
@@ -273,34 +275,58 @@ public class ModelTests {
         assertEquals("User 10", modelUpdated.getUserByLogin("User 10").get().getLoginName());
     }
 
-    /**
-     * Tests that replaceIssueLabels returns Optional.empty() if the model for the
-     * issue given in the argument can't be found
-     */
     @Test
-    public void replaceIssueLabels_issueNotFound() {
-        Model model = new Model("testrepo");
-        assertEquals(Optional.empty(), model.replaceIssueLabels(1, new ArrayList<>()));
+    public void lookups_areUnaffectedByChangesToGivenLists() {
+        List<TurboIssue> issues = new ArrayList<>(Arrays.asList(new TurboIssue(REPO, 1, "First")));
+        List<TurboLabel> labels = new ArrayList<>(Arrays.asList(new TurboLabel(REPO, "bug"),
+                                                                new TurboLabel(REPO, "bug")));
+        Model model = new Model(REPO, issues, labels, new ArrayList<>(), new ArrayList<>());
+        issues.clear();
+        labels.clear();
+
+        assertEquals("First", model.getIssueById(1).get().getTitle());
+        assertEquals(false, model.getIssueById(2).isPresent());
+        assertEquals("bug", model.getLabelByActualName("bug").get().getFullName());
+        assertEquals(false, model.getUserByLogin("nobody").isPresent());
+        assertEquals(false, model.getMilestoneByTitle("none").isPresent());
     }
 
-    /**
-     * Tests that replaceIssueLabels finds issue with the right id and successfully modify the issue's labels
-     */
     @Test
-    public void replaceIssueLabels_successful() {
-        String repoId = "testowner/testrepo";
-        List<String> originalLabels = Arrays.asList("label1", "label2");
-        List<String> newLabels = Arrays.asList("label3", "label4");
-
-        TurboIssue issue1 = LogicTests.createIssueWithLabels(1, originalLabels);
-        TurboIssue issue2 = LogicTests.createIssueWithLabels(2, originalLabels);
-        TurboIssue issue3 = LogicTests.createIssueWithLabels(3, originalLabels);
-        List<TurboIssue> issues = Arrays.asList(issue3, issue2, issue1);
-
-        Model model = new Model(repoId, issues, new ArrayList<TurboLabel>(),
-                                new ArrayList<TurboMilestone>(), new ArrayList<TurboUser>());
-        Optional<TurboIssue> result = model.replaceIssueLabels(issue1.getId(), newLabels);
-        assertEquals(1, result.get().getId());
-        assertEquals(newLabels, result.get().getLabels());
+    public void withChanges_sharesWhatIsUnchanged() {
+        TurboIssue first = new TurboIssue(REPO, 1, "First");
+        Model model = new Model(REPO, Arrays.asList(new TurboIssue(REPO, 2, "Second"), first),
+                                Arrays.asList(new TurboLabel(REPO, "bug")), new ArrayList<>(), new ArrayList<>());
+
+        ModelChanges changes = new ModelChanges(REPO,
+            ModelChanges.Changes.of(model.getIssuesById(), Arrays.asList(new TurboIssue(REPO, 3, "Third")),
+                                    TurboIssue::getId),
+            ModelChanges.Changes.none(), ModelChanges.Changes.none(), ModelChanges.Changes.none());
+        Model updated = model.withChanges(changes, UpdateSignature.EMPTY);
+
+        assertEquals(2, model.getIssues().size());
+        assertEquals(Arrays.asList(1, 2, 3),
+                     updated.getIssues().stream().map(TurboIssue::getId).collect(Collectors.toList()));
+        assertSame(first, updated.getIssueById(1).get());
+        assertSame(model.getLabelsByName(), updated.getLabelsByName());
+        assertEquals(Optional.of(changes), updated.getChanges());
+        assertEquals(Optional.empty(), model.getChanges());
+    }
+
+    @Test
+    public void versions_changeOnlyWithContents() {
+        Model model = new Model(REPO, Arrays.asList(new TurboIssue(REPO, 1, "First")),
+                                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        Model unchanged = model.withChanges(ModelChanges.none(REPO), UpdateSignature.EMPTY);
+        Model changed = model.withIssues(Arrays.asList(new TurboIssue(REPO, 1, "Renamed")));
+
+        assertEquals(model.getVersion(), new Model(model).getVersion());
+        assertEquals(model.getVersion(), unchanged.getVersion());
+        Model absentReplaced = model.withIssues(Arrays.asList(new TurboIssue(REPO, 2, "Absent")));
+        assertEquals(model.getVersion(), absentReplaced.getVersion());
+        assertNotEquals(model.getVersion(), changed.getVersion());
+        assertNotEquals(model.getVersion(), new Model(REPO, model.getIssues(), model.getLabels(),
+                                                      model.getMilestones(), model.getUsers()).getVersion());
+        assertEquals(model, unchanged);
+        assertNotEquals(model, changed);
     }
 }
@@ -1,9 +1,13 @@
 package tests;
 
 import backend.RepoIO;
+import backend.UpdateSignature;
+import backend.interfaces.IModel;
 import backend.json.JSONStoreStub;
 import backend.resource.Model;
+import backend.resource.ModelChanges;
 import backend.resource.MultiModel;
+import backend.resource.TurboIssue;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import prefs.Preferences;
@@ -12,6 +16,7 @@ import ui.UI;
 import ui.components.StatusUIStub;
 import util.events.EventDispatcherStub;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -20,7 +25,6 @@ import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class MultiModelTest {
@@ -67,6 +71,60 @@ public class MultiModelTest {
         assertEquals(false, models.getModelById(repoId2).isPresent());
     }
 
+    private static Model modelWithTwoIssues(String repoId) {
+        return new Model(repoId, new ArrayList<>(Arrays.asList(
+            new TurboIssue(repoId, 1, "Issue 1"), new TurboIssue(repoId, 2, "Issue 2"))),
+            new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    @Test
+    public void deactivatedModels_areKeptWithinBudget() {
+        // Room for two of the models
+        MultiModel models = new MultiModel(mock(Preferences.class),
+                                           2 * modelWithTwoIssues("test/repo1").estimateSize());
+        for (String repoId : Arrays.asList("test/repo1", "test/repo2", "test/repo3")) {
+            models.queuePendingRepository(repoId);
+            models.addPending(modelWithTwoIssues(repoId));
+        }
+
+        models.deactivate("test/repo1");
+        models.deactivate("TEST/REPO2");
+        assertFalse(models.getModelById("test/repo1").isPresent());
+        assertEquals(2, models.getIssues().size());
+        assertTrue(models.isInactive("test/repo1"));
+
+        // The least recently used model is dropped once the budget is exceeded
+        models.deactivate("test/repo3");
+        assertFalse(models.isInactive("test/repo1"));
+        assertFalse(models.activate("test/repo1"));
+
+        assertTrue(models.activate("test/repo2"));
+        assertFalse(models.isInactive("test/repo2"));
+        assertEquals(2, models.getModelById("test/repo2").get().getIssues().size());
+
+        models.discardInactive("test/repo3");
+        assertFalse(models.activate("test/repo3"));
+    }
+
+    @Test
+    public void deactivatedModels_areKeptWithinConfiguredBudget() {
+        Preferences prefs = mock(Preferences.class);
+        when(prefs.getInactiveModelsByteBudget()).thenReturn(modelWithTwoIssues("test/repo1").estimateSize());
+        MultiModel models = new MultiModel(prefs);
+        for (String repoId : Arrays.asList("test/repo1", "test/repo2")) {
+            models.queuePendingRepository(repoId);
+            models.addPending(modelWithTwoIssues(repoId));
+        }
+
+        models.deactivate("test/repo1");
+        assertTrue(models.isInactive("test/repo1"));
+
+        // Only one model fits in the budget
+        models.deactivate("test/repo2");
+        assertFalse(models.isInactive("test/repo1"));
+        assertTrue(models.isInactive("test/repo2"));
+    }
+
     /**
      * Tests that replaceIssueLabels returns Optional.empty() if the model for the
      * issue given in the argument can't be found
@@ -78,8 +136,8 @@ public class MultiModelTest {
     }
 
     /**
-     * Tests that replaceIssueLabels called the Model with the same id as the argument
-     * repoId and invoke replaceIssueLabels on that Model
+     * Tests that replaceIssueLabels replaces the issue with the given id in the model of the repository
+     * with one with the new labels, leaving the models which were read before as they were
      */
     @Test
     public void replaceIssueLabels_successful() {
@@ -87,15 +145,144 @@ public class MultiModelTest {
         int issueId = 1;
         List<String> labels = Arrays.asList("label1", "label2");
 
-        Model mockedModel = mock(Model.class);
-        when(mockedModel.getRepoId()).thenReturn(repoId);
-        when(mockedModel.getIssues()).thenReturn(new ArrayList<>());
-
         MultiModel models = new MultiModel(mock(Preferences.class));
         models.queuePendingRepository(repoId);
-        models.addPending(mockedModel);
+        models.addPending(new Model(repoId, Arrays.asList(new TurboIssue(repoId, issueId, "Issue")),
+                                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        Model previousModel = models.getModelById(repoId).get();
+        List<TurboIssue> previousIssues = models.getIssues();
+
+        Optional<TurboIssue> result = models.replaceIssueLabels(repoId, issueId, labels);
+
+        assertEquals(labels, result.get().getLabels());
+        assertEquals(labels, models.getModelById(repoId).get().getIssueById(issueId).get().getLabels());
+        assertEquals(labels, models.getIssues().get(0).getLabels());
+        assertTrue(previousModel.getIssueById(issueId).get().getLabels().isEmpty());
+        assertTrue(previousIssues.get(0).getLabels().isEmpty());
+    }
+
+    /**
+     * Tests that reads made while the models are being changed see either all of a change or none of it
+     */
+    @Test
+    public void reads_seeConsistentSnapshots() throws InterruptedException {
+        MultiModel models = new MultiModel(mock(Preferences.class));
+        List<Model> first = Arrays.asList(new Model("test/repo1"), new Model("test/repo2"));
+        List<Model> second = Arrays.asList(new Model("test/repo3"), new Model("test/repo4"));
+        models.replace(first);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                models.replace(i % 2 == 0 ? second : first);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            List<Model> read = models.toModels();
+            assertEquals(2, read.size());
+            assertTrue(read.containsAll(first) || read.containsAll(second));
+        }
+        writer.join();
+    }
+
+    /**
+     * Tests that a snapshot keeps the models as they were when it was taken, whatever changes after
+     */
+    @Test
+    public void snapshot_isUnaffectedByLaterChanges() {
+        String repoId = "testowner/testrepo";
+        MultiModel models = new MultiModel(mock(Preferences.class));
+        models.replace(Arrays.asList(modelWithTwoIssues(repoId)));
+        IModel snapshot = models.getSnapshot();
+
+        models.replace(Arrays.asList(new Model("test/other")));
+
+        assertEquals(2, snapshot.getIssues().size());
+        assertTrue(snapshot.getModelById(repoId).isPresent());
+        assertTrue(snapshot.getLabelsOfIssue(snapshot.getIssues().get(0)).isEmpty());
+        assertTrue(models.getIssues().isEmpty());
+    }
+
+    /**
+     * Tests that update makes only the changes of the updated models, and that when nothing changed,
+     * nothing is gathered again
+     */
+    @Test
+    public void update_makesChangesOfUpdatedModels() {
+        String repoId = "testowner/testrepo";
+        MultiModel models = new MultiModel(mock(Preferences.class));
+        Model model = new Model(repoId, Arrays.asList(new TurboIssue(repoId, 1, "Issue")),
+                                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        models.replace(Arrays.asList(model));
+        List<TurboIssue> issues = models.getIssues();
+
+        List<ModelChanges> changes = models.update(Arrays.asList(
+            model.withChanges(ModelChanges.none(repoId), UpdateSignature.EMPTY), new Model("test/closed")));
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).isEmpty());
+        assertSame(issues, models.getIssues());
+
+        // An updated model which does not know its changes is compared with the current one
+        changes = models.update(Arrays.asList(new Model(repoId, Arrays.asList(new TurboIssue(repoId, 2, "New")),
+                                                        new ArrayList<>(), new ArrayList<>(), new ArrayList<>())));
+        assertEquals(1, changes.get(0).getIssues().getAdded().size());
+        assertEquals(1, changes.get(0).getIssues().getRemoved().size());
+        assertEquals("New", models.getIssues().get(0).getTitle());
+        assertFalse(models.getModelById("test/closed").isPresent());
+    }
+
+    /**
+     * Tests that issues updated from an older model keep the labels they were given since
+     */
+    @Test
+    public void update_reconcilesIssuesUpdatedFromOlderModel() {
+        String repoId = "testowner/testrepo";
+        MultiModel models = new MultiModel(mock(Preferences.class));
+        TurboIssue issue = new TurboIssue(repoId, 1, "Issue");
+        issue.setUpdatedAt(LocalDateTime.now().minusDays(1));
+        Model model = new Model(repoId, Arrays.asList(issue), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        models.replace(Arrays.asList(model));
+
+        // Labels are replaced while the model is being updated
+        models.replaceIssueLabels(repoId, 1, Arrays.asList("type.bug"));
+
+        TurboIssue renamed = new TurboIssue(issue);
+        renamed.setTitle("Renamed");
+        Model updatedModel = model.withChanges(new ModelChanges(repoId,
+            new ModelChanges.Changes<>(new ArrayList<>(), Arrays.asList(renamed), new ArrayList<>()),
+            ModelChanges.Changes.none(), ModelChanges.Changes.none(), ModelChanges.Changes.none()),
+            UpdateSignature.EMPTY);
+        models.update(Arrays.asList(updatedModel));
+
+        TurboIssue updatedIssue = models.getIssues().get(0);
+        assertEquals("Renamed", updatedIssue.getTitle());
+        assertEquals(Arrays.asList("type.bug"), updatedIssue.getLabels());
+    }
+
+    /**
+     * Tests that the issues of all models are gathered as models are added and updated,
+     * leaving earlier snapshots as they were
+     */
+    @Test
+    public void update_gathersIssuesOfAllModels() {
+        MultiModel models = new MultiModel(mock(Preferences.class));
+        Model first = new Model("test/first", Arrays.asList(new TurboIssue("test/first", 1, "First")),
+                                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        Model second = new Model("test/second", Arrays.asList(new TurboIssue("test/second", 1, "Second"),
+                                                              new TurboIssue("test/second", 2, "Second")),
+                                 new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        models.replace(Arrays.asList(first, second, new Model("test/empty")));
+        IModel snapshot = models.getSnapshot();
+        assertEquals(3, models.getIssues().size());
+
+        models.update(Arrays.asList(new Model("test/first", new ArrayList<>(),
+                                              new ArrayList<>(), new ArrayList<>(), new ArrayList<>())));
 
-        models.replaceIssueLabels(repoId, issueId, labels);
-        verify(mockedModel).replaceIssueLabels(issueId, labels);
+        List<TurboIssue> issues = models.getIssues();
+        assertEquals(2, issues.size());
+        assertEquals("Second", issues.get(0).getTitle());
+        assertEquals("Second", issues.get(1).getTitle());
+        assertEquals(2, new ArrayList<>(issues).size());
+        assertEquals(3, snapshot.getIssues().size());
     }
 }
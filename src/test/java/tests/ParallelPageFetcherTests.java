@@ -0,0 +1,195 @@
+package tests;
+
+import github.GitHubClientEx;
+import github.ParallelPageFetcher;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.PagedRequest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelPageFetcherTests {
+
+    private static final String URI = "/repos/test/test/issues";
+
+    /**
+     * Serves pages of a fixed number of items, counting how many requests are made at once.
+     */
+    private static class PagedClientStub extends GitHubClientEx {
+        private final int pages;
+        private final boolean hasLastLink;
+        private final int remainingRequests;
+        private final int failingPage;
+
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+        private final AtomicInteger maxInFlight = new AtomicInteger(0);
+        private final List<Integer> requestedPages = new CopyOnWriteArrayList<>();
+
+        PagedClientStub(int pages, boolean hasLastLink, int remainingRequests, int failingPage) {
+            this.pages = pages;
+            this.hasLastLink = hasLastLink;
+            this.remainingRequests = remainingRequests;
+            this.failingPage = failingPage;
+        }
+
+        @Override
+        public GitHubResponse get(GitHubRequest request) throws IOException {
+            int page = getPage(request);
+            requestedPages.add(page);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                if (page == failingPage) {
+                    throw new IOException("Page " + page + " failed");
+                }
+                return new GitHubResponse(new LinkConnection(createLinks(page)),
+                    Arrays.asList(page * 10, page * 10 + 1));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public int getRemainingRequests() {
+            return remainingRequests;
+        }
+
+        private String createLinks(int page) {
+            List<String> links = new ArrayList<>();
+            if (page < pages) {
+                links.add(String.format("<https://api.github.com%s?page=%d>; rel=\"next\"", URI, page + 1));
+                if (hasLastLink) {
+                    links.add(String.format("<https://api.github.com%s?page=%d>; rel=\"last\"", URI, pages));
+                }
+            }
+            return links.isEmpty() ? null : String.join(", ", links);
+        }
+
+        private static int getPage(GitHubRequest request) {
+            if (request.getUri().contains("page=")) {
+                return Integer.parseInt(request.getUri().replaceAll(".*page=(\\d+).*", "$1"));
+            }
+            return ((PagedRequest<?>) request).getPage();
+        }
+    }
+
+    /**
+     * A connection which only has a Link header.
+     */
+    private static class LinkConnection extends HttpURLConnection {
+        private final String links;
+
+        LinkConnection(String links) throws MalformedURLException {
+            super(new URL("https://api.github.com" + URI));
+            this.links = links;
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return "Link".equals(name) ? links : null;
+        }
+
+        @Override
+        public void connect() {}
+
+        @Override
+        public void disconnect() {}
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+    }
+
+    private static PagedRequest<Integer> createRequest() {
+        PagedRequest<Integer> request = new PagedRequest<>();
+        request.setUri(URI);
+        return request;
+    }
+
+    private static List<Integer> expectedItems(int pages) {
+        List<Integer> items = new ArrayList<>();
+        for (int page = 1; page <= pages; page++) {
+            items.add(page * 10);
+            items.add(page * 10 + 1);
+        }
+        return items;
+    }
+
+    @Test
+    public void remainingPages_areFetchedConcurrentlyInOrder() throws IOException {
+        PagedClientStub client = new PagedClientStub(9, true, -1, -1);
+        List<Integer> progress = new CopyOnWriteArrayList<>();
+
+        List<Integer> items = new ParallelPageFetcher(client, 3).getAll(createRequest(),
+            (pagesFetched, totalPages) -> {
+                assertEquals(9, totalPages.intValue());
+                progress.add(pagesFetched);
+            });
+
+        assertEquals(expectedItems(9), items);
+        assertEquals(3, client.maxInFlight.get());
+        assertEquals(9, client.requestedPages.size());
+        assertEquals(9, Collections.max(progress).intValue());
+    }
+
+    @Test
+    public void lowRateLimit_fetchesSequentially() throws IOException {
+        PagedClientStub client = new PagedClientStub(5, true, 2, -1);
+
+        List<Integer> items = new ParallelPageFetcher(client, 4).getAll(createRequest(), (fetched, total) -> {});
+
+        assertEquals(expectedItems(5), items);
+        assertEquals(1, client.maxInFlight.get());
+    }
+
+    @Test
+    public void unknownLastPage_followsNextLinks() throws IOException {
+        PagedClientStub client = new PagedClientStub(4, false, -1, -1);
+
+        List<Integer> items = new ParallelPageFetcher(client).getAll(createRequest(), (fetched, total) -> {});
+
+        assertEquals(expectedItems(4), items);
+        assertEquals(Arrays.asList(1, 2, 3, 4), client.requestedPages);
+    }
+
+    @Test
+    public void singlePage_isFetchedOnce() throws IOException {
+        PagedClientStub client = new PagedClientStub(1, true, -1, -1);
+
+        List<Integer> items = new ParallelPageFetcher(client).getAll(createRequest(), (fetched, total) -> {
+            assertEquals(1, fetched.intValue());
+            assertEquals(1, total.intValue());
+        });
+
+        assertEquals(expectedItems(1), items);
+        assertEquals(1, client.requestedPages.size());
+    }
+
+    @Test
+    public void failedPage_throwsIOException() {
+        PagedClientStub client = new PagedClientStub(6, true, -1, 4);
+        try {
+            new ParallelPageFetcher(client).getAll(createRequest(), (fetched, total) -> {});
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Page 4"));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package tests;
+
+import org.junit.Test;
+import util.PersistentSortedMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentSortedMapTests {
+
+    @Test
+    public void changes_leaveOldVersionsAsTheyWere() {
+        PersistentSortedMap<Integer, String> empty = PersistentSortedMap.empty();
+        PersistentSortedMap<Integer, String> one = empty.put(1, "a");
+        PersistentSortedMap<Integer, String> two = one.put(2, "b");
+        PersistentSortedMap<Integer, String> replaced = two.put(1, "c");
+        PersistentSortedMap<Integer, String> removed = replaced.remove(2);
+
+        assertTrue(empty.isEmpty());
+        assertEquals(Arrays.asList("a"), one.values());
+        assertEquals(Arrays.asList("a", "b"), two.values());
+        assertEquals(Arrays.asList("c", "b"), replaced.values());
+        assertEquals(Arrays.asList("c"), removed.values());
+        assertNull(removed.get(2));
+        assertFalse(removed.containsKey(2));
+    }
+
+    @Test
+    public void changesWithoutEffect_returnSameMap() {
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.<Integer, String>empty().put(1, "a");
+        assertSame(map, map.put(1, map.get(1)));
+        assertSame(map, map.putIfAbsent(1, "b"));
+        assertSame(map, map.remove(2));
+    }
+
+    @Test
+    public void of_keepsFirstValueOfEachKey() {
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.of(Arrays.asList("bb", "a", "cc"),
+                                                                          String::length);
+        assertEquals(Arrays.asList("a", "bb"), map.values());
+        assertEquals(PersistentSortedMap.of(Arrays.asList("a", "bb"), String::length), map);
+    }
+
+    @Test
+    public void randomChanges_matchTreeMap() {
+        Random random = new Random(0);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentSortedMap<Integer, Integer> map = PersistentSortedMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), map.values());
+        for (int key = 0; key < 1000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
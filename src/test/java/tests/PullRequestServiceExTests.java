@@ -6,7 +6,6 @@ import github.GitHubClientEx;
 import github.PullRequestServiceEx;
 import github.ReviewComment;
 import org.eclipse.egit.github.core.RepositoryId;
-import org.eclipse.egit.github.core.client.GitHubClient;
 import org.junit.Test;
 import org.mockserver.client.server.MockServerClient;
 import org.mockserver.integration.ClientAndServer;
@@ -72,7 +71,7 @@ public class PullRequestServiceExTests {
                     .withBody(sampleComments)
         );
 
-        GitHubClient client = new GitHubClient("localhost", 8888, "http");
+        GitHubClientEx client = new GitHubClientEx("localhost", 8888, "http");
         PullRequestServiceEx service = new PullRequestServiceEx(client);
 
         Type listOfComments = new TypeToken<List<ReviewComment>>() {}.getType();
@@ -0,0 +1,152 @@
+package tests;
+
+import com.sun.net.httpserver.HttpServer;
+import github.GitHubClientEx;
+import github.RateLimitTracker;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimitTrackerTests {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    /**
+     * A response with the given headers, which is never connected.
+     */
+    private static class ResponseStub extends HttpURLConnection {
+        private final Map<String, String> headers = new HashMap<>();
+        private long date = 0;
+
+        ResponseStub(int remaining, long resetSeconds) throws IOException {
+            super(new URL("http://localhost/"));
+            headers.put(RateLimitTracker.HEADER_RATE_LIMIT_LIMIT, "5000");
+            headers.put(RateLimitTracker.HEADER_RATE_LIMIT_REMAINING, String.valueOf(remaining));
+            headers.put(RateLimitTracker.HEADER_RATE_LIMIT_RESET, String.valueOf(resetSeconds));
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public long getDate() {
+            return date;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        @Override
+        public void connect() {
+        }
+    }
+
+    @Test
+    public void rateLimits_areKeptPerResource() throws IOException {
+        RateLimitTracker tracker = new RateLimitTracker(() -> 0L);
+        ResponseStub graphQLResponse = new ResponseStub(4000, 3600);
+        graphQLResponse.headers.put(RateLimitTracker.HEADER_RATE_LIMIT_RESOURCE, "graphql");
+
+        tracker.update(new ResponseStub(4500, 3600));
+        tracker.update(graphQLResponse);
+
+        assertEquals(4500, tracker.getRateLimit(RateLimitTracker.CORE).get().getRemaining());
+        assertEquals(5000, tracker.getRateLimit(RateLimitTracker.CORE).get().getLimit());
+        assertEquals(4000, tracker.getRateLimit("graphql").get().getRemaining());
+        assertEquals(Optional.of(new ImmutablePair<>(4500, HOUR)), tracker.getCoreRateLimits());
+    }
+
+    @Test
+    public void outOfOrderResponses_doNotRaiseRemainingRequests() throws IOException {
+        RateLimitTracker tracker = new RateLimitTracker(() -> 0L);
+        tracker.update(new ResponseStub(4500, 3600));
+        tracker.update(new ResponseStub(4501, 3600));
+        assertEquals(4500, tracker.getRateLimit(RateLimitTracker.CORE).get().getRemaining());
+
+        // A new window
+        tracker.update(new ResponseStub(4999, 7200));
+        assertEquals(4999, tracker.getRateLimit(RateLimitTracker.CORE).get().getRemaining());
+    }
+
+    @Test
+    public void resetTime_isConvertedToLocalClock() throws IOException {
+        RateLimitTracker tracker = new RateLimitTracker(() -> 1000L);
+        ResponseStub response = new ResponseStub(4500, 3600);
+        // GitHub's clock is 10 seconds ahead
+        response.date = 11000;
+        tracker.update(response);
+
+        assertEquals(HOUR, tracker.getRateLimit(RateLimitTracker.CORE).get().getResetTime());
+        assertEquals(HOUR - 10000, tracker.getRateLimit(RateLimitTracker.CORE).get().getLocalResetTime());
+    }
+
+    @Test
+    public void rateLimits_becomeStale() throws IOException {
+        AtomicLong now = new AtomicLong(0);
+        RateLimitTracker tracker = new RateLimitTracker(now::get);
+        tracker.update(new ResponseStub(4500, 3600));
+
+        now.set(RateLimitTracker.MAX_AGE);
+        assertTrue(tracker.getCoreRateLimits().isPresent());
+        now.set(RateLimitTracker.MAX_AGE + 1);
+        assertFalse(tracker.getCoreRateLimits().isPresent());
+
+        // Once reset
+        now.set(0);
+        tracker.update(new ResponseStub(4500, 60));
+        now.set(59 * 1000);
+        assertTrue(tracker.getCoreRateLimits().isPresent());
+        now.set(60 * 1000);
+        assertFalse(tracker.getCoreRateLimits().isPresent());
+    }
+
+    @Test
+    public void responses_feedTracker() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add(RateLimitTracker.HEADER_RATE_LIMIT_REMAINING, "4321");
+            exchange.getResponseHeaders().add(RateLimitTracker.HEADER_RATE_LIMIT_RESET,
+                                              String.valueOf(System.currentTimeMillis() / 1000 + 3600));
+            byte[] body = "{}".getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            GitHubClientEx client = new GitHubClientEx("localhost", server.getAddress().getPort(), "http");
+            assertFalse(client.getRateLimitTracker().getCoreRateLimits().isPresent());
+
+            client.get(new GitHubRequest().setUri("/repos/test/test"));
+
+            assertEquals(4321, (int) client.getRateLimitTracker().getCoreRateLimits().get().getLeft());
+            assertEquals(4321, client.getRateLimiter().getRemainingRequests());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package tests;
+
+import github.RateLimiter;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTests {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    @Test
+    public void unknownLimit_isNotEnforced() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(10, 5, () -> 0L);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(rateLimiter.acquire());
+        }
+        assertFalse(rateLimiter.isExhausted());
+        assertEquals(-1, rateLimiter.getRemainingRequests());
+    }
+
+    @Test
+    public void reserve_isNeverGivenOut() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(10, 5, () -> 0L);
+        rateLimiter.update(13, HOUR);
+
+        assertFalse(rateLimiter.acquire(4));
+        assertTrue(rateLimiter.acquire(2));
+        assertTrue(rateLimiter.acquire());
+        assertFalse(rateLimiter.acquire());
+        assertTrue(rateLimiter.isExhausted());
+        assertEquals(10, rateLimiter.getRemainingRequests());
+    }
+
+    @Test
+    public void sustainedRequests_arePaced() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(0, 2, System::currentTimeMillis);
+        // A token every 10 ms
+        rateLimiter.update(100, System.currentTimeMillis() + 1000);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 7; i++) {
+            assertTrue(rateLimiter.acquire());
+        }
+        // The first two tokens are a burst; the other five are waited for
+        assertTrue(System.currentTimeMillis() - start >= 40);
+        assertEquals(93, rateLimiter.getRemainingRequests());
+    }
+
+    @Test
+    public void outOfOrderResponses_doNotRaiseRemainingRequests() {
+        RateLimiter rateLimiter = new RateLimiter(0, 5, () -> 0L);
+        rateLimiter.update(50, HOUR);
+        rateLimiter.update(60, HOUR);
+        assertEquals(50, rateLimiter.getRemainingRequests());
+
+        // A new rate limit window
+        rateLimiter.update(5000, 2 * HOUR);
+        assertEquals(5000, rateLimiter.getRemainingRequests());
+        assertEquals(2 * HOUR, rateLimiter.getResetTime());
+    }
+
+    @Test
+    public void limit_isForgottenWhenReset() throws InterruptedException {
+        AtomicLong now = new AtomicLong(0);
+        RateLimiter rateLimiter = new RateLimiter(10, 5, now::get);
+        rateLimiter.update(10, HOUR);
+        assertTrue(rateLimiter.isExhausted());
+        assertFalse(rateLimiter.acquire());
+
+        now.set(HOUR);
+        assertFalse(rateLimiter.isExhausted());
+        assertTrue(rateLimiter.acquire());
+        assertEquals(-1, rateLimiter.getRemainingRequests());
+    }
+
+    @Test(timeout = 5000)
+    public void failedAcquire_takesNoTokens() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(0, 5, () -> 0L);
+        rateLimiter.update(100, HOUR);
+        assertTrue(rateLimiter.acquire(3));
+
+        // Two tokens are left, so this waits for two more, which never come as the clock is stopped
+        CompletableFuture<Boolean> waiting = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                waiting.complete(rateLimiter.acquire(4));
+            } catch (InterruptedException e) {
+                waiting.completeExceptionally(e);
+            }
+        });
+        thread.start();
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+
+        rateLimiter.update(3, HOUR);
+        assertFalse(waiting.get());
+        assertEquals(3, rateLimiter.getRemainingRequests());
+        // The two tokens left are still there
+        assertTrue(rateLimiter.acquire(2));
+        assertEquals(1, rateLimiter.getRemainingRequests());
+    }
+
+    @Test(timeout = 5000)
+    public void permitsBeyondMaxBurst_areGivenOutOnceMaxBurstIsAvailable() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(0, 5, () -> 0L);
+        rateLimiter.update(100, HOUR);
+        assertTrue(rateLimiter.acquire(8));
+        assertEquals(92, rateLimiter.getRemainingRequests());
+    }
+}
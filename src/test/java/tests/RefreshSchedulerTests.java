@@ -0,0 +1,133 @@
+package tests;
+
+import backend.RefreshScheduler;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshSchedulerTests {
+
+    private static final Set<String> REPOS = new HashSet<>(Arrays.asList("a/a", "b/b"));
+
+    private static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    @Test
+    public void newRepos_areRefreshedAfterDefaultInterval() {
+        AtomicLong now = new AtomicLong(0);
+        RefreshScheduler scheduler = new RefreshScheduler(0, now::get);
+
+        assertTrue(scheduler.getReposDue(REPOS, REPOS).isEmpty());
+        assertEquals(60, scheduler.getSecondsToNextRefresh());
+
+        now.set(RefreshScheduler.DEFAULT_INTERVAL);
+        assertEquals(REPOS, new HashSet<>(scheduler.getReposDue(REPOS, REPOS)));
+        // Not due again until the refresh completes or another interval passes
+        assertTrue(scheduler.getReposDue(REPOS, REPOS).isEmpty());
+    }
+
+    @Test
+    public void scheduleNow_makesRepoDue() {
+        AtomicLong now = new AtomicLong(0);
+        RefreshScheduler scheduler = new RefreshScheduler(0, now::get);
+        scheduler.getReposDue(REPOS, REPOS);
+
+        scheduler.scheduleNow("A/A");
+        assertEquals(Arrays.asList("a/a"), scheduler.getReposDue(REPOS, REPOS));
+        assertTrue(scheduler.getReposDue(REPOS, REPOS).isEmpty());
+    }
+
+    @Test
+    public void activeRepos_areRefreshedMoreOften() {
+        AtomicLong now = new AtomicLong(0);
+        RefreshScheduler scheduler = new RefreshScheduler(0, now::get);
+        scheduler.getReposDue(REPOS, REPOS);
+
+        scheduler.onRefreshed("a/a", true);
+        scheduler.onRefreshed("b/b", false);
+
+        now.set(seconds(30));
+        assertEquals(Arrays.asList("a/a"), scheduler.getReposDue(REPOS, REPOS));
+        now.set(seconds(119));
+        assertFalse(scheduler.getReposDue(REPOS, REPOS).contains("b/b"));
+        now.set(seconds(120));
+        assertTrue(scheduler.getReposDue(REPOS, REPOS).contains("b/b"));
+    }
+
+    @Test
+    public void idleRepos_backOffFurtherWhenNotVisible() {
+        AtomicLong now = new AtomicLong(0);
+        RefreshScheduler scheduler = new RefreshScheduler(0, now::get);
+        Set<String> visible = new HashSet<>(Arrays.asList("a/a"));
+        scheduler.getReposDue(REPOS, visible);
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.onRefreshed("a/a", false);
+            scheduler.onRefreshed("b/b", false);
+        }
+
+        now.set(RefreshScheduler.MAX_VISIBLE_INTERVAL);
+        assertEquals(Arrays.asList("a/a"), scheduler.getReposDue(REPOS, visible));
+        now.set(RefreshScheduler.MAX_INTERVAL);
+        assertTrue(scheduler.getReposDue(REPOS, visible).contains("b/b"));
+    }
+
+    @Test
+    public void intervals_stayWithinBudget() {
+        AtomicLong now = new AtomicLong(0);
+        // Two repositories refreshed every minute would take 600 requests per hour
+        RefreshScheduler scheduler = new RefreshScheduler(300, now::get);
+        scheduler.getReposDue(REPOS, REPOS);
+
+        scheduler.onRefreshed("a/a", true);
+        scheduler.onRefreshed("b/b", true);
+        assertEquals(120, scheduler.getSecondsToNextRefresh());
+    }
+
+    @Test
+    public void intervals_stayWithinRateLimit() {
+        AtomicLong now = new AtomicLong(0);
+        RefreshScheduler scheduler = new RefreshScheduler(0, now::get);
+        scheduler.getReposDue(REPOS, REPOS);
+
+        // 100 requests remain for the next 20 minutes: enough to refresh both repositories 10 times
+        scheduler.updateRateLimits(new ImmutablePair<>(100, TimeUnit.MINUTES.toMillis(20)));
+        scheduler.onRefreshed("a/a", true);
+        scheduler.onRefreshed("b/b", true);
+        assertEquals(120, scheduler.getSecondsToNextRefresh());
+
+        // None remain, so nothing is refreshed until they are reset
+        scheduler.updateRateLimits(new ImmutablePair<>(0, TimeUnit.MINUTES.toMillis(20)));
+        scheduler.onRefreshed("a/a", true);
+        scheduler.onRefreshed("b/b", true);
+        assertEquals(TimeUnit.MINUTES.toSeconds(20), scheduler.getSecondsToNextRefresh());
+    }
+
+    @Test
+    public void requestsPerRefresh_areMeasured() {
+        AtomicLong now = new AtomicLong(0);
+        RefreshScheduler scheduler = new RefreshScheduler(600, now::get);
+        scheduler.getReposDue(REPOS, REPOS);
+
+        scheduler.updateRateLimits(new ImmutablePair<>(1000, TimeUnit.HOURS.toMillis(1)));
+        scheduler.onRefreshed("a/a", true);
+        scheduler.onRefreshed("b/b", true);
+        assertEquals(60, scheduler.getSecondsToNextRefresh());
+
+        // The refreshes took 20 requests each, so the estimate rises from 5 to 12.5
+        scheduler.updateRateLimits(new ImmutablePair<>(960, TimeUnit.HOURS.toMillis(1)));
+        scheduler.onRefreshed("a/a", true);
+        scheduler.onRefreshed("b/b", true);
+        assertEquals(150, scheduler.getSecondsToNextRefresh());
+    }
+}
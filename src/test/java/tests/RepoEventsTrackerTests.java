@@ -0,0 +1,212 @@
+package tests;
+
+import backend.github.RepoEventsTracker;
+import backend.github.UpdateModelTask;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.stub.DummyRepo;
+import backend.stub.DummySource;
+import com.sun.net.httpserver.HttpServer;
+import github.GitHubClientEx;
+import github.RepoEvent;
+import github.RepoEventsResponse;
+import github.RepoEventsService;
+import github.RepoResource;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RepoEventsTrackerTests {
+
+    private static final String REPO_ID = "test/test";
+
+    /**
+     * Serves a feed of events, newest first, responding 304 to requests with its current ETag.
+     */
+    private static class EventsServiceStub extends RepoEventsService {
+        private final List<RepoEvent> events = new ArrayList<>();
+        private boolean hasOlderEvents = false;
+        private int requests = 0;
+
+        EventsServiceStub() {
+            super(new GitHubClientEx());
+        }
+
+        void addEvent(String id, String type) {
+            events.add(0, new RepoEvent(id, type));
+        }
+
+        @Override
+        public RepoEventsResponse getEvents(IRepositoryIdProvider repository, String eTag) {
+            requests++;
+            String currentETag = events.isEmpty() ? "none" : events.get(0).getId();
+            if (currentETag.equals(eTag)) {
+                return new RepoEventsResponse(false, new ArrayList<>(), eTag, 60, false);
+            }
+            return new RepoEventsResponse(true, events, currentETag, 60, hasOlderEvents);
+        }
+    }
+
+    @Test
+    public void firstUpdate_updatesEverything() {
+        EventsServiceStub service = new EventsServiceStub();
+        service.addEvent("1", "IssuesEvent");
+        RepoEventsTracker tracker = new RepoEventsTracker(service, () -> 0L);
+
+        assertFalse(tracker.getChangedResources(REPO_ID).isPresent());
+        assertEquals(1, service.requests);
+    }
+
+    @Test
+    public void events_tellWhatChanged() {
+        EventsServiceStub service = new EventsServiceStub();
+        service.addEvent("1", "IssuesEvent");
+        AtomicLong now = new AtomicLong(0);
+        RepoEventsTracker tracker = new RepoEventsTracker(service, now::get);
+        tracker.getChangedResources(REPO_ID);
+
+        // Within the poll interval, the feed is not read
+        now.set(30 * 1000);
+        assertEquals(Optional.of(EnumSet.noneOf(RepoResource.class)), tracker.getChangedResources(REPO_ID));
+        assertEquals(1, service.requests);
+
+        // Nothing happened
+        now.set(60 * 1000);
+        assertEquals(Optional.of(EnumSet.noneOf(RepoResource.class)), tracker.getChangedResources(REPO_ID));
+        assertEquals(2, service.requests);
+
+        service.addEvent("2", "MemberEvent");
+        service.addEvent("3", "IssueCommentEvent");
+        service.addEvent("4", "WatchEvent");
+        now.set(120 * 1000);
+        assertEquals(Optional.of(EnumSet.of(RepoResource.ISSUES, RepoResource.COLLABORATORS)),
+                     tracker.getChangedResources(REPO_ID));
+    }
+
+    @Test
+    public void missedEvents_updateEverything() {
+        EventsServiceStub service = new EventsServiceStub();
+        service.addEvent("1", "IssuesEvent");
+        AtomicLong now = new AtomicLong(0);
+        RepoEventsTracker tracker = new RepoEventsTracker(service, now::get);
+        tracker.getChangedResources(REPO_ID);
+
+        // The last event seen is no longer on the first page
+        service.events.clear();
+        service.addEvent("5", "IssuesEvent");
+        service.hasOlderEvents = true;
+        now.set(60 * 1000);
+        assertFalse(tracker.getChangedResources(REPO_ID).isPresent());
+    }
+
+    @Test
+    public void everything_isUpdatedPeriodically() {
+        EventsServiceStub service = new EventsServiceStub();
+        AtomicLong now = new AtomicLong(0);
+        RepoEventsTracker tracker = new RepoEventsTracker(service, now::get);
+        tracker.getChangedResources(REPO_ID);
+
+        now.set(RepoEventsTracker.FULL_UPDATE_INTERVAL - 1);
+        assertTrue(tracker.getChangedResources(REPO_ID).isPresent());
+        now.set(RepoEventsTracker.FULL_UPDATE_INTERVAL);
+        assertFalse(tracker.getChangedResources(REPO_ID).isPresent());
+    }
+
+    @Test
+    public void updateModelTask_onlyUpdatesChangedResources() throws Exception {
+        AtomicInteger labelUpdates = new AtomicInteger(0);
+        AtomicInteger issueUpdates = new AtomicInteger(0);
+        List<Optional<Set<RepoResource>>> changes = new ArrayList<>(Arrays.asList(
+            Optional.of(EnumSet.noneOf(RepoResource.class)), Optional.of(EnumSet.of(RepoResource.ISSUES))));
+        DummyRepo repo = new DummyRepo() {
+            @Override
+            public Optional<Set<RepoResource>> getChangedResources(String repoId) {
+                return changes.remove(0);
+            }
+
+            @Override
+            public ImmutablePair<List<TurboLabel>, String> getUpdatedLabels(String repoId, String eTag) {
+                labelUpdates.incrementAndGet();
+                return super.getUpdatedLabels(repoId, eTag);
+            }
+
+            @Override
+            public ImmutableTriple<List<TurboIssue>, String, Date>
+                getUpdatedIssues(String repoId, String eTag, Date lastCheckTime) {
+                issueUpdates.incrementAndGet();
+                return super.getUpdatedIssues(repoId, eTag, lastCheckTime);
+            }
+        };
+        Model model = new Model("dummy/dummy");
+
+        UpdateModelTask unchanged = new UpdateModelTask(new DummySource(), repo, model);
+        unchanged.run();
+        assertEquals(model, unchanged.response.get());
+        assertSame(model.getIssuesById(), unchanged.response.get().getIssuesById());
+        assertTrue(unchanged.response.get().getChanges().get().isEmpty());
+
+        UpdateModelTask issuesChanged = new UpdateModelTask(new DummySource(), repo, model);
+        issuesChanged.run();
+        issuesChanged.response.get();
+        assertEquals(1, issueUpdates.get());
+        assertEquals(0, labelUpdates.get());
+    }
+
+    @Test
+    public void eventsService_readsPollIntervalAndETag() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"feed\"");
+            exchange.getResponseHeaders().add("X-Poll-Interval", "120");
+            if ("\"feed\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = "[{\"id\":\"2\",\"type\":\"IssuesEvent\"},{\"id\":\"1\",\"type\":\"ForkEvent\"}]"
+                .getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            RepoEventsService service =
+                new RepoEventsService(new GitHubClientEx("localhost", server.getAddress().getPort(), "http"));
+
+            RepoEventsResponse response = service.getEvents(RepositoryId.createFromId(REPO_ID), "");
+            assertTrue(response.isModified());
+            assertEquals("feed", response.getETag());
+            assertEquals(120, response.getPollInterval());
+            assertEquals(2, response.getEvents().size());
+            assertEquals(EnumSet.of(RepoResource.ISSUES), response.getEvents().get(0).getChangedResources());
+
+            assertFalse(service.getEvents(RepositoryId.createFromId(REPO_ID), "feed").isModified());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -2,18 +2,35 @@ package tests;
 
 import backend.IssueMetadata;
 import backend.RepoIO;
+import backend.UpdateSignature;
 import backend.interfaces.RepoSource;
+import backend.json.JSONStore;
+import backend.resource.Model;
+import backend.resource.ModelChanges;
 import backend.resource.TurboIssue;
+import backend.resource.serialization.SerializableModel;
 import org.junit.Test;
+import ui.UI;
+import ui.components.StatusUIStub;
+import util.events.EventDispatcherStub;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -26,12 +43,14 @@ public class RepoIOTests {
     public void testGetIssueMetaData() {
         RepoSource source = mock(RepoSource.class);
         CompletableFuture<Map<Integer, IssueMetadata>> response = new CompletableFuture<>();
-        doReturn(response).when(source).downloadMetadata(anyString(), anyListOf(TurboIssue.class));
+        doReturn(response).when(source)
+            .downloadMetadata(anyString(), anyListOf(TurboIssue.class), anySetOf(Integer.class));
 
         RepoIO repoIO = new RepoIO(Optional.of(source), Optional.empty(), Optional.empty());
-        CompletableFuture result = repoIO.getIssueMetadata("test/test", new ArrayList<>());
+        CompletableFuture result = repoIO.getIssueMetadata("test/test", new ArrayList<>(), new HashSet<>());
 
-        verify(source, times(1)).downloadMetadata(anyString(), anyListOf(TurboIssue.class));
+        verify(source, times(1))
+            .downloadMetadata(anyString(), anyListOf(TurboIssue.class), anySetOf(Integer.class));
         assertEquals(response, result);
     }
 
@@ -52,4 +71,103 @@ public class RepoIOTests {
         verify(source, times(1)).replaceIssueLabels(any(TurboIssue.class), anyListOf(String.class));
         assertEquals(response, result);
     }
+
+    /**
+     * Tests that RepoIO's updateModel writes an updated model to the store only if its contents
+     * or update signature changed
+     */
+    @Test
+    public void updateModel_savesOnlyChangedModels() throws InterruptedException, ExecutionException {
+        UI.events = new EventDispatcherStub();
+        UI.status = new StatusUIStub();
+        RepoSource source = mock(RepoSource.class);
+        JSONStore store = mock(JSONStore.class);
+        doReturn(CompletableFuture.completedFuture(false)).when(store)
+            .saveRepository(anyString(), any(SerializableModel.class));
+        Model model = new Model("test/test");
+        RepoIO repoIO = new RepoIO(Optional.of(source), Optional.of(store), Optional.empty());
+
+        Model unchanged = model.withChanges(ModelChanges.none("test/test"), model.getUpdateSignature());
+        doReturn(CompletableFuture.completedFuture(unchanged)).when(source).updateModel(model);
+        repoIO.updateModel(model).get();
+        verify(store, never()).saveRepository(anyString(), any(SerializableModel.class));
+
+        UpdateSignature signature = new UpdateSignature("issues", null, null, null, new Date());
+        doReturn(CompletableFuture.completedFuture(model.withChanges(ModelChanges.none("test/test"), signature)))
+            .when(source).updateModel(model);
+        repoIO.updateModel(model).get();
+        verify(store, times(1)).saveRepository(anyString(), any(SerializableModel.class));
+
+        Model changed = new Model("test/test");
+        doReturn(CompletableFuture.completedFuture(changed)).when(source).updateModel(model);
+        repoIO.updateModel(model).get();
+        verify(store, times(2)).saveRepository(anyString(), any(SerializableModel.class));
+    }
+
+    /**
+     * Tests that a repository downloaded again after a deferred save turned out to be corrupted
+     * is passed on to the callback, so that it can replace the repository's model
+     */
+    @Test
+    public void updateModel_passesOnRedownloadAfterCorruptedDeferredSave()
+            throws InterruptedException, ExecutionException {
+        UI.events = new EventDispatcherStub();
+        UI.status = new StatusUIStub();
+        RepoSource source = mock(RepoSource.class);
+        JSONStore store = mock(JSONStore.class);
+        CompletableFuture<Boolean> deferredSave = new CompletableFuture<>();
+        doReturn(true).when(store).defersWrites();
+        doReturn(deferredSave).when(store).saveRepository(anyString(), any(SerializableModel.class));
+        Model model = new Model("test/test");
+        // The models differ in their signatures, so that they can be told apart by the mocks
+        Model changed = model.withChanges(ModelChanges.none("test/test"),
+            new UpdateSignature("changed", null, null, null, new Date()));
+        Model downloaded = model.withChanges(ModelChanges.none("test/test"),
+            new UpdateSignature("downloaded", null, null, null, new Date()));
+        doReturn(CompletableFuture.completedFuture(changed)).when(source).updateModel(model);
+        doReturn(CompletableFuture.completedFuture(downloaded)).when(source).downloadRepository("test/test");
+        doReturn(CompletableFuture.completedFuture(downloaded)).when(source).updateModel(downloaded);
+
+        RepoIO repoIO = new RepoIO(Optional.of(source), Optional.of(store), Optional.empty());
+        CompletableFuture<Model> redownloaded = new CompletableFuture<>();
+        repoIO.setOnRedownload(redownloaded::complete);
+
+        assertSame(changed, repoIO.updateModel(model).get());
+        assertFalse(redownloaded.isDone());
+
+        deferredSave.complete(true);
+        assertSame(downloaded, redownloaded.get());
+    }
+
+    /**
+     * Tests that the metadata cached for a repository is attached to copies of the issues loaded from the store,
+     * leaving the loaded issues as they are
+     */
+    @Test
+    public void openRepository_attachesCachedMetadataToCopies() throws InterruptedException, ExecutionException {
+        UI.events = new EventDispatcherStub();
+        UI.status = new StatusUIStub();
+        RepoSource source = mock(RepoSource.class);
+        JSONStore store = mock(JSONStore.class);
+        TurboIssue issue = new TurboIssue("test/test", 1, "Issue");
+        Model stored = new Model("test/test", new ArrayList<>(Arrays.asList(issue)), new ArrayList<>(),
+                                 new ArrayList<>(), new ArrayList<>());
+        IssueMetadata metadata = IssueMetadata.intermediate(new ArrayList<>(), new ArrayList<>(), "events", "");
+        Map<Integer, IssueMetadata> cachedMetadata = new HashMap<>();
+        cachedMetadata.put(1, metadata);
+        doReturn(Arrays.asList("test/test")).when(store).getStoredRepos();
+        doReturn(CompletableFuture.completedFuture(stored)).when(store).loadRepository("test/test");
+        doReturn(CompletableFuture.completedFuture(cachedMetadata)).when(store).loadMetadata("test/test");
+        doReturn(CompletableFuture.completedFuture(false)).when(store)
+            .saveRepository(anyString(), any(SerializableModel.class));
+        doAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArguments()[0]))
+            .when(source).updateModel(any(Model.class));
+
+        RepoIO repoIO = new RepoIO(Optional.of(source), Optional.of(store), Optional.empty());
+        Model opened = repoIO.openRepository("test/test").get();
+
+        assertSame(metadata, opened.getIssues().get(0).getMetadata());
+        assertNotSame(metadata, issue.getMetadata());
+        assertSame(issue, stored.getIssues().get(0));
+    }
 }
@@ -0,0 +1,113 @@
+package tests;
+
+import backend.interfaces.RepoStore;
+import backend.interfaces.StoreTask;
+import backend.resource.Model;
+import backend.resource.serialization.SerializableModel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StoreTaskSchedulingTests {
+
+    /**
+     * Exposes addTask so that arbitrary tasks may be scheduled.
+     */
+    private static class TaskStore extends RepoStore {
+        @Override
+        public CompletableFuture<Model> loadRepository(String repoId) {
+            return CompletableFuture.completedFuture(new Model(repoId));
+        }
+
+        @Override
+        public CompletableFuture<Boolean> saveRepository(String repoId, SerializableModel model) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        public void add(String repoId, Runnable action) {
+            addTask(new StoreTask(repoId) {
+                @Override
+                public void run() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void tasksForSameRepo_runInOrder() throws InterruptedException {
+        TaskStore store = new TaskStore();
+        List<Integer> completed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 50; i++) {
+            int task = i;
+            // Repository ids are case-insensitive
+            store.add(i % 2 == 0 ? "test/repo" : "TEST/REPO", () -> {
+                sleep(task % 3);
+                completed.add(task);
+            });
+        }
+        store.add("test/repo", done::countDown);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 50).boxed().collect(Collectors.toList()), completed);
+    }
+
+    @Test
+    public void tasksForDifferentRepos_runConcurrently() throws InterruptedException {
+        TaskStore store = new TaskStore();
+        CountDownLatch otherRepoRan = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        // The first task can only complete if the second runs while it is still running
+        store.add("test/slow", () -> {
+            await(otherRepoRan);
+            if (otherRepoRan.getCount() == 0) {
+                done.countDown();
+            }
+        });
+        store.add("test/fast", otherRepoRan::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedTask_doesNotHoldUpRepo() throws InterruptedException {
+        TaskStore store = new TaskStore();
+        CountDownLatch done = new CountDownLatch(1);
+
+        store.add("test/repo", () -> {
+            throw new IllegalStateException("Task failure");
+        });
+        store.add("test/repo", done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
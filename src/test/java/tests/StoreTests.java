@@ -5,8 +5,15 @@ import backend.interfaces.RepoStore;
 import backend.json.JSONStore;
 import backend.json.JSONStoreStub;
 import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.TurboLabel;
+import backend.resource.TurboMilestone;
+import backend.resource.TurboUser;
+import backend.resource.serialization.SerializableModel;
 import backend.stub.DummyRepoState;
+import com.google.gson.Gson;
 import guitests.UITest;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -14,14 +21,24 @@ import org.junit.Test;
 import ui.TestController;
 import ui.UI;
 import ui.components.StatusUIStub;
+import util.Utility;
 import util.events.EventDispatcherStub;
 import util.events.testevents.UpdateDummyRepoEvent;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.*;
 
@@ -142,6 +159,138 @@ public class StoreTests {
         assertEquals(false, Files.exists(Paths.get("store/test/dummy1-dummy1.json")));
     }
 
+    @Test
+    public void testLoadDeletedRepo() throws InterruptedException, ExecutionException, TimeoutException, IOException {
+        RepoIO testIO = TestController.createTestingRepoIO(Optional.empty());
+        Model dummy1 = testIO.openRepository("dummy1/dummy1").get();
+        UI.events.triggerEvent(UpdateDummyRepoEvent.newIssue("dummy1/dummy1"));
+        testIO.updateModel(dummy1).get();
+
+        // The repository is still listed as stored, so loading it is attempted before downloading it
+        Files.delete(Paths.get("store/test/dummy1-dummy1.json"));
+        Model model = testIO.openRepository("dummy1/dummy1").get(10, TimeUnit.SECONDS);
+        assertEquals(DummyRepoState.noOfDummyIssues + 1, model.getIssues().size());
+        assertTrue(Files.exists(Paths.get("store/test/dummy1-dummy1.json")));
+    }
+
+    @Test
+    public void testStreamedLoadMatchesGson() throws InterruptedException, ExecutionException {
+        String repoId = "testrepo/testrepo";
+        TurboIssue issue = new TurboIssue(repoId, 1, "Issue 1", "creator",
+            LocalDateTime.of(2015, 7, 1, 12, 30, 15, 42), false);
+        issue.setDescription("Multi-line\n\"quoted\" description");
+        issue.setAssignee("assignee");
+        issue.setLabels(Arrays.asList("type.bug", "priority.high"));
+        issue.setMilestone(2);
+        TurboMilestone milestone = new TurboMilestone(repoId, 2, "V0.1");
+        milestone.setDueDate(Optional.of(LocalDate.of(2015, 8, 1)));
+        Model model = new Model(repoId,
+            new ArrayList<>(Arrays.asList(issue, new TurboIssue(repoId, 2, "Issue 2"))),
+            new ArrayList<>(Arrays.asList(new TurboLabel(repoId, "type.bug"))),
+            new ArrayList<>(Arrays.asList(milestone, new TurboMilestone(repoId, 3, "V0.2"))),
+            new ArrayList<>(Arrays.asList(new TurboUser(repoId, "user", "Real Name"))));
+
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(repoId, new SerializableModel(model)).get();
+        Model loaded = jsonStore.loadRepository(repoId).get();
+
+        Model expected = new Model(new Gson().fromJson(RepoStore.read(repoId).get(), SerializableModel.class));
+        assertEquals(expected, loaded);
+        assertEquals(model.getIssues(), loaded.getIssues());
+        assertEquals(Arrays.asList(repoId), jsonStore.getStoredRepos());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void testRepoIdAfterResourcesJSON() throws InterruptedException, ExecutionException {
+        RepoStore.write("testrepo/testrepo", "{\"issues\":[],\"repoId\":\"testrepo/testrepo\"}", 0);
+
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.loadRepository("testrepo/testrepo").get();
+    }
+
+    @Test
+    public void testStoredReposIndex() throws InterruptedException, ExecutionException, IOException {
+        String repoId = "testrepo/testrepo";
+        Path repoFile = Paths.get("store/test/testrepo-testrepo.json");
+        Path indexFile = Paths.get(RepoStore.TEST_DIRECTORY, RepoStore.INDEX_FILE_NAME);
+
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(repoId, new SerializableModel(new Model(repoId))).get();
+        // Saves change the index in memory, and it is written when flushed
+        jsonStore.flush().get();
+        assertTrue(new String(Files.readAllBytes(indexFile), "UTF-8").contains(repoId));
+
+        // The repository file is not read while its index entry is up to date
+        FileTime lastModified = Files.getLastModifiedTime(repoFile);
+        Files.write(repoFile, StringUtils.repeat('*', (int) Files.size(repoFile)).getBytes("UTF-8"));
+        Files.setLastModifiedTime(repoFile, lastModified);
+        assertEquals(Arrays.asList(repoId), jsonStore.getStoredRepos());
+
+        // Stale entries are rebuilt from the repository file
+        jsonStore.saveRepository(repoId, new SerializableModel(new Model(repoId))).get();
+        RepoStore.write(repoId, "abcde", 0);
+        assertTrue(jsonStore.getStoredRepos().isEmpty());
+
+        // Missing or corrupted indexes are rebuilt
+        jsonStore.saveRepository(repoId, new SerializableModel(new Model(repoId))).get();
+        Files.delete(indexFile);
+        assertEquals(Arrays.asList(repoId), jsonStore.getStoredRepos());
+        assertTrue(Files.exists(indexFile));
+        Files.write(indexFile, "abcde".getBytes("UTF-8"));
+        assertEquals(Arrays.asList(repoId), jsonStore.getStoredRepos());
+
+        jsonStore.removeStoredRepo(repoId).get();
+        jsonStore.flush().get();
+        assertFalse(new String(Files.readAllBytes(indexFile), "UTF-8").contains(repoId));
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void testChecksumMismatch() throws InterruptedException, ExecutionException, IOException {
+        String repoId = "testrepo/testrepo";
+        Path repoFile = Paths.get("store/test/testrepo-testrepo.json");
+
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(repoId, new SerializableModel(new Model(repoId))).get();
+
+        // Still valid JSON and indistinguishable by size and modification time, but not what was written
+        FileTime lastModified = Files.getLastModifiedTime(repoFile);
+        String contents = new String(Files.readAllBytes(repoFile), "UTF-8");
+        Files.write(repoFile, contents.replace("testrepo/testrepo", "testrepo/testrepX").getBytes("UTF-8"));
+        Files.setLastModifiedTime(repoFile, lastModified);
+
+        jsonStore.loadRepository(repoId).get();
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void testTruncatedFile() throws InterruptedException, ExecutionException, IOException {
+        String repoId = "testrepo/testrepo";
+        Path repoFile = Paths.get("store/test/testrepo-testrepo.json");
+
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(repoId, new SerializableModel(new Model(repoId))).get();
+
+        // Still valid JSON without its trailing line separator, but its size and modification time have changed
+        byte[] contents = Files.readAllBytes(repoFile);
+        Files.write(repoFile, Arrays.copyOf(contents, new String(contents, "UTF-8").trim().length()));
+
+        jsonStore.loadRepository(repoId).get();
+    }
+
+    @Test
+    public void testAtomicWrite() throws InterruptedException, ExecutionException, IOException {
+        String repoId = "testrepo/testrepo";
+        Path repoFile = Paths.get("store/test/testrepo-testrepo.json");
+
+        JSONStore jsonStore = new JSONStore();
+        jsonStore.saveRepository(repoId, new SerializableModel(new Model(repoId))).get();
+        assertFalse(Files.exists(Paths.get(repoFile + Utility.TEMP_FILE_EXTENSION)));
+
+        // A failed write leaves the previous contents in place
+        Files.createDirectory(Paths.get(repoFile + Utility.TEMP_FILE_EXTENSION));
+        assertTrue(RepoStore.write(repoId, "abcde", 0));
+        assertEquals(repoId, jsonStore.loadRepository(repoId).get().getRepoId());
+    }
+
     @After
     public void cleanup() {
         UITest.clearTestFolder();
@@ -1,15 +1,25 @@
 package tests;
 
 import github.GitHubClientEx;
+import github.update.LabelUpdateService;
 import github.update.MilestoneUpdateService;
 import github.update.PullRequestUpdateService;
 import github.update.UpdateService;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.eclipse.egit.github.core.Label;
 import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.PagedRequest;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -52,4 +62,166 @@ public class UpdateServiceTests {
         PullRequestUpdateService service = new PullRequestUpdateService(client, new Date());
         assertTrue(service.getUpdatedItems(RepositoryId.create("name", "nonexistentrepo")).isEmpty());
     }
+
+    /**
+     * A connection which has been responded to with the given code and headers.
+     */
+    private static class RespondedConnection extends HttpURLConnection {
+        private final int code;
+        private final Map<String, String> headers;
+
+        RespondedConnection(int code, Map<String, String> headers) throws IOException {
+            super(new URL("https://api.github.com/"));
+            this.code = code;
+            this.headers = headers;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return code;
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public void connect() {}
+
+        @Override
+        public void disconnect() {}
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+    }
+
+    /**
+     * Serves pages of labels which honour If-None-Match, recording the requests made.
+     * 304 responses have no Link header, as may be the case on GitHub.
+     */
+    private static class ConditionalClientStub extends GitHubClientEx {
+        private final List<String> pageETags;
+        private final List<String> requests = new ArrayList<>();
+
+        ConditionalClientStub(String... pageETags) {
+            this.pageETags = Arrays.asList(pageETags);
+        }
+
+        @Override
+        public ImmutablePair<HttpURLConnection, GitHubResponse> getConditionally(GitHubRequest request,
+                                                                               String eTag) throws IOException {
+            int page = ((PagedRequest<?>) request).getPage();
+            String pageETag = getPageETag(page);
+            Map<String, String> headers = new HashMap<>();
+            headers.put("ETag", "\"" + pageETag + "\"");
+            headers.put("Date", "Sun, 27 Dec 2015 15:28:46 GMT");
+
+            if (pageETag.equals(eTag)) {
+                requests.add("304 " + page);
+                HttpURLConnection connection = new RespondedConnection(HttpURLConnection.HTTP_NOT_MODIFIED, headers);
+                return new ImmutablePair<>(connection, new GitHubResponse(connection, null));
+            }
+
+            requests.add("200 " + page);
+            headers.putAll(createHeaders(page));
+            HttpURLConnection connection = new RespondedConnection(HttpURLConnection.HTTP_OK, headers);
+            return new ImmutablePair<>(connection, new GitHubResponse(connection, createPage(page)));
+        }
+
+        @Override
+        public GitHubResponse get(GitHubRequest request) throws IOException {
+            int page = ((PagedRequest<?>) request).getPage();
+            requests.add("GET " + page);
+            return new GitHubResponse(new RespondedConnection(HttpURLConnection.HTTP_OK, createHeaders(page)),
+                                      createPage(page));
+        }
+
+        private Map<String, String> createHeaders(int page) {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("ETag", "\"" + getPageETag(page) + "\"");
+            if (page < pageETags.size()) {
+                headers.put("Link", String.format("<https://api.github.com/labels?page=%d>; rel=\"next\"", page + 1));
+            }
+            return headers;
+        }
+
+        private String getPageETag(int page) {
+            // Pages past the last are empty, as on GitHub
+            return page <= pageETags.size() ? pageETags.get(page - 1) : "empty";
+        }
+
+        private List<Label> createPage(int page) {
+            if (page > pageETags.size()) {
+                return new ArrayList<>();
+            }
+            return Arrays.asList(new Label().setName(page + "a"), new Label().setName(page + "b"));
+        }
+    }
+
+    private static List<String> getNames(List<Label> labels) {
+        return labels.stream().map(Label::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * Tests that unchanged pages cost a single 304 response each, with no items returned
+     */
+    @Test
+    public void testConditionalUpdateNoChanges() {
+        ConditionalClientStub client = new ConditionalClientStub("e1", "e2", "e3");
+        LabelUpdateService service = new LabelUpdateService(client, "e1#e2#e3");
+
+        assertTrue(service.getUpdatedItems(RepositoryId.create("test", "test")).isEmpty());
+        assertEquals(Arrays.asList("304 1", "304 2", "304 3"), client.requests);
+        assertEquals("e1#e2#e3", service.getUpdatedETags());
+    }
+
+    /**
+     * Tests that a change past the first page is noticed, that the body of the modified page is used directly,
+     * and that only unmodified pages before it are fetched again
+     */
+    @Test
+    public void testConditionalUpdateWithChanges() {
+        ConditionalClientStub client = new ConditionalClientStub("e1", "f2", "e3");
+        LabelUpdateService service = new LabelUpdateService(client, "e1#e2#e3");
+
+        List<Label> labels = service.getUpdatedItems(RepositoryId.create("test", "test"));
+
+        assertEquals(Arrays.asList("1a", "1b", "2a", "2b", "3a", "3b"), getNames(labels));
+        assertEquals(Arrays.asList("304 1", "200 2", "GET 3", "GET 1"), client.requests);
+        assertEquals("e1#f2#e3", service.getUpdatedETags());
+    }
+
+    /**
+     * Tests that every page is fetched exactly once when there are no known ETags
+     */
+    @Test
+    public void testConditionalUpdateWithoutETags() {
+        ConditionalClientStub client = new ConditionalClientStub("e1", "e2");
+        LabelUpdateService service = new LabelUpdateService(client, null);
+
+        List<Label> labels = service.getUpdatedItems(RepositoryId.create("test", "test"));
+
+        assertEquals(Arrays.asList("1a", "1b", "2a", "2b"), getNames(labels));
+        assertEquals(Arrays.asList("200 1", "GET 2"), client.requests);
+        assertEquals("e1#e2", service.getUpdatedETags());
+    }
+
+    /**
+     * Tests that a page which is no longer there counts as a change
+     */
+    @Test
+    public void testConditionalUpdateWithFewerPages() {
+        ConditionalClientStub client = new ConditionalClientStub("e1");
+        LabelUpdateService service = new LabelUpdateService(client, "e1#e2");
+
+        List<Label> labels = service.getUpdatedItems(RepositoryId.create("test", "test"));
+
+        // The 304 response has no Link header, so the second page is requested as before
+        assertEquals(Arrays.asList("1a", "1b"), getNames(labels));
+        assertEquals(Arrays.asList("304 1", "200 2", "GET 1"), client.requests);
+        assertEquals("e1#empty", service.getUpdatedETags());
+    }
 }
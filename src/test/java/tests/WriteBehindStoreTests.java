@@ -0,0 +1,118 @@
+package tests;
+
+import backend.interfaces.RepoStore;
+import backend.json.JSONStore;
+import backend.json.WriteBehindJSONStore;
+import backend.resource.Model;
+import backend.resource.TurboIssue;
+import backend.resource.serialization.SerializableModel;
+import guitests.UITest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ui.UI;
+import util.events.EventDispatcherStub;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindStoreTests {
+
+    private static final String REPO = "test/writebehind";
+    private static final String SNAPSHOT = "store/test/test-writebehind.json";
+
+    // Long enough that pending saves are only written when the tests ask for it
+    private static final long LONG_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+    @BeforeClass
+    public static void setup() {
+        UI.events = new EventDispatcherStub();
+    }
+
+    @Before
+    public void enableTestDirectory() {
+        RepoStore.changeDirectory(RepoStore.TEST_DIRECTORY);
+    }
+
+    private static SerializableModel model(int issueCount) {
+        List<TurboIssue> issues = new ArrayList<>();
+        for (int i = 1; i <= issueCount; i++) {
+            issues.add(new TurboIssue(REPO, i, "Issue " + i));
+        }
+        return new SerializableModel(new Model(REPO, issues, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+    }
+
+    @Test
+    public void saves_areCoalesced() throws Exception {
+        WriteBehindJSONStore store = new WriteBehindJSONStore(new JSONStore(), LONG_DELAY);
+        CompletableFuture<Boolean> first = store.saveRepository(REPO, model(1));
+        CompletableFuture<Boolean> second = store.saveRepository(REPO, model(2));
+        CompletableFuture<Boolean> third = store.saveRepository(REPO, model(3));
+
+        assertFalse(first.isDone());
+        assertFalse(Files.exists(Paths.get(SNAPSHOT)));
+        assertEquals(3, store.getSavesRequested());
+        assertEquals(2, store.getWritesSaved());
+
+        assertFalse(store.flush().thenCompose(done -> first).get());
+        assertTrue(second.isDone() && third.isDone());
+        assertEquals(3, new JSONStore().loadRepository(REPO).get().getIssues().size());
+    }
+
+    @Test
+    public void corruptedWrite_isReportedOnce() throws Exception {
+        JSONStore corruptingStore = new JSONStore() {
+            @Override
+            public CompletableFuture<Boolean> saveRepository(String repoId, SerializableModel model) {
+                return CompletableFuture.completedFuture(true);
+            }
+        };
+        WriteBehindJSONStore store = new WriteBehindJSONStore(corruptingStore, LONG_DELAY);
+        CompletableFuture<Boolean> first = store.saveRepository(REPO, model(1));
+        CompletableFuture<Boolean> second = store.saveRepository(REPO, model(2));
+        store.flush().get();
+
+        assertTrue(first.get());
+        assertFalse(second.get());
+    }
+
+    @Test
+    public void saves_areWrittenAfterDelay() throws Exception {
+        WriteBehindJSONStore store = new WriteBehindJSONStore(new JSONStore(), 100);
+        assertFalse(store.saveRepository(REPO, model(2)).get(10, TimeUnit.SECONDS));
+        assertTrue(Files.exists(Paths.get(SNAPSHOT)));
+        assertEquals(0, store.getWritesSaved());
+    }
+
+    @Test
+    public void load_writesPendingSaveFirst() throws Exception {
+        WriteBehindJSONStore store = new WriteBehindJSONStore(new JSONStore(), LONG_DELAY);
+        store.saveRepository(REPO, model(2));
+        assertEquals(2, store.loadRepository(REPO).get().getIssues().size());
+    }
+
+    @Test
+    public void remove_dropsPendingSave() throws Exception {
+        WriteBehindJSONStore store = new WriteBehindJSONStore(new JSONStore(), LONG_DELAY);
+        CompletableFuture<Boolean> pending = store.saveRepository(REPO, model(2));
+        store.removeStoredRepo(REPO).get();
+
+        assertFalse(pending.get());
+        store.flush().get();
+        assertFalse(Files.exists(Paths.get(SNAPSHOT)));
+    }
+
+    @After
+    public void cleanup() {
+        UITest.clearTestFolder();
+    }
+}